@@ -0,0 +1,80 @@
+package com.telemessage.simulators.benchmark;
+
+import com.logica.smpp.pdu.SubmitSM;
+import com.telemessage.simulators.smpp.concatenation.ConcatenationData;
+import com.telemessage.simulators.smpp.concatenation.ConcatenationType;
+import com.telemessage.simulators.smpp_cloudhopper.concatenation.CloudhopperConcatenationType;
+import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concatenation handling: detecting the segment data of an incoming Logica PDU ({@code type}) and splitting a
+ * long outgoing Cloudhopper message ({@code encoding}, 3-4 parts).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcatenationBenchmark {
+
+    private static final String PART_TEXT = "Part of a longer message that was split by the sender into segments";
+
+    @Param({"DEFAULT", "SAR", "UDHI", "TEXT_BASE"})
+    private String type;
+
+    @Param({"GSM7", "UCS2"})
+    private String encoding;
+
+    private SubmitSM submitSm;
+    private String longText;
+
+    @Setup
+    public void setup() throws Exception {
+        submitSm = new SubmitSM();
+        submitSm.setSourceAddr("972500000001");
+        submitSm.setDestAddr("972500000002");
+        switch (type) {
+            case "SAR":
+                submitSm.setShortMessage(PART_TEXT);
+                submitSm.setSarMsgRefNum((short) 42);
+                submitSm.setSarTotalSegments((short) 3);
+                submitSm.setSarSegmentSeqnum((short) 2);
+                break;
+            case "UDHI":
+                byte[] udh = {0x05, 0x00, 0x03, 42, 3, 2};
+                submitSm.setEsmClass((byte) 0x40);
+                submitSm.setShortMessage(new String(udh, StandardCharsets.ISO_8859_1) + PART_TEXT, "ISO-8859-1");
+                break;
+            case "TEXT_BASE":
+                submitSm.setShortMessage("2/3 " + PART_TEXT);
+                break;
+            default:
+                submitSm.setShortMessage(PART_TEXT);
+                break;
+        }
+
+        String unit = "UCS2".equals(encoding) ? "הודעה ארוכה שמפוצלת לחלקים. " : PART_TEXT + ". ";
+        StringBuilder text = new StringBuilder();
+        int targetLength = "UCS2".equals(encoding) ? 200 : 450;
+        while (text.length() < targetLength) {
+            text.append(unit);
+        }
+        longText = text.toString();
+    }
+
+    @Benchmark
+    public ConcatenationData extractSmConcatenationData() {
+        return ConcatenationType.extractSmConcatenationData(submitSm);
+    }
+
+    @Benchmark
+    public List<String> splitMessage() {
+        return CloudhopperUtils.splitMessage(longText, encoding, CloudhopperConcatenationType.UDHI);
+    }
+}
@@ -0,0 +1,75 @@
+package com.telemessage.simulators.benchmark;
+
+import com.telemessage.simulators.smpp.SimUtils;
+import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperEncodingHandler;
+import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding detection and decoding on the receive path, per message.
+ * {@code text} selects a plain ASCII, a Latin-1 and a Hebrew message, each encoded the way it arrives on the wire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodingBenchmark {
+
+    @Param({"ASCII", "LATIN1", "UCS2"})
+    private String text;
+
+    private String message;
+    private byte dataCoding;
+    private String declaredEncoding;
+    private byte[] rawBytes;
+
+    @Setup
+    public void setup() {
+        switch (text) {
+            case "LATIN1":
+                message = "Café déjà vu - réservation confirmée pour Zoë à 18h, numéro 4521";
+                dataCoding = 0x03;
+                declaredEncoding = "ISO-8859-1";
+                rawBytes = message.getBytes(StandardCharsets.ISO_8859_1);
+                break;
+            case "UCS2":
+                message = "שלום, ההזמנה שלך אושרה לשעה 18:00, מספר 4521";
+                dataCoding = 0x08;
+                declaredEncoding = "UCS2";
+                rawBytes = message.getBytes(StandardCharsets.UTF_16BE);
+                break;
+            default:
+                message = "Your verification code is 482913. It expires in 10 minutes.";
+                dataCoding = 0x00;
+                declaredEncoding = "GSM7";
+                rawBytes = message.getBytes(StandardCharsets.US_ASCII);
+                break;
+        }
+    }
+
+    @Benchmark
+    public String determineEncoding() {
+        return SimUtils.determineEncoding(dataCoding, message);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public Object detectAndDecodeMessage() {
+        return CloudhopperUtils.detectAndDecodeMessage(rawBytes, declaredEncoding);
+    }
+
+    @Benchmark
+    public Object decodeWithDetection() {
+        return CloudhopperEncodingHandler.decodeWithDetection(rawBytes, declaredEncoding);
+    }
+
+    @Benchmark
+    public Object decodeWithDetectionRemembered() {
+        return CloudhopperEncodingHandler.decodeWithDetection(rawBytes, declaredEncoding, "benchmark-connection");
+    }
+}
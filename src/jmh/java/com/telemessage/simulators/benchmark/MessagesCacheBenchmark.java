@@ -0,0 +1,102 @@
+package com.telemessage.simulators.benchmark;
+
+import com.telemessage.qatools.error.ErrorTracker;
+import com.telemessage.simulators.controllers.message.GroupedMessageResponse;
+import com.telemessage.simulators.controllers.message.MessageUtils;
+import com.telemessage.simulators.controllers.message.MessagesCache;
+import com.telemessage.simulators.controllers.message.MessagesObject;
+import org.apache.commons.io.FileUtils;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessagesCache} with {@code size} records, a quarter of them parts of 3-part concatenated messages.
+ *
+ * <ul>
+ *   <li>{@link #addCacheRecordContended} - 8 threads adding records at random ids out of 2 x size, so the
+ *       run starts with about half inserts and turns into updates (the DR path) as the key space fills</li>
+ *   <li>{@link #getMessagesGroupedByConcat} - the /sim/messages/grouped-by-concat regrouping of the whole cache</li>
+ * </ul>
+ *
+ * The cache persists to a temporary directory; the background journal flush runs as it does in production.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class MessagesCacheBenchmark {
+
+    @Param({"10000", "100000"})
+    private int size;
+
+    private Path dataDir;
+    private MessagesCache cache;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        // MessagesCache resolves its files from user.dir when the class is first loaded - point it at a scratch directory
+        dataDir = Files.createTempDirectory("smppsim-bench");
+        System.setProperty("user.dir", dataDir.toString());
+
+        cache = new MessagesCache(Mockito.mock(ErrorTracker.class));
+        cache.init();
+        for (int i = 0; i < size; i++) {
+            String id = id(i);
+            cache.putCacheRecord(id, message(id, i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        cache.shutdown();
+        FileUtils.deleteDirectory(dataDir.toFile());
+    }
+
+    @Benchmark
+    @Threads(8)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean addCacheRecordContended() {
+        int i = ThreadLocalRandom.current().nextInt(2 * size);
+        String id = id(i);
+        return cache.addCacheRecord(id, message(id, i));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<GroupedMessageResponse> getMessagesGroupedByConcat() {
+        return cache.getMessagesGroupedByConcat();
+    }
+
+    private static String id(int i) {
+        return "bench-" + i;
+    }
+
+    private static MessagesObject message(String id, int i) {
+        MessagesObject.MessagesObjectBuilder builder = MessagesObject.builder()
+                .id(id)
+                .providerId("provider-" + (i % 16))
+                .from("97250" + (1000000 + i % 5000))
+                .to("97254" + (1000000 + i % 7000))
+                .dir("In_FULL")
+                .text("Benchmark message " + i + " with some ordinary text content")
+                .messageEncoding("GSM7")
+                .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis() - i));
+        if (i % 4 == 0) {
+            // Every 3 consecutive concat records share a reference number and addresses
+            int group = i / 12;
+            builder.referenceNumber(1 + group % 255)
+                    .totalParts(3)
+                    .partNumber((i / 4) % 3 + 1)
+                    .from("97250" + (1000000 + group))
+                    .to("97254" + (1000000 + group));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,399 @@
+package com.telemessage.simulators.common;
+
+import com.telemessage.simulators.common.conf.CombinedCharsetProvider;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Charset detection engine shared by the Logica and Cloudhopper SMPP stacks.
+ *
+ * <p>Candidates are scored in a single streaming pass: each candidate charset decodes the raw bytes
+ * chunk-wise into a reused per-thread {@link CharBuffer} and the text statistics are accumulated on the
+ * fly, so no {@code String} is built for candidates that lose. Only the winner is materialized.</p>
+ *
+ * <p>The winning encoding can be remembered per caller-supplied key (typically a connection id plus the
+ * declared encoding). A remembered winner is tried first and accepted immediately when it still scores
+ * as an excellent match, which skips the candidate loop for steady traffic.</p>
+ */
+@Slf4j
+public final class EncodingDetector {
+
+    public static final double EXCELLENT_SCORE = 0.95;
+
+    private static final int SCRATCH_CHARS = 1024;
+    private static final List<String> GSM_ENCODINGS = List.of("GSM7", "SCGSM", "CCGSM", "GSM_DEFAULT");
+    private static final CombinedCharsetProvider GSM_PROVIDER = new CombinedCharsetProvider();
+    private static final Map<String, Optional<Charset>> charsets = new ConcurrentHashMap<>();
+    private static final Map<String, String> winners = new ConcurrentHashMap<>();
+    private static final ThreadLocal<CharBuffer> scratch = ThreadLocal.withInitial(() -> CharBuffer.allocate(SCRATCH_CHARS));
+
+    private EncodingDetector() {
+    }
+
+    /**
+     * Outcome of a detection: the decoded text, the encoding that produced it and a 0.0-1.0 confidence.
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Result {
+        private final String text;
+        private final String encoding;
+        private final String declaredEncoding;
+        private final double confidence;
+    }
+
+    /**
+     * Detects the most plausible encoding of {@code rawBytes} and decodes them.
+     */
+    public static Result detect(byte[] rawBytes, String declaredEncoding) {
+        return detect(rawBytes, declaredEncoding, null);
+    }
+
+    /**
+     * Detects the most plausible encoding of {@code rawBytes} and decodes them, remembering the winner under
+     * {@code cacheKey} (null disables the cache).
+     */
+    public static Result detect(byte[] rawBytes, String declaredEncoding, String cacheKey) {
+        if (rawBytes == null || rawBytes.length == 0) {
+            return new Result("", declaredEncoding != null ? declaredEncoding : "UTF-8", declaredEncoding, 1.0);
+        }
+
+        Result utf16 = detectUtf16Endianness(rawBytes, declaredEncoding);
+        if (utf16 != null) {
+            return utf16;
+        }
+
+        String remembered = getRememberedEncoding(cacheKey, declaredEncoding);
+        if (remembered != null) {
+            Charset charset = resolveCharset(remembered);
+            if (charset != null) {
+                double score = score(rawBytes, charset);
+                if (score > EXCELLENT_SCORE) {
+                    return new Result(new String(rawBytes, charset), remembered, declaredEncoding, score);
+                }
+            }
+        }
+
+        Result best = detectAmong(rawBytes, declaredEncoding, buildEncodingPriorityList(declaredEncoding), EXCELLENT_SCORE);
+        rememberEncoding(cacheKey, declaredEncoding, best.getEncoding());
+        return best;
+    }
+
+    /**
+     * Encoding that last won detection for {@code cacheKey} and {@code declaredEncoding}, or null.
+     */
+    public static String getRememberedEncoding(String cacheKey, String declaredEncoding) {
+        return cacheKey != null ? winners.get(cacheKey + "|" + declaredEncoding) : null;
+    }
+
+    /**
+     * Remembers the winning encoding for {@code cacheKey} and {@code declaredEncoding}. No-op for a null key.
+     */
+    public static void rememberEncoding(String cacheKey, String declaredEncoding, String encoding) {
+        if (cacheKey != null && encoding != null) {
+            winners.put(cacheKey + "|" + declaredEncoding, encoding);
+        }
+    }
+
+    /**
+     * Scores {@code candidates} in order and decodes with the best one. Stops at the first candidate scoring
+     * above {@code goodEnough}. Falls back to ISO-8859-1 when no candidate can be resolved.
+     */
+    public static Result detectAmong(byte[] rawBytes, String declaredEncoding, String[] candidates, double goodEnough) {
+        String bestEncoding = null;
+        Charset bestCharset = null;
+        double bestScore = -1;
+
+        for (String encodingName : candidates) {
+            if (encodingName == null || encodingName.isEmpty()) {
+                continue;
+            }
+            Charset charset = resolveCharset(encodingName);
+            if (charset == null) {
+                continue;
+            }
+            try {
+                double score = score(rawBytes, charset);
+                log.debug("Tried encoding {}: score={}", encodingName, score);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestEncoding = encodingName;
+                    bestCharset = charset;
+                }
+                if (score > goodEnough) {
+                    break;
+                }
+            } catch (Exception e) {
+                log.debug("Failed to decode with {}: {}", encodingName, e.getMessage());
+            }
+        }
+
+        if (bestCharset == null) {
+            return new Result(new String(rawBytes, StandardCharsets.ISO_8859_1), "ISO-8859-1", declaredEncoding, 0.0);
+        }
+        log.debug("Detection result: encoding={}, score={}", bestEncoding, bestScore);
+        return new Result(new String(rawBytes, bestCharset), bestEncoding, declaredEncoding, bestScore);
+    }
+
+    /**
+     * Resolves an encoding name, including the GSM variants, to a charset. Null if unsupported.
+     */
+    public static Charset resolveCharset(String encodingName) {
+        return charsets.computeIfAbsent(encodingName, name -> {
+            try {
+                if (GSM_ENCODINGS.contains(name.toUpperCase())) {
+                    return Optional.ofNullable(GSM_PROVIDER.charsetForName(name));
+                }
+                if ("UCS2".equalsIgnoreCase(name)) {
+                    return Optional.of(StandardCharsets.UTF_16BE);
+                }
+                return Optional.of(Charset.forName(name));
+            } catch (Exception e) {
+                log.debug("Unsupported encoding {}: {}", name, e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    /**
+     * Scores how plausible it is that {@code rawBytes} are text in {@code charset}, without building a String.
+     *
+     * @return score from 0.0 (worst) to 1.0 (best)
+     */
+    public static double score(byte[] rawBytes, Charset charset) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer in = ByteBuffer.wrap(rawBytes);
+        CharBuffer out = scratch.get();
+        TextStats stats = new TextStats();
+
+        CoderResult result;
+        do {
+            out.clear();
+            result = decoder.decode(in, out, true);
+            out.flip();
+            stats.accept(out);
+        } while (result.isOverflow());
+        do {
+            out.clear();
+            result = decoder.flush(out);
+            out.flip();
+            stats.accept(out);
+        } while (result.isOverflow());
+
+        return stats.score(rawBytes.length, StandardCharsets.UTF_8.equals(charset));
+    }
+
+    /**
+     * Scores already decoded text with the same heuristics as {@link #score(byte[], Charset)}.
+     */
+    public static double scoreText(String text, int originalByteLength) {
+        if (text == null) {
+            return 0.0;
+        }
+        TextStats stats = new TextStats();
+        stats.accept(CharBuffer.wrap(text));
+        return stats.score(originalByteLength, false);
+    }
+
+    /**
+     * Smart encoding priority list based on the declared encoding; handles the common confusion patterns.
+     */
+    public static String[] buildEncodingPriorityList(String declaredEncoding) {
+        if (declaredEncoding == null || declaredEncoding.isEmpty()) {
+            return new String[]{"UTF-8", "UTF-16BE", "UTF-16LE", "ISO-8859-1", "Cp1252"};
+        }
+
+        String normalized = declaredEncoding.toUpperCase();
+
+        if (normalized.contains("UTF-16BE") || normalized.equals("UCS2")) {
+            return new String[]{declaredEncoding, "UTF-16LE", "UTF-8", "ISO-8859-1", "Cp1252"};
+        }
+        if (normalized.contains("UTF-16LE")) {
+            return new String[]{declaredEncoding, "UTF-16BE", "UTF-8", "ISO-8859-1", "Cp1252"};
+        }
+        if (normalized.contains("UTF-8") || normalized.equals("UTF8")) {
+            return new String[]{declaredEncoding, "ISO-8859-1", "Cp1252", "UTF-16BE", "UTF-16LE"};
+        }
+        if (normalized.contains("ISO-8859-1") || normalized.equals("LATIN1")) {
+            return new String[]{declaredEncoding, "UTF-8", "Cp1252", "UTF-16BE", "UTF-16LE"};
+        }
+        if (normalized.contains("1252") || normalized.equals("CP1252")) {
+            return new String[]{declaredEncoding, "ISO-8859-1", "UTF-8", "UTF-16BE", "UTF-16LE"};
+        }
+        if (normalized.contains("GSM") || normalized.contains("CCGSM") || normalized.contains("SCGSM")) {
+            return new String[]{declaredEncoding, "ISO-8859-1", "UTF-8", "Cp1252", "UTF-16BE"};
+        }
+
+        return new String[]{declaredEncoding, "UTF-8", "UTF-16BE", "UTF-16LE", "ISO-8859-1", "Cp1252"};
+    }
+
+    /**
+     * UTF-16 endianness check for a declared UTF-16BE/UCS2 payload, using surrogate pairs and null byte
+     * positions. Returns null when the bytes should go through regular scoring.
+     */
+    private static Result detectUtf16Endianness(byte[] rawBytes, String declaredEncoding) {
+        if (!"UTF-16BE".equalsIgnoreCase(declaredEncoding) && !"UCS2".equalsIgnoreCase(declaredEncoding)) {
+            return null;
+        }
+        // UTF-16LE ASCII: nulls at odd positions; UTF-16BE ASCII: nulls at even positions
+        // Surrogate pairs (D800-DFFF) are the strongest indicator of the byte order
+        int nullsAtOddPositions = 0;
+        int nullsAtEvenPositions = 0;
+        int surrogatePairsBE = 0;
+        int surrogatePairsLE = 0;
+        int totalBytes = Math.min(rawBytes.length, 100); // Check first 100 bytes
+
+        for (int i = 0; i < totalBytes; i++) {
+            if (rawBytes[i] == 0) {
+                if (i % 2 == 1) {
+                    nullsAtOddPositions++;
+                } else {
+                    nullsAtEvenPositions++;
+                }
+            }
+            if (i + 3 < rawBytes.length) {
+                int highBE = rawBytes[i] & 0xFF;
+                int lowBE = rawBytes[i + 2] & 0xFF;
+                if (highBE >= 0xD8 && highBE <= 0xDB && lowBE >= 0xDC && lowBE <= 0xDF) {
+                    surrogatePairsBE++;
+                }
+                int highLE = rawBytes[i + 1] & 0xFF;
+                int lowLE = rawBytes[i + 3] & 0xFF;
+                if (highLE >= 0xD8 && highLE <= 0xDB && lowLE >= 0xDC && lowLE <= 0xDF) {
+                    surrogatePairsLE++;
+                }
+            }
+        }
+
+        if (surrogatePairsBE > surrogatePairsLE) {
+            return decodedAs(rawBytes, StandardCharsets.UTF_16BE, declaredEncoding);
+        }
+        if (surrogatePairsLE > surrogatePairsBE) {
+            log.warn("Detected UTF-16LE via surrogate pairs - correcting from declared {}", declaredEncoding);
+            return decodedAs(rawBytes, StandardCharsets.UTF_16LE, declaredEncoding);
+        }
+        if (nullsAtOddPositions > nullsAtEvenPositions * 2 && nullsAtOddPositions > 5) {
+            log.warn("Detected UTF-16LE null byte pattern - correcting from declared {}", declaredEncoding);
+            return decodedAs(rawBytes, StandardCharsets.UTF_16LE, declaredEncoding);
+        }
+        if (nullsAtOddPositions <= 5 && nullsAtEvenPositions <= 5) {
+            // No strong null pattern (emoji-heavy content?), trust the declared encoding
+            return decodedAs(rawBytes, StandardCharsets.UTF_16BE, declaredEncoding);
+        }
+        return null;
+    }
+
+    private static Result decodedAs(byte[] rawBytes, Charset charset, String declaredEncoding) {
+        String text = new String(rawBytes, charset);
+        return new Result(text, charset.name(), declaredEncoding, scoreText(text, rawBytes.length));
+    }
+
+    /**
+     * Streaming text statistics for one candidate decoding.
+     */
+    private static final class TextStats {
+        private int length;
+        private int printable;
+        private int replacement;
+        private int control;
+        private int common;
+        private int nulls;
+        private int blockChanges;
+        private Character.UnicodeBlock previousBlock;
+
+        void accept(CharBuffer chars) {
+            for (int i = chars.position(); i < chars.limit(); i++) {
+                char c = chars.get(i);
+                length++;
+                countBlockChange(c);
+
+                if (c == '\uFFFD') {
+                    replacement++;
+                    continue;
+                }
+                if (c == '\0') {
+                    nulls++;
+                }
+                if (c < 32 && c != '\n' && c != '\r' && c != '\t') {
+                    control++;
+                    continue;
+                }
+                printable++;
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') ||
+                    (c >= '0' && c <= '9') || c == ' ' || c == '.' || c == ',') {
+                    common++;
+                }
+            }
+        }
+
+        private void countBlockChange(char c) {
+            // Whitespace and ASCII punctuation do not switch blocks
+            if (Character.isWhitespace(c) || (c >= 0x20 && c <= 0x2F) ||
+                (c >= 0x3A && c <= 0x40) || (c >= 0x5B && c <= 0x60) ||
+                (c >= 0x7B && c <= 0x7E)) {
+                return;
+            }
+            Character.UnicodeBlock block = c < 0x80 ? Character.UnicodeBlock.BASIC_LATIN : Character.UnicodeBlock.of(c);
+            if (block != null) {
+                if (previousBlock != null && block != previousBlock) {
+                    blockChanges++;
+                }
+                previousBlock = block;
+            }
+        }
+
+        double score(int originalByteLength, boolean utf8) {
+            if (length == 0) {
+                return 0.0;
+            }
+            double score = 1.0;
+            score -= (double) replacement / length * 2.0;
+            score -= (double) control / length * 1.5;
+            score *= (double) printable / length;
+
+            if (common > length * 0.3) {
+                score *= 1.1;
+            }
+
+            if (originalByteLength > 0) {
+                double charToByteRatio = (double) length / originalByteLength;
+
+                // ~0.5: multi-byte decoded as single-byte or vice versa - random looking text is garbage
+                if (charToByteRatio < 0.55 && charToByteRatio > 0.45
+                        && (double) blockChanges / Math.max(1, length) > 0.5) {
+                    score *= 0.15;
+                }
+                // < 0.4: binary data or severely wrong encoding. Clean UTF-8 legitimately goes down to 0.25
+                // (three and four byte sequences), so it is exempt when nothing was malformed
+                if (charToByteRatio < 0.4 && !(utf8 && replacement == 0)) {
+                    score *= 0.2;
+                }
+                if (charToByteRatio > 3.0) {
+                    score *= 0.5;
+                }
+            }
+
+            if (nulls > 0) {
+                score -= (double) nulls / length * 2.0;
+            }
+            return Math.max(0.0, Math.min(1.0, score));
+        }
+    }
+}
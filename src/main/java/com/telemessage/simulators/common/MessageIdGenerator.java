@@ -0,0 +1,168 @@
+package com.telemessage.simulators.common;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Message ID generator shared by the Logica, Cloudhopper and HTTP stacks.
+ *
+ * <p>IDs are 63-bit values made of milliseconds since 2024-01-01 (41 bits), a node number (10 bits)
+ * and a per-millisecond sequence (12 bits). They are unique per node and strictly increasing: when more
+ * than 4096 IDs are taken in one millisecond the generator borrows from the next millisecond instead of
+ * waiting. Generation is lock-free (one CAS) and allocates only the resulting string.</p>
+ *
+ * <p>Configured with system properties:</p>
+ * <ul>
+ *   <li>{@code sim.messageId.format} - {@code decimal} (default) or {@code hex}</li>
+ *   <li>{@code sim.messageId.length} - fixed length, zero padded; 0 (default) for the natural length.
+ *       A length shorter than the natural one switches to a counter seeded from time. The node takes the
+ *       leading part of the ID and the counter the rest, which stays unique per node for radix^length / 1024
+ *       consecutive IDs (e.g. about 9.7 million for 10 decimal digits). A length too short for that (under
+ *       8 decimal or 7 hex digits) leaves the node out: such IDs are only unique on a single node</li>
+ *   <li>{@code sim.messageId.node} - node number 0-1023, by default derived from host name and process ID</li>
+ * </ul>
+ */
+@Slf4j
+public class MessageIdGenerator {
+
+    public enum Format {
+        DECIMAL(10), HEX(16);
+
+        private final int radix;
+
+        Format(int radix) {
+            this.radix = radix;
+        }
+    }
+
+    private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    // Smallest counter range per node for which fixed-length IDs still carry the node
+    private static final long MIN_NODE_RANGE = 1L << 16;
+
+    private static final MessageIdGenerator DEFAULT = new MessageIdGenerator(
+            Format.valueOf(System.getProperty("sim.messageId.format", "decimal").toUpperCase(Locale.ROOT)),
+            Integer.getInteger("sim.messageId.length", 0),
+            Integer.getInteger("sim.messageId.node", defaultNode()));
+
+    @Getter
+    private final Format format;
+    @Getter
+    private final int length;
+    @Getter
+    private final long node;
+
+    // (millis since EPOCH_MILLIS) << SEQUENCE_BITS | sequence of the last ID
+    private final AtomicLong state = new AtomicLong();
+
+    // Fixed-length mode only: counter range (0 when the natural length fits) and the first ID of this node
+    private final long modulus;
+    private final long counterBase;
+    private final AtomicLong counter = new AtomicLong();
+
+    public MessageIdGenerator(Format format, int length, long node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be 0-" + MAX_NODE + ": " + node);
+        }
+        this.format = Objects.requireNonNull(format);
+        this.length = Math.max(0, length);
+        this.node = node;
+        long range = counterModulus(format, this.length);
+        long perNode = range / (MAX_NODE + 1);
+        if (range > 0 && perNode < MIN_NODE_RANGE) {
+            log.warn("Message ID length {} is too short to carry the node: IDs are unique on a single node only",
+                    this.length);
+            this.modulus = range;
+            this.counterBase = 0;
+        } else {
+            this.modulus = perNode;
+            this.counterBase = node * perNode;
+        }
+        if (modulus > 0) {
+            counter.set(Math.floorMod(nextLong(), modulus));
+        }
+    }
+
+    /**
+     * @return A new ID from the simulator-wide generator.
+     */
+    public static String nextId() {
+        return DEFAULT.next();
+    }
+
+    public static MessageIdGenerator getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return A new ID, formatted as configured.
+     */
+    public String next() {
+        if (modulus > 0) {
+            return pad(Long.toString(counterBase + Math.floorMod(counter.getAndIncrement(), modulus), format.radix));
+        }
+        return pad(Long.toString(nextLong(), format.radix));
+    }
+
+    /**
+     * @return A new 63-bit ID: time, node and sequence.
+     */
+    public long nextLong() {
+        long now = System.currentTimeMillis() - EPOCH_MILLIS;
+        while (true) {
+            long last = state.get();
+            // A sequence overflow carries into the time part, i.e. borrows the next millisecond
+            long next = now > (last >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : last + 1;
+            if (state.compareAndSet(last, next)) {
+                return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)
+                        | node << SEQUENCE_BITS
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    private String pad(String id) {
+        if (id.length() >= length) {
+            return id;
+        }
+        char[] padded = new char[length];
+        int zeros = length - id.length();
+        Arrays.fill(padded, 0, zeros, '0');
+        id.getChars(0, id.length(), padded, zeros);
+        return new String(padded);
+    }
+
+    /**
+     * @return radix^length if IDs must be shorter than a full time/node/sequence value, else 0.
+     */
+    private static long counterModulus(Format format, int length) {
+        if (length <= 0 || length >= Long.toString(Long.MAX_VALUE, format.radix).length()) {
+            return 0;
+        }
+        long modulus = 1;
+        for (int i = 0; i < length; i++) {
+            modulus *= format.radix;
+        }
+        return modulus;
+    }
+
+    private static int defaultNode() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            log.debug("Host name not available for message ID node: {}", e.getMessage());
+            host = "";
+        }
+        return (int) (Objects.hash(host, ProcessHandle.current().pid()) & MAX_NODE);
+    }
+}
@@ -2,23 +2,24 @@ package com.telemessage.simulators.common.conf;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
 public class AsyncConfig implements AsyncConfigurer {
+
+    // @Async methods connect, unbind and reset connections - blocking I/O, so each runs on a virtual thread
     @Bean
     public Executor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(10000); // Adjust as needed
-        executor.setMaxPoolSize(20000); // Adjust as needed
-        executor.setQueueCapacity(50000); // Adjust as needed
-        executor.setThreadNamePrefix("AsyncExecutor-");
-        executor.initialize();
-        return executor;
+        return new TaskExecutorAdapter(SimExecutors.io());
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return taskExecutor();
     }
 }
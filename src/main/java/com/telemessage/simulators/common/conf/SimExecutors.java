@@ -0,0 +1,230 @@
+package com.telemessage.simulators.common.conf;
+
+import com.telemessage.simulators.stats.SimMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulator-wide execution layer.
+ *
+ * <ul>
+ *   <li>{@link #io()} - virtual thread per task, for blocking work (socket sends, binds, HTTP calls)</li>
+ *   <li>{@link #cpu()} - bounded platform pool sized to the CPUs, for CPU-bound work</li>
+ *   <li>{@link #scheduler()} - one shared timer; scheduled tasks must be short and hand blocking work to {@link #io()}</li>
+ *   <li>{@link #newBoundedPool} - named, capped platform pools for libraries that need their own threads</li>
+ * </ul>
+ *
+ * <p>Every pool is registered by name and reported by {@link #getStats()} (active tasks, queue depth, pool size,
+ * completed tasks), and published as {@code sim.executor.*} meters by {@link SimMetrics}. Sizes are set with {@code sim.executor.cpu.threads}, {@code sim.executor.cpu.queue} and
+ * {@code sim.executor.scheduler.threads}.</p>
+ */
+@Slf4j
+public final class SimExecutors {
+
+    private static final int CPU_THREADS = Integer.getInteger("sim.executor.cpu.threads", Runtime.getRuntime().availableProcessors());
+    private static final int CPU_QUEUE = Integer.getInteger("sim.executor.cpu.queue", 10000);
+    private static final int SCHEDULER_THREADS = Integer.getInteger("sim.executor.scheduler.threads", 2);
+
+    private static final Map<String, ExecutorService> POOLS = new ConcurrentHashMap<>();
+    private static final Set<String> METERED = ConcurrentHashMap.newKeySet();
+
+    private static final IoExecutor IO = register("io", new IoExecutor("sim-io-"));
+
+    private static final ThreadPoolExecutor CPU = register("cpu", new ThreadPoolExecutor(
+            CPU_THREADS, CPU_THREADS, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(CPU_QUEUE), daemonFactory("sim-cpu-"),
+            new ThreadPoolExecutor.CallerRunsPolicy()));
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = register("scheduler", newScheduler());
+
+    private SimExecutors() {
+    }
+
+    /**
+     * Pool statistics snapshot.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PoolStats {
+        private final int active;
+        private final int queued;
+        private final int poolSize;
+        private final long completed;
+    }
+
+    /**
+     * @return Executor running each task on a new virtual thread.
+     */
+    public static ExecutorService io() {
+        return IO;
+    }
+
+    /**
+     * @return Bounded platform pool; a full queue makes the caller run the task.
+     */
+    public static ExecutorService cpu() {
+        return CPU;
+    }
+
+    /**
+     * @return The shared timer.
+     */
+    public static ScheduledExecutorService scheduler() {
+        return SCHEDULER;
+    }
+
+    /**
+     * Creates a named pool of at most {@code maxThreads} platform threads that are started on demand and
+     * retired after a minute idle. Submitting beyond the cap is rejected instead of creating more threads;
+     * the cap can be raised later with {@link ThreadPoolExecutor#setMaximumPoolSize}.
+     */
+    public static ThreadPoolExecutor newBoundedPool(String name, int maxThreads, boolean daemon) {
+        ThreadFactory factory = daemon ? daemonFactory(name + "-") : platformFactory(name + "-", false);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), factory, (task, executor) -> {
+                    int max = executor.getMaximumPoolSize();
+                    log.error("Executor {} is at its limit of {} threads, rejecting task", name, max);
+                    throw new RejectedExecutionException("Executor " + name + " at " + max + " threads");
+                });
+        return register(name, pool);
+    }
+
+    /**
+     * Adds a pool created elsewhere to the statistics.
+     */
+    public static <T extends ExecutorService> T monitor(String name, T pool) {
+        return register(name, pool);
+    }
+
+    /**
+     * Removes a pool from the statistics, e.g. after it was shut down.
+     */
+    public static void unregister(String name) {
+        POOLS.remove(name);
+    }
+
+    public static Map<String, PoolStats> getStats() {
+        Map<String, PoolStats> stats = new LinkedHashMap<>();
+        POOLS.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> stats.put(entry.getKey(), statsOf(entry.getValue())));
+        return stats;
+    }
+
+    private static PoolStats statsOf(ExecutorService pool) {
+        if (pool == null) {
+            return null;
+        }
+        if (pool instanceof ThreadPoolExecutor tpe) {
+            return new PoolStats(tpe.getActiveCount(), tpe.getQueue().size(), tpe.getPoolSize(), tpe.getCompletedTaskCount());
+        }
+        if (pool instanceof IoExecutor io) {
+            return new PoolStats(io.active.get(), 0, io.active.get(), io.completed.sum());
+        }
+        return new PoolStats(0, 0, 0, 0);
+    }
+
+    private static <T extends ExecutorService> T register(String name, T pool) {
+        ExecutorService previous = POOLS.put(name, pool);
+        if (previous != null && previous != pool) {
+            log.warn("Executor {} registered twice, statistics now refer to the newer pool", name);
+        }
+        if (METERED.add(name)) {
+            // Looked up by name, so the meters follow a pool re-created under the same name
+            SimMetrics.executor(name, () -> statsOf(POOLS.get(name)));
+        }
+        return pool;
+    }
+
+    private static ScheduledThreadPoolExecutor newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS, daemonFactory("sim-scheduler-"));
+        // Cancelled timers (e.g. an expired DR delay) leave the queue at once
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        return platformFactory(prefix, true);
+    }
+
+    private static ThreadFactory platformFactory(String prefix, boolean daemon) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r);
+            t.setName(prefix + count.incrementAndGet());
+            t.setDaemon(daemon);
+            return t;
+        };
+    }
+
+    /**
+     * Virtual-thread-per-task executor that counts running and completed tasks.
+     */
+    private static final class IoExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+
+        IoExecutor(String prefix) {
+            this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                active.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.telemessage.simulators.controllers;
 
 
 import com.telemessage.simulators.common.conf.EnvConfiguration;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import com.telemessage.simulators.http.HttpSimulator;
 import com.telemessage.simulators.smpp.SMPPSimulatorInterface;
 import com.telemessage.simulators.web.HttpResource;
@@ -17,8 +18,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
@@ -91,6 +92,12 @@ public class SimControl {
                 .body("SMPP and HTTP Services are starting...");
     }
 
+    @RequestMapping(method = RequestMethod.GET, path = "/executors", produces = MediaType.APPLICATION_JSON_VALUE, name = "EXECUTORS")
+    @Description("Active tasks, queue depth and pool size of the simulator executors")
+    public ResponseEntity<Map<String, SimExecutors.PoolStats>> executors() {
+        return ResponseEntity.ok(SimExecutors.getStats());
+    }
+
     @Path("/smpp")
     public SMPPResource getSMPPResource() {
         return new SMPPResource();
@@ -104,17 +111,14 @@ public class SimControl {
 
 
     private void scheduleShutdownSimulators(long delay) {
-        new Timer().schedule(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    smppSim.shutdown();
-                } catch (Exception ignore){}
-                try {
-                    httpSim.stop();
-                } catch (Exception ignore){}
-            }
-        }, delay);
+        SimExecutors.scheduler().schedule(() -> SimExecutors.io().execute(() -> {
+            try {
+                smppSim.shutdown();
+            } catch (Exception ignore){}
+            try {
+                httpSim.stop();
+            } catch (Exception ignore){}
+        }), delay, TimeUnit.MILLISECONDS);
         log.info("Sim Stopped");
     }
 
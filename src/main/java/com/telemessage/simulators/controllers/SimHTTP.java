@@ -3,13 +3,16 @@ package com.telemessage.simulators.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.telemessage.simulators.common.RedisUtils;
-import com.telemessage.simulators.common.Utils;
+import com.telemessage.simulators.common.MessageIdGenerator;
 import com.telemessage.simulators.common.conf.EnvConfiguration;
 import com.telemessage.simulators.controllers.message.MessageUtils;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.controllers.message.MessagesObject;
 import com.telemessage.simulators.http.*;
+import com.telemessage.simulators.rules.Rule;
+import com.telemessage.simulators.rules.RulesEngine;
 import com.telemessage.simulators.smpp.SMPPSimulator;
+import com.telemessage.simulators.stats.SimMetrics;
 import com.telemessage.simulators.web.CustomNotFoundException;
 import com.telemessage.simulators.web.wrappers.AbstractMessage;
 import com.telemessage.simulators.web.wrappers.HttpMessage;
@@ -70,19 +73,33 @@ public class SimHTTP {
     }
 
     private Object process(String postData, int id, String source, String target) throws UnsupportedEncodingException {
+        long start = System.nanoTime();
+        String outcome = "failed";
+        try {
+            Object dr = receive(postData, id, source, target);
+            outcome = "received";
+            return dr;
+        } catch (CustomNotFoundException e) {
+            outcome = "not_found";
+            throw e;
+        } finally {
+            SimMetrics.httpMessage(id, outcome, start);
+        }
+    }
+
+    private Object receive(String postData, int id, String source, String target) throws UnsupportedEncodingException {
         HttpConnection conn = httpSim.get(id);
 
         if (conn == null || !conn.isStarted()) {
             throw new CustomNotFoundException();
         }
 
-        String msgId = String.valueOf(Long.parseLong(Utils.generateRandomKey(8, false)));
+        String msgId = MessageIdGenerator.nextId();
 
         HttpParam[] p = new HttpParam[2];
 
         //972511000023
         String destPrefix = "";
-        String destPrefixForStatus = "";
         Map<String, String> postDataMap = httpUtils.getMapFromPostData(postData);
 
         if (!postDataMap.isEmpty()) {
@@ -95,7 +112,6 @@ public class SimHTTP {
             }
 
             destPrefix = target.substring(7,10);
-            destPrefixForStatus = target.substring(0, 7);
         }
 
 //        13: Bind failed --> 4576 (FAILED_SMS_PROVIDER_RESPONSE_LOGIN_INCORRECT)
@@ -105,109 +121,11 @@ public class SimHTTP {
 //        21: Invalid service type-->4592  (FAILED_SMS_PROVIDER_RESPONSE_INVALID_SERVICE_TYPE)
 //            130: Bad username or password or IP address XXX.XXX.XXX.XXX not allowed--> 4572 (FAILED_SMS_PROVIDER_RESPONSE_INVALID_IP)
         String deliveryReceiptResponse = "";
-        if (!StringUtils.isEmpty(conn.getAutomaticDR())) {
-            switch (destPrefixForStatus) {
-                case "0511000": {
-                    p[0] = new HttpParam("deliveryFailureReason", "1");
-                }
-                break;
-                case "0516000": {
-                    p[0] = new HttpParam("deliveryFailureReason", "6");
-                }
-                break;
-                case "0519000": {
-                    p[0] = new HttpParam("deliveryFailureReason", "9");
-                }
-                break;
-                case "0511100": {
-                    p[0] = new HttpParam("deliveryFailureReason", "11");
-                }
-                break;
-                case "0511313": {
-                    p[0] = new HttpParam("deliveryFailureReason", "13");
-                }
-                break;
-                case "0511400": {
-                    p[0] = new HttpParam("deliveryFailureReason", "14");
-                }
-                break;
-                case "0511500": {
-                    p[0] = new HttpParam("deliveryFailureReason", "15");
-                }
-                break;
-                case "0512000": {
-                    p[0] = new HttpParam("deliveryFailureReason", "20");
-                }
-                break;
-                case "0512100": {
-                    p[0] = new HttpParam("deliveryFailureReason", "21");
-                }
-                break;
-                case "0512700": {
-                    p[0] = new HttpParam("deliveryFailureReason", "27");
-                }
-                break;
-                case "0513400": {
-                    p[0] = new HttpParam("deliveryFailureReason", "34");
-                }
-                break;
-                case "0511010": {
-                    p[0] = new HttpParam("deliveryFailureReason", "101");
-                }
-                break;
-                case "0511200": {
-                    p[0] = new HttpParam("deliveryFailureReason", "120");
-                }
-                break;
-                case "0511210": {
-                    p[0] = new HttpParam("deliveryFailureReason", "121");
-                }
-                break;
-                case "0511300": {
-                    p[0] = new HttpParam("deliveryFailureReason", "130");
-                }
-                break;
-                case "0511310": {
-                    p[0] = new HttpParam("deliveryFailureReason", "131");
-                }
-                break;
-                case "0511600": {
-                    p[0] = new HttpParam("deliveryFailureReason", "160");
-                }
-                break;
-                case "0511610": {
-                    p[0] = new HttpParam("deliveryFailureReason", "161");
-                }
-                break;
-                case "0511630": {
-                    p[0] = new HttpParam("deliveryFailureReason", "163");
-                }
-                break;
-                case "0511640": {
-                    p[0] = new HttpParam("deliveryFailureReason", "164");
-                }
-                break;
-                case "0515170": {
-                    p[0] = new HttpParam("deliveryFailureReason", "517");
-                }
-                break;
-                case "0511024": {
-                    p[0] = new HttpParam("deliveryFailureReason", "1024");
-                }
-                break;
-                case "0511908": {
-                    p[0] = new HttpParam("deliveryFailureReason", "1908");
-                }
-                break;
-                case "0518899": {
-                    p[0] = new HttpParam("deliveryFailureReason", "8899");
-                }
-                break;
-
-                default: {
-                    p[0] = new HttpParam("deliveryFailureReason", "0");
-                }
-            }
+        // Failure reasons per destination come from the rules (rules.xml), e.g. 0511000xxxxx -> 1
+        Rule rule = RulesEngine.match(RulesEngine.Protocol.http, id, source, target);
+        if (!StringUtils.isEmpty(conn.getAutomaticDR()) && (rule == null || !rule.dropsReceipt())) {
+            p[0] = new HttpParam("deliveryFailureReason",
+                    rule != null && rule.getFailureReason() != null ? rule.getFailureReason() : "0");
 
             p[1] = new HttpParam("operatorPrefix", destPrefix);
             deliveryReceiptResponse = conn.getConnectionHandler().sendDeliveryReceipt(msgId, conn.getAutomaticDR(), p);
@@ -262,8 +180,10 @@ public class SimHTTP {
             name = "sendMessage")
     public String httpSendMessage(@PathVariable("id") int id, @RequestBody HttpMessage msg) {
         log.info("httpSendMessage " + msg.getText());
+        long start = System.nanoTime();
         try {
             boolean success = httpSim.send(id, new HttpRequest(msg.getSrc(), msg.getDst(), msg.getText(), msg.getParams()));
+            SimMetrics.httpMessage(id, success ? "sent" : "send_failed", start);
             if (success) {
                 return "Message is sending.";
             } else {
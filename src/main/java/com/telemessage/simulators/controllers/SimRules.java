@@ -0,0 +1,78 @@
+package com.telemessage.simulators.controllers;
+
+import com.telemessage.simulators.rules.Rule;
+import com.telemessage.simulators.rules.RulesEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/sim/rules")
+public class SimRules {
+
+    RulesEngine rulesEngine;
+
+    @Autowired
+    public SimRules(RulesEngine rulesEngine) {
+        this.rulesEngine = rulesEngine;
+    }
+
+    @RequestMapping(method = RequestMethod.GET, path = "",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            name = "rules")
+    public Map<String, Object> getRules() {
+        return status();
+    }
+
+    @RequestMapping(method = RequestMethod.POST, path = "/reload",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            name = "reloadRules")
+    public ResponseEntity<Map<String, Object>> reloadRules() {
+        try {
+            rulesEngine.reload();
+            return ResponseEntity.ok(status());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(status());
+        }
+    }
+
+    @RequestMapping(method = RequestMethod.PUT, path = "",
+            consumes = {MediaType.APPLICATION_XML_VALUE, MediaType.TEXT_XML_VALUE, MediaType.TEXT_PLAIN_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            name = "replaceRules")
+    public ResponseEntity<Map<String, Object>> replaceRules(@RequestBody String xml) {
+        try {
+            rulesEngine.replace(xml);
+            return ResponseEntity.ok(status());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(status());
+        }
+    }
+
+    @RequestMapping(method = RequestMethod.GET, path = "/match",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            name = "matchRule")
+    public ResponseEntity<Rule> matchRule(@RequestParam(value = "protocol", defaultValue = "smpp") RulesEngine.Protocol protocol,
+                                          @RequestParam("connection") int connectionId,
+                                          @RequestParam(value = "src", required = false) String src,
+                                          @RequestParam(value = "dst", required = false) String dst) {
+        Rule rule = rulesEngine.find(protocol, connectionId, src, dst);
+        return rule != null ? ResponseEntity.ok(rule) : ResponseEntity.notFound().build();
+    }
+
+    private Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("source", rulesEngine.getSource());
+        status.put("loadedAt", rulesEngine.getLoadedAt());
+        status.put("ruleCount", rulesEngine.getRuleCount());
+        status.put("lastError", rulesEngine.getLastError());
+        status.put("rules", rulesEngine.getRules());
+        return status;
+    }
+}
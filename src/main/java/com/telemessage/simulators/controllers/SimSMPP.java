@@ -5,9 +5,12 @@ import com.telemessage.simulators.common.conf.EnvConfiguration;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.controllers.message.MessagesObject;
 import com.telemessage.simulators.controllers.utils.Utils;
+import com.telemessage.simulators.smpp.PartsDelayScheduler;
 import com.telemessage.simulators.smpp.SMPPConnection;
 import com.telemessage.simulators.smpp.SMPPRequest;
+import com.telemessage.simulators.smpp.SMPPSimulator;
 import com.telemessage.simulators.smpp.SMPPSimulatorInterface;
+import com.telemessage.simulators.smpp.SmppLoadGenerator;
 import com.telemessage.simulators.smpp.conf.SMPPConnectionConf;
 import com.telemessage.simulators.web.wrappers.AbstractMessage;
 import com.telemessage.simulators.web.wrappers.DeliveryReceiptShortMessage;
@@ -17,6 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
 
@@ -32,11 +36,13 @@ public class SimSMPP {
     EnvConfiguration conf;
     static SMPPSimulatorInterface smppSim;
     MessagesCache cacheService;
+    SmppLoadGenerator loadGenerator;
     @Autowired
     public SimSMPP(EnvConfiguration conf, @Qualifier("smppSimulator") SMPPSimulatorInterface smppSim, MessagesCache cacheService) {
         this.conf = conf;
         this.smppSim = smppSim;
         this.cacheService = cacheService;
+        this.loadGenerator = new SmppLoadGenerator(smppSim);
     }
 
     @RequestMapping(method = RequestMethod.GET, path = "/test",
@@ -351,6 +357,60 @@ public class SimSMPP {
 //        return "Reset executed. It could take some time to accomplish the action";
     }
 
+    @RequestMapping(method = RequestMethod.GET, path = "/parts-delay/plans",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            name = "partsDelayPlans")
+    public Collection<PartsDelayScheduler.Plan<?>> getPartsDelayPlans() {
+        if (smppSim instanceof SMPPSimulator) {
+            return ((SMPPSimulator) smppSim).getPartsDelayScheduler().getPlans();
+        }
+        return Collections.emptyList();
+    }
+
+    @RequestMapping(method = RequestMethod.GET, path = "/parts-delay/plans/{planId}",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            name = "partsDelayPlan")
+    public ResponseEntity<PartsDelayScheduler.Plan<?>> getPartsDelayPlan(@PathVariable("planId") String planId) {
+        PartsDelayScheduler.Plan<?> plan = smppSim instanceof SMPPSimulator
+                ? ((SMPPSimulator) smppSim).getPartsDelayScheduler().getPlan(planId) : null;
+        return plan != null ? ResponseEntity.ok(plan) : ResponseEntity.notFound().build();
+    }
+
+    @RequestMapping(method = RequestMethod.POST, path = "/connection/{id}/load",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            name = "startLoad")
+    public ResponseEntity<?> startLoad(@PathVariable("id") int id, @RequestBody SmppLoadGenerator.Profile profile) {
+        try {
+            return ResponseEntity.ok(loadGenerator.start(id, profile));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @RequestMapping(method = RequestMethod.GET, path = "/load/runs",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            name = "loadRuns")
+    public Collection<SmppLoadGenerator.Run> getLoadRuns() {
+        return loadGenerator.getRuns();
+    }
+
+    @RequestMapping(method = RequestMethod.GET, path = "/load/runs/{runId}",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            name = "loadRun")
+    public ResponseEntity<SmppLoadGenerator.Run> getLoadRun(@PathVariable("runId") String runId) {
+        SmppLoadGenerator.Run run = loadGenerator.getRun(runId);
+        return run != null ? ResponseEntity.ok(run) : ResponseEntity.notFound().build();
+    }
+
+    @RequestMapping(method = RequestMethod.POST, path = "/load/runs/{runId}/stop",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            name = "stopLoadRun")
+    public ResponseEntity<SmppLoadGenerator.Run> stopLoadRun(@PathVariable("runId") String runId) {
+        SmppLoadGenerator.Run run = loadGenerator.stop(runId);
+        return run != null ? ResponseEntity.ok(run) : ResponseEntity.notFound().build();
+    }
+
 
 
     private enum TYPE {
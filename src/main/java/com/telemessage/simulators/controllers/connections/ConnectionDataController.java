@@ -62,6 +62,8 @@ public class ConnectionDataController {
                 Map<String, String> tr = new java.util.LinkedHashMap<>();
                 tr.put("transmitter:concatType", conf.getTransmitter().getConcatenation().name());
                 tr.put("transmitter:threads", String.valueOf(conf.getTransmitter().getThreads()));
+                tr.put("transmitter:window", String.valueOf(conf.getTransmitter().getWindow()));
+                tr.put("transmitter:tps", String.valueOf(conf.getTransmitter().getTps()));
                 tr.put("transmitter:systemId", conf.getTransmitter().getSystemId());
                 tr.put("transmitter:systemType", conf.getTransmitter().getSystemType());
                 tr.put("transmitter:encoding", conf.getTransmitter().getEncoding());
@@ -77,6 +79,8 @@ public class ConnectionDataController {
                 Map<String, String> rc = new java.util.LinkedHashMap<>();
                 rc.put("receiver:concatType", conf.getReceiver().getConcatenation().name());
                 rc.put("receiver:threads", String.valueOf(conf.getReceiver().getThreads()));
+                rc.put("receiver:window", String.valueOf(conf.getReceiver().getWindow()));
+                rc.put("receiver:tps", String.valueOf(conf.getReceiver().getTps()));
                 rc.put("receiver:systemId", conf.getReceiver().getSystemId());
                 rc.put("receiver:systemType", conf.getReceiver().getSystemType());
                 rc.put("receiver:encoding", conf.getReceiver().getEncoding());
@@ -151,6 +155,8 @@ public class ConnectionDataController {
                 Map<String, String> tr = new java.util.LinkedHashMap<>();
                 tr.put("transmitter:concatType", conf.getTransmitter().getConcatenation().name());
                 tr.put("transmitter:threads", String.valueOf(conf.getTransmitter().getThreads()));
+                tr.put("transmitter:window", String.valueOf(conf.getTransmitter().getWindow()));
+                tr.put("transmitter:tps", String.valueOf(conf.getTransmitter().getTps()));
                 tr.put("transmitter:systemId", conf.getTransmitter().getSystemId());
                 tr.put("transmitter:systemType", conf.getTransmitter().getSystemType());
                 tr.put("transmitter:encoding", conf.getTransmitter().getEncoding());
@@ -165,6 +171,8 @@ public class ConnectionDataController {
                 Map<String, String> rc = new java.util.LinkedHashMap<>();
                 rc.put("receiver:concatType", conf.getReceiver().getConcatenation().name());
                 rc.put("receiver:threads", String.valueOf(conf.getReceiver().getThreads()));
+                rc.put("receiver:window", String.valueOf(conf.getReceiver().getWindow()));
+                rc.put("receiver:tps", String.valueOf(conf.getReceiver().getTps()));
                 rc.put("receiver:systemId", conf.getReceiver().getSystemId());
                 rc.put("receiver:systemType", conf.getReceiver().getSystemType());
                 rc.put("receiver:encoding", conf.getReceiver().getEncoding());
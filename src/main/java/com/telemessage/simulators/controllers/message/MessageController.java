@@ -238,23 +238,13 @@ public class MessageController {
             log.info("Filtering messages by textType: {}, recipientType: {}, recipient: {}, pid: {}",
                     textType, recipientType, recipient, pid);
 
-            List<MessagesObject> messages = new ArrayList<>(cacheService.getMap().values());
-
-            // Apply text type filter
-            if ("SMPP".equalsIgnoreCase(textType)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getSendMessageSM()) ||
-                                StringUtils.isNotEmpty(msg.getDeliveryReceiptShortMessage()))
-                        .collect(Collectors.toList());
-            } else if ("HTTP".equalsIgnoreCase(textType)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getHttpMessage()) ||
-                                StringUtils.isNotEmpty(msg.getDeliveryReceiptHttpMessage()))
-                        .collect(Collectors.toList());
-            } // "ANY" doesn't need filtering
-
-            // Apply additional filters
-            messages = applyAdditionalFilters(messages, recipientType, recipient, pid);
+            // "ANY" text type doesn't need filtering
+            List<MessagesObject> messages = cacheService.searchMessages(MessageSearchRequest.builder()
+                    .textType(textType)
+                    .recipientType(recipientType)
+                    .recipient(recipient)
+                    .providerId(pid)
+                    .build());
 
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
@@ -287,17 +277,12 @@ public class MessageController {
             log.info("Filtering messages by content: {}, recipientType: {}, recipient: {}, pid: {}",
                     text, recipientType, recipient, pid);
 
-            List<MessagesObject> messages = new ArrayList<>(cacheService.getMap().values());
-
-            // Apply text content filter if provided
-            if (StringUtils.isNotEmpty(text)) {
-                messages = messages.stream()
-                        .filter(msg -> containsText(msg, text))
-                        .collect(Collectors.toList());
-            }
-
-            // Apply additional filters
-            messages = applyAdditionalFilters(messages, recipientType, recipient, pid);
+            List<MessagesObject> messages = cacheService.searchMessages(MessageSearchRequest.builder()
+                    .content(text)
+                    .recipientType(recipientType)
+                    .recipient(recipient)
+                    .providerId(pid)
+                    .build());
 
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
@@ -330,24 +315,14 @@ public class MessageController {
             log.info("Filtering by message text only: {}, recipientType: {}, recipient: {}, pid: {}",
                     text, recipientType, recipient, pid);
 
-            List<MessagesObject> messages = new ArrayList<>(cacheService.getMap().values());
-
-            // Filter out delivery receipts first
-            messages = messages.stream()
-                    .filter(msg -> StringUtils.isEmpty(msg.getDeliveryReceiptShortMessage()) &&
-                            StringUtils.isEmpty(msg.getDeliveryReceiptHttpMessage()))
-                    .collect(Collectors.toList());
-
-            // Apply text content filter if provided
-            if (StringUtils.isNotEmpty(text)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getText()) &&
-                                msg.getText().contains(text))
-                        .collect(Collectors.toList());
-            }
-
-            // Apply additional filters
-            messages = applyAdditionalFilters(messages, recipientType, recipient, pid);
+            // Delivery receipts are excluded
+            List<MessagesObject> messages = cacheService.searchMessages(MessageSearchRequest.builder()
+                    .includeDeliveryReceipts(false)
+                    .messageText(text)
+                    .recipientType(recipientType)
+                    .recipient(recipient)
+                    .providerId(pid)
+                    .build());
 
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
@@ -383,10 +358,11 @@ public class MessageController {
                 return ResponseEntity.badRequest().build();
             }
 
-            List<MessagesObject> messages = new ArrayList<>(cacheService.getMap().values());
-
-            // Apply recipient filters
-            messages = applyAdditionalFilters(messages, recipientType, recipient, pid);
+            List<MessagesObject> messages = cacheService.searchMessages(MessageSearchRequest.builder()
+                    .recipientType(recipientType)
+                    .recipient(recipient)
+                    .providerId(pid)
+                    .build());
 
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
@@ -425,91 +401,18 @@ public class MessageController {
         try {
             log.info("Advanced search with multiple criteria");
 
-            List<MessagesObject> messages = new ArrayList<>(cacheService.getMap().values());
-
-            // Filter by message ID if provided
-            if (StringUtils.isNotEmpty(messageId)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getId()) &&
-                                msg.getId().contains(messageId))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by message text if provided
-            if (StringUtils.isNotEmpty(messageText)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getText()) &&
-                                msg.getText().contains(messageText))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by HTTP text if provided
-            if (StringUtils.isNotEmpty(httpText)) {
-                messages = messages.stream()
-                        .filter(msg -> (StringUtils.isNotEmpty(msg.getHttpMessage()) &&
-                                msg.getHttpMessage().contains(httpText)) ||
-                                (StringUtils.isNotEmpty(msg.getDeliveryReceiptHttpMessage()) &&
-                                        msg.getDeliveryReceiptHttpMessage().contains(httpText)))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by SMPP text if provided
-            if (StringUtils.isNotEmpty(smppText)) {
-                messages = messages.stream()
-                        .filter(msg -> (StringUtils.isNotEmpty(msg.getSendMessageSM()) &&
-                                msg.getSendMessageSM().contains(smppText)) ||
-                                (StringUtils.isNotEmpty(msg.getDeliveryReceiptShortMessage()) &&
-                                        msg.getDeliveryReceiptShortMessage().contains(smppText)))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by source address
-            if (StringUtils.isNotEmpty(source)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getFrom()) &&
-                                msg.getFrom().contains(source))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by destination address
-            if (StringUtils.isNotEmpty(destination)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getTo()) &&
-                                msg.getTo().contains(destination))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by provider ID
-            if (StringUtils.isNotEmpty(providerId)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getProviderId()) &&
-                                msg.getProviderId().contains(providerId))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by direction (In/Out)
-            if (StringUtils.isNotEmpty(direction)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getDir()) &&
-                                msg.getDir().equalsIgnoreCase(direction))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter out delivery receipts if needed
-            if (includeDeliveryReceipts != null && !includeDeliveryReceipts) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isEmpty(msg.getDeliveryReceiptShortMessage()) &&
-                                StringUtils.isEmpty(msg.getDeliveryReceiptHttpMessage()))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by direct response text contains if needed
-            if (StringUtils.isNotEmpty(directResponseText)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getDirectResponse()) &&
-                                msg.getDirectResponse().contains(directResponseText))
-                        .collect(Collectors.toList());
-            }
+            List<MessagesObject> messages = cacheService.searchMessages(MessageSearchRequest.builder()
+                    .messageId(messageId)
+                    .messageText(messageText)
+                    .httpText(httpText)
+                    .smppText(smppText)
+                    .source(source)
+                    .destination(destination)
+                    .providerId(providerId)
+                    .direction(direction)
+                    .includeDeliveryReceipts(includeDeliveryReceipts)
+                    .directResponseText(directResponseText)
+                    .build());
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
             log.error("Error in advanced message search", e);
@@ -546,100 +449,23 @@ public class MessageController {
         try {
             log.info("search and delete with multiple criteria");
 
-            List<MessagesObject> messages = new ArrayList<>(cacheService.getMap().values());
-
-            // Filter by message ID if provided
-            if (StringUtils.isNotEmpty(messageId)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getId()) &&
-                                msg.getId().contains(messageId))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by message text if provided
-            if (StringUtils.isNotEmpty(messageText)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getText()) &&
-                                msg.getText().contains(messageText))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by HTTP text if provided
-            if (StringUtils.isNotEmpty(httpText)) {
-                messages = messages.stream()
-                        .filter(msg -> (StringUtils.isNotEmpty(msg.getHttpMessage()) &&
-                                msg.getHttpMessage().contains(httpText)) ||
-                                (StringUtils.isNotEmpty(msg.getDeliveryReceiptHttpMessage()) &&
-                                        msg.getDeliveryReceiptHttpMessage().contains(httpText)))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by SMPP text if provided
-            if (StringUtils.isNotEmpty(smppText)) {
-                messages = messages.stream()
-                        .filter(msg -> (StringUtils.isNotEmpty(msg.getSendMessageSM()) &&
-                                msg.getSendMessageSM().contains(smppText)) ||
-                                (StringUtils.isNotEmpty(msg.getDeliveryReceiptShortMessage()) &&
-                                        msg.getDeliveryReceiptShortMessage().contains(smppText)))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by source address
-            if (StringUtils.isNotEmpty(source)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getFrom()) &&
-                                msg.getFrom().contains(source))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by destination address
-            if (StringUtils.isNotEmpty(destination)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getTo()) &&
-                                msg.getTo().contains(destination))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by provider ID
-            if (StringUtils.isNotEmpty(providerId)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getProviderId()) &&
-                                msg.getProviderId().contains(providerId))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter by direction (In/Out)
-            if (StringUtils.isNotEmpty(direction)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getDir()) &&
-                                msg.getDir().equalsIgnoreCase(direction))
-                        .collect(Collectors.toList());
-            }
-
-            // Filter out delivery receipts if needed
-            if (includeDeliveryReceipts != null && !includeDeliveryReceipts) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isEmpty(msg.getDeliveryReceiptShortMessage()) &&
-                                StringUtils.isEmpty(msg.getDeliveryReceiptHttpMessage()))
-                        .collect(Collectors.toList());
-            }
+            List<MessagesObject> messages = cacheService.searchMessages(MessageSearchRequest.builder()
+                    .messageId(messageId)
+                    .messageText(messageText)
+                    .httpText(httpText)
+                    .smppText(smppText)
+                    .source(source)
+                    .destination(destination)
+                    .providerId(providerId)
+                    .direction(direction)
+                    .includeDeliveryReceipts(includeDeliveryReceipts)
+                    .directResponseText(directResponseText)
+                    .build());
+
+            // Delete all messages in batch (each delete is journaled, written on the next flush)
+            messages.forEach(msg -> cacheService.deleteMessageRecordById(msg.getId()));
 
-            // Filter by direct response text contains if needed
-            if (StringUtils.isNotEmpty(directResponseText)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getDirectResponse()) &&
-                                msg.getDirectResponse().contains(directResponseText))
-                        .collect(Collectors.toList());
-            }
-            
-            // Delete all messages in batch
-            messages.forEach(msg -> {
-                cacheService.getMap().remove(msg.getId());
-            });
-            
-            // Single write after all deletes
             if (!messages.isEmpty()) {
-                cacheService.setDirty(true);
                 log.info("Deleted {} messages", messages.size());
             }
             // return deleted messages
@@ -829,61 +655,6 @@ public class MessageController {
         return true;
     }
 
-    /**
-     * Helper method to apply recipient and provider ID filters
-     */
-    private List<MessagesObject> applyAdditionalFilters(
-            List<MessagesObject> messages,
-            String recipientType,
-            String recipient,
-            String pid) {
-
-        // Apply recipient filter if provided
-        if (StringUtils.isNotEmpty(recipientType) && StringUtils.isNotEmpty(recipient)) {
-            if ("SRC".equalsIgnoreCase(recipientType)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getFrom()) &&
-                                msg.getFrom().contains(recipient))
-                        .collect(Collectors.toList());
-            } else if ("DST".equalsIgnoreCase(recipientType)) {
-                messages = messages.stream()
-                        .filter(msg -> StringUtils.isNotEmpty(msg.getTo()) &&
-                                msg.getTo().contains(recipient))
-                        .collect(Collectors.toList());
-            } else if ("BOTH".equalsIgnoreCase(recipientType)) {
-                messages = messages.stream()
-                        .filter(msg -> (StringUtils.isNotEmpty(msg.getFrom()) &&
-                                msg.getFrom().contains(recipient)) ||
-                                (StringUtils.isNotEmpty(msg.getTo()) &&
-                                        msg.getTo().contains(recipient)))
-                        .collect(Collectors.toList());
-            }
-        }
-
-        // Apply provider ID filter if provided
-        if (StringUtils.isNotEmpty(pid)) {
-            messages = messages.stream()
-                    .filter(msg -> StringUtils.isNotEmpty(msg.getProviderId()) &&
-                            msg.getProviderId().contains(pid))
-                    .collect(Collectors.toList());
-        }
-
-        return messages;
-    }
-
-    /**
-     * Helper method to check if a message contains specific text in any field
-     */
-    private boolean containsText(MessagesObject msg, String text) {
-        return (StringUtils.isNotEmpty(msg.getText()) && msg.getText().contains(text)) ||
-                (StringUtils.isNotEmpty(msg.getSendMessageSM()) && msg.getSendMessageSM().contains(text)) ||
-                (StringUtils.isNotEmpty(msg.getHttpMessage()) && msg.getHttpMessage().contains(text)) ||
-                (StringUtils.isNotEmpty(msg.getDeliveryReceiptShortMessage()) &&
-                        msg.getDeliveryReceiptShortMessage().contains(text)) ||
-                (StringUtils.isNotEmpty(msg.getDeliveryReceiptHttpMessage()) &&
-                        msg.getDeliveryReceiptHttpMessage().contains(text));
-    }
-
     /**
      * Schedule wifi reconnect every 1h and set Cache obj
      */
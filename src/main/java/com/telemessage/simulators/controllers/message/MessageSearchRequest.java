@@ -23,5 +23,9 @@ public class MessageSearchRequest {
     private Boolean includeDeliveryReceipts;
     private String direction;
     private String recipientType; // SRC, DST, BOTH
+    private String recipient;     // matched against source/destination according to recipientType
     private String textType;      // SMPP, HTTP, ANY
+    private String content;       // text, raw SMPP/HTTP messages and delivery receipts
+    private String directResponseText;
+    private Integer referenceNumber;
 }
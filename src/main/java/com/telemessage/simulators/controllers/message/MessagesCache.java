@@ -2,11 +2,14 @@ package com.telemessage.simulators.controllers.message;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.telemessage.qatools.error.ErrorTracker;
+import com.telemessage.simulators.stats.MessagingMetrics;
+import com.telemessage.simulators.stats.SimMetrics;
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
@@ -14,9 +17,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import jakarta.annotation.PostConstruct;
@@ -24,7 +29,6 @@ import jakarta.annotation.PreDestroy;
 
 @Slf4j
 @Getter
-@RequiredArgsConstructor
 @Service
 public class MessagesCache {
 
@@ -43,25 +47,66 @@ public class MessagesCache {
     private static final long MESSAGE_TTL_HOURS = 96;  // 96 hours as requested
     private static final int MAX_CACHE_SIZE = 100000;
     private static final int PARALLEL_THRESHOLD = 1000;
+    private static final long COMPACTION_INTERVAL_MINUTES = 10;
+
+    // Journal mode: append changed records instead of rewriting the whole map on every flush
+    private static final boolean JOURNAL_ENABLED =
+            Boolean.parseBoolean(System.getProperty("sim.messages.journal", "true"));
     
     // Encoding cache to avoid repeated charset lookups (performance optimization)
     private static final Map<String, java.nio.charset.Charset> ENCODING_CACHE = new ConcurrentHashMap<>();
     private static final java.nio.charset.Charset INVALID_ENCODING_MARKER = StandardCharsets.UTF_8;
     private static Path MessageFile_PATH = Paths.get(System.getProperty("user.dir"))
             .resolve("shared").resolve("sim").resolve("messages");
-    final private Path WORKING_FILE = MessageFile_PATH.resolve(cacheFileName);
+    final private Path messagesDir;
+    final private Path WORKING_FILE;
+    final private Path JOURNAL_DIR;
     private File file = null;
+    @Getter(AccessLevel.NONE)
+    private MessagesJournal journal;
+    @Getter(AccessLevel.NONE)
+    private final MessagesIndex index = new MessagesIndex();
+    @Getter(AccessLevel.NONE)
+    private final MessagesMetricsAggregator metrics = new MessagesMetricsAggregator();
+    private final MessagesChangeFeed changeFeed = new MessagesChangeFeed();
     private static ObjectMapper messageMapper = new ObjectMapper();
     private Map<String, MessagesObject> map;
 
+    @Autowired
+    public MessagesCache(ErrorTracker errorTracker) {
+        this(errorTracker, MessageFile_PATH);
+    }
+
+    /**
+     * Cache persisted under {@code messagesDir} instead of the shared simulator directory (tests).
+     */
+    MessagesCache(ErrorTracker errorTracker, Path messagesDir) {
+        this.errorTracker = errorTracker;
+        this.messagesDir = messagesDir;
+        this.WORKING_FILE = messagesDir.resolve(cacheFileName);
+        this.JOURNAL_DIR = messagesDir.resolve("journal");
+    }
+
+    /**
+     * Marks the whole cache for a full rewrite on the next flush.
+     * Prefer {@link #putCacheRecord}/{@link #markCacheRecordUpdated} for single-record changes,
+     * which only journal the affected record.
+     */
     public void setDirty(boolean value) {
         dirty.set(value);
     }
 
+    public boolean isJournalEnabled() {
+        return journal != null;
+    }
+
     @PostConstruct
     public void init() {
         // Initialize map and load data
         map = new ConcurrentHashMap<>();
+        if (JOURNAL_ENABLED) {
+            journal = new MessagesJournal(JOURNAL_DIR);
+        }
         try {
             readData();
         } catch (IOException e) {
@@ -76,14 +121,26 @@ public class MessagesCache {
                 )
             );
         }
+        SimMetrics.gauge("sim.cache.size", "Messages in the cache", this, cache -> cache.getMap().size());
 
         // Start scheduled tasks
-        // Periodic flush - writes cache every 5 seconds if dirty
+        // Periodic flush - every 5 seconds: full rewrite if dirty, otherwise append pending journal records
         scheduler.scheduleAtFixedRate(() -> {
             try {
+                long start = System.nanoTime();
                 if (dirty.getAndSet(false)) {
-                    writeMapToJson(map);
+                    persistSnapshot();
+                    SimMetrics.cacheFlush("snapshot", start);
                     log.debug("Periodic cache flush completed. Map size: {}", map.size());
+                } else if (journal != null && journal.hasPending()) {
+                    int written = journal.flush(map);
+                    SimMetrics.cacheFlush("journal", start);
+                    if (journal.needsCompaction()) {
+                        long compactionStart = System.nanoTime();
+                        persistSnapshot();
+                        SimMetrics.cacheFlush("snapshot", compactionStart);
+                    }
+                    log.debug("Periodic journal flush completed. Records written: {}", written);
                 }
             } catch (Exception e) {
                 log.error("Error during periodic cache flush", e);
@@ -99,6 +156,29 @@ public class MessagesCache {
                 dirty.set(true);
             }
         }, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        // Periodic compaction - folds the journal segments into a fresh snapshot
+        if (journal != null) {
+            scheduler.scheduleAtFixedRate(() -> {
+                try {
+                    if (journal.getJournalBytes() > 0) {
+                        persistSnapshot();
+                        log.debug("Periodic journal compaction completed. Map size: {}", map.size());
+                    }
+                } catch (Exception e) {
+                    log.error("Error during journal compaction", e);
+                    errorTracker.captureError(
+                        "MessagesCache.periodicCompaction",
+                        e,
+                        "journal-compaction-failed",
+                        Map.of(
+                            "operation", "journal_compaction",
+                            "mapSize", String.valueOf(map.size())
+                        )
+                    );
+                }
+            }, COMPACTION_INTERVAL_MINUTES, COMPACTION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
         
         // Periodic cleanup - removes old messages every hour
         scheduler.scheduleAtFixedRate(() -> {
@@ -126,9 +206,13 @@ public class MessagesCache {
     public void shutdown() {
         log.info("Shutting down cache service...");
         
-        if (dirty.get()) {
+        if (dirty.get() || (journal != null && journal.hasPending())) {
             try {
-                writeMapToJson(map);
+                if (dirty.get()) {
+                    persistSnapshot();
+                } else {
+                    journal.flush(map);
+                }
                 log.info("Final cache flush completed");
             } catch (Exception e) {
                 log.error("Error during final cache flush", e);
@@ -146,6 +230,13 @@ public class MessagesCache {
         }
         
         scheduler.shutdown();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Failed to close messages journal", e);
+            }
+        }
         try {
             if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
                 scheduler.shutdownNow();
@@ -162,19 +253,16 @@ public class MessagesCache {
         long cutoffTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(MESSAGE_TTL_HOURS);
         int initialSize = map.size();
         
-        // Remove messages older than 96h TTL
-        map.entrySet().removeIf(entry -> entry.getValue().getSimId() < cutoffTime);
+        // Remove messages older than 96h TTL - a range of the time index, no full scan
+        List<String> expiredKeys = index.byTime().headSet(new MessagesIndex.TimeKey(cutoffTime, ""), false).stream()
+            .map(MessagesIndex.TimeKey::getKey)
+            .collect(Collectors.toList());
+        expiredKeys.forEach(this::removeRecord);
         
         // Also enforce max size limit
         if (map.size() > MAX_CACHE_SIZE) {
             int toRemove = map.size() - MAX_CACHE_SIZE;
-            List<String> oldestKeys = map.entrySet().stream()
-                .sorted(Comparator.comparingLong(e -> e.getValue().getSimId()))
-                .limit(toRemove)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-            
-            oldestKeys.forEach(map::remove);
+            getOldestKeys(toRemove).forEach(this::removeRecord);
             log.warn("Removed {} messages to enforce max cache size of {}", toRemove, MAX_CACHE_SIZE);
         }
         
@@ -190,8 +278,8 @@ public class MessagesCache {
     }
 
     private void readData() throws IOException {
-        if(!MessageFile_PATH.toFile().exists()) {
-            MessageFile_PATH.toFile().mkdirs();
+        if(!messagesDir.toFile().exists()) {
+            messagesDir.toFile().mkdirs();
         }
         file = WORKING_FILE.toFile();
         boolean fileExists = true;
@@ -202,6 +290,9 @@ public class MessagesCache {
         if (!file.exists()) {
             fileExists = file.createNewFile();
         }
+        if (journal != null) {
+            journal.open();
+        }
 
         if (fileExists) {
             try (BufferedReader reader = Files.newBufferedReader(WORKING_FILE, StandardCharsets.UTF_8)) {
@@ -214,7 +305,6 @@ public class MessagesCache {
                                 new com.fasterxml.jackson.core.type.TypeReference<Map<String, MessagesObject>>() {});
                         if (tempMap != null) {
                             map.putAll(tempMap);
-                            writeMapToJson(map);
                             log.info("Successfully loaded cache data from {}", WORKING_FILE);
                         }
                     } catch (IOException ex) {
@@ -240,6 +330,16 @@ public class MessagesCache {
         } else {
             log.warn("Cache file may have corrupted records or does not exist.");
         }
+
+        if (journal != null && journal.replay(map) > 0) {
+            log.info("Applied journal on top of snapshot. Map size: {}", map.size());
+        }
+        index.rebuild(map);
+        metrics.clear();
+        map.forEach(metrics::record);
+        if (!map.isEmpty()) {
+            persistSnapshot();
+        }
     }
 
     public boolean addCacheRecords(List<MessagesObject> objs) {
@@ -266,23 +366,125 @@ public class MessagesCache {
         if (map == null) {
             map = new ConcurrentHashMap<>();
         }
+        long start = System.nanoTime();
         
         // Atomic compute operation - thread-safe
         map.compute(id, (key, current) -> {
+            MessagesObject result;
             if (current != null) {
                 log.info("Updated Message to cache: {}", id);
-                return updateCacheRecord(current, obj);
+                result = updateCacheRecord(current, obj);
             } else {
                 log.info("Added new Message to cache: {}", id);
-                return createNewMessageObject(obj);
+                result = createNewMessageObject(obj);
             }
+            indexRecord(key, result);
+            // Published under the key's lock so changes of one record reach readers in order
+            changeFeed.publish(current != null ? MessagesChangeFeed.Type.UPDATE : MessagesChangeFeed.Type.INSERT, key, result);
+            return result;
         });
         
         // Mark for batch write instead of immediate write
-        dirty.set(true);
+        recordChanged(id);
+        SimMetrics.cacheWrite("add", start);
         return true;
     }
 
+    /**
+     * Stores the object as-is (no field normalization), replacing any existing record.
+     */
+    public void putCacheRecord(String id, MessagesObject obj) {
+        if (obj.getSimId() == 0) {
+            obj.setSimId(System.currentTimeMillis());
+        }
+        long start = System.nanoTime();
+        map.compute(id, (key, current) -> {
+            indexRecord(key, obj);
+            changeFeed.publish(current != null ? MessagesChangeFeed.Type.UPDATE : MessagesChangeFeed.Type.INSERT, key, obj);
+            return obj;
+        });
+        recordChanged(id);
+        SimMetrics.cacheWrite("put", start);
+    }
+
+    /**
+     * Persists (and re-indexes) an in-place modification of a cached record.
+     */
+    public void markCacheRecordUpdated(String id) {
+        MessagesObject updated = map.computeIfPresent(id, (key, current) -> {
+            indexRecord(key, current);
+            changeFeed.publish(MessagesChangeFeed.Type.UPDATE, key, current);
+            return current;
+        });
+        if (updated != null) {
+            recordChanged(id);
+        }
+    }
+
+    /**
+     * Removes a record and its index entries atomically with respect to other writers of the same key.
+     */
+    private MessagesObject removeRecord(String id) {
+        MessagesObject[] removed = new MessagesObject[1];
+        map.computeIfPresent(id, (key, current) -> {
+            unindexRecord(key);
+            changeFeed.publish(MessagesChangeFeed.Type.DELETE, key, null);
+            removed[0] = current;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private void indexRecord(String key, MessagesObject obj) {
+        index.index(key, obj);
+        metrics.record(key, obj);
+    }
+
+    private void unindexRecord(String key) {
+        index.remove(key);
+        metrics.remove(key);
+    }
+
+    private List<String> getOldestKeys(int limit) {
+        return index.byTime().stream()
+                .limit(limit)
+                .map(MessagesIndex.TimeKey::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private void recordChanged(String id) {
+        if (journal != null) {
+            journal.recordChange(id);
+        } else {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Writes the full map. In journal mode this is a compaction: the snapshot replaces all journal segments.
+     */
+    private boolean persistSnapshot() {
+        if (journal == null) {
+            return writeMapToJson(map);
+        }
+        try {
+            return journal.compact(() -> writeMapToJson(map));
+        } catch (IOException e) {
+            log.error("Failed to compact messages journal: {}", e.getMessage());
+            errorTracker.captureError(
+                "MessagesCache.persistSnapshot",
+                e,
+                "journal-compaction-failed",
+                Map.of(
+                    "operation", "compact_journal",
+                    "journalDir", JOURNAL_DIR.toString(),
+                    "mapSize", String.valueOf(map.size())
+                )
+            );
+            return false;
+        }
+    }
+
     public MessagesObject updateCacheRecord(MessagesObject current, MessagesObject obj) {
         log.debug("updateCacheRecord cache record for id {}", current.getId());
         // If the message already exists, update its fields.
@@ -556,18 +758,27 @@ public class MessagesCache {
     }
 
     public boolean deleteMessageRecordById(String id) {
-        MessagesObject removed = map.remove(id);
+        MessagesObject removed = removeRecord(id);
         if (removed != null) {
             log.info("MessagesObject cache removed: " + removed);
-            dirty.set(true);
+            recordChanged(id);
             return true;
         }
         return false;
     }
 
     public boolean writeMapToJson(Map<String, MessagesObject> map) {
-        try (BufferedWriter writer = Files.newBufferedWriter(WORKING_FILE, StandardCharsets.UTF_8)) {
-            messageMapper.writerWithDefaultPrettyPrinter().writeValue(writer, map);
+        // Write to a temp file and move it into place so a crash never leaves a half-written snapshot
+        Path tempFile = WORKING_FILE.resolveSibling(cacheFileName + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                messageMapper.writerWithDefaultPrettyPrinter().writeValue(writer, map);
+            }
+            try {
+                Files.move(tempFile, WORKING_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, WORKING_FILE, StandardCopyOption.REPLACE_EXISTING);
+            }
             log.info("Successfully updated cache file.");
             return true;
         } catch (IOException e) {
@@ -593,8 +804,11 @@ public class MessagesCache {
 
     public boolean clearCache() {
         map.clear();
+        index.clear();
+        metrics.clear();
+        changeFeed.publish(MessagesChangeFeed.Type.CLEAR, null, null);
         dirty.set(false);
-        writeMapToJson(map);
+        persistSnapshot();
         log.info("Cache cleared successfully. File: {}", file.getAbsolutePath());
         return true;
     }
@@ -642,21 +856,21 @@ public class MessagesCache {
             int recordsToRemove = Math.toIntExact(map.size() - MAX_MAP_SIZE);
             log.info("Removing {} old records from map.", recordsToRemove);
 
-            List<String> oldKeys = map.keySet().stream()
-                    .sorted(Comparator.comparingLong(key -> map.get(key).getSimId()))
-                    .limit(recordsToRemove)
-                    .collect(Collectors.toList());
+            List<String> oldKeys = getOldestKeys(recordsToRemove);
 
-            oldKeys.forEach(map::remove);
-            writeMapToJson(map);
+            oldKeys.forEach(this::removeRecord);
+            persistSnapshot();
         }
 
         // If the file exceeds the max size, remove the oldest records
         try {
             while(Files.exists(WORKING_FILE) && Files.size(WORKING_FILE) > MAX_FILE_SIZE/2) {
                 List<String> keysToRemove = getKeysForCleanup();
-                keysToRemove.forEach(map::remove);
-                writeMapToJson(map);
+                if (keysToRemove.isEmpty()) {
+                    break;
+                }
+                keysToRemove.forEach(this::removeRecord);
+                persistSnapshot();
             }
             log.info("Cache file cleanup completed. Removed records.");
         } catch (IOException e) {
@@ -677,19 +891,139 @@ public class MessagesCache {
 
     private List<String> getKeysForCleanup() {
         // For cleanup, prioritize older messages
-        return map.entrySet().stream()
-                .sorted(Comparator.comparingLong(entry -> entry.getValue().getSimId()))
-                .limit(150) // Adjust the number of records to be removed
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return getOldestKeys(150); // Adjust the number of records to be removed
     }
     /**
      * Get message paging
      *
+     * <p>Keyset pagination over the time index: newest first by simId, cache key as tie-break. The cursor
+     * encodes the last returned position, so a page costs O(log n + size) regardless of its depth and stays
+     * stable while new messages arrive.</p>
+     *
+     * @param cursor {@link MessagesPage#getNextCursor()} of the previous page, or null for the first page
+     */
+    public MessagesPage getMessagesPage(String cursor, int size) {
+        int pageSize = Math.max(1, size);
+        NavigableSet<MessagesIndex.TimeKey> newestFirst = index.byTime().descendingSet();
+        MessagesIndex.TimeKey after = decodeCursor(cursor);
+        if (after != null) {
+            newestFirst = newestFirst.tailSet(after, false);
+        }
+
+        List<MessagesObject> messages = new ArrayList<>(pageSize);
+        MessagesIndex.TimeKey last = null;
+        boolean more = false;
+        for (MessagesIndex.TimeKey timeKey : newestFirst) {
+            MessagesObject message = map.get(timeKey.getKey());
+            if (message == null) {
+                continue;
+            }
+            if (messages.size() == pageSize) {
+                more = true;
+                break;
+            }
+            messages.add(message);
+            last = timeKey;
+        }
+        return MessagesPage.builder()
+                .messages(messages)
+                .nextCursor(more ? encodeCursor(last) : null)
+                .size(pageSize)
+                .totalMessages(index.size())
+                .build();
+    }
+
+    /**
+     * Cursor for {@link #getMessagesPage} that starts {@code offset} messages after the newest, for callers
+     * that only have a page number. Walks {@code offset} entries of the time index; following
+     * {@link MessagesPage#getNextCursor()} does not.
+     *
+     * @return null (first page) when {@code offset} is 0 or the cache is empty
+     */
+    public String cursorAtOffset(int offset) {
+        if (offset <= 0) {
+            return null;
+        }
+        MessagesIndex.TimeKey last = null;
+        int seen = 0;
+        for (MessagesIndex.TimeKey timeKey : index.byTime().descendingSet()) {
+            if (!map.containsKey(timeKey.getKey())) {
+                continue;
+            }
+            last = timeKey;
+            if (++seen == offset) {
+                break;
+            }
+        }
+        return last != null ? encodeCursor(last) : null;
+    }
+
+    /**
+     * All messages matching {@code filter}, newest first.
+     */
+    public List<MessagesObject> getMessagesNewestFirst(Predicate<MessagesObject> filter) {
+        return index.byTime().descendingSet().stream()
+                .map(timeKey -> map.get(timeKey.getKey()))
+                .filter(message -> message != null && filter.test(message))
+                .collect(Collectors.toList());
+    }
+
+    public int getMessageCount() {
+        return index.size();
+    }
+
+    /**
+     * Messaging metrics of the whole cache, maintained incrementally on every insert, update and removal.
      */
+    public MessagingMetrics getMessagingMetrics() {
+        MessagingMetrics snapshot = metrics.snapshot();
+        NavigableSet<MessagesIndex.TimeKey> byTime = index.byTime();
+        if (!byTime.isEmpty()) {
+            snapshot.oldestMessageTime = byTime.first().getSimId();
+            snapshot.newestMessageTime = byTime.last().getSimId();
+        }
+        return snapshot;
+    }
 
+    /**
+     * Messaging metrics of an arbitrary subset of messages (e.g. search results), computed in one pass.
+     */
+    public static MessagingMetrics computeMessagingMetrics(Collection<MessagesObject> messages) {
+        MessagesMetricsAggregator aggregator = new MessagesMetricsAggregator();
+        long oldest = Long.MAX_VALUE;
+        long newest = 0;
+        int i = 0;
+        for (MessagesObject message : messages) {
+            aggregator.record(String.valueOf(i++), message);
+            oldest = Math.min(oldest, message.getSimId());
+            newest = Math.max(newest, message.getSimId());
+        }
+        MessagingMetrics snapshot = aggregator.snapshot();
+        if (!messages.isEmpty()) {
+            snapshot.oldestMessageTime = oldest;
+            snapshot.newestMessageTime = newest;
+        }
+        return snapshot;
+    }
 
+    static String encodeCursor(MessagesIndex.TimeKey timeKey) {
+        String raw = timeKey.getSimId() + ":" + timeKey.getKey();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
 
+    static MessagesIndex.TimeKey decodeCursor(String cursor) {
+        if (StringUtils.isEmpty(cursor)) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            return new MessagesIndex.TimeKey(Long.parseLong(raw.substring(0, sep)), raw.substring(sep + 1));
+        } catch (RuntimeException e) {
+            log.warn("Ignoring invalid page cursor: {}", cursor);
+            return null;
+        }
+    }
 
     /**
      * Get message
@@ -702,15 +1036,165 @@ public class MessagesCache {
             return Collections.emptyList();
         }
         
-        Stream<MessagesObject> stream = map.size() > PARALLEL_THRESHOLD 
-            ? map.values().parallelStream() 
-            : map.values().stream();
-        
+        return index.lookupExact(MessagesIndex.Field.ID, id).stream()
+                .map(map::get)
+                .filter(message -> message != null && Objects.equals(message.getId(), id))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Multi-criteria search. Candidates come from the most selective secondary index among the given
+     * criteria; every criterion is then verified on each candidate. Without an indexed criterion (or when
+     * the best index would still return most of the cache) this falls back to a scan.
+     */
+    public List<MessagesObject> searchMessages(MessageSearchRequest request) {
+        if (map == null || map.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Collection<String> candidates = selectCandidates(request);
+        Stream<MessagesObject> stream;
+        if (candidates == null) {
+            stream = map.size() > PARALLEL_THRESHOLD
+                ? map.values().parallelStream()
+                : map.values().stream();
+        } else {
+            log.debug("Search planned on index: {} candidates of {}", candidates.size(), map.size());
+            stream = candidates.stream().map(map::get).filter(Objects::nonNull);
+        }
         return stream
-                .filter(message -> Objects.equals(message.getId(), id))
+                .filter(message -> matches(message, request))
                 .collect(Collectors.toList());
     }
 
+    private Collection<String> selectCandidates(MessageSearchRequest request) {
+        List<List<Set<String>>> plans = new ArrayList<>();
+        for (String text : new String[] {request.getMessageText(), request.getHttpText(),
+                request.getSmppText(), request.getContent()}) {
+            Set<String> textCandidates = StringUtils.isNotEmpty(text) ? index.lookupText(text) : null;
+            if (textCandidates != null) {
+                plans.add(List.of(textCandidates));
+            }
+        }
+        if (StringUtils.isNotEmpty(request.getDirection())) {
+            plans.add(List.of(index.lookupExact(MessagesIndex.Field.DIR, request.getDirection())));
+        }
+        // Reference number 0 means "none" to the index, which does not list those records
+        if (request.getReferenceNumber() != null && request.getReferenceNumber() != 0) {
+            plans.add(List.of(index.lookupExact(MessagesIndex.Field.REFERENCE_NUMBER, String.valueOf(request.getReferenceNumber()))));
+        }
+        if (StringUtils.isNotEmpty(request.getSource())) {
+            plans.add(index.lookupContains(MessagesIndex.Field.FROM, request.getSource()));
+        }
+        if (StringUtils.isNotEmpty(request.getDestination())) {
+            plans.add(index.lookupContains(MessagesIndex.Field.TO, request.getDestination()));
+        }
+        if (StringUtils.isNotEmpty(request.getProviderId())) {
+            plans.add(index.lookupContains(MessagesIndex.Field.PROVIDER_ID, request.getProviderId()));
+        }
+        if (StringUtils.isNotEmpty(request.getRecipientType()) && StringUtils.isNotEmpty(request.getRecipient())) {
+            List<Set<String>> recipientPlan = new ArrayList<>();
+            if ("SRC".equalsIgnoreCase(request.getRecipientType()) || "BOTH".equalsIgnoreCase(request.getRecipientType())) {
+                recipientPlan.addAll(index.lookupContains(MessagesIndex.Field.FROM, request.getRecipient()));
+            }
+            if ("DST".equalsIgnoreCase(request.getRecipientType()) || "BOTH".equalsIgnoreCase(request.getRecipientType())) {
+                recipientPlan.addAll(index.lookupContains(MessagesIndex.Field.TO, request.getRecipient()));
+            }
+            plans.add(recipientPlan);
+        }
+
+        List<Set<String>> best = null;
+        long bestSize = Long.MAX_VALUE;
+        for (List<Set<String>> plan : plans) {
+            long size = plan.stream().mapToLong(Set::size).sum();
+            if (size < bestSize) {
+                best = plan;
+                bestSize = size;
+            }
+        }
+        if (best == null || bestSize > map.size() / 2) {
+            return null;
+        }
+        if (best.size() == 1) {
+            return best.get(0);
+        }
+        Set<String> union = new HashSet<>();
+        best.forEach(union::addAll);
+        return union;
+    }
+
+    private static boolean matches(MessagesObject msg, MessageSearchRequest request) {
+        if (StringUtils.isNotEmpty(request.getMessageId()) && !containsIn(msg.getId(), request.getMessageId())) {
+            return false;
+        }
+        if (StringUtils.isNotEmpty(request.getMessageText()) && !containsIn(msg.getText(), request.getMessageText())) {
+            return false;
+        }
+        if (StringUtils.isNotEmpty(request.getHttpText())
+                && !containsIn(msg.getHttpMessage(), request.getHttpText())
+                && !containsIn(msg.getDeliveryReceiptHttpMessage(), request.getHttpText())) {
+            return false;
+        }
+        if (StringUtils.isNotEmpty(request.getSmppText())
+                && !containsIn(msg.getSendMessageSM(), request.getSmppText())
+                && !containsIn(msg.getDeliveryReceiptShortMessage(), request.getSmppText())) {
+            return false;
+        }
+        if (StringUtils.isNotEmpty(request.getContent())
+                && !containsIn(msg.getText(), request.getContent())
+                && !containsIn(msg.getSendMessageSM(), request.getContent())
+                && !containsIn(msg.getHttpMessage(), request.getContent())
+                && !containsIn(msg.getDeliveryReceiptShortMessage(), request.getContent())
+                && !containsIn(msg.getDeliveryReceiptHttpMessage(), request.getContent())) {
+            return false;
+        }
+        if (StringUtils.isNotEmpty(request.getSource()) && !containsIn(msg.getFrom(), request.getSource())) {
+            return false;
+        }
+        if (StringUtils.isNotEmpty(request.getDestination()) && !containsIn(msg.getTo(), request.getDestination())) {
+            return false;
+        }
+        if (StringUtils.isNotEmpty(request.getProviderId()) && !containsIn(msg.getProviderId(), request.getProviderId())) {
+            return false;
+        }
+        if (StringUtils.isNotEmpty(request.getRecipientType()) && StringUtils.isNotEmpty(request.getRecipient())) {
+            boolean fromMatch = containsIn(msg.getFrom(), request.getRecipient());
+            boolean toMatch = containsIn(msg.getTo(), request.getRecipient());
+            if ("SRC".equalsIgnoreCase(request.getRecipientType()) && !fromMatch
+                    || "DST".equalsIgnoreCase(request.getRecipientType()) && !toMatch
+                    || "BOTH".equalsIgnoreCase(request.getRecipientType()) && !fromMatch && !toMatch) {
+                return false;
+            }
+        }
+        if (StringUtils.isNotEmpty(request.getDirection())
+                && (StringUtils.isEmpty(msg.getDir()) || !msg.getDir().equalsIgnoreCase(request.getDirection()))) {
+            return false;
+        }
+        if (request.getReferenceNumber() != null && !request.getReferenceNumber().equals(msg.getReferenceNumber())) {
+            return false;
+        }
+        if (Boolean.FALSE.equals(request.getIncludeDeliveryReceipts())
+                && (StringUtils.isNotEmpty(msg.getDeliveryReceiptShortMessage())
+                    || StringUtils.isNotEmpty(msg.getDeliveryReceiptHttpMessage()))) {
+            return false;
+        }
+        if (StringUtils.isNotEmpty(request.getDirectResponseText())
+                && !containsIn(msg.getDirectResponse(), request.getDirectResponseText())) {
+            return false;
+        }
+        if ("SMPP".equalsIgnoreCase(request.getTextType())) {
+            return StringUtils.isNotEmpty(msg.getSendMessageSM()) || StringUtils.isNotEmpty(msg.getDeliveryReceiptShortMessage());
+        }
+        if ("HTTP".equalsIgnoreCase(request.getTextType())) {
+            return StringUtils.isNotEmpty(msg.getHttpMessage()) || StringUtils.isNotEmpty(msg.getDeliveryReceiptHttpMessage());
+        }
+        return true;
+    }
+
+    private static boolean containsIn(String field, String searchText) {
+        return StringUtils.isNotEmpty(field) && field.contains(searchText);
+    }
+
     public List<MessagesObject> getMessagesByText(String searchText) {
         log.debug("Searching messages containing text: {}", searchText);
         if (map == null || map.isEmpty()) {
@@ -718,10 +1202,16 @@ public class MessagesCache {
             return Collections.emptyList();
         }
         
-        Stream<MessagesObject> stream = map.size() > PARALLEL_THRESHOLD 
-            ? map.values().parallelStream() 
-            : map.values().stream();
-        
+        Set<String> candidates = index.lookupText(searchText);
+        Stream<MessagesObject> stream;
+        if (candidates != null) {
+            stream = candidates.stream().map(map::get).filter(Objects::nonNull);
+        } else {
+            stream = map.size() > PARALLEL_THRESHOLD
+                ? map.values().parallelStream()
+                : map.values().stream();
+        }
+
         return stream
                 .filter(message -> contains(message.getText(), searchText)
                         || contains(message.getSendMessageSM(), searchText)
@@ -0,0 +1,103 @@
+package com.telemessage.simulators.controllers.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Change feed of {@link MessagesCache}: every insert, update, delete and clear gets the next sequence number
+ * and is kept in a bounded ring of the most recent {@code sim.messages.changeFeed.size} (default 10000) changes.
+ *
+ * <p>Readers resume with {@link #since(long)}. If the requested position has already left the ring the
+ * result is {@code null} and the reader must reload the full list once, then continue from {@link #getLastSeq()}.</p>
+ */
+public class MessagesChangeFeed {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE, CLEAR
+    }
+
+    /**
+     * One change. {@code message} is the cached record itself (not a copy), so a reader always sees its
+     * latest state; it is null for DELETE and CLEAR.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ChangeEvent {
+        private final long seq;
+        private final Type type;
+        private final String id;
+        private final MessagesObject message;
+        private final long timestamp;
+    }
+
+    private static final int DEFAULT_CAPACITY = Integer.getInteger("sim.messages.changeFeed.size", 10000);
+
+    private final ChangeEvent[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long lastSeq;
+
+    public MessagesChangeFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MessagesChangeFeed(int capacity) {
+        this.ring = new ChangeEvent[Math.max(1, capacity)];
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    public long publish(Type type, String id, MessagesObject message) {
+        lock.lock();
+        try {
+            long seq = lastSeq + 1;
+            ring[(int) (seq % ring.length)] = new ChangeEvent(seq, type, id, message, System.currentTimeMillis());
+            lastSeq = seq;
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The changes after {@code seq}, oldest first, at most {@code limit} of them; empty when up to date;
+     * null when changes after {@code seq} were already dropped (or {@code seq} is ahead of the feed, e.g. after
+     * a restart).
+     */
+    public List<ChangeEvent> since(long seq, int limit) {
+        long last = lastSeq;
+        if (seq == last) {
+            return Collections.emptyList();
+        }
+        lock.lock();
+        try {
+            last = lastSeq;
+            long oldest = Math.max(1, last - ring.length + 1);
+            if (seq > last || seq + 1 < oldest) {
+                return null;
+            }
+            long to = Math.min(last, seq + Math.max(1, limit));
+            List<ChangeEvent> events = new ArrayList<>((int) (to - seq));
+            for (long s = seq + 1; s <= to; s++) {
+                events.add(ring[(int) (s % ring.length)]);
+            }
+            return events;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<ChangeEvent> since(long seq) {
+        return since(seq, ring.length);
+    }
+}
@@ -0,0 +1,143 @@
+package com.telemessage.simulators.controllers.message;
+
+import com.telemessage.simulators.common.conf.SimExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes {@link MessagesChangeFeed} deltas to server-sent event subscribers.
+ *
+ * <p>Changes are not sent one by one: a single timer ({@code sim.messages.stream.intervalMs}, default 250)
+ * checks the feed and sends each subscriber whatever is new as one {@code changes} event whose id is the last
+ * sequence number, so a browser {@code EventSource} resumes from the right place after a reconnect. A
+ * subscriber that fell out of the feed gets a {@code reset} event and must reload the list. Idle connections
+ * get a comment every {@code sim.messages.stream.heartbeatMs} (default 15000).</p>
+ */
+@Slf4j
+@Component
+public class MessagesChangeStream {
+
+    public static final String EVENT_CHANGES = "changes";
+    public static final String EVENT_RESET = "reset";
+
+    private static final long INTERVAL_MS = Long.getLong("sim.messages.stream.intervalMs", 250);
+    private static final long HEARTBEAT_MS = Long.getLong("sim.messages.stream.heartbeatMs", 15000);
+    private static final long TIMEOUT_MS = Long.getLong("sim.messages.stream.timeoutMs", TimeUnit.MINUTES.toMillis(30));
+    private static final int MAX_BATCH = Integer.getInteger("sim.messages.stream.maxBatch", 1000);
+
+    private final MessagesChangeFeed feed;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private ScheduledFuture<?> pushTask;
+
+    public MessagesChangeStream(MessagesCache cache) {
+        this.feed = cache.getChangeFeed();
+    }
+
+    private static class Subscriber {
+        final SseEmitter emitter;
+        // Only one send per subscriber at a time; a slow client is skipped until its last send completes
+        final AtomicBoolean sending = new AtomicBoolean(false);
+        volatile long lastSeq;
+        volatile long lastSentAt = System.currentTimeMillis();
+
+        Subscriber(SseEmitter emitter, long lastSeq) {
+            this.emitter = emitter;
+            this.lastSeq = lastSeq;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        pushTask = SimExecutors.scheduler().scheduleWithFixedDelay(this::push, INTERVAL_MS, INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pushTask != null) {
+            pushTask.cancel(false);
+        }
+        subscribers.forEach(s -> s.emitter.complete());
+        subscribers.clear();
+    }
+
+    /**
+     * Opens a stream starting after {@code since}; a negative value starts at the current position.
+     */
+    public SseEmitter subscribe(long since) {
+        SseEmitter emitter = new SseEmitter(TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter, since < 0 ? feed.getLastSeq() : since);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        log.debug("Messages change stream subscribed from seq {} ({} subscribers)", subscriber.lastSeq, subscribers.size());
+        // Catch up (or tell the client to reset) right away instead of on the next tick
+        SimExecutors.io().execute(() -> send(subscriber));
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void push() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        long last = feed.getLastSeq();
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.lastSeq != last || now - subscriber.lastSentAt >= HEARTBEAT_MS) {
+                if (!subscriber.sending.get()) {
+                    SimExecutors.io().execute(() -> send(subscriber));
+                }
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        if (!subscriber.sending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<MessagesChangeFeed.ChangeEvent> events = feed.since(subscriber.lastSeq, MAX_BATCH);
+            if (events == null) {
+                long seq = feed.getLastSeq();
+                subscriber.emitter.send(SseEmitter.event()
+                        .name(EVENT_RESET)
+                        .id(String.valueOf(seq))
+                        .data(Map.of("seq", seq), MediaType.APPLICATION_JSON));
+                subscriber.lastSeq = seq;
+            } else if (!events.isEmpty()) {
+                long seq = events.get(events.size() - 1).getSeq();
+                subscriber.emitter.send(SseEmitter.event()
+                        .name(EVENT_CHANGES)
+                        .id(String.valueOf(seq))
+                        .data(events, MediaType.APPLICATION_JSON));
+                subscriber.lastSeq = seq;
+            } else {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+            subscriber.lastSentAt = System.currentTimeMillis();
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the container completes the emitter, but its callbacks may come late
+            log.debug("Messages change stream subscriber dropped: {}", e.getMessage());
+            subscribers.remove(subscriber);
+        } finally {
+            subscriber.sending.set(false);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.telemessage.simulators.controllers.message;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary indexes over the {@link MessagesCache} map.
+ *
+ * <p>Each index maps a field value to the set of cache keys holding it. Updates are driven by
+ * {@link MessagesCache} from inside the map's per-key {@code compute}, so all changes for one key are
+ * serialized. The keys a record was indexed under are remembered per cache key, which makes
+ * re-indexing after an in-place mutation and removal exact.</p>
+ *
+ * <p>String fields are exact-value indexes; substring lookups scan the distinct values of the field
+ * (addresses and provider ids have far fewer distinct values than there are messages) and union the
+ * matching postings.</p>
+ */
+@Slf4j
+class MessagesIndex {
+
+    enum Field { ID, FROM, TO, PROVIDER_ID, DIR, REFERENCE_NUMBER }
+
+    private final Map<Field, ConcurrentMap<String, Set<String>>> postings = new EnumMap<>(Field.class);
+    private final ConcurrentMap<String, IndexedKeys> indexedKeys = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<TimeKey> byTime = new ConcurrentSkipListSet<>();
+    private final MessagesTextIndex text = new MessagesTextIndex();
+
+    MessagesIndex() {
+        for (Field field : Field.values()) {
+            postings.put(field, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Position of a record in the time-ordered index: simId with the cache key as tie-break.
+     */
+    @Getter
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    static final class TimeKey implements Comparable<TimeKey> {
+        private final long simId;
+        private final String key;
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int cmp = Long.compare(simId, other.simId);
+            return cmp != 0 ? cmp : key.compareTo(other.key);
+        }
+    }
+
+    /**
+     * The field values a record was indexed under, by {@link Field} ordinal.
+     */
+    @EqualsAndHashCode
+    private static final class IndexedKeys {
+        private final String[] values = new String[Field.values().length];
+        private final long simId;
+
+        IndexedKeys(MessagesObject obj) {
+            values[Field.ID.ordinal()] = emptyToNull(obj.getId());
+            values[Field.FROM.ordinal()] = emptyToNull(obj.getFrom());
+            values[Field.TO.ordinal()] = emptyToNull(obj.getTo());
+            values[Field.PROVIDER_ID.ordinal()] = emptyToNull(obj.getProviderId());
+            values[Field.DIR.ordinal()] = obj.getDir() == null || obj.getDir().isEmpty()
+                    ? null : obj.getDir().toUpperCase(Locale.ROOT);
+            values[Field.REFERENCE_NUMBER.ordinal()] = obj.getReferenceNumber() == null || obj.getReferenceNumber() == 0
+                    ? null : String.valueOf(obj.getReferenceNumber());
+            simId = obj.getSimId();
+        }
+
+        String get(Field field) {
+            return values[field.ordinal()];
+        }
+    }
+
+    /**
+     * (Re)indexes the record stored under {@code key}. Must run under the map's lock for {@code key}.
+     */
+    void index(String key, MessagesObject obj) {
+        text.index(key, obj);
+        IndexedKeys current = new IndexedKeys(obj);
+        IndexedKeys previous = indexedKeys.put(key, current);
+        if (current.equals(previous)) {
+            return;
+        }
+        for (Field field : Field.values()) {
+            String oldValue = previous != null ? previous.get(field) : null;
+            String newValue = current.get(field);
+            if (Objects.equals(oldValue, newValue)) {
+                continue;
+            }
+            if (oldValue != null) {
+                removePosting(field, oldValue, key);
+            }
+            if (newValue != null) {
+                addPosting(field, newValue, key);
+            }
+        }
+        if (previous != null && previous.simId != current.simId) {
+            byTime.remove(new TimeKey(previous.simId, key));
+        }
+        byTime.add(new TimeKey(current.simId, key));
+    }
+
+    /**
+     * Drops all postings of {@code key}. Must run under the map's lock for {@code key}.
+     */
+    void remove(String key) {
+        text.remove(key);
+        IndexedKeys previous = indexedKeys.remove(key);
+        if (previous == null) {
+            return;
+        }
+        for (Field field : Field.values()) {
+            String value = previous.get(field);
+            if (value != null) {
+                removePosting(field, value, key);
+            }
+        }
+        byTime.remove(new TimeKey(previous.simId, key));
+    }
+
+    void clear() {
+        indexedKeys.clear();
+        byTime.clear();
+        postings.values().forEach(Map::clear);
+        text.clear();
+    }
+
+    void rebuild(Map<String, MessagesObject> map) {
+        clear();
+        map.forEach(this::index);
+        log.info("Rebuilt message indexes for {} records", indexedKeys.size());
+    }
+
+    /**
+     * Keys whose field value equals {@code value} (DIR is matched case-insensitively).
+     */
+    Set<String> lookupExact(Field field, String value) {
+        if (field == Field.DIR && value != null) {
+            value = value.toUpperCase(Locale.ROOT);
+        }
+        Set<String> keys = value == null ? null : postings.get(field).get(value);
+        return keys != null ? keys : Collections.emptySet();
+    }
+
+    /**
+     * Distinct values of {@code field} containing {@code needle}, with their postings.
+     */
+    List<Set<String>> lookupContains(Field field, String needle) {
+        List<Set<String>> result = new ArrayList<>();
+        postings.get(field).forEach((value, keys) -> {
+            if (value.contains(needle)) {
+                result.add(keys);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Candidate keys whose text fields may contain {@code needle}; {@code null} if the needle is too short
+     * for the trigram index.
+     */
+    Set<String> lookupText(String needle) {
+        return text.candidates(needle);
+    }
+
+    /**
+     * Time-ordered view of all indexed keys, oldest first.
+     */
+    NavigableSet<TimeKey> byTime() {
+        return byTime;
+    }
+
+    int size() {
+        return indexedKeys.size();
+    }
+
+    private void addPosting(Field field, String value, String key) {
+        postings.get(field).compute(value, (v, keys) -> {
+            Set<String> set = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            set.add(key);
+            return set;
+        });
+    }
+
+    private void removePosting(Field field, String value, String key) {
+        postings.get(field).computeIfPresent(value, (v, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+}
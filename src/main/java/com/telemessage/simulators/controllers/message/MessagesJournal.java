@@ -0,0 +1,294 @@
+package com.telemessage.simulators.controllers.message;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Append-only, segmented journal for {@link MessagesCache}.
+ *
+ * <p>Cache writers only mark the id they touched as pending. The periodic flush writes one
+ * compact JSON line per pending id to the active segment - the current record, or a delete
+ * marker if the id is gone - so persistence cost is proportional to the number of changed
+ * records instead of the cache size. Segments roll at {@link #SEGMENT_MAX_BYTES}; compaction
+ * writes a full snapshot (the regular {@code Messages.json}) and drops every segment the
+ * snapshot covers. On startup the segments are replayed on top of the snapshot.</p>
+ */
+@Slf4j
+class MessagesJournal {
+
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final long SEGMENT_MAX_BYTES = 16L * 1024 * 1024;
+    static final long COMPACTION_THRESHOLD_BYTES = 64L * 1024 * 1024;
+
+    static final String OP_PUT = "PUT";
+    static final String OP_DELETE = "DEL";
+
+    private static final ObjectMapper journalMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private final Path journalDir;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private OutputStream writer;
+    private long segmentIndex;
+    private long segmentBytes;
+    private volatile long journalBytes;
+
+    MessagesJournal(Path journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    /**
+     * A single journal line. {@code obj} is only set for {@link #OP_PUT}.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class JournalRecord {
+        private String op;
+        private String id;
+        private MessagesObject obj;
+    }
+
+    void open() throws IOException {
+        Files.createDirectories(journalDir);
+        List<Path> segments = listSegments();
+        segmentIndex = segments.isEmpty() ? 1 : segmentIndexOf(segments.get(segments.size() - 1)) + 1;
+        journalBytes = 0;
+        for (Path segment : segments) {
+            journalBytes += Files.size(segment);
+        }
+        log.info("Messages journal opened at {} ({} existing segments, {} bytes)", journalDir, segments.size(), journalBytes);
+    }
+
+    /**
+     * Applies all existing segments, oldest first, on top of the snapshot already loaded into {@code map}.
+     * A torn last line (crash during append) is skipped.
+     *
+     * @return number of records applied
+     */
+    int replay(Map<String, MessagesObject> map) throws IOException {
+        int applied = 0;
+        int skipped = 0;
+        for (Path segment : listSegments()) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    JournalRecord record;
+                    try {
+                        record = journalMapper.readValue(line, JournalRecord.class);
+                    } catch (IOException e) {
+                        skipped++;
+                        continue;
+                    }
+                    if (OP_PUT.equals(record.getOp()) && record.getObj() != null) {
+                        map.put(record.getId(), record.getObj());
+                    } else if (OP_DELETE.equals(record.getOp())) {
+                        map.remove(record.getId());
+                    }
+                    applied++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            log.warn("Skipped {} unreadable journal records during replay", skipped);
+        }
+        log.info("Replayed {} journal records", applied);
+        return applied;
+    }
+
+    /**
+     * Marks an id as changed. Must be called after the change is visible in the cache map.
+     */
+    void recordChange(String id) {
+        if (id != null) {
+            pending.add(id);
+        }
+    }
+
+    boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    long getJournalBytes() {
+        return journalBytes;
+    }
+
+    /**
+     * Appends the current state of every pending id to the active segment. If the write fails, every id
+     * taken by this flush is marked pending again and the next flush starts a fresh segment, so a torn
+     * tail is never continued.
+     *
+     * @return number of records written
+     */
+    int flush(Map<String, MessagesObject> map) throws IOException {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        lock.lock();
+        List<String> taken = new ArrayList<>();
+        try {
+            Iterator<String> it = pending.iterator();
+            while (it.hasNext()) {
+                String id = it.next();
+                it.remove();
+                taken.add(id);
+                MessagesObject current = map.get(id);
+                append(current != null
+                        ? new JournalRecord(OP_PUT, id, current)
+                        : new JournalRecord(OP_DELETE, id, null));
+            }
+            if (writer != null) {
+                writer.flush();
+            }
+            if (segmentBytes >= SEGMENT_MAX_BYTES) {
+                rollSegment();
+            }
+            return taken.size();
+        } catch (IOException e) {
+            pending.addAll(taken);
+            discardWriter();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean needsCompaction() {
+        return journalBytes >= COMPACTION_THRESHOLD_BYTES;
+    }
+
+    /**
+     * Rolls to a fresh segment, writes a full snapshot with {@code snapshotWriter} and, if that succeeded,
+     * deletes every segment written before the roll. Pending ids stay pending - they are already reflected
+     * in the snapshot and are re-appended to the new segment on the next flush.
+     */
+    boolean compact(BooleanSupplier snapshotWriter) throws IOException {
+        lock.lock();
+        try {
+            rollSegment();
+            long coveredUpTo = segmentIndex;
+            if (!snapshotWriter.getAsBoolean()) {
+                log.warn("Snapshot write failed, keeping journal segments");
+                return false;
+            }
+            int deleted = 0;
+            for (Path segment : listSegments()) {
+                if (segmentIndexOf(segment) < coveredUpTo) {
+                    Files.deleteIfExists(segment);
+                    deleted++;
+                }
+            }
+            journalBytes = 0;
+            log.debug("Journal compacted, removed {} segments", deleted);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() throws IOException {
+        lock.lock();
+        try {
+            closeWriter();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(JournalRecord record) throws IOException {
+        if (writer == null) {
+            writer = new BufferedOutputStream(Files.newOutputStream(segmentPath(segmentIndex),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+            segmentBytes = 0;
+        }
+        byte[] line = journalMapper.writeValueAsBytes(record);
+        writer.write(line);
+        writer.write('\n');
+        segmentBytes += line.length + 1;
+        journalBytes += line.length + 1;
+    }
+
+    private void rollSegment() throws IOException {
+        closeWriter();
+        segmentIndex++;
+        segmentBytes = 0;
+    }
+
+    /**
+     * Drops a writer that failed mid-append and moves on to the next segment.
+     */
+    private void discardWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.debug("Closing failed journal writer: {}", e.getMessage());
+            }
+            writer = null;
+        }
+        segmentIndex++;
+        segmentBytes = 0;
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.flush();
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return journalDir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(journalDir)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(MessagesJournal::segmentIndexOf))
+                    .toList();
+        }
+    }
+
+    private static long segmentIndexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
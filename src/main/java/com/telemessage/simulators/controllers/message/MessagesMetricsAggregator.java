@@ -0,0 +1,145 @@
+package com.telemessage.simulators.controllers.message;
+
+import com.telemessage.simulators.stats.MessagingMetrics;
+import lombok.EqualsAndHashCode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Incrementally maintained {@link MessagingMetrics} for the {@link MessagesCache} map.
+ *
+ * <p>Like {@link MessagesIndex}, it is updated from inside the map's per-key {@code compute}. The
+ * contribution of every key is remembered, so an update first subtracts what the record counted for
+ * before and then adds its current values. Reading the metrics is O(number of distinct encodings and
+ * providers) instead of a pass over the whole cache.</p>
+ */
+class MessagesMetricsAggregator {
+
+    static final String UNKNOWN = "Unknown";
+
+    private final ConcurrentMap<String, Contribution> contributions = new ConcurrentHashMap<>();
+
+    private final LongAdder total = new LongAdder();
+    private final LongAdder inbound = new LongAdder();
+    private final LongAdder outbound = new LongAdder();
+    private final LongAdder deliveryReceipts = new LongAdder();
+    private final LongAdder concatenated = new LongAdder();
+    private final LongAdder binary = new LongAdder();
+    private final LongAdder textBytes = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> encodings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> providers = new ConcurrentHashMap<>();
+
+    /**
+     * What a single record counts for.
+     */
+    @EqualsAndHashCode
+    private static final class Contribution {
+        private final boolean inbound;
+        private final boolean outbound;
+        private final boolean deliveryReceipt;
+        private final boolean concatenated;
+        private final boolean binary;
+        private final int textLength;
+        private final String encoding;
+        private final String provider;
+
+        Contribution(MessagesObject obj) {
+            inbound = "In".equalsIgnoreCase(obj.getDir());
+            outbound = "Out".equalsIgnoreCase(obj.getDir());
+            deliveryReceipt = obj.getDeliveryReceiptShortMessage() != null;
+            concatenated = obj.getTotalParts() != null && obj.getTotalParts() > 1;
+            binary = obj.getDataCoding() != null && (obj.getDataCoding() == 0x02 || obj.getDataCoding() == 0x04);
+            textLength = obj.getText() != null ? obj.getText().length() : 0;
+            encoding = obj.getMessageEncoding() != null ? obj.getMessageEncoding() : UNKNOWN;
+            provider = obj.getProviderId() != null ? obj.getProviderId() : UNKNOWN;
+        }
+    }
+
+    void record(String key, MessagesObject obj) {
+        Contribution current = new Contribution(obj);
+        Contribution previous = contributions.put(key, current);
+        if (current.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        apply(current, 1);
+    }
+
+    void remove(String key) {
+        Contribution previous = contributions.remove(key);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+    }
+
+    void clear() {
+        contributions.clear();
+        total.reset();
+        inbound.reset();
+        outbound.reset();
+        deliveryReceipts.reset();
+        concatenated.reset();
+        binary.reset();
+        textBytes.reset();
+        encodings.clear();
+        providers.clear();
+    }
+
+    /**
+     * Point-in-time snapshot. Counters are read independently, so under concurrent writes the values may
+     * be off by the records in flight.
+     */
+    MessagingMetrics snapshot() {
+        MessagingMetrics metrics = new MessagingMetrics();
+        long count = total.sum();
+        metrics.totalMessages = (int) count;
+        metrics.inboundMessages = (int) inbound.sum();
+        metrics.outboundMessages = (int) outbound.sum();
+        metrics.deliveryReceipts = (int) deliveryReceipts.sum();
+        metrics.concatenatedMessages = (int) concatenated.sum();
+        metrics.binaryMessages = (int) binary.sum();
+        metrics.averageMessageSize = count > 0 ? (double) textBytes.sum() / count : 0.0;
+        metrics.encodingDistribution = toDistribution(encodings);
+        metrics.providerDistribution = toDistribution(providers);
+        return metrics;
+    }
+
+    private void apply(Contribution c, int sign) {
+        total.add(sign);
+        if (c.inbound) {
+            inbound.add(sign);
+        }
+        if (c.outbound) {
+            outbound.add(sign);
+        }
+        if (c.deliveryReceipt) {
+            deliveryReceipts.add(sign);
+        }
+        if (c.concatenated) {
+            concatenated.add(sign);
+        }
+        if (c.binary) {
+            binary.add(sign);
+        }
+        textBytes.add((long) sign * c.textLength);
+        encodings.computeIfAbsent(c.encoding, k -> new LongAdder()).add(sign);
+        providers.computeIfAbsent(c.provider, k -> new LongAdder()).add(sign);
+    }
+
+    private static Map<String, Integer> toDistribution(ConcurrentMap<String, LongAdder> counters) {
+        Map<String, Integer> distribution = new HashMap<>();
+        counters.forEach((value, counter) -> {
+            long sum = counter.sum();
+            if (sum > 0) {
+                distribution.put(value, (int) sum);
+            }
+        });
+        return distribution;
+    }
+}
@@ -0,0 +1,22 @@
+package com.telemessage.simulators.controllers.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of cached messages, newest first.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagesPage {
+    private List<MessagesObject> messages;
+    private String nextCursor;   // opaque; null when this is the last page
+    private int size;
+    private int totalMessages;
+}
@@ -0,0 +1,143 @@
+package com.telemessage.simulators.controllers.message;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Trigram inverted index over the searchable text fields of a {@link MessagesObject}
+ * ({@code text}, {@code sendMessageSM}, {@code httpMessage} and both delivery receipt fields).
+ *
+ * <p>A substring of length {@code >= 3} can only occur in a record that contains every trigram of the
+ * substring, so intersecting the trigram postings yields a (usually tiny) candidate superset which the
+ * caller verifies with {@link String#contains}. All fields share one index - the candidates for a single
+ * field are a superset as well. Matching is case-sensitive, like the scans it replaces.</p>
+ *
+ * <p>Trigrams are packed into a {@code long} (three UTF-16 chars). Per key the sorted trigram set is kept
+ * so a re-index only touches the postings that actually changed. Updates for one key must be serialized
+ * by the caller (see {@link MessagesIndex}).</p>
+ */
+class MessagesTextIndex {
+
+    static final int GRAM = 3;
+
+    private final ConcurrentMap<Long, Set<String>> postings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, long[]> indexedGrams = new ConcurrentHashMap<>();
+
+    void index(String key, MessagesObject obj) {
+        long[] current = trigrams(obj.getText(), obj.getSendMessageSM(), obj.getHttpMessage(),
+                obj.getDeliveryReceiptShortMessage(), obj.getDeliveryReceiptHttpMessage());
+        long[] previous = indexedGrams.put(key, current);
+        if (previous == null) {
+            for (long gram : current) {
+                addPosting(gram, key);
+            }
+            return;
+        }
+        // Both arrays are sorted and distinct: walk them together and apply only the difference
+        int i = 0;
+        int j = 0;
+        while (i < previous.length || j < current.length) {
+            if (j == current.length || (i < previous.length && previous[i] < current[j])) {
+                removePosting(previous[i++], key);
+            } else if (i == previous.length || current[j] < previous[i]) {
+                addPosting(current[j++], key);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    void remove(String key) {
+        long[] previous = indexedGrams.remove(key);
+        if (previous != null) {
+            for (long gram : previous) {
+                removePosting(gram, key);
+            }
+        }
+    }
+
+    void clear() {
+        indexedGrams.clear();
+        postings.clear();
+    }
+
+    /**
+     * Keys that may contain {@code needle} in one of the indexed fields, or {@code null} if the needle is
+     * too short to be answered from the index (the caller has to scan).
+     */
+    Set<String> candidates(String needle) {
+        if (needle == null || needle.length() < GRAM) {
+            return null;
+        }
+        long[] grams = trigrams(needle);
+        List<Set<String>> sets = new ArrayList<>(grams.length);
+        for (long gram : grams) {
+            Set<String> keys = postings.get(gram);
+            if (keys == null || keys.isEmpty()) {
+                return Collections.emptySet();
+            }
+            sets.add(keys);
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+
+        Set<String> result = new HashSet<>();
+        Set<String> smallest = sets.get(0);
+        for (String key : smallest) {
+            boolean inAll = true;
+            for (int k = 1; k < sets.size() && inAll; k++) {
+                inAll = sets.get(k).contains(key);
+            }
+            if (inAll) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sorted, distinct trigrams of all non-null fields.
+     */
+    static long[] trigrams(String... fields) {
+        int total = 0;
+        for (String field : fields) {
+            if (field != null && field.length() >= GRAM) {
+                total += field.length() - GRAM + 1;
+            }
+        }
+        long[] grams = new long[total];
+        int n = 0;
+        for (String field : fields) {
+            if (field == null) {
+                continue;
+            }
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                grams[n++] = ((long) field.charAt(i) << 32) | ((long) field.charAt(i + 1) << 16) | field.charAt(i + 2);
+            }
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || grams[distinct - 1] != grams[i]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return distinct == grams.length ? grams : Arrays.copyOf(grams, distinct);
+    }
+
+    private void addPosting(long gram, String key) {
+        postings.compute(gram, (g, keys) -> {
+            Set<String> set = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            set.add(key);
+            return set;
+        });
+    }
+
+    private void removePosting(long gram, String key) {
+        postings.computeIfPresent(gram, (g, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+}
@@ -0,0 +1,231 @@
+package com.telemessage.simulators.http;
+
+import com.telemessage.simulators.common.conf.SimExecutors;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-blocking delivery pipeline for outbound HTTP callbacks (delivery receipts, forwards).
+ *
+ * <p>All requests share one {@link HttpClient}, which keeps connections to each target alive and reuses
+ * them. At most {@code sim.http.maxInFlightPerTarget} requests are in flight per target (scheme, host,
+ * port); the rest wait in a per-target queue that is drained as responses come back. A full queue rejects
+ * new requests instead of growing without bound. Delayed requests are parked on a scheduler rather than
+ * on a sleeping thread.</p>
+ */
+@Slf4j
+@Component
+public class AsyncHttpDispatcher {
+
+    private static final int MAX_IN_FLIGHT_PER_TARGET = Integer.parseInt(System.getProperty("sim.http.maxInFlightPerTarget", "32"));
+    private static final int MAX_QUEUED_PER_TARGET = Integer.parseInt(System.getProperty("sim.http.maxQueuedPerTarget", "10000"));
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMillis(Long.parseLong(System.getProperty("sim.http.connectTimeoutMs", "5000")));
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMillis(Long.parseLong(System.getProperty("sim.http.requestTimeoutMs", "30000")));
+    private static final int CLIENT_THREADS = Integer.parseInt(System.getProperty("sim.http.clientThreads", "4"));
+
+    private final ExecutorService clientExecutor;
+    private final ScheduledExecutorService delayScheduler;
+    private final HttpClient client;
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger delayed = new AtomicInteger();
+
+    public AsyncHttpDispatcher() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.clientExecutor = Executors.newFixedThreadPool(CLIENT_THREADS, r -> {
+            Thread t = new Thread(r);
+            t.setName("http-dispatch-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        SimExecutors.monitor("http-dispatch", clientExecutor);
+        // Delay timers only hand the request to its target queue
+        this.delayScheduler = SimExecutors.scheduler();
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(clientExecutor)
+                .build();
+    }
+
+    /**
+     * Requests to one scheme/host/port: in-flight count and the queue waiting for a free slot.
+     */
+    private static final class Target {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    }
+
+    @AllArgsConstructor
+    private static final class Pending {
+        private final HttpRequest request;
+        private final CompletableFuture<HttpResponse<String>> future;
+    }
+
+    /**
+     * Backpressure snapshot of the pipeline.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private final long submitted;
+        private final long completed;
+        private final long failed;
+        private final long rejected;
+        private final int delayed;
+        private final int inFlight;
+        private final int queued;
+        private final Map<String, Integer> inFlightPerTarget;
+        private final Map<String, Integer> queuedPerTarget;
+    }
+
+    /**
+     * Request builder with the pipeline's default timeout.
+     */
+    public HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Sends {@code request} without blocking the caller.
+     */
+    public CompletableFuture<HttpResponse<String>> send(HttpRequest request) {
+        return send(request, 0);
+    }
+
+    /**
+     * Sends {@code request} after {@code delayMs} without blocking the caller. The future fails with
+     * {@link RejectedExecutionException} when the target's queue is full.
+     */
+    public CompletableFuture<HttpResponse<String>> send(HttpRequest request, long delayMs) {
+        submitted.increment();
+        Pending pending = new Pending(request, new CompletableFuture<>());
+        if (delayMs > 0) {
+            delayed.incrementAndGet();
+            delayScheduler.schedule(() -> {
+                delayed.decrementAndGet();
+                enqueue(pending);
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } else {
+            enqueue(pending);
+        }
+        return pending.future;
+    }
+
+    public Stats getStats() {
+        Map<String, Integer> inFlightPerTarget = new HashMap<>();
+        Map<String, Integer> queuedPerTarget = new HashMap<>();
+        int inFlight = 0;
+        int queued = 0;
+        for (Map.Entry<String, Target> entry : targets.entrySet()) {
+            int targetInFlight = entry.getValue().inFlight.get();
+            int targetQueued = entry.getValue().queued.get();
+            inFlightPerTarget.put(entry.getKey(), targetInFlight);
+            queuedPerTarget.put(entry.getKey(), targetQueued);
+            inFlight += targetInFlight;
+            queued += targetQueued;
+        }
+        return new Stats(submitted.sum(), completed.sum(), failed.sum(), rejected.sum(), delayed.get(),
+                inFlight, queued, inFlightPerTarget, queuedPerTarget);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        client.shutdownNow();
+        clientExecutor.shutdownNow();
+        SimExecutors.unregister("http-dispatch");
+    }
+
+    private void enqueue(Pending pending) {
+        Target target = targets.computeIfAbsent(targetKey(pending.request.uri()), k -> new Target());
+        if (target.queued.incrementAndGet() > MAX_QUEUED_PER_TARGET) {
+            target.queued.decrementAndGet();
+            rejected.increment();
+            log.warn("HTTP dispatch queue full for {}, rejecting request to {}",
+                    targetKey(pending.request.uri()), pending.request.uri());
+            pending.future.completeExceptionally(new RejectedExecutionException(
+                    "Too many queued requests for " + targetKey(pending.request.uri())));
+            return;
+        }
+        target.queue.add(pending);
+        drain(target);
+    }
+
+    /**
+     * Starts queued requests while the target has free in-flight slots.
+     */
+    private void drain(Target target) {
+        while (true) {
+            int current = target.inFlight.get();
+            if (current >= MAX_IN_FLIGHT_PER_TARGET) {
+                return;
+            }
+            if (!target.inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Pending next = target.queue.poll();
+            if (next == null) {
+                target.inFlight.decrementAndGet();
+                // A request may have been queued after the poll but before the slot was released
+                if (target.queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            target.queued.decrementAndGet();
+            start(target, next);
+        }
+    }
+
+    private void start(Target target, Pending pending) {
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            response = client.sendAsync(pending.request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((r, error) -> {
+            target.inFlight.decrementAndGet();
+            if (error != null) {
+                failed.increment();
+                pending.future.completeExceptionally(error);
+            } else {
+                completed.increment();
+                pending.future.complete(r);
+            }
+            drain(target);
+        });
+    }
+
+    private static String targetKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+    }
+}
@@ -1,26 +1,35 @@
 package com.telemessage.simulators.http.modern;
 
+import com.telemessage.simulators.common.JSONUtils;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.controllers.message.MessagesObject;
-import io.restassured.RestAssured;
-import io.restassured.response.Response;
-import io.restassured.specification.RequestSpecification;
+import com.telemessage.simulators.http.AsyncHttpDispatcher;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 /**
- * Modernized HTTP Simulator using Spring RestController and RestAssured.
+ * Modernized HTTP Simulator using Spring RestController and the shared non-blocking {@link AsyncHttpDispatcher}.
  *
  * Features:
  * - RESTful API design
@@ -46,6 +55,17 @@ public class ModernHttpSimulator {
     @Autowired(required = false)
     private HttpProviderRegistry providerRegistry;
 
+    @Autowired
+    private AsyncHttpDispatcher dispatcher;
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int BULK_MAX_CONCURRENCY = Integer.parseInt(System.getProperty("sim.http.bulkMaxConcurrency", "256"));
+
+    // Provider processing and simulated delays run on virtual threads, off the common ForkJoinPool
+    private final ExecutorService sendExecutor = SimExecutors.io();
+
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
     // Metrics
     private final AtomicLong totalRequests = new AtomicLong(0);
     private final AtomicLong successfulRequests = new AtomicLong(0);
@@ -60,64 +80,71 @@ public class ModernHttpSimulator {
      */
     @PostMapping("/send")
     public ResponseEntity<HttpSendResponse> sendMessage(@RequestBody HttpSendRequest request) {
+        return sendMessageAsync(request).join();
+    }
+
+    /**
+     * Validates, processes and caches one message without blocking the caller. The future never completes
+     * exceptionally; failures are mapped to error responses.
+     */
+    private CompletableFuture<ResponseEntity<HttpSendResponse>> sendMessageAsync(HttpSendRequest request) {
         totalRequests.incrementAndGet();
         String requestId = UUID.randomUUID().toString();
 
         log.info("HTTP send request {} from provider: {}", requestId, request.getProvider());
 
-        try {
-            // Validate request
-            ValidationResult validation = validateRequest(request);
-            if (!validation.isValid()) {
-                failedRequests.incrementAndGet();
-                return ResponseEntity.badRequest().body(
-                    HttpSendResponse.error(requestId, validation.getErrorMessage())
-                );
-            }
-
-            // Get provider handler
-            HttpProviderHandler handler = getProviderHandler(request.getProvider());
-            if (handler == null) {
-                failedRequests.incrementAndGet();
-                return ResponseEntity.badRequest().body(
-                    HttpSendResponse.error(requestId, "Unknown provider: " + request.getProvider())
-                );
-            }
-
-            // Process message
-            CompletableFuture<HttpSendResult> future = processMessageAsync(request, handler);
-
-            // Wait for result (with timeout)
-            HttpSendResult result = future.get(30, TimeUnit.SECONDS);
-
-            if (result.isSuccess()) {
-                successfulRequests.incrementAndGet();
-                updateProviderMetrics(request.getProvider(), true);
-
-                // Cache message
-                cacheHttpMessage(request, result);
-
-                return ResponseEntity.ok(HttpSendResponse.success(
-                    requestId,
-                    result.getMessageId(),
-                    "Message accepted for delivery"
-                ));
-            } else {
-                failedRequests.incrementAndGet();
-                updateProviderMetrics(request.getProvider(), false);
-
-                return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(
-                    HttpSendResponse.error(requestId, result.getErrorMessage())
-                );
-            }
+        // Validate request
+        ValidationResult validation = validateRequest(request);
+        if (!validation.isValid()) {
+            failedRequests.incrementAndGet();
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(
+                HttpSendResponse.error(requestId, validation.getErrorMessage())
+            ));
+        }
 
-        } catch (Exception e) {
-            log.error("Error processing HTTP send request {}", requestId, e);
+        // Get provider handler
+        HttpProviderHandler handler = getProviderHandler(request.getProvider());
+        if (handler == null) {
             failedRequests.incrementAndGet();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                HttpSendResponse.error(requestId, "Internal error: " + e.getMessage())
-            );
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(
+                HttpSendResponse.error(requestId, "Unknown provider: " + request.getProvider())
+            ));
         }
+
+        // Process message (with timeout)
+        return processMessageAsync(request, handler)
+            .orTimeout(30, TimeUnit.SECONDS)
+            .handle((result, error) -> {
+                if (error != null || result == null) {
+                    log.error("Error processing HTTP send request {}", requestId, error);
+                    failedRequests.incrementAndGet();
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                        HttpSendResponse.error(requestId, "Internal error: "
+                            + (error != null ? error.getMessage() : "no result from provider handler"))
+                    );
+                }
+
+                if (result.isSuccess()) {
+                    successfulRequests.incrementAndGet();
+                    updateProviderMetrics(request.getProvider(), true);
+
+                    // Cache message
+                    cacheHttpMessage(request, result);
+
+                    return ResponseEntity.ok(HttpSendResponse.success(
+                        requestId,
+                        result.getMessageId(),
+                        "Message accepted for delivery"
+                    ));
+                } else {
+                    failedRequests.incrementAndGet();
+                    updateProviderMetrics(request.getProvider(), false);
+
+                    return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(
+                        HttpSendResponse.error(requestId, result.getErrorMessage())
+                    );
+                }
+            });
     }
 
     /**
@@ -146,7 +173,7 @@ public class ModernHttpSimulator {
             // Process status
             processDeliveryStatus(originalMessage, request);
 
-            messagesCache.setDirty(true);
+            messagesCache.markCacheRecordUpdated(request.getMessageId());
 
             return ResponseEntity.ok(HttpDeliveryReceiptResponse.success(
                 receiptId,
@@ -185,38 +212,87 @@ public class ModernHttpSimulator {
     }
 
     /**
-     * Bulk send messages.
+     * Bulk send messages. Messages are processed in parallel, at most {@code maxConcurrency} at a time
+     * (default {@code sim.http.bulkMaxConcurrency}); results keep the order of the request.
      */
     @PostMapping("/bulk-send")
     public ResponseEntity<HttpBulkSendResponse> bulkSend(@RequestBody HttpBulkSendRequest request) {
         String bulkId = UUID.randomUUID().toString();
-        log.info("HTTP bulk send {} with {} messages", bulkId, request.getMessages().size());
-
-        List<HttpSendResponse> results = new ArrayList<>();
-        int successful = 0;
-        int failed = 0;
+        List<HttpSendRequest> messages = request.getMessages() != null ? request.getMessages() : List.of();
+        log.info("HTTP bulk send {} with {} messages", bulkId, messages.size());
 
-        for (HttpSendRequest message : request.getMessages()) {
-            ResponseEntity<HttpSendResponse> response = sendMessage(message);
-            HttpSendResponse result = response.getBody();
-            results.add(result);
+        HttpSendResponse[] results = new HttpSendResponse[messages.size()];
+        AtomicInteger successful = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
 
+        fanOut(messages, bulkConcurrency(request), new AtomicBoolean(), (index, response) -> {
+            results[index] = response.getBody();
             if (response.getStatusCode() == HttpStatus.OK) {
-                successful++;
+                successful.incrementAndGet();
             } else {
-                failed++;
+                failed.incrementAndGet();
             }
-        }
+        }).join();
 
         return ResponseEntity.ok(new HttpBulkSendResponse(
             bulkId,
-            results.size(),
-            successful,
-            failed,
-            results
+            results.length,
+            successful.get(),
+            failed.get(),
+            Arrays.asList(results)
         ));
     }
 
+    /**
+     * Bulk send messages, streaming one NDJSON line per message as soon as it completes
+     * ({@code {"index":n,"status":code,"result":{...}}}), in completion order. Sending waits for the client
+     * to read: at most {@code maxConcurrency} messages are in flight and as many lines wait to be written.
+     */
+    @PostMapping(value = "/bulk-send/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> bulkSendStream(@RequestBody HttpBulkSendRequest request) {
+        String bulkId = UUID.randomUUID().toString();
+        List<HttpSendRequest> messages = request.getMessages() != null ? request.getMessages() : List.of();
+        log.info("HTTP streaming bulk send {} with {} messages", bulkId, messages.size());
+
+        StreamingResponseBody body = out -> {
+            int concurrency = bulkConcurrency(request);
+            BlockingQueue<String> lines = new ArrayBlockingQueue<>(concurrency);
+            AtomicBoolean aborted = new AtomicBoolean();
+            fanOut(messages, concurrency, aborted, (index, response) -> {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("index", index);
+                line.put("status", response.getStatusCode().value());
+                line.put("result", response.getBody());
+                String json = JSONUtils.toJSON(line) + "\n";
+                try {
+                    // Keeps the message's slot while the writer is behind, which holds back further sends
+                    while (!aborted.get() && !lines.offer(json, 100, TimeUnit.MILLISECONDS)) {
+                        log.trace("HTTP streaming bulk send {} waits for the client", bulkId);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            int written = 0;
+            try {
+                for (; written < messages.size(); written++) {
+                    out.write(lines.take().getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("HTTP streaming bulk send {} interrupted", bulkId);
+            } finally {
+                if (written < messages.size()) {
+                    // Client gone or interrupted: send nothing more and drop the pending lines
+                    aborted.set(true);
+                    log.warn("HTTP streaming bulk send {} stopped after {} of {} messages", bulkId, written, messages.size());
+                }
+            }
+        };
+        return ResponseEntity.ok().header("X-Bulk-Id", bulkId).body(body);
+    }
+
     /**
      * Get simulator metrics.
      */
@@ -233,70 +309,57 @@ public class ModernHttpSimulator {
             providerStats.put(entry.getKey(), entry.getValue().get());
         }
         metrics.setProviderMetrics(providerStats);
+        metrics.setDeliveryPipeline(dispatcher.getStats());
 
         return ResponseEntity.ok(metrics);
     }
 
     /**
      * Forward message to external HTTP endpoint (outgoing).
+     * The call goes through the shared non-blocking dispatcher; the servlet thread is released while it is in flight.
      */
     @PostMapping("/forward")
-    public ResponseEntity<HttpForwardResponse> forwardMessage(@RequestBody HttpForwardRequest request) {
+    public CompletableFuture<ResponseEntity<HttpForwardResponse>> forwardMessage(@RequestBody HttpForwardRequest request) {
         String forwardId = UUID.randomUUID().toString();
         log.info("Forwarding message {} to {}", forwardId, request.getTargetUrl());
 
+        java.net.http.HttpRequest httpRequest;
         try {
-            // Use RestAssured for external HTTP call
-            RestAssured.baseURI = request.getTargetUrl();
-            RequestSpecification spec = RestAssured.given()
-                .contentType(request.getContentType())
-                .headers(request.getHeaders());
-
-            // Add authentication if provided
-            if (request.getAuthType() != null) {
-                switch (request.getAuthType()) {
-                    case "basic":
-                        spec.auth().basic(request.getUsername(), request.getPassword());
-                        break;
-                    case "bearer":
-                        spec.auth().oauth2(request.getToken());
-                        break;
-                    case "api-key":
-                        spec.header(request.getApiKeyHeader(), request.getApiKey());
-                        break;
-                }
-            }
+            httpRequest = buildForwardRequest(request);
+        } catch (Exception e) {
+            log.error("Error forwarding message {}", forwardId, e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(
+                HttpForwardResponse.error(forwardId, 0, e.getMessage())
+            ));
+        }
 
-            // Send request
-            Response response = spec
-                .body(request.getPayload())
-                .post();
+        return dispatcher.send(httpRequest).handle((response, error) -> {
+            if (error != null) {
+                log.error("Error forwarding message {}", forwardId, error);
+                return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(
+                    HttpForwardResponse.error(forwardId, 0, error.getMessage())
+                );
+            }
 
             // Cache forwarded message
-            cacheForwardedMessage(request, response);
+            cacheForwardedMessage(request, response.body());
 
-            if (response.getStatusCode() >= 200 && response.getStatusCode() < 300) {
+            if (response.statusCode() >= 200 && response.statusCode() < 300) {
                 return ResponseEntity.ok(HttpForwardResponse.success(
                     forwardId,
-                    response.getStatusCode(),
-                    response.getBody().asString()
+                    response.statusCode(),
+                    response.body()
                 ));
             } else {
-                return ResponseEntity.status(response.getStatusCode()).body(
+                return ResponseEntity.status(response.statusCode()).body(
                     HttpForwardResponse.error(
                         forwardId,
-                        response.getStatusCode(),
-                        response.getBody().asString()
+                        response.statusCode(),
+                        response.body()
                     )
                 );
             }
-
-        } catch (Exception e) {
-            log.error("Error forwarding message {}", forwardId, e);
-            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(
-                HttpForwardResponse.error(forwardId, 0, e.getMessage())
-            );
-        }
+        });
     }
 
     // Helper methods
@@ -328,20 +391,70 @@ public class ModernHttpSimulator {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 // Apply provider-specific processing
-                HttpSendResult result = handler.processMessage(request);
-
-                // Simulate network delay
-                if (request.getSimulateDelay() != null && request.getSimulateDelay() > 0) {
-                    Thread.sleep(request.getSimulateDelay());
-                }
-
-                return result;
-
+                return handler.processMessage(request);
             } catch (Exception e) {
                 log.error("Error processing message", e);
                 return HttpSendResult.error(e.getMessage());
             }
+        }, sendExecutor).thenCompose(result -> {
+            // Simulate network delay on the shared delay scheduler instead of sleeping a thread
+            if (request.getSimulateDelay() != null && request.getSimulateDelay() > 0) {
+                return CompletableFuture.supplyAsync(() -> result,
+                    CompletableFuture.delayedExecutor(request.getSimulateDelay(), TimeUnit.MILLISECONDS, sendExecutor));
+            }
+            return CompletableFuture.completedFuture(result);
+        });
+    }
+
+    /**
+     * Sends {@code messages} with at most {@code maxConcurrency} in flight, reporting each response with its
+     * index. Dispatch runs on its own virtual thread, which waits for free slots, so the caller can consume
+     * results while the batch is still being sent. A slot is freed once {@code onResult} returned: a consumer
+     * that blocks holds back further sends. Nothing more is sent once {@code cancelled} is set.
+     *
+     * @return Completed when every dispatched message was reported.
+     */
+    private CompletableFuture<Void> fanOut(List<HttpSendRequest> messages, int maxConcurrency, AtomicBoolean cancelled,
+                                           BiConsumer<Integer, ResponseEntity<HttpSendResponse>> onResult) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        sendExecutor.execute(() -> {
+            Semaphore slots = new Semaphore(maxConcurrency);
+            List<CompletableFuture<?>> futures = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size() && !cancelled.get(); i++) {
+                int index = i;
+                slots.acquireUninterruptibly();
+                futures.add(dispatch(messages.get(i)).whenCompleteAsync((response, error) -> {
+                    try {
+                        onResult.accept(index, response);
+                    } finally {
+                        slots.release();
+                    }
+                }, sendExecutor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new))
+                    .whenComplete((ignored, error) -> done.complete(null));
         });
+        return done;
+    }
+
+    /**
+     * {@link #sendMessageAsync}, with a failure thrown before its future exists mapped to an error response.
+     */
+    private CompletableFuture<ResponseEntity<HttpSendResponse>> dispatch(HttpSendRequest message) {
+        try {
+            return sendMessageAsync(message);
+        } catch (RuntimeException e) {
+            log.error("Error dispatching HTTP bulk message", e);
+            failedRequests.incrementAndGet();
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                HttpSendResponse.error(UUID.randomUUID().toString(), "Internal error: " + e.getMessage())
+            ));
+        }
+    }
+
+    private static int bulkConcurrency(HttpBulkSendRequest request) {
+        Integer requested = request.getMaxConcurrency();
+        return requested != null && requested > 0 ? Math.min(requested, BULK_MAX_CONCURRENCY) : BULK_MAX_CONCURRENCY;
     }
 
     private void cacheHttpMessage(HttpSendRequest request, HttpSendResult result) {
@@ -356,23 +469,58 @@ public class ModernHttpSimulator {
         message.setProviderId(request.getProvider());
         message.setImplementationType("HTTP");
 
-        messagesCache.getMap().put(result.getMessageId(), message);
-        messagesCache.setDirty(true);
+        messagesCache.putCacheRecord(result.getMessageId(), message);
+    }
+
+    private java.net.http.HttpRequest buildForwardRequest(HttpForwardRequest request) {
+        java.net.http.HttpRequest.Builder builder = dispatcher.newRequest(URI.create(request.getTargetUrl()))
+            .POST(java.net.http.HttpRequest.BodyPublishers.ofString(
+                request.getPayload() != null ? request.getPayload() : "", StandardCharsets.UTF_8));
+        if (request.getContentType() != null) {
+            builder.header("Content-Type", request.getContentType());
+        }
+        if (request.getHeaders() != null) {
+            request.getHeaders().forEach((name, value) -> {
+                // The client manages these itself and refuses them as user headers
+                if (RESTRICTED_HEADERS.contains(name.toLowerCase())) {
+                    log.debug("Dropping restricted header {} from forward request", name);
+                } else {
+                    builder.header(name, value);
+                }
+            });
+        }
+
+        // Add authentication if provided
+        if (request.getAuthType() != null) {
+            switch (request.getAuthType()) {
+                case "basic":
+                    String credentials = request.getUsername() + ":" + request.getPassword();
+                    builder.header("Authorization", "Basic "
+                        + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+                    break;
+                case "bearer":
+                    builder.header("Authorization", "Bearer " + request.getToken());
+                    break;
+                case "api-key":
+                    builder.header(request.getApiKeyHeader(), request.getApiKey());
+                    break;
+            }
+        }
+        return builder.build();
     }
 
-    private void cacheForwardedMessage(HttpForwardRequest request, Response response) {
+    private void cacheForwardedMessage(HttpForwardRequest request, String responseBody) {
         MessagesObject message = new MessagesObject();
         String messageId = UUID.randomUUID().toString();
         message.setId(messageId);
         message.setText(request.getPayload());
         message.setHttpMessage(request.toJson());
-        message.setDirectResponse(response.getBody().asString());
+        message.setDirectResponse(responseBody);
         message.setMessageTime(String.valueOf(System.currentTimeMillis()));
         message.setDir("FORWARD");
         message.setImplementationType("HTTP");
 
-        messagesCache.getMap().put(messageId, message);
-        messagesCache.setDirty(true);
+        messagesCache.putCacheRecord(messageId, message);
     }
 
     private void processDeliveryStatus(MessagesObject message, HttpDeliveryReceiptRequest receipt) {
@@ -508,9 +656,12 @@ public class ModernHttpSimulator {
 
     public static class HttpBulkSendRequest {
         private List<HttpSendRequest> messages;
+        private Integer maxConcurrency;
 
         public List<HttpSendRequest> getMessages() { return messages; }
         public void setMessages(List<HttpSendRequest> messages) { this.messages = messages; }
+        public Integer getMaxConcurrency() { return maxConcurrency; }
+        public void setMaxConcurrency(Integer maxConcurrency) { this.maxConcurrency = maxConcurrency; }
     }
 
     public static class HttpBulkSendResponse {
@@ -650,6 +801,7 @@ public class ModernHttpSimulator {
         private long failedRequests;
         private int activeSessions;
         private Map<String, Long> providerMetrics;
+        private AsyncHttpDispatcher.Stats deliveryPipeline;
 
         // Getters and setters
         public long getTotalRequests() { return totalRequests; }
@@ -662,6 +814,8 @@ public class ModernHttpSimulator {
         public void setActiveSessions(int activeSessions) { this.activeSessions = activeSessions; }
         public Map<String, Long> getProviderMetrics() { return providerMetrics; }
         public void setProviderMetrics(Map<String, Long> providerMetrics) { this.providerMetrics = providerMetrics; }
+        public AsyncHttpDispatcher.Stats getDeliveryPipeline() { return deliveryPipeline; }
+        public void setDeliveryPipeline(AsyncHttpDispatcher.Stats deliveryPipeline) { this.deliveryPipeline = deliveryPipeline; }
     }
 
     // Helper classes
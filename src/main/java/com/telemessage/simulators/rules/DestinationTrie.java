@@ -0,0 +1,102 @@
+package com.telemessage.simulators.rules;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Address prefixes (or suffixes, read from the end) mapped to rules. A lookup walks the address once and returns
+ * the rule of the longest matching key, so it costs O(address length) however many rules there are.
+ *
+ * <p>Digits, the usual case, are children by index; any other character goes through a map.
+ * Built once per load and only read afterwards.</p>
+ */
+class DestinationTrie {
+
+    private static final class Node {
+        Node[] digits;
+        Map<Character, Node> others;
+        Rule rule;
+
+        Node child(char c) {
+            if (c >= '0' && c <= '9') {
+                return digits != null ? digits[c - '0'] : null;
+            }
+            return others != null ? others.get(c) : null;
+        }
+
+        Node addChild(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                if (c >= '0' && c <= '9') {
+                    if (digits == null) {
+                        digits = new Node[10];
+                    }
+                    digits[c - '0'] = child;
+                } else {
+                    if (others == null) {
+                        others = new HashMap<>(4);
+                    }
+                    others.put(c, child);
+                }
+            }
+            return child;
+        }
+    }
+
+    private final boolean fromEnd;
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * @param fromEnd true for a suffix trie
+     */
+    DestinationTrie(boolean fromEnd) {
+        this.fromEnd = fromEnd;
+    }
+
+    /**
+     * Adds or replaces the rule of a key.
+     *
+     * @return the replaced rule, null if the key was new
+     */
+    Rule put(String key, Rule rule) {
+        Node node = root;
+        int length = key.length();
+        for (int i = 0; i < length; i++) {
+            node = node.addChild(key.charAt(fromEnd ? length - 1 - i : i));
+        }
+        Rule replaced = node.rule;
+        node.rule = rule;
+        if (replaced == null) {
+            size++;
+        }
+        return replaced;
+    }
+
+    /**
+     * @return the rule of the longest key the address starts (or ends) with, null if none
+     */
+    Rule find(String address) {
+        Node node = root;
+        Rule found = null;
+        int length = address.length();
+        // Keys are stored without a leading '+'
+        int start = !fromEnd && length > 0 && address.charAt(0) == '+' ? 1 : 0;
+        for (int i = start; i < length && node != null; i++) {
+            node = node.child(address.charAt(fromEnd ? length - 1 - i : i));
+            if (node != null && node.rule != null) {
+                found = node.rule;
+            }
+        }
+        return found;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
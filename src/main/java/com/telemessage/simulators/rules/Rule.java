@@ -0,0 +1,164 @@
+package com.telemessage.simulators.rules;
+
+import com.telemessage.simulators.rules.conf.RuleConf;
+import com.telemessage.simulators.smpp.DeliveryReceiptEngine;
+import com.telemessage.simulators.smpp.conf.SMPPCodes;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A compiled {@link RuleConf}: the matched address part and the outcome for matching messages.
+ * Immutable apart from the throttling windows, which are kept per connection.
+ */
+@Getter
+public class Rule {
+
+    public static final int ESME_RTHROTTLED = Integer.parseInt(SMPPCodes.ESME_RTHROTTLED.getCode());
+
+    public enum Drop {
+        none, response, dr
+    }
+
+    private final String name;
+    private final String key;
+    private final boolean suffix;
+    private final boolean onSource;
+    private final Integer directStatus;
+    private final String drStatus;
+    private final String drDelay;
+    private final String drMessageId;
+    private final String failureReason;
+    private final int throttleTps;
+    private final Drop drop;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, Window> windows = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<String, DeliveryReceiptEngine.Policy> policies = new ConcurrentHashMap<>();
+
+    private Rule(RuleConf conf, String key, boolean suffix) {
+        this.name = conf.getName();
+        this.key = key;
+        this.suffix = suffix;
+        this.onSource = "source".equalsIgnoreCase(StringUtils.trim(conf.getOn()));
+        this.directStatus = parseStatus(conf.getDirectStatus());
+        this.drStatus = StringUtils.trimToNull(conf.getDrStatus());
+        this.drDelay = StringUtils.trimToNull(conf.getDrDelay());
+        this.drMessageId = StringUtils.trimToNull(conf.getDrMessageId());
+        this.failureReason = StringUtils.trimToNull(conf.getFailureReason());
+        this.throttleTps = Math.max(0, conf.getThrottleTps());
+        this.drop = StringUtils.isBlank(conf.getDrop()) ? Drop.none : Drop.valueOf(conf.getDrop().trim().toLowerCase());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule has no or both of prefix and suffix, or an invalid value
+     */
+    public static Rule compile(RuleConf conf) {
+        String prefix = normalize(conf.getPrefix());
+        String suffix = normalize(conf.getSuffix());
+        if (StringUtils.isEmpty(prefix) == StringUtils.isEmpty(suffix)) {
+            throw new IllegalArgumentException("Rule needs exactly one of prefix and suffix: " + conf);
+        }
+        try {
+            return StringUtils.isNotEmpty(prefix) ? new Rule(conf, prefix, false) : new Rule(conf, suffix, true);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid rule " + conf + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Addresses are matched without a leading '+'.
+     */
+    static String normalize(String address) {
+        if (address == null) {
+            return null;
+        }
+        String a = address.trim();
+        return a.startsWith("+") ? a.substring(1) : a;
+    }
+
+    private static Integer parseStatus(String status) {
+        if (StringUtils.isBlank(status)) {
+            return null;
+        }
+        String s = status.trim();
+        if (StringUtils.isNumeric(s)) {
+            return Integer.parseInt(s);
+        }
+        if (s.startsWith("0x") || s.startsWith("0X")) {
+            return Integer.parseInt(s.substring(2), 16);
+        }
+        return Integer.parseInt(SMPPCodes.valueOf(s).getCode());
+    }
+
+    /**
+     * The SMPP response status for a matching message: {@link #ESME_RTHROTTLED} when the rule's rate on this
+     * connection is exceeded, else the rule's status, else the connection's.
+     */
+    public int commandStatus(int connectionId, int connectionStatus) {
+        if (isThrottled(connectionId)) {
+            return ESME_RTHROTTLED;
+        }
+        return directStatus != null ? directStatus : connectionStatus;
+    }
+
+    /**
+     * Counts the message against the rule's rate on the connection (one second windows).
+     *
+     * @return true if the message is over {@link #getThrottleTps()}
+     */
+    public boolean isThrottled(int connectionId) {
+        if (throttleTps <= 0) {
+            return false;
+        }
+        return windows.computeIfAbsent(connectionId, id -> new Window()).exceeds(throttleTps);
+    }
+
+    public boolean dropsResponse() {
+        return drop == Drop.response;
+    }
+
+    public boolean dropsReceipt() {
+        return drop == Drop.dr;
+    }
+
+    public boolean hasReceiptPolicy() {
+        return drStatus != null || drDelay != null;
+    }
+
+    /**
+     * The receipt policy of a matching message; the connection's delay and status mix fill in what the rule
+     * does not set.
+     */
+    public DeliveryReceiptEngine.Policy receiptPolicy(String connectionDelay, String connectionStatusMix, String defaultStatus) {
+        String delay = drDelay != null ? drDelay : connectionDelay;
+        String mix = drStatus != null ? drStatus : connectionStatusMix;
+        return policies.computeIfAbsent(delay + "|" + mix + "|" + defaultStatus,
+                k -> DeliveryReceiptEngine.Policy.parse(delay, mix, defaultStatus));
+    }
+
+    @Override
+    public String toString() {
+        return (StringUtils.isNotEmpty(name) ? name + " " : "") + (onSource ? "source " : "")
+                + (suffix ? "*" + key : key + "*");
+    }
+
+    private static final class Window {
+        private final AtomicLong second = new AtomicLong();
+        private final AtomicLong count = new AtomicLong();
+
+        boolean exceeds(int limit) {
+            long now = System.currentTimeMillis() / 1000;
+            long current = second.get();
+            if (current != now && second.compareAndSet(current, now)) {
+                count.set(0);
+            }
+            return count.incrementAndGet() > limit;
+        }
+    }
+}
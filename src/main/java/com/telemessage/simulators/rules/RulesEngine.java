@@ -0,0 +1,348 @@
+package com.telemessage.simulators.rules;
+
+import com.telemessage.qatools.error.ErrorTracker;
+import com.telemessage.simulators.common.conf.EnvConfiguration;
+import com.telemessage.simulators.common.conf.SimExecutors;
+import com.telemessage.simulators.rules.conf.RuleConf;
+import com.telemessage.simulators.rules.conf.RuleSetConf;
+import com.telemessage.simulators.rules.conf.RulesConf;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.simpleframework.xml.core.Persister;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Destination-driven behaviour: which response status, receipt, failure reason, throttling or drop a message
+ * gets, decided by rules on its destination (or source) address instead of hard-coded number checks.
+ *
+ * <p>Rules come from {@code rules.xml}: the file named by {@code sim.rules.file}, else {@code <env>/rules.xml},
+ * else the default {@code rules.xml} next to smpps.xml. A file on disk is checked every
+ * {@code sim.rules.reloadIntervalMs} (default 5000) and reloaded when it changed; {@code /sim/rules} reloads or
+ * replaces the rules on demand. A file that fails to load leaves the previous rules in place.</p>
+ *
+ * <p>Rules are compiled per protocol and connection into prefix and suffix tries, so {@link #match} costs
+ * O(address length) however many rules there are. Connection rules override the rules of all connections with
+ * the same key, and the longest matching key wins.</p>
+ */
+@Slf4j
+@Component
+public class RulesEngine {
+
+    public static final String RULES_FILE = "rules.xml";
+    private static final String RESOURCE_BASE = "/com/telemessage/simulators/";
+    private static final long RELOAD_INTERVAL_MS = Long.getLong("sim.rules.reloadIntervalMs", 5000);
+
+    public enum Protocol {
+        smpp, http
+    }
+
+    // The receive paths are not all Spring beans; they look the rules up through the loaded engine
+    private static volatile RulesEngine instance;
+
+    private final EnvConfiguration conf;
+    private final ErrorTracker errorTracker;
+    private volatile Compiled compiled = Compiled.EMPTY;
+    private volatile Path watchedFile;
+    private volatile long watchedModified;
+    private volatile String lastError;
+    private ScheduledFuture<?> watchTask;
+
+    public RulesEngine(EnvConfiguration conf, ErrorTracker errorTracker) {
+        this.conf = conf;
+        this.errorTracker = errorTracker;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("Failed to load destination rules, running without rules", e);
+        }
+        instance = this;
+        watchTask = SimExecutors.scheduler().scheduleWithFixedDelay(
+                () -> SimExecutors.io().execute(this::reloadIfChanged),
+                RELOAD_INTERVAL_MS, RELOAD_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchTask != null) {
+            watchTask.cancel(false);
+        }
+    }
+
+    /**
+     * @return The rule for a message on the connection, null if none matches or the rules are not loaded yet.
+     */
+    public static Rule match(Protocol protocol, int connectionId, String source, String destination) {
+        RulesEngine engine = instance;
+        return engine != null ? engine.find(protocol, connectionId, source, destination) : null;
+    }
+
+    public Rule find(Protocol protocol, int connectionId, String source, String destination) {
+        Tries tries = compiled.tries(protocol, connectionId);
+        return tries != null ? tries.find(source, destination) : null;
+    }
+
+    /**
+     * Reloads the rules from their file.
+     *
+     * @throws Exception if the file cannot be read or has an invalid rule; the previous rules stay
+     */
+    public synchronized void reload() throws Exception {
+        String external = System.getProperty("sim.rules.file");
+        URL url;
+        if (StringUtils.isNotBlank(external)) {
+            url = Paths.get(external).toAbsolutePath().toUri().toURL();
+        } else {
+            String env = conf.getEnvCurrent();
+            url = StringUtils.isEmpty(env) ? null : RulesEngine.class.getResource(RESOURCE_BASE + env + "/" + RULES_FILE);
+            if (url == null) {
+                url = RulesEngine.class.getResource(RESOURCE_BASE + RULES_FILE);
+            }
+        }
+        if (url == null) {
+            log.info("No {} found, running without destination rules", RULES_FILE);
+            compiled = Compiled.EMPTY;
+            watchedFile = null;
+            return;
+        }
+        Path file = "file".equals(url.getProtocol()) ? Paths.get(url.toURI()) : null;
+        long modified = file != null && Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+        try (InputStream in = url.openStream()) {
+            load(in, url.toString());
+        } finally {
+            // A broken file is reported once, not on every check
+            watchedFile = file;
+            watchedModified = modified;
+        }
+    }
+
+    /**
+     * Replaces the rules with the given rules.xml content until the file changes or is reloaded.
+     */
+    public synchronized void replace(String xml) throws Exception {
+        load(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "api");
+    }
+
+    private void load(InputStream in, String source) throws Exception {
+        try {
+            RulesConf rules = new Persister().read(RulesConf.class, in);
+            compiled = Compiled.compile(rules, source);
+            lastError = null;
+            log.info("Loaded {} destination rules from {}", compiled.ruleCount, source);
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            log.error("Invalid destination rules from {}, keeping the previous rules", source, e);
+            errorTracker.captureError(
+                "RulesEngine.load",
+                e,
+                "rules-load-failed",
+                Map.of(
+                    "operation", "load_rules",
+                    "source", source
+                )
+            );
+            throw e;
+        }
+    }
+
+    private void reloadIfChanged() {
+        Path file = watchedFile;
+        if (file == null) {
+            return;
+        }
+        try {
+            long modified = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+            if (modified != watchedModified) {
+                log.info("Destination rules file {} changed, reloading", file);
+                reload();
+            }
+        } catch (Exception e) {
+            log.debug("Destination rules reload failed: {}", e.getMessage());
+        }
+    }
+
+    public String getSource() {
+        return compiled.source;
+    }
+
+    public long getLoadedAt() {
+        return compiled.loadedAt;
+    }
+
+    public int getRuleCount() {
+        return compiled.ruleCount;
+    }
+
+    public RulesConf getRules() {
+        return compiled.rules;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Rules of one connection (or the default of a protocol): destination and source, prefix and suffix tries.
+     */
+    static final class Tries {
+        final DestinationTrie destinationPrefixes = new DestinationTrie(false);
+        final DestinationTrie destinationSuffixes = new DestinationTrie(true);
+        final DestinationTrie sourcePrefixes = new DestinationTrie(false);
+        final DestinationTrie sourceSuffixes = new DestinationTrie(true);
+
+        void add(Rule rule) {
+            DestinationTrie trie = rule.isOnSource()
+                    ? (rule.isSuffix() ? sourceSuffixes : sourcePrefixes)
+                    : (rule.isSuffix() ? destinationSuffixes : destinationPrefixes);
+            trie.put(rule.getKey(), rule);
+        }
+
+        /**
+         * Longest match; on equal length destination before source and prefix before suffix.
+         */
+        Rule find(String source, String destination) {
+            Rule best = longer(null, destinationPrefixes, destination);
+            best = longer(best, destinationSuffixes, destination);
+            best = longer(best, sourcePrefixes, source);
+            return longer(best, sourceSuffixes, source);
+        }
+
+        private static Rule longer(Rule best, DestinationTrie trie, String address) {
+            if (address == null || trie.isEmpty()) {
+                return best;
+            }
+            Rule rule = trie.find(address);
+            return rule != null && (best == null || rule.getKey().length() > best.getKey().length()) ? rule : best;
+        }
+    }
+
+    /**
+     * One loaded rules file, compiled. Replaced as a whole on reload.
+     */
+    static final class Compiled {
+        static final Compiled EMPTY = new Compiled(null, null, 0);
+
+        final RulesConf rules;
+        final String source;
+        final int ruleCount;
+        final long loadedAt = System.currentTimeMillis();
+        final Tries[] defaults = new Tries[Protocol.values().length];
+        @SuppressWarnings("unchecked")
+        final Map<Integer, Tries>[] byConnection = new Map[Protocol.values().length];
+
+        private Compiled(RulesConf rules, String source, int ruleCount) {
+            this.rules = rules;
+            this.source = source;
+            this.ruleCount = ruleCount;
+        }
+
+        Tries tries(Protocol protocol, int connectionId) {
+            Map<Integer, Tries> connections = byConnection[protocol.ordinal()];
+            Tries tries = connections != null ? connections.get(connectionId) : null;
+            return tries != null ? tries : defaults[protocol.ordinal()];
+        }
+
+        /**
+         * @throws IllegalArgumentException for an invalid rule, protocol or connection id
+         */
+        static Compiled compile(RulesConf rules, String source) {
+            // Rule sets in file order, each with its protocols, connections (null: all) and compiled rules
+            List<RuleSetConf> sets = rules.getRuleSets() != null ? rules.getRuleSets() : List.of();
+            List<Set<Protocol>> protocols = new ArrayList<>();
+            List<Set<Integer>> connections = new ArrayList<>();
+            List<List<Rule>> compiledRules = new ArrayList<>();
+            int count = 0;
+            for (RuleSetConf set : sets) {
+                protocols.add(parseProtocols(set.getProtocol()));
+                connections.add(parseConnections(set.getConnections()));
+                List<Rule> setRules = new ArrayList<>();
+                if (set.getRules() != null) {
+                    for (RuleConf rule : set.getRules()) {
+                        setRules.add(Rule.compile(rule));
+                    }
+                }
+                compiledRules.add(setRules);
+                count += setRules.size();
+            }
+
+            Compiled result = new Compiled(rules, source, count);
+            for (Protocol protocol : Protocol.values()) {
+                Tries defaults = new Tries();
+                Set<Integer> mentioned = new LinkedHashSet<>();
+                for (int i = 0; i < sets.size(); i++) {
+                    if (protocols.get(i).contains(protocol)) {
+                        if (connections.get(i) == null) {
+                            compiledRules.get(i).forEach(defaults::add);
+                        } else {
+                            mentioned.addAll(connections.get(i));
+                        }
+                    }
+                }
+                Map<Integer, Tries> byConnection = new HashMap<>();
+                for (Integer connectionId : mentioned) {
+                    Tries tries = new Tries();
+                    // Rules of all connections first, so a connection's own rule replaces one with the same key
+                    for (int i = 0; i < sets.size(); i++) {
+                        if (protocols.get(i).contains(protocol) && connections.get(i) == null) {
+                            compiledRules.get(i).forEach(tries::add);
+                        }
+                    }
+                    for (int i = 0; i < sets.size(); i++) {
+                        if (protocols.get(i).contains(protocol) && connections.get(i) != null
+                                && connections.get(i).contains(connectionId)) {
+                            compiledRules.get(i).forEach(tries::add);
+                        }
+                    }
+                    byConnection.put(connectionId, tries);
+                }
+                result.defaults[protocol.ordinal()] = defaults;
+                result.byConnection[protocol.ordinal()] = byConnection;
+            }
+            return result;
+        }
+
+        private static Set<Protocol> parseProtocols(String protocol) {
+            if (StringUtils.isBlank(protocol) || "*".equals(protocol.trim())) {
+                return EnumSet.allOf(Protocol.class);
+            }
+            Set<Protocol> result = EnumSet.noneOf(Protocol.class);
+            for (String p : protocol.split(",")) {
+                result.add(Protocol.valueOf(p.trim().toLowerCase()));
+            }
+            return result;
+        }
+
+        private static Set<Integer> parseConnections(String connections) {
+            if (StringUtils.isBlank(connections) || "*".equals(connections.trim())) {
+                return null;
+            }
+            Set<Integer> result = new LinkedHashSet<>();
+            for (String id : connections.split(",")) {
+                result.add(Integer.parseInt(id.trim()));
+            }
+            return result;
+        }
+    }
+}
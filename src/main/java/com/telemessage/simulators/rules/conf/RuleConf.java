@@ -0,0 +1,36 @@
+package com.telemessage.simulators.rules.conf;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Root;
+
+/**
+ * One rule: an address {@code prefix} or {@code suffix} (exactly one of them) of the message destination, or of
+ * its source with {@code on="source"}, and what to do with matching messages. Unset outcomes keep the
+ * connection's behaviour.
+ */
+@Setter
+@Getter
+@ToString
+@Root(name = "rule")
+public class RuleConf {
+
+    @Attribute(required = false) protected String name;
+    @Attribute(required = false) protected String prefix;
+    @Attribute(required = false) protected String suffix;
+    @Attribute(required = false) protected String on;
+    // SMPP response status: an SMPPCodes name (ESME_RTHROTTLED) or a number
+    @Attribute(required = false, name = "direct_status") protected String directStatus;
+    // Same formats as the connection's dr_status_mix / dr_delay
+    @Attribute(required = false, name = "dr_status") protected String drStatus;
+    @Attribute(required = false, name = "dr_delay") protected String drDelay;
+    @Attribute(required = false, name = "dr_message_id") protected String drMessageId;
+    // HTTP deliveryFailureReason
+    @Attribute(required = false, name = "failure_reason") protected String failureReason;
+    @Attribute(required = false, name = "throttle_tps") protected int throttleTps;
+    // response: never answer the message, dr: answer but never send its receipt
+    @Attribute(required = false) protected String drop;
+
+}
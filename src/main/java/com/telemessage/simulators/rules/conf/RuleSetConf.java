@@ -0,0 +1,26 @@
+package com.telemessage.simulators.rules.conf;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.Root;
+
+import java.util.List;
+
+/**
+ * Rules of one or more connections: {@code connections} is a comma separated list of connection ids or {@code *}
+ * (all connections), {@code protocol} is {@code smpp}, {@code http} or {@code *}.
+ */
+@Setter
+@Getter
+@Root(name = "ruleset")
+public class RuleSetConf {
+
+    @Attribute(required = false) protected String name;
+    @Attribute(required = false) protected String protocol = "*";
+    @Attribute(required = false) protected String connections = "*";
+    @ElementList(inline = true, required = false, entry = "rule")
+    protected List<RuleConf> rules;
+
+}
@@ -0,0 +1,18 @@
+package com.telemessage.simulators.rules.conf;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.Root;
+
+import java.util.List;
+
+@Setter
+@Getter
+@Root(name = "rules")
+public class RulesConf {
+
+    @ElementList(inline = true, required = false, entry = "ruleset")
+    protected List<RuleSetConf> ruleSets;
+
+}
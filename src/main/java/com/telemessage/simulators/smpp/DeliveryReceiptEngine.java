@@ -0,0 +1,356 @@
+package com.telemessage.simulators.smpp;
+
+import com.telemessage.qatools.error.ErrorTracker;
+import com.telemessage.simulators.controllers.message.MessageUtils;
+import com.telemessage.simulators.controllers.message.MessagesCache;
+import com.telemessage.simulators.controllers.message.MessagesObject;
+import com.telemessage.simulators.rules.Rule;
+import com.telemessage.simulators.smpp.conf.SMPPConnectionConf;
+import com.telemessage.simulators.stats.SimMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates automatic delivery receipts for messages received on the Logica connections.
+ *
+ * <p>The receive path only {@link #schedule}s a receipt and goes on with the next PDU. Receipts wait in a
+ * time-ordered queue until their due time; a single dispatcher thread takes all receipts that are due,
+ * sends them through the connection's transmitter/transceiver and then writes the batch's cache records.</p>
+ *
+ * <p>When a receipt is due and which status it carries is decided per connection by {@code <dr_delay>} and
+ * {@code <dr_status_mix>} in smpps.xml (see {@link Policy}); without them the receipt is sent immediately with
+ * the {@code <automatic_dr>} status, as before. A destination {@link Rule} can override the delay, the status mix
+ * and the receipt's message id per message.</p>
+ */
+@Slf4j
+public class DeliveryReceiptEngine {
+
+    private static final int MAX_BATCH = Integer.parseInt(System.getProperty("sim.smpp.dr.maxBatch", "256"));
+
+    /**
+     * Sends a DR request through the given connection.
+     */
+    public interface Sender {
+        boolean send(int connectionId, SMPPRequest request);
+    }
+
+    private final Sender sender;
+    private final MessagesCache messagesCache;
+    private final DelayQueue<Receipt> queue = new DelayQueue<>();
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public DeliveryReceiptEngine(Sender sender, MessagesCache messagesCache) {
+        this.sender = sender;
+        this.messagesCache = messagesCache;
+        SimMetrics.gauge("sim.smpp.dr.pending", "Delivery receipts waiting for their due time",
+                this, DeliveryReceiptEngine::getPending, "stack", SimMetrics.LOGICA);
+        Thread dispatcher = new Thread(this::dispatch, "smpp-dr-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * When and with which status to send receipts on one connection.
+     *
+     * <p>{@code dr_delay}: {@code <ms>} (fixed), {@code <min>-<max>} (uniform) or {@code exp:<mean>}
+     * (exponential, e.g. to emulate a provider with a long tail).<br>
+     * {@code dr_status_mix}: weighted statuses, e.g. {@code DELIVRD:90,UNDELIV:8,EXPIRED:2}.</p>
+     */
+    public static class Policy {
+        private final long minDelayMs;
+        private final long maxDelayMs;
+        private final double meanDelayMs;
+        private final String[] statuses;
+        private final int[] cumulativeWeights;
+
+        private Policy(long minDelayMs, long maxDelayMs, double meanDelayMs, String[] statuses, int[] cumulativeWeights) {
+            this.minDelayMs = minDelayMs;
+            this.maxDelayMs = maxDelayMs;
+            this.meanDelayMs = meanDelayMs;
+            this.statuses = statuses;
+            this.cumulativeWeights = cumulativeWeights;
+        }
+
+        public static Policy parse(String delay, String statusMix, String defaultStatus) {
+            long min = 0;
+            long max = 0;
+            double mean = 0;
+            if (StringUtils.isNotBlank(delay)) {
+                String d = delay.trim();
+                try {
+                    if (d.startsWith("exp:")) {
+                        mean = Double.parseDouble(d.substring(4).trim());
+                    } else if (d.indexOf('-') > 0) {
+                        min = Long.parseLong(StringUtils.substringBefore(d, "-").trim());
+                        max = Long.parseLong(StringUtils.substringAfter(d, "-").trim());
+                    } else {
+                        min = max = Long.parseLong(d);
+                    }
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid dr_delay '{}', sending receipts without delay", delay);
+                    min = max = 0;
+                    mean = 0;
+                }
+            }
+
+            List<String> statuses = new ArrayList<>();
+            List<Integer> weights = new ArrayList<>();
+            int total = 0;
+            if (StringUtils.isNotBlank(statusMix)) {
+                for (String entry : statusMix.split(",")) {
+                    String status = StringUtils.substringBefore(entry, ":").trim();
+                    String weight = entry.contains(":") ? StringUtils.substringAfter(entry, ":").trim() : "1";
+                    try {
+                        int w = Integer.parseInt(weight);
+                        if (StringUtils.isNotEmpty(status) && w > 0) {
+                            total += w;
+                            statuses.add(status);
+                            weights.add(total);
+                        }
+                    } catch (NumberFormatException e) {
+                        log.warn("Invalid dr_status_mix entry '{}' ignored", entry);
+                    }
+                }
+            }
+            if (statuses.isEmpty()) {
+                statuses.add(defaultStatus);
+                weights.add(1);
+            }
+            int[] cumulative = new int[weights.size()];
+            for (int i = 0; i < cumulative.length; i++) {
+                cumulative[i] = weights.get(i);
+            }
+            return new Policy(min, Math.max(min, max), mean, statuses.toArray(new String[0]), cumulative);
+        }
+
+        public long nextDelayMs() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (meanDelayMs > 0) {
+                return (long) (-meanDelayMs * Math.log(1 - random.nextDouble()));
+            }
+            return maxDelayMs > minDelayMs ? random.nextLong(minDelayMs, maxDelayMs + 1) : minDelayMs;
+        }
+
+        public String nextStatus() {
+            if (statuses.length == 1) {
+                return statuses[0];
+            }
+            int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (pick < cumulativeWeights[i]) {
+                    return statuses[i];
+                }
+            }
+            return statuses[statuses.length - 1];
+        }
+    }
+
+    /**
+     * One pending receipt, ordered by due time and then by scheduling order.
+     */
+    private static final class Receipt implements Delayed {
+        private final long dueNanos;
+        private final long acceptedNanos;
+        private final long seq;
+        private final int connectionId;
+        private final String msgId;
+        private final String receiptId;
+        private final String source;
+        private final String dest;
+        private final String status;
+        private final String providerId;
+        private final String cacheDir;
+        private final ErrorTracker errorTracker;
+        private final SimMetrics.Connection metrics;
+
+        Receipt(long acceptedNanos, long dueNanos, long seq, int connectionId, String msgId, String receiptId, String source,
+                String dest, String status, String providerId, String cacheDir, ErrorTracker errorTracker,
+                SimMetrics.Connection metrics) {
+            this.acceptedNanos = acceptedNanos;
+            this.dueNanos = dueNanos;
+            this.seq = seq;
+            this.connectionId = connectionId;
+            this.msgId = msgId;
+            this.receiptId = receiptId;
+            this.source = source;
+            this.dest = dest;
+            this.status = status;
+            this.providerId = providerId;
+            this.cacheDir = cacheDir;
+            this.errorTracker = errorTracker;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            Receipt other = (Receipt) o;
+            int byDue = Long.compare(dueNanos, other.dueNanos);
+            return byDue != 0 ? byDue : Long.compare(seq, other.seq);
+        }
+    }
+
+    /**
+     * Queues the receipt for a received message; returns at once.
+     *
+     * @param rule The received message's destination rule, null if none.
+     * @param source The DR source - the destination of the received message.
+     * @param dest The DR destination - the source of the received message.
+     * @param cacheDir The dir of the cache record created when the received message is not cached.
+     */
+    public void schedule(SMPPConnectionConf conf, Rule rule, String msgId, String source, String dest, String providerId,
+                         String cacheDir, ErrorTracker errorTracker) {
+        Policy policy = rule != null && rule.hasReceiptPolicy()
+                ? rule.receiptPolicy(conf.getDrDelay(), conf.getDrStatusMix(), conf.getAutomaticDR())
+                : policyFor(conf);
+        String receiptId = rule != null && rule.getDrMessageId() != null ? rule.getDrMessageId() : msgId;
+        long delayMs = policy.nextDelayMs();
+        long now = System.nanoTime();
+        queue.add(new Receipt(now, now + TimeUnit.MILLISECONDS.toNanos(delayMs), sequence.incrementAndGet(),
+                conf.getId(), msgId, receiptId, source, dest, policy.nextStatus(), providerId, cacheDir, errorTracker,
+                SimMetrics.connection(SimMetrics.LOGICA, conf)));
+        log.debug("DR for mid {} on connection {} scheduled in {} ms", msgId, conf.getId(), delayMs);
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Drops all pending receipts.
+     */
+    public void clear() {
+        queue.clear();
+    }
+
+    private Policy policyFor(SMPPConnectionConf conf) {
+        String key = conf.getDrDelay() + "|" + conf.getDrStatusMix() + "|" + conf.getAutomaticDR();
+        return policies.computeIfAbsent(key, k -> Policy.parse(conf.getDrDelay(), conf.getDrStatusMix(), conf.getAutomaticDR()));
+    }
+
+    private void dispatch() {
+        List<Receipt> batch = new ArrayList<>();
+        List<MessagesObject> records = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (Receipt receipt : batch) {
+                    MessagesObject record = send(receipt);
+                    if (record != null) {
+                        records.add(record);
+                    }
+                }
+                cache(records);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error dispatching delivery receipts", e);
+            } finally {
+                batch.clear();
+                records.clear();
+            }
+        }
+    }
+
+    /**
+     * @return The cache record for a sent receipt, null if sending failed.
+     */
+    private MessagesObject send(Receipt receipt) {
+        SMPPRequest r = new SMPPRequest(receipt.source, receipt.dest, null,
+                String.format(SMPPConnection.DR, receipt.receiptId, System.currentTimeMillis(), receipt.status), null);
+        log.debug(String.format("Trying to send DR %s ,mid %s, for connection %d from %s to %s", r.toString(), receipt.msgId, receipt.connectionId, receipt.source, receipt.dest));
+        boolean success = false;
+        try {
+            success = sender.send(receipt.connectionId, r);
+        } catch (Exception ex) {
+            log.error("Error sending DR", ex);
+            captureError(receipt, ex, "send-dr-failed", "send_dr");
+        }
+        if (!success) {
+            failed.increment();
+            log.error("Failed to send DR message: {}, for connection: {}, from: {}, to: {}", receipt.msgId, receipt.connectionId, receipt.source, receipt.dest);
+            captureError(receipt, new RuntimeException("Failed to send DR message"), "send-dr-message-failed", "send_dr_message");
+            return null;
+        }
+        sent.increment();
+        receipt.metrics.receipt(receipt.status, receipt.acceptedNanos);
+        String now = MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis());
+        // Merged into the received message's record when it is cached, otherwise stored as a DR record
+        return MessagesObject.builder()
+                .dir(receipt.cacheDir)
+                .to(receipt.dest)
+                .from(receipt.source)
+                .id(receipt.msgId)
+                .text(r.getText())
+                .sendMessageSM(r.toString())
+                .directResponse("DR attempt success:" + success + "\nDR: " + receipt.status)
+                .messageTime(now)
+                .deliveryReceiptShortMessage(receipt.status)
+                .deliveryReceiptTime(now)
+                .providerId(receipt.providerId)
+                .build();
+    }
+
+    private void cache(List<MessagesObject> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (messagesCache == null) {
+            log.error("messagesCache is null! Cannot cache {} outgoing DR messages", records.size());
+            return;
+        }
+        for (MessagesObject record : records) {
+            try {
+                if (!messagesCache.addCacheRecord(record.getId(), record)) {
+                    log.error("Failed to add outgoing DR message to cache for id {}", record.getId());
+                }
+            } catch (Exception e) {
+                log.error("Error caching smpp DR message record {}", record.getId(), e);
+            }
+        }
+    }
+
+    private static void captureError(Receipt receipt, Exception e, String errorType, String operation) {
+        if (receipt.errorTracker == null) {
+            return;
+        }
+        receipt.errorTracker.captureError(
+            "DeliveryReceiptEngine.send",
+            e,
+            errorType,
+            Map.of(
+                "operation", operation,
+                "messageId", String.valueOf(receipt.msgId),
+                "connectionId", String.valueOf(receipt.connectionId)
+            )
+        );
+    }
+}
@@ -5,6 +5,7 @@ import com.logica.smpp.pdu.*;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class ESMEConnManager extends SMPPConnManager {
@@ -147,6 +148,7 @@ public class ESMEConnManager extends SMPPConnManager {
                 processOnCloseListeners(result);
             } finally {
                 state = State.unbound;
+                cancelPendingRequests();
             }
         }
         return result;
@@ -197,33 +199,34 @@ public class ESMEConnManager extends SMPPConnManager {
 
     @Override
     public Response send(PDU pdu) throws IOException {
-        pdu.assignSequenceNumber();
-        Integer id = pdu.getSequenceNumber();//We assume that we won't get the same SequenceNumber withing a safe period of time.
-        requests.put(id, id);//marking that we are waiting for the response to this PDU
-        if (session != null) {
-            synchronized (lockObject) {
-                //instead of 'if (session != null)' here, added catch NullPointerException below.
-
-                // we put this check inside if bind was changed by start or close connection
-                if (state != State.bound)
-                    throw new IOException("Connection is not bound");
-                try {
-                    session.getTransmitter().send(pdu);
-                } catch (IOException e){
-                    this.state = State.unbound;
-                    throw e;
-                } catch (ValueNotSetException | NullPointerException e) {
-                    throw new IOException(e);
-                }
-            }
-            try {
-                requests.waitForResponse(id); //waiting for the response to this PDU
-            } catch (InterruptedException e) {
+        // Stop-and-wait: the same correlated send as the windowed path, awaited on the calling thread
+        return requests.await(transmit(pdu));
+    }
 
+    @Override
+    protected CompletableFuture<Response> transmit(PDU pdu) throws IOException {
+        if (session == null) {
+            throw new IOException("Session is null");
+        }
+        synchronized (lockObject) {
+            pdu.assignSequenceNumber();
+            Integer id = pdu.getSequenceNumber();
+            // we put this check inside if bind was changed by start or close connection
+            if (state != State.bound)
+                throw new IOException("Connection is not bound");
+            CompletableFuture<Response> response = requests.expect(id);
+            try {
+                session.getTransmitter().send(pdu);
+            } catch (IOException e) {
+                requests.cancel(id);
+                this.state = State.unbound;
+                throw e;
+            } catch (ValueNotSetException | NullPointerException e) {
+                requests.cancel(id);
+                throw new IOException(e);
             }
-            return requests.remove(Response.class, id);//removing the marking,
+            return response;
         }
-        throw new IOException("Session is null");
     }
 
     public void respond(Response response) throws IOException {
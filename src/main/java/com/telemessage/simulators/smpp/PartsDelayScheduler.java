@@ -0,0 +1,240 @@
+package com.telemessage.simulators.smpp;
+
+import com.telemessage.simulators.common.conf.SimExecutors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Simulator-wide scheduler for multipart messages sent with per-part delays.
+ *
+ * <p>A request's parts and delays form a {@link Plan}; {@link #submit} returns it immediately and the
+ * parts are sent in the background. The shared simulator timer only fires deadlines - the sends
+ * themselves run on virtual threads, so a slow connection never holds up another plan's timers. Every part
+ * goes out at its own offset from the first send, without waiting for the response to an earlier part, so a
+ * part without delay overtakes delayed parts before it (out-of-order segments). Parts due at the same offset
+ * are sent in part order.</p>
+ *
+ * <p>Finished plans stay queryable until {@code sim.smpp.partsDelay.retainedPlans} newer plans finished.</p>
+ */
+@Slf4j
+public class PartsDelayScheduler {
+
+    /**
+     * A part with this delay is never sent (used to simulate a lost segment). The parts after it keep their own
+     * delays; the sentinel adds nothing to their offsets.
+     */
+    public static final long SKIP_PART_DELAY = 999999999L;
+
+    private static final int RETAINED_PLANS = Integer.parseInt(System.getProperty("sim.smpp.partsDelay.retainedPlans", "200"));
+
+    private final ScheduledExecutorService timer = SimExecutors.scheduler();
+    private final ExecutorService sender = SimExecutors.io();
+    private final Map<String, Plan<?>> plans = new ConcurrentHashMap<>();
+    private final Queue<String> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicLong planIds = new AtomicLong();
+
+    public enum Status {
+        running, done, cancelled
+    }
+
+    /**
+     * Progress of one delayed multipart send.
+     */
+    public static class Plan<T> {
+        @Getter private final String id;
+        @Getter private final String description;
+        @Getter private final int totalParts;
+        @Getter private final long createdAt;
+        @Getter private final long lastPartOffsetMs;   // offset of the part sent last
+        @Getter private volatile Status status = Status.running;
+        @Getter private volatile int nextPart = 1;
+
+        private final List<T> parts;
+        private final long[] offsetsMs;
+        private final int[] order;   // indexes of the parts to send, by offset then index
+        private final Function<T, ? extends CompletionStage<?>> send;
+        private final long startNanos;
+        private final AtomicInteger sentCount = new AtomicInteger();
+        private final AtomicInteger failedCount = new AtomicInteger();
+        private final int skippedCount;
+        private volatile Future<?> scheduled;
+
+        Plan(String id, String description, List<T> parts, long[] offsetsMs, int[] order,
+             Function<T, ? extends CompletionStage<?>> send) {
+            this.id = id;
+            this.description = description;
+            this.totalParts = parts.size();
+            this.createdAt = System.currentTimeMillis();
+            this.lastPartOffsetMs = order.length > 0 ? offsetsMs[order[order.length - 1]] : 0;
+            this.parts = parts;
+            this.offsetsMs = offsetsMs;
+            this.order = order;
+            this.skippedCount = parts.size() - order.length;
+            this.send = send;
+            this.startNanos = System.nanoTime();
+        }
+
+        public int getSent() {
+            return sentCount.get();
+        }
+
+        public int getFailed() {
+            return failedCount.get();
+        }
+
+        public int getSkipped() {
+            return skippedCount;
+        }
+
+        public boolean isFinished() {
+            return status != Status.running;
+        }
+    }
+
+    /**
+     * Schedules {@code parts} for sending. Delays apply to the last {@code partsDelay.size()} parts. A part
+     * with a delay is sent that long after the previous delayed part (the delays add up from the first send);
+     * a part without or with a 0 delay is sent right away, so {@code [5000, 0]} sends parts 1, 3, then 2.
+     *
+     * @param description Shown when the plan is queried, e.g. the connection and addresses.
+     * @param send Sends one part and completes when it was sent; an exception or a failed stage fails that part
+     *             but not the plan.
+     * @return The plan, already running.
+     */
+    public <T> Plan<T> submit(String description, List<T> parts, List<Long> partsDelay,
+                              Function<T, ? extends CompletionStage<?>> send) {
+        int totalParts = parts.size();
+        int delaySize = partsDelay != null ? partsDelay.size() : 0;
+        long[] offsetsMs = new long[totalParts];
+        List<Integer> order = new ArrayList<>(totalParts);
+        long offset = 0;
+        for (int i = 0; i < totalParts; i++) {
+            long delay = i < totalParts - delaySize ? 0L : partsDelay.get(i - (totalParts - delaySize));
+            if (delay == SKIP_PART_DELAY) {
+                log.debug("Part {} will not be sent, delay is {}", i + 1, SKIP_PART_DELAY);
+                continue;
+            }
+            offset += delay;
+            offsetsMs[i] = delay == 0 ? 0 : offset;
+            order.add(i);
+        }
+        // Stable: parts due at the same offset keep their order
+        order.sort(Comparator.comparingLong(i -> offsetsMs[i]));
+
+        Plan<T> plan = new Plan<>("parts-" + planIds.incrementAndGet(), description,
+                new ArrayList<>(parts), offsetsMs, order.stream().mapToInt(Integer::intValue).toArray(), send);
+        plans.put(plan.id, plan);
+        if (plan.order.length == 0) {
+            finish(plan, Status.done);
+        } else {
+            scheduleNext(plan, 0);
+        }
+        return plan;
+    }
+
+    public Plan<?> getPlan(String id) {
+        return plans.get(id);
+    }
+
+    public Collection<Plan<?>> getPlans() {
+        return plans.values();
+    }
+
+    /**
+     * Stops all running plans; parts not yet sent are dropped.
+     */
+    public void cancelAll() {
+        for (Plan<?> plan : plans.values()) {
+            if (!plan.isFinished()) {
+                Future<?> scheduled = plan.scheduled;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                }
+                finish(plan, Status.cancelled);
+            }
+        }
+    }
+
+    /**
+     * Schedules the part at {@code position} of the plan's send order at its offset from the first send.
+     */
+    private <T> void scheduleNext(Plan<T> plan, int position) {
+        if (plan.isFinished() || position >= plan.order.length) {
+            return;
+        }
+        plan.nextPart = plan.order[position] + 1;
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - plan.startNanos);
+        long remainingMs = plan.offsetsMs[plan.order[position]] - elapsedMs;
+        if (remainingMs <= 0) {
+            plan.scheduled = sender.submit(() -> sendPart(plan, position));
+        } else {
+            plan.scheduled = timer.schedule(() -> {
+                plan.scheduled = sender.submit(() -> sendPart(plan, position));
+            }, remainingMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private <T> void sendPart(Plan<T> plan, int position) {
+        if (plan.isFinished()) {
+            return;
+        }
+        int index = plan.order[position];
+        try {
+            // The response only settles the part; the next part keeps its own offset
+            plan.send.apply(plan.parts.get(index)).whenComplete((result, error) -> partSent(plan, index, error));
+        } catch (Exception e) {
+            partSent(plan, index, e);
+        }
+        scheduleNext(plan, position + 1);
+    }
+
+    private <T> void partSent(Plan<T> plan, int index, Throwable error) {
+        if (error == null) {
+            plan.sentCount.incrementAndGet();
+            if (plan.offsetsMs[index] > 0) {
+                log.info("Message part delay: part {} of {} sent with offset of {} ms", index + 1, plan.id, plan.offsetsMs[index]);
+            }
+        } else {
+            plan.failedCount.incrementAndGet();
+            log.error("Failed to send message part: {} of {}", index + 1, plan.id, error);
+        }
+        if (plan.getSent() + plan.getFailed() == plan.order.length) {
+            finish(plan, Status.done);
+        }
+    }
+
+    private void finish(Plan<?> plan, Status status) {
+        synchronized (plan) {
+            if (plan.isFinished()) {
+                return;
+            }
+            plan.status = status;
+        }
+        log.info("Message part delay finish: {} {} - sent {}, failed {}, skipped {} of {} parts, last part offset {} ms",
+                plan.id, status, plan.getSent(), plan.getFailed(), plan.getSkipped(), plan.totalParts, plan.lastPartOffsetMs);
+        finished.add(plan.id);
+        while (finished.size() > RETAINED_PLANS) {
+            String oldest = finished.poll();
+            if (oldest != null) {
+                plans.remove(oldest);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.telemessage.simulators.smpp;
+
+import com.telemessage.simulators.common.conf.SimExecutors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Per-connection token bucket that shapes outgoing traffic to {@code tps} messages per second.
+ *
+ * <p>Up to {@code burst} tokens accumulate while the connection is idle; each send takes one. A send that
+ * finds the bucket empty reserves the next token and is released when it becomes available, so the rate
+ * stays exact under load. Waiting sends are parked on a shared timer instead of on worker threads - a
+ * worker is taken only when the send is due. An optional jitter adds a random 0..{@code jitterMs} delay per
+ * send on top of the shaping, to emulate uneven providers.</p>
+ *
+ * <p>Sends may be reserved at most {@code sim.smpp.rateShaper.maxDelayMs} (default 60000) ahead; a send beyond
+ * that is rejected at once instead of piling up on the timer. Waiting sends are dropped by {@link #cancelPending()}
+ * when the connection goes away.</p>
+ *
+ * <p>A rate of 0 or less disables shaping: sends are dispatched at once.</p>
+ */
+@Slf4j
+public class RateShaper {
+
+    private static final ScheduledExecutorService TIMER = SimExecutors.scheduler();
+    private static final long MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("sim.smpp.rateShaper.maxDelayMs", 60000));
+
+    @Getter
+    private final int tps;
+    @Getter
+    private final int burst;
+    @Getter
+    private final int jitterMs;
+    private final double intervalNanos;
+
+    // Guarded by this
+    private double storedTokens;
+    private long nextFreeNanos;
+
+    private final Set<Pending> pending = ConcurrentHashMap.newKeySet();
+
+    public RateShaper(int tps, int burst, int jitterMs) {
+        this.tps = tps;
+        this.burst = Math.max(1, burst);
+        this.jitterMs = Math.max(0, jitterMs);
+        this.intervalNanos = tps > 0 ? TimeUnit.SECONDS.toNanos(1) / (double) tps : 0;
+        this.storedTokens = this.burst;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    public boolean isShaping() {
+        return tps > 0 || jitterMs > 0;
+    }
+
+    /**
+     * Runs {@code task} on {@code executor} once a token is available (plus jitter). Never blocks the caller.
+     *
+     * @param onRejected Called instead of the task when it cannot run: the backlog is longer than the maximum delay,
+     *                   the executor refused it or it was cancelled. May be called on the caller or the timer thread.
+     */
+    public void execute(Executor executor, Runnable task, Consumer<RejectedExecutionException> onRejected) {
+        long delayNanos = reserve(MAX_DELAY_NANOS);
+        if (delayNanos < 0) {
+            onRejected.accept(new RejectedExecutionException(
+                    "Rate shaper backlog exceeds " + TimeUnit.NANOSECONDS.toMillis(MAX_DELAY_NANOS) + " ms at " + this));
+            return;
+        }
+        if (jitterMs > 0) {
+            delayNanos += TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextInt(jitterMs + 1));
+        }
+        if (delayNanos <= 0) {
+            dispatch(executor, task, onRejected);
+        } else {
+            Pending send = new Pending(executor, task, onRejected);
+            pending.add(send);
+            send.future = TIMER.schedule(send, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Drops the sends still waiting for a token; each one's {@code onRejected} is called.
+     *
+     * @return The number of sends dropped.
+     */
+    public int cancelPending() {
+        int cancelled = 0;
+        for (Pending send : pending) {
+            if (send.cancel()) {
+                cancelled++;
+            }
+        }
+        if (cancelled > 0) {
+            log.info("Rate shaper ({}): {} waiting sends cancelled", this, cancelled);
+        }
+        return cancelled;
+    }
+
+    private static void dispatch(Executor executor, Runnable task, Consumer<RejectedExecutionException> onRejected) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            onRejected.accept(e);
+        }
+    }
+
+    /**
+     * Takes one token unless it becomes available only after {@code maxDelayNanos}.
+     * @return nanos until the token is available, 0 if it is available now, -1 if none was taken.
+     */
+    synchronized long reserve(long maxDelayNanos) {
+        if (tps <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        if (now > nextFreeNanos) {
+            // Refill for the idle time, capped at the burst size
+            storedTokens = Math.min(burst, storedTokens + (now - nextFreeNanos) / intervalNanos);
+            nextFreeNanos = now;
+        }
+        // Without a stored token, the send waits for the next one to be generated
+        double fromStore = Math.min(1, storedTokens);
+        long next = nextFreeNanos + (long) ((1 - fromStore) * intervalNanos);
+        if (next - now > maxDelayNanos) {
+            return -1;
+        }
+        storedTokens -= fromStore;
+        nextFreeNanos = next;
+        return Math.max(0, nextFreeNanos - now);
+    }
+
+    @Override
+    public String toString() {
+        return tps > 0 ? tps + " tps, burst " + burst + ", jitter " + jitterMs + " ms" : "unlimited";
+    }
+
+    /**
+     * A send parked on the timer; whichever of running and cancelling removes it from {@link #pending} first wins.
+     */
+    private final class Pending implements Runnable {
+        private final Executor executor;
+        private final Runnable task;
+        private final Consumer<RejectedExecutionException> onRejected;
+        private volatile ScheduledFuture<?> future;
+
+        private Pending(Executor executor, Runnable task, Consumer<RejectedExecutionException> onRejected) {
+            this.executor = executor;
+            this.task = task;
+            this.onRejected = onRejected;
+        }
+
+        @Override
+        public void run() {
+            if (pending.remove(this)) {
+                dispatch(executor, task, onRejected);
+            }
+        }
+
+        private boolean cancel() {
+            if (!pending.remove(this)) {
+                return false;
+            }
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            onRejected.accept(new RejectedExecutionException("Send cancelled: the connection stopped"));
+            return true;
+        }
+    }
+}
@@ -6,13 +6,17 @@ import com.logica.smpp.Session;
 import com.logica.smpp.pdu.PDU;
 import com.logica.smpp.pdu.Request;
 import com.logica.smpp.pdu.Response;
+import com.telemessage.simulators.stats.SimMetrics;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Important!!!!! State changes must be always be inside synchronized block on lockObject
@@ -56,6 +60,9 @@ abstract public class SMPPConnManager implements ServerPDUEventListener {
     @Getter
     protected State state = State.initializing;
     protected boolean requestingStop = false;
+    @Getter
+    protected int window = 0;
+    private volatile Semaphore windowSlots;
 
     public void setProviderId(Integer providerId) { this.providerId = providerId != null ? String.valueOf(providerId) : null; }
 
@@ -68,6 +75,73 @@ abstract public class SMPPConnManager implements ServerPDUEventListener {
         name = smpp.getName();
         host = smpp.getHost();
         port = smpp.getPort();
+        setWindow(smpp.getWindow());
+        requests.setMetrics(SimMetrics.connection(SimMetrics.LOGICA, smpp));
+    }
+
+    /**
+     * Sets the number of submits that may await their responses at once. 0 disables windowed sending.
+     */
+    public void setWindow(int window) {
+        if (window != this.window) {
+            this.window = window;
+            // Sends in flight release their slot into the semaphore they acquired it from
+            this.windowSlots = window > 0 ? new Semaphore(window) : null;
+        }
+    }
+
+    public boolean isWindowed() {
+        return windowSlots != null;
+    }
+
+    /**
+     * In-flight requests and response time histogram of this connection.
+     */
+    public SMPPRequestManager.Stats getRequestStats() {
+        return requests.getStats();
+    }
+
+    /**
+     * Windowed send: transmits the PDU and returns without waiting for its response. At most {@link #window}
+     * PDUs are outstanding; when the window is full the caller waits for a free slot, up to the response timeout.
+     * The future is completed from {@link #handleEvent} by the response with the same sequence number, or fails
+     * with a TimeoutException.
+     */
+    public CompletableFuture<Response> sendAsync(PDU pdu) throws IOException {
+        Semaphore slots = windowSlots;
+        if (slots != null) {
+            try {
+                if (!slots.tryAcquire(requests.timeout, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Send window of " + window + " is full for " + this);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+        CompletableFuture<Response> response;
+        try {
+            response = transmit(pdu);
+        } catch (IOException | RuntimeException e) {
+            if (slots != null) {
+                slots.release();
+            }
+            throw e;
+        }
+        if (slots != null) {
+            response.whenComplete((r, e) -> slots.release());
+        }
+        return response;
+    }
+
+    /**
+     * Fails the requests still awaiting a response; called once the connection is closed.
+     */
+    protected void cancelPendingRequests() {
+        int cancelled = requests.cancelAll();
+        if (cancelled > 0) {
+            log.info("Cancelled {} requests awaiting a response on closed connection {}", cancelled, this);
+        }
     }
 
     protected void updateBind(String name) {
@@ -127,6 +201,10 @@ abstract public class SMPPConnManager implements ServerPDUEventListener {
     public abstract void respond(Response response) throws IOException;
     public abstract void shutDown();
     public abstract Response send(PDU pdu) throws IOException;
+    /**
+     * Sends the PDU with a fresh sequence number after registering its response with {@link #requests}.
+     */
+    protected abstract CompletableFuture<Response> transmit(PDU pdu) throws IOException;
     public abstract boolean sendUnbind();
 
     public String getLogName() {
@@ -3,12 +3,16 @@ package com.telemessage.simulators.smpp;
 import com.logica.smpp.Data;
 import com.logica.smpp.pdu.*;
 import com.logica.smpp.util.ByteBuffer;
+import com.telemessage.qatools.error.ErrorTracker;
 import com.telemessage.simulators.TM_QA_SMPP_SIMULATOR_Application;
 import com.telemessage.simulators.common.Utils;
 import com.telemessage.simulators.common.conf.EnvConfiguration;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import com.telemessage.simulators.controllers.message.MessageUtils;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.controllers.message.MessagesObject;
+import com.telemessage.simulators.rules.Rule;
+import com.telemessage.simulators.stats.SimMetrics;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +28,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.*;
 
@@ -118,9 +123,27 @@ public abstract class SMPPConnection implements DispatcherMonitorListener, SMPPC
     @Setter
     @Getter
     @Element (required = false) protected int threads = 10;
+    // Outstanding submits allowed before waiting for responses; 0 keeps the stop-and-wait send
+    @Setter
+    @Getter
+    @Element (required = false) protected int window = 0;
+    // Outgoing messages per second; 0 sends as fast as the peer and the window allow
+    @Setter
+    @Getter
+    @Element (required = false) protected int tps = 0;
+    // Messages allowed back to back after an idle period before the tps rate applies
+    @Setter
+    @Getter
+    @Element (required = false) protected int burst = 1;
+    // Random extra delay per message, 0..jitter ms
+    @Setter
+    @Getter
+    @Element (required = false) protected int jitter = 0;
     protected SMPPConnManager connManager;
     protected SMPPConnectionMonitor monitor;
+    private SimMetrics.Connection metrics;
     protected ExecutorService service = null;
+    protected RateShaper rateShaper = null;
 
     protected MessagesCache messagesCache;
 
@@ -140,6 +163,16 @@ public abstract class SMPPConnection implements DispatcherMonitorListener, SMPPC
 
     public boolean isReference() { return false; }
 
+    /**
+     * @return The meters of this connection, tagged with its id, bind type and bind option.
+     */
+    protected SimMetrics.Connection metrics() {
+        if (metrics == null) {
+            metrics = SimMetrics.connection(SimMetrics.LOGICA, this);
+        }
+        return metrics;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -203,6 +236,7 @@ public abstract class SMPPConnection implements DispatcherMonitorListener, SMPPC
 
     public void disconnect() {
         log.info("Disconnect: " + this.toString());
+        cancelPendingSends();
         boolean sendUnbind = false;
         if (isBound())
             sendUnbind = true;
@@ -214,6 +248,7 @@ public abstract class SMPPConnection implements DispatcherMonitorListener, SMPPC
     @Async
     public void disconnectAsync() {
         log.info("Disconnect: " + this.toString());
+        cancelPendingSends();
         boolean sendUnbind = false;
         if (isBound())
             sendUnbind = true;
@@ -224,6 +259,7 @@ public abstract class SMPPConnection implements DispatcherMonitorListener, SMPPC
 
     public void shutdown() {
         log.info("Close: " + this.toString());
+        cancelPendingSends();
         if (monitor != null)
             monitor.shutDownMonitor();
         connManager.shutDown();
@@ -232,6 +268,7 @@ public abstract class SMPPConnection implements DispatcherMonitorListener, SMPPC
     @Async
     public CompletableFuture<String> shutdownAsync() {
         log.info("@Async lose: " + this.toString());
+        cancelPendingSends();
         if (monitor != null)
             monitor.shutDownMonitor();
         connManager.shutDown();
@@ -293,10 +330,41 @@ public abstract class SMPPConnection implements DispatcherMonitorListener, SMPPC
     public void start() {
         log.info("Starting: {}", this.toString());
         BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(TM_QA_SMPP_SIMULATOR_Application.QUEUE_SIZE);
-        service = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue);
+        // Registered so its queue depth shows in the executor statistics and metrics; a restart replaces it
+        String serviceName = "smpp-" + id + "-" + bindOption;
+        SimExecutors.unregister(serviceName);
+        service = SimExecutors.monitor(serviceName, new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue));
+        cancelPendingSends();
+        rateShaper = new RateShaper(tps, burst, jitter);
         initConnection();
     }
 
+    /**
+     * Drops the sends still waiting in the rate shaper, so they neither pile up on the shared timer nor go out
+     * on a later connection.
+     */
+    protected void cancelPendingSends() {
+        if (rateShaper != null) {
+            rateShaper.cancelPending();
+        }
+    }
+
+    /**
+     * Reports a send the rate shaper or the executor refused; the message was not sent.
+     */
+    protected void sendRejected(ErrorTracker errorTracker, String source, RejectedExecutionException e) {
+        log.error("{}: message not sent: {}", getName(), e.getMessage());
+        errorTracker.captureError(
+            source,
+            e,
+            "send-rejected",
+            Map.of(
+                "operation", "send",
+                "connection", String.valueOf(getId())
+            )
+        );
+    }
+
     public void initConnection() {
         final SMPPConnection me = this;
         new Thread(() -> {
@@ -464,21 +532,37 @@ public abstract class SMPPConnection implements DispatcherMonitorListener, SMPPC
                         && !canBeDisplayedInIsoLatin ? UNICODE_CONCAT_LENGTH : ASCII_CONCAT_LENGTH;
     }
 
+    /**
+     * @return The request's concatenation if it sets one, otherwise this connection's.
+     */
+    protected SMPPRequest.ConcatenationType concatenationFor(SMPPRequest req) {
+        if (req != null && req.getConcatenation() != null)
+            return req.getConcatenation();
+        return this.concatenation == null ? SMPPRequest.ConcatenationType.NA : this.concatenation;
+    }
+
+    /**
+     * @return false if the message's destination rule rejected it or drops its response or receipt.
+     */
+    protected static boolean receiptWanted(Rule rule, Response response) {
+        return rule == null
+                || (!rule.dropsReceipt() && !rule.dropsResponse() && response != null && response.getCommandStatus() == Data.ESME_ROK);
+    }
+
     protected List<String> splitMessages(SMPPRequest req) throws UnsupportedEncodingException {
-        if (this.concatenation == null)
-            this.concatenation = SMPPRequest.ConcatenationType.NA;
+        SMPPRequest.ConcatenationType concatenation = concatenationFor(req);
         log.debug("start split message");
         String message = req.getText();
         boolean isConvertToUnicode = isConvertToUnicode(message, this.encoding);
         log.debug("isConvertToUnicode with encoding {} {}", this.encoding,isConvertToUnicode);
-        if (this.concatenation == SMPPRequest.ConcatenationType.PAYLOAD || this.concatenation == SMPPRequest.ConcatenationType.PAYLOAD_MESSAGE
+        if (concatenation == SMPPRequest.ConcatenationType.PAYLOAD || concatenation == SMPPRequest.ConcatenationType.PAYLOAD_MESSAGE
                 ||message.length() <= (isConvertToUnicode ? MAX_UNICODE_CONCAT_LENGTH : MAX_ASCII_CONCAT_LENGTH)) {
             log.debug("PAYLOAD/PAYLOAD_MESSAGE {}" ,message);
             return Collections.singletonList(message);
         }
         List<String> messages = null;
         int length = isConvertToUnicode ? UNICODE_CONCAT_LENGTH : ASCII_CONCAT_LENGTH;
-        switch (this.concatenation) {
+        switch (concatenation) {
             case UDHI_PAYLOAD:
             case UDHI:
             case SAR:
@@ -65,6 +65,9 @@ public class SMPPRequest {
     protected List<Long> partsDelay = new ArrayList<>();
     @Setter
     protected ShortMessage.Message_state_enum messageState;
+    // Overrides the connection's concatenation for this request; null uses the connection's
+    @Setter
+    protected ConcatenationType concatenation;
 
     public SMPPRequest setCallback(String callback) { this.callback = callback;  return this; }
 
@@ -97,6 +100,8 @@ public class SMPPRequest {
             json.put("params", params);
         if (!partsDelay.isEmpty())
             json.put("partsDelay", partsDelay);
+        if (concatenation != null)
+            json.put("concatenation", concatenation.name());
         return json.toJSONString();
     }
 }
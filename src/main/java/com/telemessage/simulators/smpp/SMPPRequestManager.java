@@ -1,93 +1,196 @@
 package com.telemessage.simulators.smpp;
 
 import com.logica.smpp.Data;
+import com.logica.smpp.pdu.Response;
+import lombok.AllArgsConstructor;
+import com.telemessage.simulators.stats.SimMetrics;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Correlates outgoing requests with their responses by sequence number.
+ *
+ * <p>Each awaited request holds one future, created by {@link #expect} before the request is sent and
+ * completed by {@link #complete} when the response arrives. The entry is removed as soon as the future
+ * completes, fails with a timeout or is cancelled, so nothing is left behind per sequence number. If a
+ * sequence number is reused after wrap-around while an older request with the same number is still
+ * pending, the older request is failed and replaced.</p>
+ */
 @Slf4j
 public class SMPPRequestManager {
 
     // Timeout for waiting for data
     public int timeout = (int)(Data.RECEIVER_TIMEOUT / 3);
 
-    // Map to hold awaiting responses, thread-safe
-    private final Map<Integer, Object> awaitingResponse = new ConcurrentHashMap<>();
+    // Upper bounds (ms) of the response time histogram buckets; the last bucket is unbounded
+    private static final long[] RESPONSE_TIME_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
 
-    // Map to hold locks for synchronization, thread-safe
-    private final Map<Integer, Object> locks = new ConcurrentHashMap<>();
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder[] responseTimes = new LongAdder[RESPONSE_TIME_BOUNDS_MS.length + 1];
+
+    // Meters of the connection the requests are sent on, null until it binds
+    @Setter
+    private volatile SimMetrics.Connection metrics;
+
+    public SMPPRequestManager() {
+        for (int i = 0; i < responseTimes.length; i++) {
+            responseTimes[i] = new LongAdder();
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Pending {
+        private final CompletableFuture<Response> future;
+        private final long sentAt;
+    }
 
     /**
-     * Waits for a response associated with a given ID.
-     * @param id The ID to wait for.
-     * @throws InterruptedException If the thread is interrupted while waiting.
+     * Snapshot of in-flight requests and response times.
      */
-    public void waitForResponse(final Integer id) throws InterruptedException {
-        Object lock = locks.computeIfAbsent(id, k -> new Object());
-        synchronized (lock) {
-            Integer result = get(Integer.class, id);
-            if (result != null && result.equals(id)) { // no response yet
-                lock.wait(timeout);
-            }
-        }
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private final int inFlight;
+        private final long completed;
+        private final long timedOut;
+        private final Map<String, Long> responseTimeHistogram; // bucket upper bound ("<=10ms", ">5000ms") -> count
     }
 
     /**
-     * Removes the response associated with the given ID from the map.
-     * @param <T> The type of the response.
-     * @param clazz The class of the expected response type.
-     * @param id The ID of the response to remove.
-     * @return The removed response cast to type T, or null if not found or not of the correct type.
+     * Registers a wait for the response to the given ID. Must be called before the request is sent.
+     * The future fails with a TimeoutException after {@link #timeout} ms; all waits share the JDK's single delay timer.
+     * @param id The sequence number of the request.
+     * @return A future completed by {@link #complete} when the response arrives.
      */
-    public <T> T remove(Class<T> clazz, Integer id) {
-        if (id != null) {
-            Object responseObj = awaitingResponse.remove(id);
-            if (responseObj != null && clazz.isInstance(responseObj)) {
-                return clazz.cast(responseObj);
-            }
+    public CompletableFuture<Response> expect(final Integer id) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Pending previous = pending.put(id, new Pending(future, System.nanoTime()));
+        if (previous != null) {
+            log.warn("Sequence number {} reused while a request with it is still pending", id);
+            previous.future.completeExceptionally(new IllegalStateException("Sequence number " + id + " reused"));
         }
-        return null;
+        future.orTimeout(timeout, TimeUnit.MILLISECONDS).whenComplete((response, error) -> {
+            Pending current = pending.get(id);
+            if (current != null && current.future == future) {
+                pending.remove(id, current);
+            }
+            if (error instanceof TimeoutException) {
+                timedOut.increment();
+                SimMetrics.Connection connection = metrics;
+                if (connection != null) {
+                    connection.timeout();
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @param id The sequence number of a response.
+     * @return true if a request with this ID awaits its response.
+     */
+    public boolean isAwaiting(final Integer id) {
+        return id != null && pending.containsKey(id);
     }
 
     /**
-     * Adds a response to the map with the given ID.
-     * @param id The ID to associate with the data.
-     * @param data The data to store.
+     * Completes the wait for the given ID with its response.
+     * @param id The sequence number of the response.
+     * @param response The response.
+     * @return false if no request with this ID was awaited (e.g. it already timed out).
      */
-    public void put(Integer id, Object data) {
-        awaitingResponse.put(id, data);
+    public boolean complete(final Integer id, final Response response) {
+        Pending awaited = id != null ? pending.remove(id) : null;
+        if (awaited == null) {
+            return false;
+        }
+        long nanos = System.nanoTime() - awaited.sentAt;
+        recordResponseTime(nanos);
+        SimMetrics.Connection connection = metrics;
+        if (connection != null) {
+            connection.response(response.getCommandId(), response.getCommandStatus(), nanos);
+        }
+        completed.increment();
+        return awaited.future.complete(response);
     }
 
     /**
-     * Puts a response into the map and notifies any threads waiting on this ID.
-     * @param id The ID to associate with the data.
-     * @param data The data to store.
+     * Drops a wait registered with {@link #expect}, e.g. when sending the request failed.
+     * @param id The sequence number of the request.
      */
-    public void putAndNotify(Integer id, Object data) {
-        put(id, data);
-        Object lock = locks.computeIfAbsent(id, k -> new Object());
-        synchronized (lock) {
-            lock.notify();
+    public void cancel(final Integer id) {
+        Pending awaited = pending.remove(id);
+        if (awaited != null) {
+            awaited.future.cancel(false);
         }
     }
 
     /**
-     * Retrieves the response associated with the given ID.
-     * @param <T> The type of the response.
-     * @param clazz The class of the expected response type.
-     * @param id The ID of the response to get.
-     * @return The response cast to type T, or null if not found or not of the correct type.
+     * Drops every registered wait, e.g. when the connection closes and no response can arrive any more.
+     * @return The number of requests that were awaiting a response.
      */
-    public <T> T get(Class<T> clazz, Integer id) {
-        if (id != null) {
-            Object responseObj = awaitingResponse.get(id);
-            if (responseObj != null && clazz.isInstance(responseObj)) {
-                return clazz.cast(responseObj);
+    public int cancelAll() {
+        int cancelled = 0;
+        for (Integer id : pending.keySet()) {
+            Pending awaited = pending.remove(id);
+            if (awaited != null) {
+                awaited.future.cancel(false);
+                cancelled++;
             }
         }
+        return cancelled;
+    }
+
+    /**
+     * Blocks until the awaited response arrives.
+     * @param response A future obtained from {@link #expect}.
+     * @return The response, or null on timeout, cancellation or interruption.
+     */
+    public Response await(final CompletableFuture<Response> response) {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            log.debug("No response: {}", e.getMessage());
+        }
         return null;
     }
-}
\ No newline at end of file
+
+    public int getInFlight() {
+        return pending.size();
+    }
+
+    public Stats getStats() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < RESPONSE_TIME_BOUNDS_MS.length; i++) {
+            histogram.put("<=" + RESPONSE_TIME_BOUNDS_MS[i] + "ms", responseTimes[i].sum());
+        }
+        histogram.put(">" + RESPONSE_TIME_BOUNDS_MS[RESPONSE_TIME_BOUNDS_MS.length - 1] + "ms",
+                responseTimes[RESPONSE_TIME_BOUNDS_MS.length].sum());
+        return new Stats(pending.size(), completed.sum(), timedOut.sum(), histogram);
+    }
+
+    private void recordResponseTime(long nanos) {
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < RESPONSE_TIME_BOUNDS_MS.length && ms > RESPONSE_TIME_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        responseTimes[bucket].increment();
+    }
+}
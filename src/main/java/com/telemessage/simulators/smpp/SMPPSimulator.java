@@ -1,6 +1,7 @@
 package com.telemessage.simulators.smpp;
 
 
+import com.logica.smpp.Data;
 import com.logica.smpp.pdu.*;
 import com.telemessage.simulators.common.conf.EnvConfiguration;
 import com.telemessage.simulators.common.services.filemanager.SimFileManager;
@@ -21,6 +22,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.function.Function;
 
 @Slf4j
 public class SMPPSimulator extends Thread implements SMPPSimulatorInterface {
@@ -32,10 +34,17 @@ public class SMPPSimulator extends Thread implements SMPPSimulatorInterface {
     @Getter
     SMPPConnections conns;
 
+    @Getter
+    private final PartsDelayScheduler partsDelayScheduler = new PartsDelayScheduler();
+
+    @Getter
+    private final DeliveryReceiptEngine deliveryReceiptEngine;
+
     public SMPPSimulator(EnvConfiguration conf, MessagesCache messagesCache) {
         this.conf = conf;
         state = State.starting;
         this.messagesCacheService = messagesCache;
+        this.deliveryReceiptEngine = new DeliveryReceiptEngine((id, request) -> send(id, request, true), messagesCache);
     }
 
     @PostConstruct
@@ -93,6 +102,8 @@ public class SMPPSimulator extends Thread implements SMPPSimulatorInterface {
     public void shutdown() {
         state = State.shutdown;
         log.info("Shutting down all SMPP connections");
+        partsDelayScheduler.cancelAll();
+        deliveryReceiptEngine.clear();
         disconnectAll();
         connectionMap.clear();
     }
@@ -266,10 +277,40 @@ public class SMPPSimulator extends Thread implements SMPPSimulatorInterface {
         }
     }
 
+    /**
+     * The transmitter and transceiver only queue the parts, so unlike {@link #send} this waits on the
+     * submit_sm_resp of every part. Parts sent with delays are not waited for.
+     */
+    @Override
+    public CompletableFuture<Boolean> sendAndAwaitResponses(int id, SMPPRequest req) {
+        List<CompletableFuture<Response>> parts;
+        try {
+            parts = sendParts(id, req, true);
+        } catch (UnsupportedEncodingException | IntegerOutOfRangeException |
+                 WrongLengthOfStringException | WrongDateFormatException | RuntimeException e) {
+            log.error("Error sending SMPP message", e);
+            return CompletableFuture.failedFuture(e);
+        }
+        if (parts == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                .thenApply(v -> parts.stream().allMatch(part -> part.join().getCommandStatus() == Data.ESME_ROK));
+    }
+
     /**
      * Internal send implementation with Logica-specific checked exceptions.
      */
     private boolean sendInternal(int id, SMPPRequest req, boolean sendAllPartsOfConcatenateMessage) throws UnsupportedEncodingException, IntegerOutOfRangeException, WrongLengthOfStringException, WrongDateFormatException {
+        return sendParts(id, req, sendAllPartsOfConcatenateMessage) != null;
+    }
+
+    /**
+     * @return The response futures of the parts sent without delay, null if the connection has no
+     *         transmitter or transceiver.
+     */
+    private List<CompletableFuture<Response>> sendParts(int id, SMPPRequest req, boolean sendAllPartsOfConcatenateMessage) throws UnsupportedEncodingException, IntegerOutOfRangeException, WrongLengthOfStringException, WrongDateFormatException {
+        List<CompletableFuture<Response>> responses = new ArrayList<>();
         SMPPTransmitter tr = null;
         SMPPTransceiver transceiver = null;
         log.debug("start send message");
@@ -292,109 +333,38 @@ public class SMPPSimulator extends Thread implements SMPPSimulatorInterface {
             log.debug("message prepare success");
             if (req.getPartsDelay() == null || req.getPartsDelay().isEmpty()) {
                 for (SendMessageSM m : msgs) {
-                    tr.send(m);
+                    responses.add(tr.send(m));
                     log.debug("message send success");
                 }
             } else {
-                SMPPTransmitter finalTr = tr;
-                sendMessagesWithDelays(finalTr, msgs, req.getPartsDelay());
+                sendMessagesWithDelays(id, req, msgs, tr::send);
             }
-            return true;
+            return responses;
         } else if (transceiver != null) {
             List<SendMessageSM> msgs = transceiver.prepareMessage(req, sendAllPartsOfConcatenateMessage);
             log.debug("message prepare success");
             if (req.getPartsDelay() == null || req.getPartsDelay().isEmpty()) {
                 for (SendMessageSM m : msgs) {
-                    transceiver.send(m);
+                    responses.add(transceiver.send(m));
                     log.debug("message send success");
                 }
             } else {
-                SMPPTransceiver finalTr = transceiver;
-                sendMessagesWithDelays(finalTr, msgs, req.getPartsDelay());
-            }
-            return true;
-        }
-        return false;
-    }
-
-    private void sendMessagesWithDelays(SMPPTransmitter tr, List<SendMessageSM> msgs, List<Long> partsDelay) {
-        try (ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor()) {
-
-            int totalParts = msgs.size();
-            int delaySize = partsDelay.size();
-            List<Long> actualPartsDelay = new ArrayList<>(totalParts);
-
-            for (int i = 0; i < totalParts; i++) {
-                if (i < totalParts - delaySize) {
-                    actualPartsDelay.add(0L);
-                } else {
-                    actualPartsDelay.add(partsDelay.get(i - (totalParts - delaySize)));
-                }
+                sendMessagesWithDelays(id, req, msgs, transceiver::send);
             }
-
-            int msgPartDelay = 0;
-            for (int i = 0; i < totalParts; i++) {
-                long delay = actualPartsDelay.get(i);
-                msgPartDelay += delay;
-
-                int finalIndex = i;
-                if (delay == 0) {
-                    tr.send(msgs.get(i));
-                } else {
-                    scheduler.schedule(() -> {
-                        try {
-                            tr.send(msgs.get(finalIndex));
-                            log.info("Message part delay: part {} sent successfully with delay of {} ms", finalIndex + 1, delay);
-                        } catch (Exception e) {
-                            log.error("Failed to send message part: {}", finalIndex + 1, e);
-                        }
-                    }, msgPartDelay, TimeUnit.MILLISECONDS);
-                }
-            }
-            scheduler.shutdown();
-            log.info("Message part delay finish: All message parts sent.  last part delay was {}, total parts {}", msgPartDelay, totalParts);
+            return responses;
         }
+        return null;
     }
 
-    private void sendMessagesWithDelays(SMPPTransceiver tr, List<SendMessageSM> msgs, List<Long> partsDelay) {
-        try (ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor()) {
-
-            int totalParts = msgs.size();
-            int delaySize = partsDelay.size();
-            List<Long> actualPartsDelay = new ArrayList<>(totalParts);
-
-            for (int i = 0; i < totalParts; i++) {
-                if (i < totalParts - delaySize) {
-                    actualPartsDelay.add(0L);
-                } else {
-                    actualPartsDelay.add(partsDelay.get(i - (totalParts - delaySize)));
-                }
-            }
-
-            int msgPartDelay = 0;
-            for (int i = 0; i < totalParts; i++) {
-                long delay = actualPartsDelay.get(i);
-                msgPartDelay += delay;
-
-                int finalIndex = i;
-                if (delay == 0) {
-                    tr.send(msgs.get(i));
-                } else if (delay==999999999) {
-                    log.debug("part will not be sent, delay is 999999999");
-                } else {
-                    scheduler.schedule(() -> {
-                        try {
-                            tr.send(msgs.get(finalIndex));
-                            log.info("Message part delay: part {} sent successfully with delay of {} ms", finalIndex + 1, delay);
-                        } catch (Exception e) {
-                            log.error("Failed to send message part: {}", finalIndex + 1, e);
-                        }
-                    }, msgPartDelay, TimeUnit.MILLISECONDS);
-                }
-            }
-            scheduler.shutdown();
-            log.info("Message part delay finish: All message parts sent.  last part delay was {}, total parts {}", msgPartDelay, totalParts);
-        }
+    /**
+     * Hands the parts to the shared {@link PartsDelayScheduler} and returns without waiting for them.
+     */
+    private void sendMessagesWithDelays(int id, SMPPRequest req, List<SendMessageSM> msgs,
+                                        Function<SendMessageSM, CompletableFuture<Response>> send) {
+        PartsDelayScheduler.Plan<SendMessageSM> plan = partsDelayScheduler.submit(
+                "connection " + id + ": " + req.getSrc() + " -> " + req.getDst(), msgs, req.getPartsDelay(), send);
+        log.info("Message part delay: plan {} scheduled, {} parts, last part offset {} ms",
+                plan.getId(), plan.getTotalParts(), plan.getLastPartOffsetMs());
     }
 
     public Map<Integer, SMPPConnectionConf> getConnections() {
@@ -4,6 +4,8 @@ import com.telemessage.simulators.Simulator;
 import com.telemessage.simulators.smpp.conf.SMPPConnectionConf;
 import com.telemessage.simulators.smpp.conf.SMPPConnections;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * SMPP-specific simulator interface.
  *
@@ -36,6 +38,24 @@ public interface SMPPSimulatorInterface extends Simulator {
      */
     boolean send(int connectionId, SMPPRequest request, boolean sendAllParts);
 
+    /**
+     * Send all parts of an SMPP message and complete once the SMSC answered every part.
+     *
+     * <p>The default suits implementations whose {@link #send} already waits for the responses.</p>
+     *
+     * @param connectionId The ID of the connection to send through
+     * @param request The SMPP request containing message details
+     * @return Completed with true if every part was accepted, false if the connection is missing or a part was
+     *         refused; completed exceptionally if sending failed or a response never came
+     */
+    default CompletableFuture<Boolean> sendAndAwaitResponses(int connectionId, SMPPRequest request) {
+        try {
+            return CompletableFuture.completedFuture(send(connectionId, request, true));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     /**
      * Get a specific SMPP connection configuration by ID.
      *
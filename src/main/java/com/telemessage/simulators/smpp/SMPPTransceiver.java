@@ -6,15 +6,21 @@ import com.logica.smpp.pdu.tlv.TLVInt;
 import com.logica.smpp.pdu.tlv.TLVString;
 import com.logica.smpp.pdu.tlv.WrongLengthException;
 import com.logica.smpp.util.ByteBuffer;
-import com.telemessage.simulators.EnvUtils;
+import com.telemessage.simulators.common.EncodingDetector;
+import com.telemessage.simulators.common.MessageIdGenerator;
 import com.telemessage.simulators.common.Utils;
 import com.telemessage.simulators.common.conf.EnvConfiguration;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import com.telemessage.simulators.controllers.message.MessageUtils;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.controllers.message.MessagesObject;
+import com.telemessage.simulators.rules.Rule;
+import com.telemessage.simulators.rules.RulesEngine;
 import com.telemessage.simulators.smpp.concatenation.ConcatMessageContent;
 import com.telemessage.simulators.smpp.concatenation.ConcatenationData;
 import com.telemessage.simulators.smpp.concatenation.ConcatenationType;
+import com.telemessage.simulators.smpp.concatenation.MultipartReassemblyBuffer;
+import com.telemessage.simulators.smpp.conf.SMPPConnectionConf;
 import com.telemessage.qatools.error.ErrorTracker;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
@@ -30,7 +36,7 @@ import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 import static com.telemessage.simulators.smpp.SimUtils.*;
 
@@ -50,15 +56,12 @@ import static com.telemessage.simulators.smpp.SimUtils.*;
 )
 public class SMPPTransceiver extends SMPPConnection {
 
-    // Lock manager for thread-safe concatenated message assembly
-    private static final ConcurrentHashMap<String, Object> multipartLocks = new ConcurrentHashMap<>();
-
-    // Timestamp tracking for incomplete multipart messages (for timeout cleanup)
-    private static final ConcurrentHashMap<String, Long> multipartTimestamps = new ConcurrentHashMap<>();
-
     // Timeout for incomplete multipart messages (5 minutes)
     private static final long MULTIPART_TIMEOUT_MS = 5 * 60 * 1000;
 
+    // Reassembly store for concatenated messages, keyed by (connection, source, dest, reference)
+    private static final MultipartReassemblyBuffer multipartBuffer = new MultipartReassemblyBuffer(MULTIPART_TIMEOUT_MS);
+
     EnvConfiguration conf;
     static SMPPSimulator smppSim;
     private ErrorTracker errorTracker;
@@ -81,6 +84,7 @@ public class SMPPTransceiver extends SMPPConnection {
         Response response = null;
         SendMessageSM sm = null;
         String msgId = null;
+        Rule rule = null;
         boolean isIncomingReceived = false;
 
         switch (commandID) {
@@ -91,7 +95,9 @@ public class SMPPTransceiver extends SMPPConnection {
                     sm = (SendMessageSM) request;
                     byte dataCoding = sm.getDataCoding();
                     String encoding = SimUtils.determineEncoding(dataCoding, sm.getShortMessage());
-                    response = generateReceiveMessageResponse(sm);
+                    rule = RulesEngine.match(RulesEngine.Protocol.smpp, this.getId(),
+                            sm.getSourceAddr().getAddress(), sm.getDestAddr().getAddress());
+                    response = generateReceiveMessageResponse(sm, rule);
                     msgId = ((SendMessageResponse)response).getMessageId();
 
                     // Handle concatenated message detection
@@ -119,171 +125,130 @@ public class SMPPTransceiver extends SMPPConnection {
                         
                         String partKey = concatData.getConcatenatedMessageId() + "_" + concatData.getSegmentIndex();
 
-                        // Use proper lock object instead of synchronized on String literal
-                        Object lock = multipartLocks.computeIfAbsent(
-                            "multipart_" + concatData.getConcatenatedMessageId(),
-                            k -> new Object()
+                        // Extract message content - extraction is a pure function of the PDU
+                        ConcatMessageContent content = SimUtils.extractConcatMessageContent(
+                                (StandardSendMessageSM<?>)sm,
+                                concatData.getConcatenationType(),
+                                encoding,
+                                concatData,me
                         );
+                        log.debug("Extracted message content: {}", content);
+                        if (!content.isSuccess()) {
+                            log.error("Failed to extract message content: {}", content.getError());
+                            errorTracker.captureError(
+                                "SMPPTransceiver.receive",
+                                new RuntimeException(content.getError()),
+                                "extract-concat-message-failed",
+                                Map.of(
+                                    "operation", "extract_concat_content",
+                                    "error", content.getError()
+                                )
+                            );
+                            throw new RuntimeException(content.getError());
+                        }
 
-                        // Track timestamp for incomplete message cleanup
-                        multipartTimestamps.putIfAbsent(
-                                String.valueOf(concatData.getConcatenatedMessageId()),
-                                System.currentTimeMillis()
-                        );
+                        // Cache the message part
+                        MessagesObject partMessage = MessagesObject.builder()
+                                .dir("IN_PART")
+                                .id(partKey)
+                                .text(content.getMessageText())
+                                .from(sm.getSourceAddr().getAddress())
+                                .to(sm.getDestAddr().getAddress())
+                                .sendMessageSM(sm.debugString())
+                                .directResponse(response.debugString())
+                                .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
+                                .providerId(connManager.getProviderId())
+                                .partNumber(concatData.getSegmentIndex())
+                                .totalParts(concatData.getConcatenatedMessageSize())
+                                .referenceNumber(concatData.getConcatenatedMessageId())
+                                .messageEncoding(encoding)
+                                .rawMessageBytes(content.getRawContent())
+                                .build();
 
-                        synchronized (lock) {
-                            // Extract message content using thread-safe method
-                            ConcatMessageContent content = SimUtils.extractConcatMessageContent(
-                                    (StandardSendMessageSM<?>)sm,
-                                    concatData.getConcatenationType(),
-                                    encoding,
-                                    concatData,me
-                            );
-                            log.debug("Extracted message content: {}", content);
-                            if (!content.isSuccess()) {
-                                log.error("Failed to extract message content: {}", content.getError());
+                        smppSim.getMessagesCacheService().addCacheRecord(partKey, partMessage);
+
+                        // Reassemble in memory: slot per part, completion is reported to exactly one receiver
+                        String from = sm.getSourceAddr().getAddress();
+                        String to = sm.getDestAddr().getAddress();
+                        MultipartReassemblyBuffer.AddResult added = multipartBuffer.addPart(
+                                MultipartReassemblyBuffer.key(getId(), from, to, concatData.getConcatenatedMessageId()),
+                                concatData.getConcatenatedMessageId(),
+                                concatData.getConcatenatedMessageSize(),
+                                concatData.getSegmentIndex(),
+                                content.getRawContent(),
+                                content.getMessageText(),
+                                encoding,
+                                from, to, connManager.getProviderId());
+
+                        if (added.isCompleted()) {
+                            MultipartReassemblyBuffer.Reassembly reassembly = added.getReassembly();
+                            byte[] allRawContent = reassembly.assemble();
+                            String firstPartEncoding = reassembly.getEncoding();
+                            log.info("All {} parts received for message {}, assembling {} total bytes",
+                                concatData.getConcatenatedMessageSize(), concatData.getConcatenatedMessageId(), allRawContent.length);
+
+                            // CRITICAL FIX: Smart encoding detection and decoding
+                            // This handles cases where declared encoding doesn't match actual content
+                            String fullText;
+                            String actualEncoding;
+                            try {
+                                String declaredEncoding = firstPartEncoding != null ? firstPartEncoding : encoding;
+                                EncodingDetector.Result result = EncodingDetector.detect(allRawContent, declaredEncoding,
+                                        SimUtils.detectionKey(me));
+                                fullText = result.getText();
+                                actualEncoding = result.getEncoding();
+
+                                log.info("Full message decoded using {}: {} chars from {} bytes",
+                                    actualEncoding, fullText.length(), allRawContent.length);
+
+                                if (!actualEncoding.equals(declaredEncoding)) {
+                                    log.warn("ENCODING MISMATCH CORRECTED: Declared={}, Actual={}",
+                                        declaredEncoding, actualEncoding);
+                                }
+
+                                // Log preview of decoded text
+                                if (fullText.length() > 0) {
+                                    String preview = fullText.length() > 100
+                                        ? fullText.substring(0, 100) + "..."
+                                        : fullText;
+                                    log.debug("Full message preview: {}", preview);
+                                }
+                            } catch (Exception e) {
+                                log.error("Failed to decode full message from raw bytes", e);
                                 errorTracker.captureError(
                                     "SMPPTransceiver.receive",
-                                    new RuntimeException(content.getError()),
-                                    "extract-concat-message-failed",
+                                    e,
+                                    "decode-full-message-failed",
                                     Map.of(
-                                        "operation", "extract_concat_content",
-                                        "error", content.getError()
+                                        "operation", "decode_full_message",
+                                        "encoding", String.valueOf(firstPartEncoding)
                                     )
                                 );
-                                throw new RuntimeException(content.getError());
-                            }
-
-                            // Cache the message part
-                            MessagesObject partMessage = MessagesObject.builder()
-                                    .dir("IN_PART")
-                                    .id(partKey)
-                                    .text(content.getMessageText())
-                                    .from(sm.getSourceAddr().getAddress())
-                                    .to(sm.getDestAddr().getAddress())
-                                    .sendMessageSM(sm.debugString())
-                                    .directResponse(response.debugString())
-                                    .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
-                                    .providerId(connManager.getProviderId())
-                                    .partNumber(concatData.getSegmentIndex())
-                                    .totalParts(concatData.getConcatenatedMessageSize())
-                                    .referenceNumber(concatData.getConcatenatedMessageId())
-                                    .messageEncoding(encoding)
-                                    .rawMessageBytes(content.getRawContent())
-                                    .build();
-
-                            smppSim.getMessagesCacheService().addCacheRecord(partKey, partMessage);
-
-                            // Check if we have all parts
-                            boolean complete = true;
-                            byte[] allRawContent = new byte[0];
-                            String firstPartEncoding = null;
-
-                            for (int i = 1; i <= concatData.getConcatenatedMessageSize(); i++) {
-                                MessagesObject part = smppSim.getMessagesCacheService()
-                                        .getMessageByID(concatData.getConcatenatedMessageId() + "_" + i);
-                                if (part == null) {
-                                    complete = false;
-                                    log.debug("Part {} not yet received for message {}", i, concatData.getConcatenatedMessageId());
-                                    break;
-                                }
-                                
-                                // Track first part's encoding
-                                if (i == 1) {
-                                    firstPartEncoding = part.getMessageEncoding();
-                                }
-                                
-                                // Verify encoding consistency
-                                if (part.getMessageEncoding() != null && !part.getMessageEncoding().equals(firstPartEncoding)) {
-                                    log.warn("Part {} has different encoding {} vs first part {}", 
-                                        i, part.getMessageEncoding(), firstPartEncoding);
-                                }
-                                
-                                // Concatenate raw bytes
-                                if (part.getRawMessageBytes() != null) {
-                                    byte[] newAllRawContent = new byte[allRawContent.length + part.getRawMessageBytes().length];
-                                    System.arraycopy(allRawContent, 0, newAllRawContent, 0, allRawContent.length);
-                                    System.arraycopy(part.getRawMessageBytes(), 0, newAllRawContent,
-                                            allRawContent.length, part.getRawMessageBytes().length);
-                                    allRawContent = newAllRawContent;
-                                    log.debug("Part {}: added {} bytes, total now {} bytes", 
-                                        i, part.getRawMessageBytes().length, allRawContent.length);
-                                }
+                                fullText = "[Error decoding message: " + e.getMessage() + "]";
+                                actualEncoding = firstPartEncoding != null ? firstPartEncoding : encoding;
                             }
-
-                            // If all parts received, create complete message (duplicate check inside sync block)
-                            if (complete) {
-                                log.info("All {} parts received for message {}, assembling {} total bytes", 
-                                    concatData.getConcatenatedMessageSize(), concatData.getConcatenatedMessageId(), allRawContent.length);
-                                
-                                // CRITICAL FIX: Smart encoding detection and decoding
-                                // This handles cases where declared encoding doesn't match actual content
-                                String fullText;
-                                String actualEncoding;
-                                try {
-                                    String declaredEncoding = firstPartEncoding != null ? firstPartEncoding : encoding;
-                                    Pair<String, String> result = detectAndDecodeMessage(allRawContent, declaredEncoding);
-                                    fullText = result.getLeft();
-                                    actualEncoding = result.getRight();
-
-                                    log.info("Full message decoded using {}: {} chars from {} bytes",
-                                        actualEncoding, fullText.length(), allRawContent.length);
-
-                                    if (!actualEncoding.equals(declaredEncoding)) {
-                                        log.warn("ENCODING MISMATCH CORRECTED: Declared={}, Actual={}",
-                                            declaredEncoding, actualEncoding);
-                                    }
-
-                                    // Log preview of decoded text
-                                    if (fullText.length() > 0) {
-                                        String preview = fullText.length() > 100
-                                            ? fullText.substring(0, 100) + "..."
-                                            : fullText;
-                                        log.debug("Full message preview: {}", preview);
-                                    }
-                                } catch (Exception e) {
-                                    log.error("Failed to decode full message from raw bytes", e);
-                                    errorTracker.captureError(
-                                        "SMPPTransceiver.receive",
-                                        e,
-                                        "decode-full-message-failed",
-                                        Map.of(
-                                            "operation", "decode_full_message",
-                                            "encoding", String.valueOf(firstPartEncoding)
-                                        )
-                                    );
-                                    fullText = "[Error decoding message: " + e.getMessage() + "]";
-                                    actualEncoding = firstPartEncoding != null ? firstPartEncoding : encoding;
-                                }
-                                
-                                // Prevent duplicate IN_FULL caching for the same msgId (moved inside sync block)
-                                MessagesObject existing = smppSim.getMessagesCacheService().getMessageByID(msgId);
-                                if (existing == null || !"IN_FULL".equals(existing.getDir())) {
-                                    MessagesObject completeMessage = MessagesObject.builder()
-                                            .dir("IN_FULL")
-                                            .id(msgId)
-                                            .text(fullText)
-                                            .from(sm.getSourceAddr().getAddress())
-                                            .to(sm.getDestAddr().getAddress())
-                                            .sendMessageSM(sm.debugString())
-                                            .directResponse(response.debugString())
-                                            .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
-                                            .providerId(connManager.getProviderId())
-                                            .messageEncoding(actualEncoding)  // Use detected encoding, not declared
-                                            .rawMessageBytes(allRawContent)
-                                            .build();
-
-                                    smppSim.getMessagesCacheService().addCacheRecord(msgId, completeMessage);
-                                    log.info("Cached complete message with ID {} using encoding: {}", msgId, actualEncoding);
-                                } else {
-                                    log.debug("IN_FULL message for msgId {} already exists, skipping duplicate cache.", msgId);
-                                }
-
-                                // Clean up lock and timestamp after successful assembly
-                                String refId = String.valueOf(concatData.getConcatenatedMessageId());
-                                multipartLocks.remove("multipart_" + refId);
-                                multipartTimestamps.remove(refId);
-                                log.debug("Cleaned up multipart tracking for completed message: {}", refId);
+                            
+                            // Prevent duplicate IN_FULL caching for the same msgId (e.g. a replayed last part)
+                            MessagesObject existing = smppSim.getMessagesCacheService().getMessageByID(msgId);
+                            if (existing == null || !"IN_FULL".equals(existing.getDir())) {
+                                MessagesObject completeMessage = MessagesObject.builder()
+                                        .dir("IN_FULL")
+                                        .id(msgId)
+                                        .text(fullText)
+                                        .from(sm.getSourceAddr().getAddress())
+                                        .to(sm.getDestAddr().getAddress())
+                                        .sendMessageSM(sm.debugString())
+                                        .directResponse(response.debugString())
+                                        .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
+                                        .providerId(connManager.getProviderId())
+                                        .messageEncoding(actualEncoding)  // Use detected encoding, not declared
+                                        .rawMessageBytes(allRawContent)
+                                        .build();
+
+                                smppSim.getMessagesCacheService().addCacheRecord(msgId, completeMessage);
+                                log.info("Cached complete message with ID {} using encoding: {}", msgId, actualEncoding);
+                            } else {
+                                log.debug("IN_FULL message for msgId {} already exists, skipping duplicate cache.", msgId);
                             }
                         }
                     } else {
@@ -362,109 +327,36 @@ public class SMPPTransceiver extends SMPPConnection {
                 response = new GenericNack(Data.ESME_RINVCMDID, request.getSequenceNumber());
         }
 
-        connManager.respond(response);
+        if (rule != null && rule.dropsResponse()) {
+            log.debug("Rule {} drops the response to mid {}", rule, msgId);
+        } else {
+            connManager.respond(response);
+        }
         if (commandID == Data.UNBIND) {
             connManager.closeConnection(false);
             initConnection();
         }
 
-        String dr = smppSim.get(this.getId()).getAutomaticDR();
-        if (isIncomingReceived && !StringUtils.isEmpty(dr)) {
+        SMPPConnectionConf connConf = smppSim.get(this.getId());
+        String dr = connConf != null ? connConf.getAutomaticDR() : null;
+        log.debug(String.format("Prepare to send DR if needed - mid %s conn %d dr %s", msgId, this.getId(), dr));
+        if (isIncomingReceived && !StringUtils.isEmpty(dr) && receiptWanted(rule, response)) {
             try {
-                String source = sm.getDestAddr().getAddress();
-                String dest = sm.getSourceAddr().getAddress();
-                SMPPRequest r;
-                if (dest.endsWith("0101010")) {
-                    String msgIdHex = EnvUtils.toHex(msgId);
-                    r = new SMPPRequest(source, dest, null, String.format(SMPPConnection.DR2, "1600000331F141DD", System.currentTimeMillis(), dr), null);
-                } else {
-                    r = new SMPPRequest(source, dest, null, String.format(SMPPConnection.DR, msgId, System.currentTimeMillis(), dr), null);
-                }
-
-                try {
-                    MessagesObject drMessage = MessagesObject.builder()
-                            .dir("OUT_transceiver_dr")
-                            .to(dest)
-                            .from(source)
-                            .id(msgId)
-                            .text(r.getText())
-                            .sendMessageSM(r.toString())
-                            .directResponse("DR: " + dr)
-                            .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
-                            .providerId(monitor != null && monitor.connManager != null && StringUtils.isNotEmpty(monitor.connManager.getProviderId())
-                                    ? monitor.connManager.getProviderId()
-                                    : (connManager != null ? String.valueOf(connManager.getPort()) : ""))
-                            .build();
-                    if (smppSim.getMessagesCacheService() != null) {
-                        boolean ok = smppSim.getMessagesCacheService().addCacheRecord(msgId, drMessage);
-                        if (!ok) {
-                            log.error("Failed to add outgoing DR message to cache for id {}", msgId);
-                            errorTracker.captureError(
-                                "SMPPTransceiver.receive",
-                                new RuntimeException("Failed to add DR to cache"),
-                                "cache-dr-message-failed",
-                                Map.of(
-                                    "operation", "cache_dr_message",
-                                    "messageId", msgId
-                                )
-                            );
-                        }
-                    } else {
-                        log.error("messagesCache is null! Cannot cache outgoing DR message id {}", msgId);
-                        errorTracker.captureError(
-                            "SMPPTransceiver.receive",
-                            new NullPointerException("messagesCache is null"),
-                            "messages-cache-null",
-                            Map.of(
-                                "operation", "cache_dr_message",
-                                "messageId", msgId
-                            )
-                        );
-                    }
-
-                    MessagesObject cachedMessage = smppSim.getMessagesCacheService().getMessageByID(msgId) != null ? smppSim.getMessagesCacheService().getMessageByID(msgId) : null;
-                    if (cachedMessage != null) {
-                        log.info("found cachedMessage record, Updating for mid: {}, and dr: {}", msgId, dr);
-                        cachedMessage.setDirectResponse(cachedMessage.getDirectResponse() + "\n\n" + String.valueOf(r));
-                        cachedMessage.setDeliveryReceiptShortMessage(dr);
-                        cachedMessage.setDeliveryReceiptTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()));
-                        smppSim.getMessagesCacheService().addCacheRecord(msgId, cachedMessage);
-                    } else {
-                        log.info("Not found cachedMessage record, Adding new for mid: {} and dr: {}", msgId, dr);
-                        MessagesObject newDrMsg = MessagesObject.builder()
-                                .id(msgId)
-                                .directResponse(String.valueOf(r))
-                                .deliveryReceiptShortMessage(dr)
-                                .deliveryReceiptTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
-                                .providerId(monitor != null && monitor.connManager != null && StringUtils.isNotEmpty(monitor.connManager.getProviderId())
-                                        ? monitor.connManager.getProviderId()
-                                        : (connManager != null ? String.valueOf(connManager.getPort()) : ""))
-                                .build();
-                        smppSim.getMessagesCacheService().addCacheRecord(msgId, newDrMsg);
-                    }
-                } catch (Exception e) {
-                    log.error("Error caching smpp DR message record", e);
-                    errorTracker.captureError(
-                        "SMPPTransceiver.receive",
-                        e,
-                        "cache-dr-record-failed",
-                        Map.of(
-                            "operation", "cache_dr_record",
-                            "messageId", msgId
-                        )
-                    );
-                }
-                smppSim.send(this.getId(), r, true);
-                log.debug(String.format("Trying to send DR %s for connection %d from %s to %s", msgId, this.getId(), source, dest));
+                // Sent and cached later by the DR engine, so this worker goes on with the next PDU
+                smppSim.getDeliveryReceiptEngine().schedule(connConf, rule, msgId,
+                        sm.getDestAddr().getAddress(), sm.getSourceAddr().getAddress(),
+                        monitor != null && monitor.connManager != null && StringUtils.isNotEmpty(monitor.connManager.getProviderId())
+                                ? monitor.connManager.getProviderId()
+                                : (connManager != null ? String.valueOf(connManager.getPort()) : ""),
+                        "OUT_transceiver_dr", errorTracker);
             } catch (Exception e) {
                 log.error("", e);
                 errorTracker.captureError(
                     "SMPPTransceiver.receive",
                     e,
-                    "send-dr-failed",
+                    "dr-processing-failed",
                     Map.of(
-                        "operation", "send_dr",
-                        "messageId", msgId
+                        "operation", "dr_processing"
                     )
                 );
             }
@@ -472,13 +364,14 @@ public class SMPPTransceiver extends SMPPConnection {
     }
 
 
-    protected Response generateReceiveMessageResponse(SendMessageSM message) throws WrongLengthOfStringException {
+    protected Response generateReceiveMessageResponse(SendMessageSM message, Rule rule) throws WrongLengthOfStringException {
         if (monitor != null)
             monitor.setLastMessage(System.currentTimeMillis());
         SendMessageResponse response = message.getResponse();
-        String msgId = Utils.generateRandomKey(10, false);
+        String msgId = MessageIdGenerator.nextId();
         response.setMessageId(msgId);
-        response.setCommandStatus(smppSim.get(this.id).getDirectStatusAsNumber());
+        int status = smppSim.get(this.id).getDirectStatusAsNumber();
+        response.setCommandStatus(rule != null ? rule.commandStatus(this.id, status) : status);
         return response;
     }
 
@@ -488,14 +381,13 @@ public class SMPPTransceiver extends SMPPConnection {
         int commandID = response.getCommandId();
         switch (commandID) {
             case Data.ENQUIRE_LINK_RESP:
-                final Integer id = requestManager.get(Integer.class, response.getSequenceNumber());
-                if (id != null)
-                    requestManager.putAndNotify(id, response);
+                requestManager.complete(response.getSequenceNumber(), response);
                 monitor.setLastMessage(System.currentTimeMillis());
                 break;
 
             case Data.UNBIND_RESP:
                 // actually we already should be disconnect
+                requestManager.complete(response.getSequenceNumber(), response);
                 break;
 
             case Data.BIND_RECEIVER_RESP:
@@ -506,6 +398,7 @@ public class SMPPTransceiver extends SMPPConnection {
             case Data.SUBMIT_SM_RESP:
             case Data.DELIVER_SM_RESP:
                 // received OK for sending message
+                requestManager.complete(response.getSequenceNumber(), response);
                 break;
 
             default:
@@ -521,57 +414,46 @@ public class SMPPTransceiver extends SMPPConnection {
     }
 
 
-    public void send(final SendMessageSM msg) {
-        final SMPPTransceiver me = this;
-        this.service.execute(new Runnable() {
+    /**
+     * Sends the message once the rate shaper releases it; returns at once.
+     *
+     * @return Completed with the response when it arrives, exceptionally if sending failed or no response came.
+     *         It may complete on the PDU receiver thread, so callers must not chain blocking work on it.
+     */
+    public CompletableFuture<Response> send(final SendMessageSM msg) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        this.rateShaper.execute(this.service, new Runnable() {
             @Override
             public void run() {
                 try {
-                    try {
-                        Thread.sleep(250);
-                    } catch (InterruptedException ignore) {}
-                    Response resp = connManager.send(msg);
-                    String mid = String.valueOf(new Date().getTime());
-                    MessagesObject cacheMessage = MessagesObject.builder()
-                            .dir("OUT_transceiver")
-                            .to(msg.getDestAddr().getAddress())
-                            .from(msg.getSourceAddr().getAddress())
-                            .id(mid)
-                            .text(SimUtils.getMessageTextForCaching(msg, me))
-                            .sendMessageSM(msg.debugString())
-                            .directResponse(resp.debugString())
-                            .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
-                            .providerId(StringUtils.isNotEmpty(connManager.getProviderId()) ? connManager.getProviderId() : String.valueOf(connManager.getPort()))
-                            .build();
-                    MessagesCache cache = smppSim.getMessagesCacheService();
-                    if (cache != null) {
-                        boolean ok = cache.addCacheRecord(mid, cacheMessage);
-                        if (!ok) {
-                            log.error("Failed to add outgoing message to cache for id {}", mid);
-                            errorTracker.captureError(
-                                "SMPPTransceiver.send",
-                                new RuntimeException("Failed to add outgoing message to cache"),
-                                "cache-outgoing-message-failed",
-                                Map.of(
-                                    "operation", "cache_outgoing_message",
-                                    "messageId", mid
-                                )
-                            );
-                        }
-                    }  else {
-                        log.error("messagesCache is null! Cannot cache outgoing message id {}", mid);
-                        errorTracker.captureError(
-                            "SMPPTransceiver.send",
-                            new NullPointerException("messagesCache is null"),
-                            "messages-cache-null-outgoing",
-                            Map.of(
-                                "operation", "cache_outgoing_message",
-                                "messageId", mid
-                            )
-                        );
+                    if (connManager.isWindowed()) {
+                        // Windowed mode: the response is handled when it arrives, this thread moves on.
+                        // The future completes on the PDU receiver thread, which must go on reading responses,
+                        // so caching runs on the CPU pool (a full pool makes the receiver thread run it)
+                        CompletableFuture<Response> response = connManager.sendAsync(msg);
+                        response.whenComplete((resp, error) -> SMPPTransmitter.complete(result, resp, error));
+                        response.whenCompleteAsync((resp, error) -> {
+                            if (error != null) {
+                                log.error("", error);
+                                errorTracker.captureError(
+                                    "SMPPTransceiver.send",
+                                    error instanceof Exception ? (Exception) error : new RuntimeException(error),
+                                    "send-message-io-failed",
+                                    Map.of(
+                                        "operation", "send_message"
+                                    )
+                                );
+                            } else {
+                                cacheSentMessage(msg, resp);
+                            }
+                        }, SimExecutors.cpu());
+                    } else {
+                        Response resp = connManager.send(msg);
+                        SMPPTransmitter.complete(result, resp, null);
+                        cacheSentMessage(msg, resp);
                     }
-                    log.info(String.format("Send message %s for conn %d with resp %s", msg.debugString(), SMPPTransceiver.this.getId(), String.valueOf(resp.debugString())));
-                } catch (IOException e) {
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
                     log.error("", e);
                     errorTracker.captureError(
                         "SMPPTransceiver.send",
@@ -583,19 +465,63 @@ public class SMPPTransceiver extends SMPPConnection {
                     );
                 }
             }
+        }, e -> {
+            result.completeExceptionally(e);
+            sendRejected(errorTracker, "SMPPTransceiver.send", e);
         });
+        return result;
+    }
+
+    private void cacheSentMessage(SendMessageSM msg, Response resp) {
+        String mid = MessageIdGenerator.nextId();
+        MessagesObject cacheMessage = MessagesObject.builder()
+                .dir("OUT_transceiver")
+                .to(msg.getDestAddr().getAddress())
+                .from(msg.getSourceAddr().getAddress())
+                .id(mid)
+                .text(SimUtils.getMessageTextForCaching(msg, this))
+                .sendMessageSM(msg.debugString())
+                .directResponse(resp.debugString())
+                .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
+                .providerId(StringUtils.isNotEmpty(connManager.getProviderId()) ? connManager.getProviderId() : String.valueOf(connManager.getPort()))
+                .build();
+        MessagesCache cache = smppSim.getMessagesCacheService();
+        if (cache != null) {
+            boolean ok = cache.addCacheRecord(mid, cacheMessage);
+            if (!ok) {
+                log.error("Failed to add outgoing message to cache for id {}", mid);
+                errorTracker.captureError(
+                    "SMPPTransceiver.send",
+                    new RuntimeException("Failed to add outgoing message to cache"),
+                    "cache-outgoing-message-failed",
+                    Map.of(
+                        "operation", "cache_outgoing_message",
+                        "messageId", mid
+                    )
+                );
+            }
+        }  else {
+            log.error("messagesCache is null! Cannot cache outgoing message id {}", mid);
+            errorTracker.captureError(
+                "SMPPTransceiver.send",
+                new NullPointerException("messagesCache is null"),
+                "messages-cache-null-outgoing",
+                Map.of(
+                    "operation", "cache_outgoing_message",
+                    "messageId", mid
+                )
+            );
+        }
+        log.info(String.format("Send message %s for conn %d with resp %s", msg.debugString(), getId(), String.valueOf(resp.debugString())));
     }
 
     public void sendOld(final SendMessageSM msg) {
-        this.service.execute(new Runnable() {
+        this.rateShaper.execute(this.service, new Runnable() {
             @Override
             public void run() {
                 try {
-                    try {
-                        Thread.sleep(250);
-                    } catch (InterruptedException ignore) {}
                     Response resp = connManager.send(msg);
-                    String mid = String.valueOf(new Date().getTime());
+                    String mid = MessageIdGenerator.nextId();
                     MessagesObject cacheMessage = MessagesObject.builder()
                             .dir("OUT_old")
                             .to(msg.getDestAddr().getAddress())
@@ -646,7 +572,7 @@ public class SMPPTransceiver extends SMPPConnection {
                     );
                 }
             }
-        });
+        }, e -> sendRejected(errorTracker, "SMPPTransceiver.sendOld", e));
     }
 
     public List<SendMessageSM> prepareMessage(SMPPRequest req, boolean sendAllPartsOfConcatenateMessage) throws UnsupportedEncodingException, WrongLengthOfStringException, IntegerOutOfRangeException, WrongDateFormatException {
@@ -767,7 +693,7 @@ public class SMPPTransceiver extends SMPPConnection {
             }
 
             message.setDataCoding(dataCoding);
-            switch (this.concatenation) {
+            switch (concatenationFor(req)) {
                 case UDHI_PAYLOAD:
                     if (texts.size() > 1) {
                         message.setEsmClass((byte) (Data.SM_UDH_GSM | Data.SM_STORE_FORWARD_MODE)); //Set UDHI Flag Data.SM_UDH_GSM=0x40
@@ -1050,7 +976,7 @@ public class SMPPTransceiver extends SMPPConnection {
     }
 
     private void processMessagePayload(SMPPRequest req, List<String> texts, int index, byte refNum, String text, SendMessageSM message, String enc) {
-        switch (this.concatenation) {
+        switch (concatenationFor(req)) {
             case UDHI_PAYLOAD:
                 if (texts.size() > 1) {
                     createUDHIPayload(refNum, texts, index, text, message, enc);
@@ -1128,8 +1054,8 @@ public class SMPPTransceiver extends SMPPConnection {
      * Cleanup stale incomplete multipart messages
      *
      * This method handles incomplete multipart messages after timeout:
-     * 1. Releases the multipart lock (prevents memory leak)
-     * 2. Creates a BEST-EFFORT IN_FULL message from available parts
+     * 1. Expires them from the reassembly buffer's timer wheel (only the elapsed buckets are visited)
+     * 2. Creates a BEST-EFFORT IN_FULL message from the parts held in the buffer
      * 3. KEEPS all partial parts in cache for analysis (test tool requirement)
      * 4. Marks incomplete messages clearly for debugging
      *
@@ -1138,108 +1064,46 @@ public class SMPPTransceiver extends SMPPConnection {
     public static void cleanupStaleMultiparts() {
         long now = System.currentTimeMillis();
 
-        multipartTimestamps.entrySet().removeIf(entry -> {
-            String refId = entry.getKey();
-            long timestamp = entry.getValue();
-
-            if (now - timestamp > MULTIPART_TIMEOUT_MS) {
-                log.warn("Processing incomplete multipart message: refId={}, age={}ms",
-                        refId, now - timestamp);
+        for (MultipartReassemblyBuffer.Reassembly reassembly : multipartBuffer.expire(now)) {
+            log.warn("Processing incomplete multipart message: refId={}, age={}ms",
+                    reassembly.getReference(), now - reassembly.getCreatedAt());
 
-                // Remove the lock to prevent memory leak
-                multipartLocks.remove("multipart_" + refId);
-
-                // Create best-effort full message from available parts
-                // IMPORTANT: Keep partial parts in cache for test/debug purposes
-                if (smppSim != null && smppSim.getMessagesCacheService() != null) {
-                    createBestEffortFullMessage(refId);
-                }
-
-                return true; // Remove this entry from timestamps map
+            // Create best-effort full message from available parts
+            // IMPORTANT: Keep partial parts in cache for test/debug purposes
+            if (smppSim != null && smppSim.getMessagesCacheService() != null) {
+                createBestEffortFullMessage(reassembly);
             }
-            return false; // Keep this entry
-        });
+        }
     }
 
     /**
      * Creates a best-effort full message from available partial parts
      *
      * This method:
-     * 1. Finds all available parts in cache
+     * 1. Takes the parts received so far from the reassembly slots
      * 2. Assembles them in order (skipping missing parts)
      * 3. Creates an IN_FULL_INCOMPLETE message
      * 4. KEEPS all partial parts for analysis
      *
-     * @param refId The concatenation reference ID
+     * @param reassembly The expired reassembly entry
      */
-    private static void createBestEffortFullMessage(String refId) {
+    private static void createBestEffortFullMessage(MultipartReassemblyBuffer.Reassembly reassembly) {
+        String refId = String.valueOf(reassembly.getReference());
         try {
             log.info("Creating best-effort full message for incomplete multipart: {}", refId);
 
-            // Find all available parts (check up to 255 parts per SMPP spec)
-            java.util.List<com.telemessage.simulators.controllers.message.MessagesObject> availableParts =
-                new java.util.ArrayList<>();
-            int expectedTotal = 0;
-            String from = null, to = null, providerId = null;
-
-            for (int i = 1; i <= 255; i++) {
-                String partId = refId + "_" + i;
-                com.telemessage.simulators.controllers.message.MessagesObject part =
-                    smppSim.getMessagesCacheService().getMessageByID(partId);
-
-                if (part != null) {
-                    availableParts.add(part);
-                    if (part.getTotalParts() != null) {
-                        expectedTotal = part.getTotalParts();
-                    }
-                    if (from == null) from = part.getFrom();
-                    if (to == null) to = part.getTo();
-                    if (providerId == null) providerId = part.getProviderId();
-
-                    log.debug("Found part {}/{} for refId {}", i, expectedTotal, refId);
-                }
-            }
-
-            if (availableParts.isEmpty()) {
-                log.warn("No parts found for refId {} - nothing to assemble", refId);
-                return;
-            }
-
-            // Sort parts by part number
-            availableParts.sort((a, b) -> {
-                Integer aNum = a.getPartNumber();
-                Integer bNum = b.getPartNumber();
-                if (aNum == null) return 1;
-                if (bNum == null) return -1;
-                return aNum.compareTo(bNum);
-            });
+            int expectedTotal = reassembly.getTotalParts();
+            List<Integer> missingParts = reassembly.getMissingParts();
+            int availableParts = expectedTotal - missingParts.size();
 
             // Assemble available parts (concatenate text and raw bytes)
             StringBuilder textBuilder = new StringBuilder();
-            java.io.ByteArrayOutputStream rawBytesStream = new java.io.ByteArrayOutputStream();
-            java.util.List<Integer> missingParts = new java.util.ArrayList<>();
-            String encoding = null;
-
             for (int i = 1; i <= expectedTotal; i++) {
-                boolean found = false;
-                for (com.telemessage.simulators.controllers.message.MessagesObject part : availableParts) {
-                    if (part.getPartNumber() != null && part.getPartNumber() == i) {
-                        // Add this part's content
-                        if (part.getText() != null) {
-                            textBuilder.append(part.getText());
-                        }
-                        if (part.getRawMessageBytes() != null) {
-                            rawBytesStream.write(part.getRawMessageBytes());
-                        }
-                        if (encoding == null && part.getMessageEncoding() != null) {
-                            encoding = part.getMessageEncoding();
-                        }
-                        found = true;
-                        break;
+                if (reassembly.hasPart(i)) {
+                    if (reassembly.getText(i) != null) {
+                        textBuilder.append(reassembly.getText(i));
                     }
-                }
-                if (!found) {
-                    missingParts.add(i);
+                } else {
                     textBuilder.append("[MISSING PART ").append(i).append("]");
                 }
             }
@@ -1248,37 +1112,35 @@ public class SMPPTransceiver extends SMPPConnection {
             String incompleteMsgId = refId + "_INCOMPLETE";
             String incompleteText = String.format(
                 "INCOMPLETE MESSAGE (%d/%d parts received - missing: %s)\n\n%s",
-                availableParts.size(),
-                expectedTotal > 0 ? expectedTotal : availableParts.size(),
+                availableParts,
+                expectedTotal,
                 missingParts.isEmpty() ? "none" : missingParts.toString(),
                 textBuilder.toString()
             );
 
-            com.telemessage.simulators.controllers.message.MessagesObject incompleteMessage =
-                com.telemessage.simulators.controllers.message.MessagesObject.builder()
+            MessagesObject incompleteMessage = MessagesObject.builder()
                     .dir("IN_FULL_INCOMPLETE")
                     .id(incompleteMsgId)
                     .text(incompleteText)
-                    .from(from)
-                    .to(to)
-                    .providerId(providerId)
-                    .messageTime(com.telemessage.simulators.controllers.message.MessageUtils
-                        .getMessageDateFromTimestamp(System.currentTimeMillis()))
-                    .messageEncoding(encoding)
-                    .rawMessageBytes(rawBytesStream.toByteArray())
+                    .from(reassembly.getFrom())
+                    .to(reassembly.getTo())
+                    .providerId(reassembly.getProviderId())
+                    .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
+                    .messageEncoding(reassembly.getEncoding())
+                    .rawMessageBytes(reassembly.assemble())
                     .totalParts(expectedTotal)
                     .partNumber(null) // Full message, no specific part number
-                    .referenceNumber(Integer.parseInt(refId))
-                    .sendMessageSM("Best-effort assembly after timeout - " + availableParts.size() + " parts available")
+                    .referenceNumber(reassembly.getReference())
+                    .sendMessageSM("Best-effort assembly after timeout - " + availableParts + " parts available")
                     .build();
 
             smppSim.getMessagesCacheService().addCacheRecord(incompleteMsgId, incompleteMessage);
 
             log.info("Created best-effort incomplete message: {} ({}/{} parts, missing: {})",
-                incompleteMsgId, availableParts.size(), expectedTotal, missingParts);
+                incompleteMsgId, availableParts, expectedTotal, missingParts);
 
             // IMPORTANT: Do NOT delete the partial parts - keep them for analysis
-            log.info("Preserved {} partial parts in cache for analysis", availableParts.size());
+            log.info("Preserved {} partial parts in cache for analysis", availableParts);
 
         } catch (Exception e) {
             log.error("Error creating best-effort full message for refId: {}", refId, e);
@@ -1286,304 +1148,16 @@ public class SMPPTransceiver extends SMPPConnection {
         }
     }
 
-    /**
-     * Build smart encoding priority list based on declared encoding
-     *
-     * This handles common encoding confusion patterns for ANY encoding:
-     * - UTF-16BE ↔ UTF-16LE (endianness swap)
-     * - UTF-8 ↔ ISO-8859-1 (single vs multi-byte)
-     * - ISO-8859-1 ↔ Windows-1252 (similar but different)
-     * - Any encoding might actually be UTF-8 (most common globally)
-     *
-     * @param declaredEncoding The encoding claimed by sender
-     * @return Array of encodings to try, in priority order
-     */
-    private static String[] buildEncodingPriorityList(String declaredEncoding) {
-        if (declaredEncoding == null || declaredEncoding.isEmpty()) {
-            return new String[]{"UTF-8", "UTF-16BE", "UTF-16LE", "ISO-8859-1", "Cp1252"};
-        }
-
-        String normalized = declaredEncoding.toUpperCase();
-
-        // UTF-16 Big Endian: Often confused with Little Endian
-        if (normalized.contains("UTF-16BE") || normalized.equals("UCS2")) {
-            log.info("Declared UTF-16BE - will try UTF-16LE early (common endianness swap)");
-            return new String[]{
-                declaredEncoding, "UTF-16LE", "UTF-8", "ISO-8859-1", "Cp1252"
-            };
-        }
-
-        // UTF-16 Little Endian: Often confused with Big Endian
-        if (normalized.contains("UTF-16LE")) {
-            log.info("Declared UTF-16LE - will try UTF-16BE early (common endianness swap)");
-            return new String[]{
-                declaredEncoding, "UTF-16BE", "UTF-8", "ISO-8859-1", "Cp1252"
-            };
-        }
-
-        // UTF-8: Often confused with ISO-8859-1 or Windows-1252
-        if (normalized.contains("UTF-8") || normalized.equals("UTF8")) {
-            log.info("Declared UTF-8 - will try ISO-8859-1 and Windows-1252 (common confusion)");
-            return new String[]{
-                declaredEncoding, "ISO-8859-1", "Cp1252", "UTF-16BE", "UTF-16LE"
-            };
-        }
-
-        // ISO-8859-1: Often confused with UTF-8 or Windows-1252
-        if (normalized.contains("ISO-8859-1") || normalized.equals("LATIN1")) {
-            log.info("Declared ISO-8859-1 - will try UTF-8 and Windows-1252 (common confusion)");
-            return new String[]{
-                declaredEncoding, "UTF-8", "Cp1252", "UTF-16BE", "UTF-16LE"
-            };
-        }
-
-        // Windows-1252: Often confused with ISO-8859-1 or UTF-8
-        if (normalized.contains("1252") || normalized.equals("CP1252")) {
-            log.info("Declared Windows-1252 - will try ISO-8859-1 and UTF-8 (common confusion)");
-            return new String[]{
-                declaredEncoding, "ISO-8859-1", "UTF-8", "UTF-16BE", "UTF-16LE"
-            };
-        }
-
-        // GSM encodings: Often confused with ISO-8859-1
-        if (normalized.contains("GSM") || normalized.contains("CCGSM") || normalized.contains("SCGSM")) {
-            log.info("Declared GSM encoding - will try ISO-8859-1 and UTF-8 (common confusion)");
-            return new String[]{
-                declaredEncoding, "ISO-8859-1", "UTF-8", "Cp1252", "UTF-16BE"
-            };
-        }
-
-        // Default: Try declared first, then most common encodings
-        log.info("Using default encoding priority for declared: {}", declaredEncoding);
-        return new String[]{
-            declaredEncoding, "UTF-8", "UTF-16BE", "UTF-16LE", "ISO-8859-1", "Cp1252"
-        };
-    }
-
-    /**
-     * Smart encoding detection and decoding for message bytes
-     *
-     * This method tries multiple encodings and scores each result to find the best match.
-     * Works for ANY encoding mismatch using universal heuristics.
-     *
-     * @param rawBytes The raw message bytes to decode
-     * @param declaredEncoding The encoding declared by the sender
-     * @return Pair of (decoded text, actual encoding used)
-     */
-    private static Pair<String, String> detectAndDecodeMessage(byte[] rawBytes, String declaredEncoding) {
-        if (rawBytes == null || rawBytes.length == 0) {
-            return Pair.of("", declaredEncoding != null ? declaredEncoding : "UTF-8");
-        }
-
-        log.info("Starting smart encoding detection for {} bytes, declared encoding: {}",
-            rawBytes.length, declaredEncoding);
-
-        // Build smart encoding priority list based on declared encoding
-        String[] encodingsToTry = buildEncodingPriorityList(declaredEncoding);
-
-        String bestText = null;
-        String bestEncoding = declaredEncoding;
-        double bestScore = 0.0;
-
-        for (String encodingName : encodingsToTry) {
-            try {
-                Charset charset = Charset.forName(encodingName);
-                String decoded = new String(rawBytes, charset);
-                double score = scoreDecodedText(decoded, rawBytes.length);
-
-                String preview = decoded.length() > 50 ? decoded.substring(0, 50) + "..." : decoded;
-                log.info("Tried encoding {}: score={:.3f}, length={}, preview={}",
-                    encodingName, score, decoded.length(), preview.replaceAll("[\r\n]+", " "));
-
-                if (score > bestScore) {
-                    bestScore = score;
-                    bestText = decoded;
-                    bestEncoding = encodingName;
-                }
-
-                // If we found an excellent match (>0.95), stop searching
-                if (score > 0.95) {
-                    log.info("Found excellent match with {} (score={:.3f}), stopping search",
-                        encodingName, score);
-                    break;
-                }
-            } catch (Exception e) {
-                log.debug("Failed to decode with {}: {}", encodingName, e.getMessage());
-            }
-        }
-
-        log.info("Smart detection result: bestEncoding={}, bestScore={:.3f}, length={}",
-            bestEncoding, bestScore, bestText != null ? bestText.length() : 0);
-
-        return Pair.of(bestText != null ? bestText : "", bestEncoding);
-    }
-
-    /**
-     * Score decoded text based on multiple heuristics
-     *
-     * @param text The decoded text to score
-     * @param originalByteLength Original byte length for ratio analysis
-     * @return Score from 0.0 (worst) to 1.0 (best)
-     */
-    private static double scoreDecodedText(String text, int originalByteLength) {
-        if (text == null || text.isEmpty()) {
-            return 0.0;
-        }
-
-        int length = text.length();
-        int replacementChars = 0;
-        int controlChars = 0;
-        int printableChars = 0;
-        int commonAscii = 0;
-
-        for (int i = 0; i < length; i++) {
-            char c = text.charAt(i);
-
-            // Replacement character (indicates wrong encoding)
-            if (c == '\uFFFD') {
-                replacementChars++;
-            }
-            // Control characters (except common whitespace)
-            else if (Character.isISOControl(c) && c != '\r' && c != '\n' && c != '\t') {
-                controlChars++;
-            }
-            // Printable characters
-            else if (!Character.isISOControl(c)) {
-                printableChars++;
-
-                // Common ASCII (English letters, numbers, spaces, basic punctuation)
-                if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') ||
-                    (c >= '0' && c <= '9') || c == ' ' || c == '.' || c == ',' ||
-                    c == ':' || c == ';' || c == '!' || c == '?') {
-                    commonAscii++;
-                }
-            }
-        }
-
-        // Calculate base score
-        double score = 1.0;
-
-        // Heavy penalty for replacement characters (wrong encoding)
-        score -= (replacementChars * 2.0 / length);
-
-        // Penalty for excessive control characters
-        score -= (controlChars * 1.5 / length);
-
-        // Bonus for printable characters
-        score += (printableChars * 0.5 / length);
-
-        // Bonus for common ASCII
-        score += (commonAscii * 0.1 / length);
-
-        // Bonus for common ASCII characters (suggests correct encoding)
-        if (commonAscii > length * 0.3) { // More than 30% common chars
-            score *= 1.1;
-        }
-
-        // UNIVERSAL CHECK: Detect wrong encoding via byte-to-char ratio anomalies
-        // This works for ANY encoding mismatch, not just specific languages
-        if (originalByteLength > 0) {
-            double charToByteRatio = (double) length / originalByteLength;
-
-            // Check for suspicious patterns that indicate wrong encoding:
-
-            // 1. Ratio ~0.5: Multi-byte encoding decoded as single-byte, or vice versa
-            //    Examples: UTF-16BE of UTF-16LE, UTF-16 of UTF-8, etc.
-            if (charToByteRatio < 0.55 && charToByteRatio > 0.45) {
-                // Check if characters look random/unusual (span many Unicode blocks)
-                int unicodeBlockChanges = countUnicodeBlockChanges(text);
-                double blockChangeRatio = (double) unicodeBlockChanges / Math.max(1, length);
-
-                // Excessive block changes (>50%) suggests random garbage from wrong encoding
-                if (blockChangeRatio > 0.5) {
-                    log.debug("Suspicious pattern: char/byte ratio {:.2f}, block changes {:.2f} - likely wrong encoding",
-                        charToByteRatio, blockChangeRatio);
-                    score *= 0.15; // Heavy penalty
-                }
-            }
-
-            // 2. Ratio < 0.4: Likely binary data or severely wrong encoding
-            if (charToByteRatio < 0.4) {
-                score *= 0.2; // Very heavy penalty
-            }
-
-            // 3. Ratio > 3.0: Might be single-byte decoded as multi-byte UTF-8
-            //    Can happen with ISO-8859-1 incorrectly decoded as UTF-8
-            if (charToByteRatio > 3.0) {
-                score *= 0.5; // Moderate penalty
-            }
-        }
-
-        // Additional check: Null bytes in text (shouldn't happen in valid text)
-        int nullCount = 0;
-        for (int i = 0; i < length; i++) {
-            if (text.charAt(i) == '\0') nullCount++;
-        }
-        if (nullCount > 0) {
-            double nullRatio = (double) nullCount / length;
-            score -= (nullRatio * 2.0); // Heavy penalty for null bytes
-        }
-
-        // Clamp score between 0 and 1
-        return Math.max(0.0, Math.min(1.0, score));
-    }
-
-    /**
-     * Count Unicode block changes in text
-     *
-     * This is a universal heuristic that works for ANY language.
-     * When encoding is wrong, characters appear random and span many Unicode blocks.
-     * Correct encoding produces coherent text with fewer block changes.
-     *
-     * Examples:
-     * - English text: Mostly in Basic Latin (U+0000-U+007F), few block changes
-     * - Hebrew text: Mostly in Hebrew block (U+0590-U+05FF), few block changes
-     * - Multilingual: Multiple blocks but organized, moderate changes
-     * - Garbage: Random blocks, MANY changes
-     *
-     * @param text Text to analyze
-     * @return Number of times Unicode block changes between adjacent characters
-     */
-    private static int countUnicodeBlockChanges(String text) {
-        if (text == null || text.length() <= 1) {
-            return 0;
-        }
-
-        int changes = 0;
-        Character.UnicodeBlock previousBlock = null;
-
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
-
-            // Skip whitespace and common punctuation (they're expected to mix)
-            if (Character.isWhitespace(c) || (c >= 0x20 && c <= 0x2F) ||
-                (c >= 0x3A && c <= 0x40) || (c >= 0x5B && c <= 0x60) ||
-                (c >= 0x7B && c <= 0x7E)) {
-                continue;
-            }
-
-            Character.UnicodeBlock currentBlock = Character.UnicodeBlock.of(c);
-
-            if (currentBlock != null && previousBlock != null && !currentBlock.equals(previousBlock)) {
-                changes++;
-            }
-
-            if (currentBlock != null) {
-                previousBlock = currentBlock;
-            }
-        }
-
-        return changes;
-    }
-
     @Override
     public void handleRequest(final Request request, SMPPRequestManager requestManager)  {
         final SMPPConnection me = this;
+        final long received = System.nanoTime();
         this.service.execute(new Runnable() {
             @Override
             public void run() {
                 try {
                     receive(request);
+                    metrics().handled(request.getCommandId(), received);
                 } catch (IOException e) {
                     log.error(me.toString(), e);
                     errorTracker.captureError(
@@ -6,9 +6,11 @@ import com.logica.smpp.pdu.tlv.TLVInt;
 import com.logica.smpp.pdu.tlv.TLVString;
 import com.logica.smpp.pdu.tlv.WrongLengthException;
 import com.logica.smpp.util.ByteBuffer;
+import com.telemessage.simulators.common.MessageIdGenerator;
 import com.telemessage.simulators.common.Utils;
 import com.telemessage.simulators.common.conf.CombinedCharsetProvider;
 import com.telemessage.simulators.common.conf.EnvConfiguration;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import com.telemessage.simulators.controllers.message.MessageUtils;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.controllers.message.MessagesObject;
@@ -26,6 +28,8 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 import static com.telemessage.simulators.smpp.SimUtils.*;
 
@@ -103,16 +107,13 @@ public class SMPPTransmitter extends SMPPConnection {
     @Override
     public void handleResponse(Response response, SMPPRequestManager requestManager) {
         try {
-            final Integer id = requestManager.get(Integer.class, response.getSequenceNumber());
-            if (id == null) {
+            if (!requestManager.complete(response.getSequenceNumber(), response)) {
                 if (response instanceof EnquireLinkResp) {
                 } else if (response instanceof BindResponse || response instanceof SubmitSMResp || response instanceof DeliverSMResp) {
                     log.debug("Wait reached timeout " + response.debugString());
                 } else {
                     log.debug("Unexpected event (Unknown response type)" + response.debugString());
                 }
-            } else {
-                requestManager.putAndNotify(id, response);
             }
         } catch (Exception e) {
             log.error("", e);
@@ -132,87 +133,47 @@ public class SMPPTransmitter extends SMPPConnection {
         return smppSim.getName() + "-" + bindType.name() + "-Transmitter";
     }
 
-    public void send(SendMessageSM msg) {
-        final SMPPTransmitter me = this;
-        this.service.execute(new Runnable() {
+    /**
+     * Sends the message once the rate shaper releases it; returns at once.
+     *
+     * @return Completed with the response when it arrives, exceptionally if sending failed or no response came.
+     *         It may complete on the PDU receiver thread, so callers must not chain blocking work on it.
+     */
+    public CompletableFuture<Response> send(SendMessageSM msg) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        this.rateShaper.execute(this.service, new Runnable() {
             @Override
             public void run() {
                 try {
-                    try {
-                        Thread.sleep(250);
-                    } catch (InterruptedException ignore) {}
 
-                    Response resp = connManager.send(msg);
-                    String msgId = ((SendMessageResponse) resp).getMessageId();
-                    String mid = StringUtils.isEmpty(msgId) ? String.valueOf(new Date().getTime()) : msgId;
-                    try {
-                        byte[] rawBytes = null;
-                        try {
-                            if (msg.getShortMessage()!=null) {
-                                rawBytes = msg.getShortMessage().getBytes(encoding);
-                            } else if (msg.hasMessagePayload()) {
-                                rawBytes = msg.getMessagePayload().getBuffer();
-                            }
-                        } catch (Exception e) {
-                            log.debug("Could not capture raw message bytes", e);
-                        }
-
-                        MessagesObject chacheMessage = MessagesObject.builder()
-                                .dir("OUT_PART")
-                                .id(mid)
-                                .text(SimUtils.getMessageTextForCaching(msg, me))
-                                .from(msg.getSourceAddr().getAddress())
-                                .to(msg.getDestAddr().getAddress())
-                                .sendMessageSM(msg.debugString())
-                                .directResponse(resp.debugString())
-                                .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
-                                .messageEncoding(encoding)
-                                .rawMessageBytes(rawBytes)
-                                .providerId(StringUtils.isNotEmpty(connManager.getProviderId()) ?
-                                        connManager.getProviderId() : String.valueOf(connManager.getPort())).build();
-
-                        // [Critical] Log the cached text for verification
-                        log.debug("Caching message text for mid {}: [{}]", mid, chacheMessage.getText());
-
-                        MessagesCache cache = smppSim.getMessagesCacheService();
-                        if (cache != null) {
-                            boolean ok = cache.addCacheRecord(mid, chacheMessage);
-                            if (!ok) {
-                                log.error("Failed to add outgoing message to cache for id {}", msgId);
+                    if (connManager.isWindowed()) {
+                        // Windowed mode: the response is handled when it arrives, this thread moves on.
+                        // The future completes on the PDU receiver thread, which must go on reading responses,
+                        // so caching runs on the CPU pool (a full pool makes the receiver thread run it)
+                        CompletableFuture<Response> response = connManager.sendAsync(msg);
+                        response.whenComplete((resp, error) -> complete(result, resp, error));
+                        response.whenCompleteAsync((resp, error) -> {
+                            if (error != null) {
+                                log.error("", error);
                                 errorTracker.captureError(
                                     "SMPPTransmitter.send",
-                                    new RuntimeException("Failed to add outgoing message to cache"),
-                                    "cache-outgoing-message-failed",
+                                    error instanceof Exception ? (Exception) error : new RuntimeException(error),
+                                    "send-failed",
                                     Map.of(
-                                        "operation", "cache_outgoing_message",
-                                        "messageId", String.valueOf(msgId)
+                                        "operation", "send"
                                     )
                                 );
+                            } else {
+                                cacheSentMessage(msg, resp);
                             }
-                        } else {
-                            log.error("messagesCache is null! Cannot cache outgoing message id {}", mid);
-                            errorTracker.captureError(
-                                "SMPPTransmitter.send",
-                                new NullPointerException("messagesCache is null"),
-                                "messages-cache-null",
-                                Map.of(
-                                    "operation", "cache_outgoing_message",
-                                    "messageId", String.valueOf(mid)
-                                )
-                            );
-                        }
-                    } catch (Exception e) {
-                        log.error("Error caching smpp message record", e);
-                        errorTracker.captureError(
-                            "SMPPTransmitter.send",
-                            e,
-                            "cache-message-record-failed",
-                            Map.of(
-                                "operation", "cache_message_record"
-                            )
-                        );
+                        }, SimExecutors.cpu());
+                    } else {
+                        Response resp = connManager.send(msg);
+                        complete(result, resp, null);
+                        cacheSentMessage(msg, resp);
                     }
                 } catch (Exception e) {
+                    result.completeExceptionally(e);
                     log.error("", e);
                     errorTracker.captureError(
                         "SMPPTransmitter.send",
@@ -224,21 +185,107 @@ public class SMPPTransmitter extends SMPPConnection {
                     );
                 }
             }
+        }, e -> {
+            result.completeExceptionally(e);
+            sendRejected(errorTracker, "SMPPTransmitter.send", e);
         });
+        return result;
+    }
+
+    /**
+     * Completes the future of {@link #send}; a missing response (stop-and-wait timeout) fails it.
+     */
+    static void complete(CompletableFuture<Response> result, Response response, Throwable error) {
+        if (error != null) {
+            result.completeExceptionally(error);
+        } else if (response == null) {
+            result.completeExceptionally(new TimeoutException("No response"));
+        } else {
+            result.complete(response);
+        }
+    }
+
+    private void cacheSentMessage(SendMessageSM msg, Response resp) {
+        String msgId = ((SendMessageResponse) resp).getMessageId();
+        String mid = StringUtils.isEmpty(msgId) ? MessageIdGenerator.nextId() : msgId;
+        try {
+            byte[] rawBytes = null;
+            try {
+                if (msg.getShortMessage()!=null) {
+                    rawBytes = msg.getShortMessage().getBytes(encoding);
+                } else if (msg.hasMessagePayload()) {
+                    rawBytes = msg.getMessagePayload().getBuffer();
+                }
+            } catch (Exception e) {
+                log.debug("Could not capture raw message bytes", e);
+            }
+
+            MessagesObject chacheMessage = MessagesObject.builder()
+                    .dir("OUT_PART")
+                    .id(mid)
+                    .text(SimUtils.getMessageTextForCaching(msg, this))
+                    .from(msg.getSourceAddr().getAddress())
+                    .to(msg.getDestAddr().getAddress())
+                    .sendMessageSM(msg.debugString())
+                    .directResponse(resp.debugString())
+                    .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
+                    .messageEncoding(encoding)
+                    .rawMessageBytes(rawBytes)
+                    .providerId(StringUtils.isNotEmpty(connManager.getProviderId()) ?
+                            connManager.getProviderId() : String.valueOf(connManager.getPort())).build();
+
+            // [Critical] Log the cached text for verification
+            log.debug("Caching message text for mid {}: [{}]", mid, chacheMessage.getText());
+
+            MessagesCache cache = smppSim.getMessagesCacheService();
+            if (cache != null) {
+                boolean ok = cache.addCacheRecord(mid, chacheMessage);
+                if (!ok) {
+                    log.error("Failed to add outgoing message to cache for id {}", msgId);
+                    errorTracker.captureError(
+                        "SMPPTransmitter.send",
+                        new RuntimeException("Failed to add outgoing message to cache"),
+                        "cache-outgoing-message-failed",
+                        Map.of(
+                            "operation", "cache_outgoing_message",
+                            "messageId", String.valueOf(msgId)
+                        )
+                    );
+                }
+            } else {
+                log.error("messagesCache is null! Cannot cache outgoing message id {}", mid);
+                errorTracker.captureError(
+                    "SMPPTransmitter.send",
+                    new NullPointerException("messagesCache is null"),
+                    "messages-cache-null",
+                    Map.of(
+                        "operation", "cache_outgoing_message",
+                        "messageId", String.valueOf(mid)
+                    )
+                );
+            }
+        } catch (Exception e) {
+            log.error("Error caching smpp message record", e);
+            errorTracker.captureError(
+                "SMPPTransmitter.send",
+                e,
+                "cache-message-record-failed",
+                Map.of(
+                    "operation", "cache_message_record"
+                )
+            );
+        }
     }
 
     public void sendOld(final SendMessageSM msg) {
         final SMPPTransmitter me = this;
-        this.service.execute(new Runnable() {
+        this.rateShaper.execute(this.service, new Runnable() {
             @Override
             public void run() {
                 try {
-                    try {
-                        Thread.sleep(250);
-                    } catch (InterruptedException ignore) {}
                     Response resp = connManager.send(msg);
                     String msgId = ((SendMessageResponse) resp).getMessageId();
-                    String mid = StringUtils.isEmpty(msgId) ? String.valueOf(new Date().getTime()) : msgId;
+                    String mid = StringUtils.isEmpty(msgId) ? MessageIdGenerator.nextId() : msgId;
                     try {
                         byte[] rawBytes = null;
                         try {
@@ -313,7 +360,7 @@ public class SMPPTransmitter extends SMPPConnection {
                     );
                 }
             }
-        });
+        }, e -> sendRejected(errorTracker, "SMPPTransmitter.sendOld", e));
     }
 
     public List<SendMessageSM> prepareMessage(SMPPRequest req, boolean sendAllPartsOfConcatenateMessage) throws UnsupportedEncodingException, WrongLengthOfStringException, IntegerOutOfRangeException, WrongDateFormatException {
@@ -445,7 +492,7 @@ public class SMPPTransmitter extends SMPPConnection {
             }
 
             message.setDataCoding(dataCoding);
-            switch (this.concatenation) {
+            switch (concatenationFor(req)) {
                 case UDHI_PAYLOAD:
                     if (texts.size() > 1) {
                         ByteBuffer udh = createUDH(refNum,texts.size(), i+1,  text,  enc);
@@ -613,11 +660,13 @@ public class SMPPTransmitter extends SMPPConnection {
     @Override
     public void handleRequest(final Request request, SMPPRequestManager requestManager) throws IOException {
         final SMPPConnection me = this;
+        final long received = System.nanoTime();
         this.service.execute(new Runnable() {
             @Override
             public void run() {
                 try {
                     receive(request);
+                    metrics().handled(request.getCommandId(), received);
                 } catch (IOException e) {
                     log.error(me.toString(), e);
                     errorTracker.captureError(
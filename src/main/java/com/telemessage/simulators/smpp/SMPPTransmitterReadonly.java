@@ -14,6 +14,7 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Component
@@ -48,8 +49,9 @@ public class SMPPTransmitterReadonly extends SMPPTransmitter {
 //    }
 
     @Override
-    public void send(SendMessageSM msg) {
+    public CompletableFuture<Response> send(SendMessageSM msg) {
         log.warn("Readonly transmitter " + ref + " cannot send messages. It is reference to " + transmitter.getId());
+        return CompletableFuture.failedFuture(new IllegalStateException("Readonly transmitter " + ref + " cannot send messages"));
     }
 
     @Override
@@ -212,6 +214,26 @@ public class SMPPTransmitterReadonly extends SMPPTransmitter {
         return transmitter.getThreads();
     }
 
+    @Override
+    public int getWindow() {
+        return transmitter.getWindow();
+    }
+
+    @Override
+    public int getTps() {
+        return transmitter.getTps();
+    }
+
+    @Override
+    public int getBurst() {
+        return transmitter.getBurst();
+    }
+
+    @Override
+    public int getJitter() {
+        return transmitter.getJitter();
+    }
+
     @Override
     public long getTimeout() {
         return transmitter.getTimeout();
@@ -337,6 +359,26 @@ public class SMPPTransmitterReadonly extends SMPPTransmitter {
         // do nothing
     }
 
+    @Override
+    public void setWindow(int window) {
+        // do nothing
+    }
+
+    @Override
+    public void setTps(int tps) {
+        // do nothing
+    }
+
+    @Override
+    public void setBurst(int burst) {
+        // do nothing
+    }
+
+    @Override
+    public void setJitter(int jitter) {
+        // do nothing
+    }
+
     @Override
     public void setTimeout(long timeout) {
         // do nothing
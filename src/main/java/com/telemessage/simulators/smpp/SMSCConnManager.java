@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class SMSCConnManager extends SMPPConnManager {
@@ -189,6 +190,7 @@ public class SMSCConnManager extends SMPPConnManager {
                 processOnCloseListeners(success);
             } finally {
                 state = State.unbound;
+                cancelPendingRequests();
             }
         }
         return success;
@@ -227,54 +229,53 @@ public class SMSCConnManager extends SMPPConnManager {
 
     @Override
     public Response send(PDU pdu) throws IOException {
-        Integer id = null;
-        if (session != null) {
-            synchronized (lockObject) {
-                pdu.assignSequenceNumber();
-                id = pdu.getSequenceNumber();
-                // we put this check inside if bind was changed by start or close connection
-                if (state == State.unbound)
-                    throw new IOException("Connection is not bound");
-                requests.put(id, id);
-                try {
-                    session.getTransmitter().send(pdu);
-                } catch (IOException e) {
-                    state = State.unbound;
-                    throw e;
-                } catch (ValueNotSetException e) {
-                    throw new IOException(e);
-                }
-            }
+        // Stop-and-wait: the same correlated send as the windowed path, awaited on the calling thread
+        return requests.await(transmit(pdu));
+    }
+
+    @Override
+    protected CompletableFuture<Response> transmit(PDU pdu) throws IOException {
+        if (session == null) {
+            throw new IOException("Session is null");
+        }
+        synchronized (lockObject) {
+            pdu.assignSequenceNumber();
+            Integer id = pdu.getSequenceNumber();
+            // we put this check inside if bind was changed by start or close connection
+            if (state == State.unbound)
+                throw new IOException("Connection is not bound");
+            CompletableFuture<Response> response = requests.expect(id);
             try {
-                requests.waitForResponse(id);
-            } catch (InterruptedException e) {
+                session.getTransmitter().send(pdu);
+            } catch (IOException e) {
+                requests.cancel(id);
+                state = State.unbound;
+                throw e;
+            } catch (ValueNotSetException e) {
+                requests.cancel(id);
+                throw new IOException(e);
             }
-            return requests.remove(Response.class, id);
+            return response;
         }
-        throw new IOException("Session is null");
     }
 
     public boolean sendUnbind() {
         boolean result = false;
-        Unbind unbindReq = new Unbind();
-        unbindReq.assignSequenceNumber();
-        Integer id = unbindReq.getSequenceNumber();
-        requests.put(id, id);
         if (session != null) {
+            Unbind unbindReq = new Unbind();
+            unbindReq.assignSequenceNumber();
+            Integer id = unbindReq.getSequenceNumber();
+            CompletableFuture<Response> pending = requests.expect(id);
             try {
                 session.send(unbindReq, false); ///***///
             } catch (Exception e) {
+                requests.cancel(id);
                 return false;
             }
 
-            try {
-                requests.waitForResponse(id);
-            } catch (InterruptedException e) {
-            }
-            UnbindResp response = requests.remove(UnbindResp.class, id);
-            if (response != null && response.getCommandStatus() == Data.ESME_ROK) {
+            Response response = requests.await(pending);
+            if (response instanceof UnbindResp && response.getCommandStatus() == Data.ESME_ROK) {
                 result = true;
-            } else {
             }
         } else {
             result = true;
@@ -8,6 +8,7 @@ import com.logica.smpp.pdu.tlv.TLVInt;
 import com.logica.smpp.pdu.tlv.TLVString;
 import com.logica.smpp.pdu.tlv.WrongLengthException;
 import com.logica.smpp.pdu.ShortMessage;
+import com.telemessage.simulators.common.EncodingDetector;
 import com.telemessage.simulators.common.Utils;
 import com.telemessage.simulators.common.conf.CombinedCharsetProvider;
 import com.telemessage.simulators.common.conf.EnvConfiguration;
@@ -36,7 +37,11 @@ import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import com.logica.smpp.util.ByteBuffer;
 import static com.telemessage.simulators.smpp.SMPPConnection.isConvertToUnicode;
@@ -484,10 +489,21 @@ public class SimUtils {
         }
     }
 
+    private static final List<String> GSM_ENCODINGS = List.of("GSM7", "SCGSM", "CCGSM");
+    private static final Pattern TEXT_BASE_PART_PATTERN = Pattern.compile("^(\\d+)/(\\d+)\\s+(.*)$");
+    private static final String[] SHORT_MESSAGE_FIELD_NAMES = {"message", "shortMessage", "msg", "data"};
+    // PDU class -> field holding its raw ShortMessage (empty if the class has none)
+    private static final Map<Class<?>, Optional<Field>> shortMessageFields = new ConcurrentHashMap<>();
+    private static volatile Charset gsmCharset;
+
     /**
-     * Thread-safe method to extract message content based on concatenation type
+     * Extract message content based on concatenation type.
+     *
+     * <p>Reentrant and lock-free: the result depends only on the PDU and the arguments, and the only shared
+     * state is immutable (charsets, the compiled pattern) or a concurrent cache of reflective field lookups.
+     * Callers may run it concurrently for any number of connections and references.</p>
      */
-    public static synchronized ConcatMessageContent extractConcatMessageContent(
+    public static ConcatMessageContent extractConcatMessageContent(
             StandardSendMessageSM<?> sm,
             ConcatenationType concatType,
             String encoding,
@@ -498,10 +514,9 @@ public class SimUtils {
                 concatType, encoding, String.format("%02X", sm.getDataCoding()), concatData);
         try {
             Charset cs;
-            List<String> gsmEncodings = List.of("GSM7", "SCGSM", "CCGSM");
-            if(gsmEncodings.contains(encoding)){
+            if(GSM_ENCODINGS.contains(encoding)){
                 log.debug("Using CCGSM encoding");
-                cs = new CharsetProvider().charsetForName("CCGSM");
+                cs = gsmCharset();
             } else {
                 log.debug("Using {} encoding", encoding);
                 cs = Charset.forName(encoding);
@@ -542,30 +557,13 @@ public class SimUtils {
                 try {
                     ShortMessage shortMessageObj = null;
 
-                    // Try multiple possible field names and search through class hierarchy
-                    String[] possibleFieldNames = {"message", "shortMessage", "msg", "data"};
-                    Class<?> currentClass = sm.getClass();
-
-                    // Search through class hierarchy
-                    while (currentClass != null && shortMessageObj == null) {
-                        for (String fieldName : possibleFieldNames) {
-                            try {
-                                Field field = currentClass.getDeclaredField(fieldName);
-                                field.setAccessible(true);
-                                Object fieldValue = field.get(sm);
-
-                                // Check if it's a ShortMessage object
-                                if (fieldValue instanceof ShortMessage) {
-                                    shortMessageObj = (ShortMessage) fieldValue;
-                                    log.debug("Found ShortMessage in field '{}' of class {}",
-                                        fieldName, currentClass.getSimpleName());
-                                    break;
-                                }
-                            } catch (NoSuchFieldException e) {
-                                // Try next field name
-                            }
+                    // The field is resolved once per PDU class and cached
+                    Optional<Field> shortMessageField = shortMessageFields.computeIfAbsent(sm.getClass(), SimUtils::findShortMessageField);
+                    if (shortMessageField.isPresent()) {
+                        Object fieldValue = shortMessageField.get().get(sm);
+                        if (fieldValue instanceof ShortMessage) {
+                            shortMessageObj = (ShortMessage) fieldValue;
                         }
-                        currentClass = currentClass.getSuperclass();
                     }
 
                     if (shortMessageObj != null) {
@@ -636,9 +634,9 @@ public class SimUtils {
 
                     // CRITICAL FIX: Use smart encoding detection instead of blindly using declared encoding
                     // This ensures each part is decoded correctly, even if not all parts arrive
-                    Pair<String, String> udhiResult = detectAndDecodeMessage(rawContent, encoding);
-                    messageText = udhiResult.getLeft();
-                    String actualEncoding = udhiResult.getRight();
+                    EncodingDetector.Result udhiResult = EncodingDetector.detect(rawContent, encoding, detectionKey(me));
+                    messageText = udhiResult.getText();
+                    String actualEncoding = udhiResult.getEncoding();
 
                     if (!actualEncoding.equals(encoding)) {
                         log.warn("UDHI part encoding corrected: Declared={}, Actual={}", encoding, actualEncoding);
@@ -664,9 +662,9 @@ public class SimUtils {
 
                     // CRITICAL FIX: Use smart encoding detection for SAR parts too
                     rawContent = messageBytes;
-                    Pair<String, String> sarResult = detectAndDecodeMessage(rawContent, encoding);
-                    messageText = sarResult.getLeft();
-                    String sarActualEncoding = sarResult.getRight();
+                    EncodingDetector.Result sarResult = EncodingDetector.detect(rawContent, encoding, detectionKey(me));
+                    messageText = sarResult.getText();
+                    String sarActualEncoding = sarResult.getEncoding();
 
                     if (!sarActualEncoding.equals(encoding)) {
                         log.warn("SAR part encoding corrected: Declared={}, Actual={}", encoding, sarActualEncoding);
@@ -680,8 +678,7 @@ public class SimUtils {
                     String msg = sm.getShortMessage();
                     String partText = "";
                     if (msg != null) {
-                        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("^(\\d+)/(\\d+)\\s+(.*)$");
-                        java.util.regex.Matcher matcher = pattern.matcher(msg);
+                        Matcher matcher = TEXT_BASE_PART_PATTERN.matcher(msg);
                         if (matcher.matches()) {
                             partText = matcher.group(3);
                         }
@@ -718,313 +715,55 @@ public class SimUtils {
     }
 
 
-    protected static String createString(ByteBuffer udh, String encoding) {
-        Charset actualCharset;
-        List<String> gsmEncodings = List.of("GSM7", "SCGSM", "CCGSM");
-        if(gsmEncodings.contains(encoding)){
-            CombinedCharsetProvider provider = new CombinedCharsetProvider();
-            actualCharset = provider.charsetForName("CCGSM");
-        } else {
-            actualCharset = Charset.forName(encoding);
-        }
-        return new String(udh.getBuffer(), actualCharset);
-    }
-
-    /**
-     * Build smart encoding priority list based on declared encoding
-     *
-     * This handles common encoding confusion patterns for ANY encoding.
-     * Same implementation as in SMPPReceiver and SMPPTransceiver.
-     */
-    private static String[] buildEncodingPriorityList(String declaredEncoding) {
-        if (declaredEncoding == null || declaredEncoding.isEmpty()) {
-            return new String[]{"UTF-8", "UTF-16BE", "UTF-16LE", "ISO-8859-1", "Cp1252"};
-        }
-
-        String normalized = declaredEncoding.toUpperCase();
-
-        if (normalized.contains("UTF-16BE") || normalized.equals("UCS2")) {
-            return new String[]{declaredEncoding, "UTF-16LE", "UTF-8", "ISO-8859-1", "Cp1252"};
-        }
-        if (normalized.contains("UTF-16LE")) {
-            return new String[]{declaredEncoding, "UTF-16BE", "UTF-8", "ISO-8859-1", "Cp1252"};
-        }
-        if (normalized.contains("UTF-8") || normalized.equals("UTF8")) {
-            return new String[]{declaredEncoding, "ISO-8859-1", "Cp1252", "UTF-16BE", "UTF-16LE"};
-        }
-        if (normalized.contains("ISO-8859-1") || normalized.equals("LATIN1")) {
-            return new String[]{declaredEncoding, "UTF-8", "Cp1252", "UTF-16BE", "UTF-16LE"};
-        }
-        if (normalized.contains("1252") || normalized.equals("CP1252")) {
-            return new String[]{declaredEncoding, "ISO-8859-1", "UTF-8", "UTF-16BE", "UTF-16LE"};
-        }
-        if (normalized.contains("GSM") || normalized.contains("CCGSM") || normalized.contains("SCGSM")) {
-            return new String[]{declaredEncoding, "ISO-8859-1", "UTF-8", "Cp1252", "UTF-16BE"};
-        }
-
-        return new String[]{declaredEncoding, "UTF-8", "UTF-16BE", "UTF-16LE", "ISO-8859-1", "Cp1252"};
-    }
-
     /**
-     * Smart encoding detection and decoding for message parts
-     * Same implementation as in SMPPReceiver and SMPPTransceiver.
+     * Searches the PDU class hierarchy for the field holding the raw {@link ShortMessage}.
      */
-    private static Pair<String, String> detectAndDecodeMessage(byte[] rawBytes, String declaredEncoding) {
-        if (rawBytes == null || rawBytes.length == 0) {
-            return Pair.of("", declaredEncoding != null ? declaredEncoding : "UTF-8");
-        }
-
-        // CRITICAL: Check for UTF-16 endianness by analyzing null byte positions AND surrogate pairs
-        // UTF-16LE ASCII: [83, 0, 84, 0, 65, 0, ...] - nulls at ODD positions (1, 3, 5, ...)
-        // UTF-16BE ASCII: [0, 83, 0, 84, 0, 65, ...] - nulls at EVEN positions (0, 2, 4, ...)
-        // UTF-16BE emojis: [D8, 3D, DE, 05, ...] - surrogate pairs (D800-DFFF range)
-        if ("UTF-16BE".equalsIgnoreCase(declaredEncoding) || "UCS2".equalsIgnoreCase(declaredEncoding)) {
-            int nullsAtOddPositions = 0;
-            int nullsAtEvenPositions = 0;
-            int surrogatePairsBE = 0;
-            int surrogatePairsLE = 0;
-            int totalBytes = Math.min(rawBytes.length, 100); // Check first 100 bytes
-
-            for (int i = 0; i < totalBytes; i++) {
-                if (rawBytes[i] == 0) {
-                    if (i % 2 == 1) {
-                        nullsAtOddPositions++;
-                    } else {
-                        nullsAtEvenPositions++;
-                    }
-                }
-
-                // Check for UTF-16 surrogate pairs (emojis, rare characters)
-                // High surrogate range: 0xD800-0xDBFF, Low surrogate: 0xDC00-0xDFFF
-                if (i + 3 < rawBytes.length) {
-                    // Check UTF-16BE pattern: [D8-DB, xx, DC-DF, xx]
-                    int highBE = (rawBytes[i] & 0xFF);
-                    int lowBE = (rawBytes[i+2] & 0xFF);
-                    if (highBE >= 0xD8 && highBE <= 0xDB && lowBE >= 0xDC && lowBE <= 0xDF) {
-                        surrogatePairsBE++;
-                    }
-
-                    // Check UTF-16LE pattern: [xx, D8-DB, xx, DC-DF]
-                    int highLE = (rawBytes[i+1] & 0xFF);
-                    int lowLE = (rawBytes[i+3] & 0xFF);
-                    if (highLE >= 0xD8 && highLE <= 0xDB && lowLE >= 0xDC && lowLE <= 0xDF) {
-                        surrogatePairsLE++;
-                    }
-                }
-            }
-
-            // PRIORITY 1: If we find surrogate pairs, they're the strongest indicator
-            if (surrogatePairsBE > 0 || surrogatePairsLE > 0) {
-                if (surrogatePairsBE > surrogatePairsLE) {
-                    log.info("Detected UTF-16BE via surrogate pairs (BE: {}, LE: {}) - confirming declared {}",
-                        surrogatePairsBE, surrogatePairsLE, declaredEncoding);
-                    try {
-                        String decoded = new String(rawBytes, Charset.forName("UTF-16BE"));
-                        return Pair.of(decoded, "UTF-16BE");
-                    } catch (Exception e) {
-                        log.warn("Failed to decode as UTF-16BE despite surrogate pair detection", e);
-                    }
-                } else if (surrogatePairsLE > surrogatePairsBE) {
-                    log.warn("Detected UTF-16LE via surrogate pairs (LE: {}, BE: {}) - correcting from declared {}",
-                        surrogatePairsLE, surrogatePairsBE, declaredEncoding);
-                    try {
-                        String decoded = new String(rawBytes, Charset.forName("UTF-16LE"));
-                        return Pair.of(decoded, "UTF-16LE");
-                    } catch (Exception e) {
-                        log.warn("Failed to decode as UTF-16LE despite surrogate pair detection", e);
-                    }
-                }
-            }
-
-            // PRIORITY 2: Check null byte positions (for ASCII content)
-            // If significantly more nulls at odd positions, it's UTF-16LE not BE!
-            if (nullsAtOddPositions > nullsAtEvenPositions * 2 && nullsAtOddPositions > 5) {
-                log.warn("Detected UTF-16LE pattern (nulls at odd positions: {}, even: {}) - correcting from declared {}",
-                    nullsAtOddPositions, nullsAtEvenPositions, declaredEncoding);
-                try {
-                    String decoded = new String(rawBytes, Charset.forName("UTF-16LE"));
-                    return Pair.of(decoded, "UTF-16LE");
-                } catch (Exception e) {
-                    log.warn("Failed to decode as UTF-16LE despite pattern match", e);
-                }
-            }
-            // If significantly more nulls at even positions, it's actually UTF-16BE
-            else if (nullsAtEvenPositions > nullsAtOddPositions * 2 && nullsAtEvenPositions > 5) {
-                log.info("Confirmed UTF-16BE pattern (nulls at even positions: {}, odd: {})",
-                    nullsAtEvenPositions, nullsAtOddPositions);
-            }
-            // If no strong null byte pattern but declared UTF-16BE, trust the declaration
-            else if (nullsAtOddPositions <= 5 && nullsAtEvenPositions <= 5) {
-                log.info("No strong null pattern (emoji-heavy content?), trusting declared encoding: {}", declaredEncoding);
+    private static Optional<Field> findShortMessageField(Class<?> pduClass) {
+        Class<?> currentClass = pduClass;
+        while (currentClass != null) {
+            for (String fieldName : SHORT_MESSAGE_FIELD_NAMES) {
                 try {
-                    String decoded = new String(rawBytes, Charset.forName("UTF-16BE"));
-                    return Pair.of(decoded, "UTF-16BE");
-                } catch (Exception e) {
-                    log.warn("Failed to decode as declared UTF-16BE", e);
-                }
-            }
-        }
-
-        String[] encodingsToTry = buildEncodingPriorityList(declaredEncoding);
-
-        String bestText = null;
-        String bestEncoding = declaredEncoding;
-        double bestScore = -1;
-
-        for (String encodingName : encodingsToTry) {
-            if (encodingName == null || encodingName.isEmpty()) continue;
-
-            try {
-                Charset charset;
-                List<String> gsmEncodings = List.of("GSM7", "SCGSM", "CCGSM", "GSM_DEFAULT");
-                if (gsmEncodings.contains(encodingName.toUpperCase())) {
-                    charset = new CombinedCharsetProvider().charsetForName(encodingName);
-                } else {
-                    charset = Charset.forName(encodingName);
-                }
-
-                String decoded = new String(rawBytes, charset);
-                double score = scoreDecodedText(decoded, rawBytes.length);
-
-                if (score > bestScore) {
-                    bestScore = score;
-                    bestText = decoded;
-                    bestEncoding = encodingName;
-                }
-
-                // If excellent match found, stop searching
-                if (score > 0.95) {
-                    break;
+                    Field field = currentClass.getDeclaredField(fieldName);
+                    if (ShortMessage.class.isAssignableFrom(field.getType())) {
+                        field.setAccessible(true);
+                        log.debug("Found ShortMessage in field '{}' of class {}", fieldName, currentClass.getSimpleName());
+                        return Optional.of(field);
+                    }
+                } catch (NoSuchFieldException e) {
+                    // Try next field name
                 }
-            } catch (Exception e) {
-                log.debug("Failed to decode with {}: {}", encodingName, e.getMessage());
             }
+            currentClass = currentClass.getSuperclass();
         }
-
-        if (bestText == null) {
-            bestText = new String(rawBytes, StandardCharsets.ISO_8859_1);
-            bestEncoding = "ISO-8859-1";
-        }
-
-        return Pair.of(bestText, bestEncoding);
+        return Optional.empty();
     }
 
-    /**
-     * Score decoded text - same implementation as in SMPPReceiver and SMPPTransceiver
-     */
-    private static double scoreDecodedText(String text, int originalByteLength) {
-        if (text == null || text.isEmpty()) {
-            return 0.0;
-        }
-
-        int length = text.length();
-        int printableCount = 0;
-        int replacementCount = 0;
-        int controlCount = 0;
-        int commonChars = 0;
-
-        for (int i = 0; i < length; i++) {
-            char c = text.charAt(i);
-
-            if (c == '\uFFFD' || c == '�') {
-                replacementCount++;
-                continue;
-            }
-
-            if (c < 32 && c != '\n' && c != '\r' && c != '\t') {
-                controlCount++;
-                continue;
-            }
-
-            if (c >= 32 && c <= 126) {
-                printableCount++;
-                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') ||
-                    (c >= '0' && c <= '9') || c == ' ' || c == '.' || c == ',') {
-                    commonChars++;
-                }
-            } else if (c > 126) {
-                printableCount++;
-            }
-        }
-
-        double score = 1.0;
-        double replacementRatio = (double) replacementCount / length;
-        score -= (replacementRatio * 2.0);
-
-        double controlRatio = (double) controlCount / length;
-        score -= (controlRatio * 1.5);
-
-        double printableRatio = (double) printableCount / length;
-        score *= printableRatio;
-
-        if (commonChars > length * 0.3) {
-            score *= 1.1;
-        }
-
-        if (originalByteLength > 0) {
-            double charToByteRatio = (double) length / originalByteLength;
-
-            if (charToByteRatio < 0.55 && charToByteRatio > 0.45) {
-                int unicodeBlockChanges = countUnicodeBlockChanges(text);
-                double blockChangeRatio = (double) unicodeBlockChanges / Math.max(1, length);
-
-                if (blockChangeRatio > 0.5) {
-                    score *= 0.15;
-                }
-            }
-
-            if (charToByteRatio < 0.4) {
-                score *= 0.2;
-            }
-
-            if (charToByteRatio > 3.0) {
-                score *= 0.5;
-            }
+    private static Charset gsmCharset() {
+        Charset cs = gsmCharset;
+        if (cs == null) {
+            // Benign race: charsets are immutable, concurrent first calls just resolve it twice
+            cs = new CharsetProvider().charsetForName("CCGSM");
+            gsmCharset = cs;
         }
+        return cs;
+    }
 
-        int nullCount = 0;
-        for (int i = 0; i < length; i++) {
-            if (text.charAt(i) == '\0') nullCount++;
-        }
-        if (nullCount > 0) {
-            double nullRatio = (double) nullCount / length;
-            score -= (nullRatio * 2.0);
+    protected static String createString(ByteBuffer udh, String encoding) {
+        Charset actualCharset;
+        List<String> gsmEncodings = List.of("GSM7", "SCGSM", "CCGSM");
+        if(gsmEncodings.contains(encoding)){
+            CombinedCharsetProvider provider = new CombinedCharsetProvider();
+            actualCharset = provider.charsetForName("CCGSM");
+        } else {
+            actualCharset = Charset.forName(encoding);
         }
-
-        return Math.max(0.0, Math.min(1.0, score));
+        return new String(udh.getBuffer(), actualCharset);
     }
 
     /**
-     * Count Unicode block changes - same implementation as in SMPPReceiver and SMPPTransceiver
+     * Key under which the encoding detector remembers the winning encoding of a connection.
      */
-    private static int countUnicodeBlockChanges(String text) {
-        if (text == null || text.length() <= 1) {
-            return 0;
-        }
-
-        int changes = 0;
-        Character.UnicodeBlock previousBlock = null;
-
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
-
-            if (Character.isWhitespace(c) || (c >= 0x20 && c <= 0x2F) ||
-                (c >= 0x3A && c <= 0x40) || (c >= 0x5B && c <= 0x60) ||
-                (c >= 0x7B && c <= 0x7E)) {
-                continue;
-            }
-
-            Character.UnicodeBlock currentBlock = Character.UnicodeBlock.of(c);
-
-            if (currentBlock != null && previousBlock != null && !currentBlock.equals(previousBlock)) {
-                changes++;
-            }
-
-            if (currentBlock != null) {
-                previousBlock = currentBlock;
-            }
-        }
-
-        return changes;
+    static String detectionKey(SMPPConnection me) {
+        return me != null ? "smpp-" + me.getId() : null;
     }
 }
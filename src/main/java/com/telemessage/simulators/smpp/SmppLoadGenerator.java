@@ -0,0 +1,448 @@
+package com.telemessage.simulators.smpp;
+
+import com.telemessage.simulators.common.conf.SimExecutors;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Built-in load generator: sends generated messages through one of the simulator's own SMPP connections,
+ * in process, with the stack the simulator runs (Logica transmitter or Cloudhopper sender).
+ *
+ * <p>A {@link Run} issues messages at {@link Profile#getTps()} with at most {@link Profile#getConcurrency()} sends
+ * in flight, until its duration or message count is reached or it is stopped. Once the concurrency limit is reached
+ * the next message waits for a free slot, so the achieved rate drops; to keep that wait visible, response time is
+ * measured from the time the schedule intended to send the message, not from when it was sent. Message kinds and,
+ * for long messages, concatenation methods are picked by weight.</p>
+ *
+ * <p>Response time runs until the SMSC answered every part of the message
+ * ({@link SMPPSimulatorInterface#sendAndAwaitResponses}); a part refused or left without response counts the
+ * message as failed.</p>
+ *
+ * <p>Finished runs stay queryable until {@code sim.smpp.load.retainedRuns} newer runs finished.</p>
+ */
+@Slf4j
+public class SmppLoadGenerator {
+
+    private static final int RETAINED_RUNS = Integer.parseInt(System.getProperty("sim.smpp.load.retainedRuns", "20"));
+    private static final long DRAIN_TIMEOUT_MS = 60000;
+
+    private final SMPPSimulatorInterface simulator;
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+    private final Queue<String> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicLong runIds = new AtomicLong();
+
+    public SmppLoadGenerator(SMPPSimulatorInterface simulator) {
+        this.simulator = simulator;
+    }
+
+    public enum Status {
+        running, done, stopped
+    }
+
+    public enum MessageKind {
+        GSM7, UCS2, GSM7_LONG, UCS2_LONG;
+
+        boolean isLong() {
+            return this == GSM7_LONG || this == UCS2_LONG;
+        }
+    }
+
+    /**
+     * What to send. Weights are relative; a kind or concatenation without weight is never chosen.
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Profile {
+        private int tps = 10;                   // 0: as fast as the concurrency allows
+        private int concurrency = 4;
+        private int durationSeconds = 60;
+        private long totalMessages = 0;         // 0: until the duration ends
+        private String src = "972500000001";
+        private String dst = "972500000002";
+        private int dstCount = 1;               // destinations dst, dst+1, ... used round robin
+        private Map<MessageKind, Integer> mix = new EnumMap<>(Map.of(
+                MessageKind.GSM7, 70, MessageKind.UCS2, 20, MessageKind.GSM7_LONG, 10));
+        // For long messages only; empty uses the connection's concatenation
+        private Map<SMPPRequest.ConcatenationType, Integer> concatenation = new EnumMap<>(SMPPRequest.ConcatenationType.class);
+    }
+
+    /**
+     * Progress and results of one load run.
+     */
+    public static class Run {
+        @Getter private final String id;
+        @Getter private final int connectionId;
+        @Getter private final Profile profile;
+        @Getter private final long startedAt;
+        @Getter private volatile long finishedAt;
+        @Getter private volatile Status status = Status.running;
+
+        private final long startNanos;
+        private volatile long endNanos;
+        private volatile boolean stopRequested;
+        private final LongAdder attempted = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicLong maxScheduleLagNanos = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final Map<MessageKind, LongAdder> sentByKind = new ConcurrentHashMap<>();
+
+        Run(String id, int connectionId, Profile profile) {
+            this.id = id;
+            this.connectionId = connectionId;
+            this.profile = profile;
+            this.startedAt = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+        }
+
+        public long getAttempted() {
+            return attempted.sum();
+        }
+
+        public long getSucceeded() {
+            return succeeded.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getInFlight() {
+            return attempted.sum() - succeeded.sum() - failed.sum();
+        }
+
+        public long getElapsedMs() {
+            long end = status == Status.running ? System.nanoTime() : endNanos;
+            return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+        }
+
+        /**
+         * @return Completed sends per second over the elapsed time.
+         */
+        public double getAchievedTps() {
+            long elapsedMs = getElapsedMs();
+            return elapsedMs > 0 ? (succeeded.sum() + failed.sum()) * 1000.0 / elapsedMs : 0;
+        }
+
+        public double getMaxScheduleLagMs() {
+            return maxScheduleLagNanos.get() / 1_000_000.0;
+        }
+
+        /**
+         * @return Response time percentiles in milliseconds (about 6% precision).
+         */
+        public Map<String, Double> getLatencyMs() {
+            Map<String, Double> result = new LinkedHashMap<>();
+            result.put("mean", latency.mean() / 1000.0);
+            result.put("p50", latency.percentile(50) / 1000.0);
+            result.put("p90", latency.percentile(90) / 1000.0);
+            result.put("p99", latency.percentile(99) / 1000.0);
+            result.put("p999", latency.percentile(99.9) / 1000.0);
+            result.put("max", latency.max() / 1000.0);
+            return result;
+        }
+
+        public Map<String, Long> getErrors() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            errors.forEach((reason, count) -> result.put(reason, count.sum()));
+            return result;
+        }
+
+        public Map<MessageKind, Long> getSentByKind() {
+            Map<MessageKind, Long> result = new EnumMap<>(MessageKind.class);
+            sentByKind.forEach((kind, count) -> result.put(kind, count.sum()));
+            return result;
+        }
+
+        void error(String reason) {
+            failed.increment();
+            errors.computeIfAbsent(reason, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Starts a run in the background.
+     *
+     * @return The run, already running.
+     * @throws IllegalArgumentException if the connection does not exist or the profile is invalid
+     */
+    public Run start(int connectionId, Profile profile) {
+        if (simulator.get(connectionId) == null) {
+            throw new IllegalArgumentException("Connection " + connectionId + " not found");
+        }
+        if (profile.getConcurrency() < 1 || profile.getTps() < 0 || profile.getDurationSeconds() < 1) {
+            throw new IllegalArgumentException("concurrency and durationSeconds must be positive, tps not negative");
+        }
+        if (totalWeight(profile.getMix()) <= 0) {
+            throw new IllegalArgumentException("mix needs at least one message kind with a positive weight");
+        }
+
+        Run run = new Run("load-" + runIds.incrementAndGet(), connectionId, profile);
+        runs.put(run.id, run);
+        log.info("Load run {} started on connection {}: tps={}, concurrency={}, duration={}s, total={}, mix={}, concatenation={}",
+                run.id, connectionId, profile.getTps(), profile.getConcurrency(), profile.getDurationSeconds(),
+                profile.getTotalMessages(), profile.getMix(), profile.getConcatenation());
+        SimExecutors.io().execute(() -> drive(run));
+        return run;
+    }
+
+    public Run getRun(String id) {
+        return runs.get(id);
+    }
+
+    public Collection<Run> getRuns() {
+        return runs.values();
+    }
+
+    /**
+     * Stops issuing new messages; sends in flight still complete and are counted.
+     */
+    public Run stop(String id) {
+        Run run = runs.get(id);
+        if (run != null) {
+            run.stopRequested = true;
+        }
+        return run;
+    }
+
+    private void drive(Run run) {
+        Profile profile = run.profile;
+        Semaphore inFlight = new Semaphore(profile.getConcurrency());
+        long intervalNanos = profile.getTps() > 0 ? TimeUnit.SECONDS.toNanos(1) / profile.getTps() : 0;
+        long deadline = run.startNanos + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+        long next = System.nanoTime();
+        long issued = 0;
+        try {
+            while (!run.stopRequested && System.nanoTime() < deadline
+                    && (profile.getTotalMessages() <= 0 || issued < profile.getTotalMessages())) {
+                if (intervalNanos > 0) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                inFlight.acquire();
+                // Without a rate there is no schedule, the message is due once a slot is free
+                long intended = intervalNanos > 0 ? next : System.nanoTime();
+                if (intervalNanos > 0) {
+                    run.maxScheduleLagNanos.accumulateAndGet(System.nanoTime() - next, Math::max);
+                    next += intervalNanos;
+                }
+                long sequence = issued++;
+                run.attempted.increment();
+                SimExecutors.io().execute(() -> {
+                    try {
+                        sendOne(run, sequence, intended);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            // Let the sends in flight finish before reporting the run as finished
+            if (!inFlight.tryAcquire(profile.getConcurrency(), DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("Load run {}: {} sends still in flight after {} ms", run.id, run.getInFlight(), DRAIN_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            run.endNanos = System.nanoTime();
+            run.finishedAt = System.currentTimeMillis();
+            run.status = run.stopRequested ? Status.stopped : Status.done;
+            log.info("Load run {} {}: sent={}, failed={}, tps={}, latencyMs={}, errors={}", run.id, run.status,
+                    run.getSucceeded(), run.getFailed(), String.format("%.1f", run.getAchievedTps()),
+                    run.getLatencyMs(), run.getErrors());
+            retire(run);
+        }
+    }
+
+    /**
+     * Sends one message and waits for its responses; runs on a virtual thread.
+     *
+     * @param intendedNanos When the schedule meant to send it ({@link System#nanoTime}), the start of its response time
+     */
+    private void sendOne(Run run, long sequence, long intendedNanos) {
+        Profile profile = run.profile;
+        MessageKind kind = pick(profile.getMix());
+        String dst = destination(profile, sequence);
+        SMPPRequest request = new SMPPRequest(profile.getSrc(), dst, null, text(kind, sequence), null);
+        if (kind.isLong() && totalWeight(profile.getConcatenation()) > 0) {
+            request.setConcatenation(pick(profile.getConcatenation()));
+        }
+        run.sentByKind.computeIfAbsent(kind, k -> new LongAdder()).increment();
+
+        try {
+            boolean accepted = simulator.sendAndAwaitResponses(run.connectionId, request)
+                    .get(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            run.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos));
+            if (accepted) {
+                run.succeeded.increment();
+            } else {
+                run.error("send-failed");
+            }
+        } catch (Exception e) {
+            run.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos));
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            run.error(cause.getClass().getSimpleName());
+            log.debug("Load run {}: send failed", run.id, cause);
+        }
+    }
+
+    private void retire(Run run) {
+        finished.add(run.id);
+        while (finished.size() > RETAINED_RUNS) {
+            String oldest = finished.poll();
+            if (oldest != null) {
+                runs.remove(oldest);
+            }
+        }
+    }
+
+    private static String destination(Profile profile, long sequence) {
+        if (profile.getDstCount() <= 1) {
+            return profile.getDst();
+        }
+        try {
+            return String.valueOf(Long.parseLong(profile.getDst()) + sequence % profile.getDstCount());
+        } catch (NumberFormatException e) {
+            return profile.getDst();
+        }
+    }
+
+    private static final String GSM7_TEXT = "Load test message %d: your verification code is %06d. ";
+    private static final String UCS2_TEXT = "הודעת בדיקת עומס %d: קוד האימות שלך הוא %06d. ";
+
+    /**
+     * Short kinds fit one SMS; long kinds need 3 parts (GSM7 about 400 characters, UCS2 about 180).
+     */
+    static String text(MessageKind kind, long sequence) {
+        String pattern = kind == MessageKind.UCS2 || kind == MessageKind.UCS2_LONG ? UCS2_TEXT : GSM7_TEXT;
+        String unit = String.format(pattern, sequence, sequence % 1000000);
+        if (!kind.isLong()) {
+            return unit.trim();
+        }
+        int length = kind == MessageKind.UCS2_LONG ? 180 : 400;
+        StringBuilder text = new StringBuilder(length + unit.length());
+        while (text.length() < length) {
+            text.append(unit);
+        }
+        return text.substring(0, length);
+    }
+
+    private static <K> int totalWeight(Map<K, Integer> weights) {
+        int total = 0;
+        if (weights != null) {
+            for (Integer weight : weights.values()) {
+                total += weight != null && weight > 0 ? weight : 0;
+            }
+        }
+        return total;
+    }
+
+    private static <K> K pick(Map<K, Integer> weights) {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight(weights));
+        K last = null;
+        for (Map.Entry<K, Integer> entry : weights.entrySet()) {
+            int weight = entry.getValue() != null && entry.getValue() > 0 ? entry.getValue() : 0;
+            if (weight == 0) {
+                continue;
+            }
+            last = entry.getKey();
+            r -= weight;
+            if (r < 0) {
+                break;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Lock-free log-linear histogram of microsecond values: 16 sub-buckets per power of two, about 6% precision,
+     * up to about 12 days.
+     */
+    static class LatencyHistogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int MAX_EXPONENT = 40;
+
+        private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long micros) {
+            long value = Math.max(0, Math.min(micros, (1L << MAX_EXPONENT) - 1));
+            counts.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        double mean() {
+            long n = count.sum();
+            return n > 0 ? (double) sum.sum() / n : 0;
+        }
+
+        /**
+         * @return Lower bound of the bucket holding the given percentile, 0 when empty.
+         */
+        long percentile(double percentile) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length(); bucket++) {
+                seen += counts.get(bucket);
+                if (seen >= rank) {
+                    return Math.min(valueOf(bucket), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_COUNT) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) ((value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+            return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+        }
+
+        static long valueOf(int bucket) {
+            if (bucket < SUB_COUNT) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+            int sub = bucket % SUB_COUNT;
+            return (long) (SUB_COUNT + sub) << (exponent - SUB_BITS);
+        }
+    }
+}
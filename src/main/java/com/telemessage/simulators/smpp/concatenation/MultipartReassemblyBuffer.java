@@ -0,0 +1,233 @@
+package com.telemessage.simulators.smpp.concatenation;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory reassembly store for concatenated (multipart) messages.
+ *
+ * <p>Messages are keyed by (connection, source, destination, reference), so equal references from
+ * different binds or address pairs never mix. Each message holds its parts in a slot array sized to the
+ * announced total with a received-bitmap: completion is detected in O(1) and the full payload is copied
+ * once into a single buffer.</p>
+ *
+ * <p>Incomplete messages expire through a hashed timer wheel. A message is placed in the wheel bucket of
+ * its deadline when its first part arrives; {@link #expire(long)} only visits the buckets whose tick has
+ * passed since the previous call instead of scanning every pending message.</p>
+ */
+@Slf4j
+public class MultipartReassemblyBuffer {
+
+    private static final int WHEEL_SIZE = 64;
+
+    private final long timeoutMs;
+    private final long tickMs;
+    private final ConcurrentHashMap<String, Reassembly> pending = new ConcurrentHashMap<>();
+    @SuppressWarnings("unchecked")
+    private final Set<String>[] wheel = new Set[WHEEL_SIZE];
+    private long lastExpiredTick;
+
+    public MultipartReassemblyBuffer(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        // One wheel revolution spans the timeout, so a deadline never wraps around past its own bucket
+        this.tickMs = Math.max(1, timeoutMs / (WHEEL_SIZE - 1));
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.lastExpiredTick = System.currentTimeMillis() / tickMs - 1;
+    }
+
+    public static String key(Object connectionId, String source, String destination, int reference) {
+        return connectionId + "|" + source + "|" + destination + "|" + reference;
+    }
+
+    /**
+     * One message under reassembly. All state is guarded by the instance monitor.
+     * Deadlines are at most {@code timeoutMs} (less than one revolution) ahead of their bucket's visit.
+     */
+    @Getter
+    public static class Reassembly {
+        private final String key;
+        private final int reference;
+        private final int totalParts;
+        private final long createdAt;
+        private final long deadline;
+        private final byte[][] rawParts;
+        private final String[] textParts;
+        private final BitSet received;
+        private int receivedCount;
+        private int totalBytes;
+        private String encoding;
+        private String from;
+        private String to;
+        private String providerId;
+        private boolean finished;
+
+        Reassembly(String key, int reference, int totalParts, long createdAt, long deadline) {
+            this.key = key;
+            this.reference = reference;
+            this.totalParts = totalParts;
+            this.createdAt = createdAt;
+            this.deadline = deadline;
+            this.rawParts = new byte[totalParts][];
+            this.textParts = new String[totalParts];
+            this.received = new BitSet(totalParts);
+        }
+
+        public synchronized boolean isComplete() {
+            return receivedCount == totalParts;
+        }
+
+        public synchronized boolean hasPart(int segmentIndex) {
+            return received.get(segmentIndex - 1);
+        }
+
+        public synchronized String getText(int segmentIndex) {
+            return textParts[segmentIndex - 1];
+        }
+
+        /**
+         * Concatenates the raw bytes of all received parts, in order, into one exactly sized buffer.
+         */
+        public synchronized byte[] assemble() {
+            byte[] all = new byte[totalBytes];
+            int offset = 0;
+            for (byte[] part : rawParts) {
+                if (part != null) {
+                    System.arraycopy(part, 0, all, offset, part.length);
+                    offset += part.length;
+                }
+            }
+            return all;
+        }
+
+        public synchronized List<Integer> getMissingParts() {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = received.nextClearBit(0); i < totalParts; i = received.nextClearBit(i + 1)) {
+                missing.add(i + 1);
+            }
+            return missing;
+        }
+    }
+
+    /**
+     * Outcome of {@link #addPart}.
+     */
+    @Getter
+    public static class AddResult {
+        private final Reassembly reassembly;
+        private final boolean duplicate;
+        private final boolean completed;
+
+        AddResult(Reassembly reassembly, boolean duplicate, boolean completed) {
+            this.reassembly = reassembly;
+            this.duplicate = duplicate;
+            this.completed = completed;
+        }
+    }
+
+    /**
+     * Stores one part. {@link AddResult#isCompleted()} is true for exactly one caller per message - the one
+     * whose part completed it; the message is then removed from the buffer and that caller owns assembly.
+     */
+    public AddResult addPart(String key, int reference, int totalParts, int segmentIndex,
+                             byte[] rawContent, String text, String encoding,
+                             String from, String to, String providerId) {
+        if (segmentIndex < 1 || segmentIndex > totalParts) {
+            throw new IllegalArgumentException("Segment " + segmentIndex + " out of range 1.." + totalParts);
+        }
+        while (true) {
+            Reassembly reassembly = pending.computeIfAbsent(key, k -> {
+                long now = System.currentTimeMillis();
+                Reassembly created = new Reassembly(k, reference, totalParts, now, now + timeoutMs);
+                schedule(k, created.deadline);
+                return created;
+            });
+            synchronized (reassembly) {
+                if (reassembly.finished) {
+                    // Completed or expired concurrently - start over with a fresh entry
+                    continue;
+                }
+                if (segmentIndex > reassembly.totalParts) {
+                    throw new IllegalArgumentException("Segment " + segmentIndex + " exceeds total "
+                            + reassembly.totalParts + " announced by the first part of " + key);
+                }
+                int slot = segmentIndex - 1;
+                if (reassembly.received.get(slot)) {
+                    log.debug("Duplicate part {} for {}", segmentIndex, key);
+                    return new AddResult(reassembly, true, false);
+                }
+                byte[] raw = rawContent != null ? rawContent : new byte[0];
+                reassembly.rawParts[slot] = raw;
+                reassembly.textParts[slot] = text;
+                reassembly.received.set(slot);
+                reassembly.receivedCount++;
+                reassembly.totalBytes += raw.length;
+                // The first part's encoding wins, as in the cache-based assembly
+                if (segmentIndex == 1 || reassembly.encoding == null) {
+                    reassembly.encoding = encoding;
+                } else if (encoding != null && !encoding.equals(reassembly.encoding)) {
+                    log.warn("Part {} has different encoding {} vs first part {}", segmentIndex, encoding, reassembly.encoding);
+                }
+                if (reassembly.from == null) {
+                    reassembly.from = from;
+                    reassembly.to = to;
+                    reassembly.providerId = providerId;
+                }
+                boolean completed = reassembly.receivedCount == reassembly.totalParts;
+                if (completed) {
+                    reassembly.finished = true;
+                    pending.remove(key, reassembly);
+                }
+                return new AddResult(reassembly, false, completed);
+            }
+        }
+    }
+
+    /**
+     * Removes and returns every message whose deadline has passed. Only the wheel buckets of ticks that fully
+     * elapsed since the previous call are visited, so every message found there is due.
+     */
+    public synchronized List<Reassembly> expire(long now) {
+        List<Reassembly> expired = new ArrayList<>();
+        long lastElapsedTick = now / tickMs - 1;
+        long firstTick = Math.max(lastExpiredTick + 1, lastElapsedTick - WHEEL_SIZE + 1);
+        for (long tick = firstTick; tick <= lastElapsedTick; tick++) {
+            Set<String> bucket = wheel[(int) (tick % WHEEL_SIZE)];
+            for (String key : bucket) {
+                Reassembly reassembly = pending.get(key);
+                if (reassembly == null) {
+                    bucket.remove(key);
+                    continue;
+                }
+                synchronized (reassembly) {
+                    if (reassembly.finished) {
+                        bucket.remove(key);
+                    } else if (reassembly.deadline <= now) {
+                        reassembly.finished = true;
+                        pending.remove(key, reassembly);
+                        bucket.remove(key);
+                        expired.add(reassembly);
+                    }
+                    // else: the key was reused by a newer message, which sits in its own bucket
+                }
+            }
+        }
+        lastExpiredTick = Math.max(lastExpiredTick, lastElapsedTick);
+        return expired;
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private void schedule(String key, long deadline) {
+        wheel[(int) ((deadline / tickMs) % WHEEL_SIZE)].add(key);
+    }
+}
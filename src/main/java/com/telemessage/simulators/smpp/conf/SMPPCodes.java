@@ -353,4 +353,8 @@ public enum SMPPCodes {
     SMPPCodes(String code) {
         this.code = code;
     }
+
+    public String getCode() {
+        return code;
+    }
 }
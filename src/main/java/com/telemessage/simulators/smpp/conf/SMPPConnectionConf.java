@@ -28,6 +28,10 @@ public class SMPPConnectionConf extends AbstractConnection {
     @Element(required = false) SMPPReceiver receiver;
     @Element(required = false) SMPPTransceiver transceiver;
     @Attribute(required = false, name = "transmitter") int transmitterRef;
+    // Automatic DR delay: "<ms>", "<min>-<max>" or "exp:<mean>"; see DeliveryReceiptEngine.Policy
+    @Element(required = false, name = "dr_delay") String drDelay;
+    // Weighted automatic DR statuses, e.g. "DELIVRD:90,UNDELIV:8,EXPIRED:2"; defaults to automatic_dr
+    @Element(required = false, name = "dr_status_mix") String drStatusMix;
 
 
     public SMPPConnectionConf() {
@@ -1,6 +1,7 @@
 package com.telemessage.simulators.smpp_cloudhopper;
 
 import com.telemessage.simulators.common.conf.EnvConfiguration;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import com.telemessage.simulators.common.services.filemanager.SimFileManager;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.smpp.SMPPConnection;
@@ -23,8 +24,7 @@ import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -81,7 +81,7 @@ public class CloudhopperSimulator implements SMPPSimulatorInterface {
     private SMPPConnections smppConnections;
 
     private final Map<Integer, CloudhopperConnectionManager> connectionManagers = new ConcurrentHashMap<>();
-    private final ExecutorService executorService;
+    private final ThreadPoolExecutor executorService;
 
     private volatile State state = State.STARTING;
 
@@ -105,19 +105,13 @@ public class CloudhopperSimulator implements SMPPSimulatorInterface {
         this.messagesCache = messagesCache;
         this.sessionStateManager = new SessionStateManager();
 
-        // Create cached thread pool for async operations
-        // CachedThreadPool creates new threads as needed, crucial for SMSC to handle
-        // multiple simultaneous bind requests without blocking
-        this.executorService = Executors.newCachedThreadPool(
-            runnable -> {
-                Thread thread = new Thread(runnable);
-                thread.setName("cloudhopper-worker-" + thread.threadId());
-                thread.setDaemon(false);
-                return thread;
-            }
-        );
+        // Netty pool of the SMSC servers. Threads are created as needed, crucial for SMSC to handle multiple
+        // simultaneous bind requests without blocking, but capped so a connection storm cannot exhaust the JVM.
+        // Netty runs long-lived selector loops on this pool, so it uses platform threads.
+        int maxThreads = properties.getExecutor().getMaxPoolSize();
+        this.executorService = SimExecutors.newBoundedPool("cloudhopper-worker", maxThreads, false);
 
-        log.info("CloudhopperSimulator initialized with CachedThreadPool executor (creates threads as needed)");
+        log.info("CloudhopperSimulator initialized with bounded executor (up to {} threads, created as needed)", maxThreads);
     }
 
     /**
@@ -248,10 +242,26 @@ public class CloudhopperSimulator implements SMPPSimulatorInterface {
                 executorService
             );
             connectionManagers.put(connectionId + 10000, smscManager); // Offset for SMSC to avoid ID conflicts
+            checkServerThreads();
             log.info("Created SMSC (server) manager for connection {} (bindType=SMSC)", connectionId);
         }
     }
 
+    /**
+     * Reports SMSC servers that will not fit the Netty pool. Each server holds its NIO workers
+     * ({@code server-worker-threads}) for its lifetime; the cap is not raised, so a server beyond it fails to start.
+     */
+    private void checkServerThreads() {
+        long servers = connectionManagers.values().stream()
+            .filter(manager -> manager instanceof CloudhopperSMSCManager)
+            .count();
+        long needed = servers * Math.min(properties.getMaxConnectionSize(), properties.getServerWorkerThreads());
+        if (needed > executorService.getMaximumPoolSize()) {
+            log.error("{} SMSC servers need {} Netty worker threads but executor.max-pool-size is {}; "
+                    + "raise it or lower server-worker-threads", servers, needed, executorService.getMaximumPoolSize());
+        }
+    }
+
     /**
      * Starts the simulator (Simulator interface implementation).
      * This is called automatically by Spring after initialization.
@@ -412,6 +422,7 @@ public class CloudhopperSimulator implements SMPPSimulatorInterface {
             executorService.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        SimExecutors.unregister("cloudhopper-worker");
 
         // Clear session state
         sessionStateManager.clear();
@@ -159,7 +159,7 @@ public class CloudhopperCacheManager {
 
             // Decode with detection
             DecodingResult decodingResult = CloudhopperEncodingHandler.decodeWithDetection(
-                messageBytes, declaredEncoding);
+                messageBytes, declaredEncoding, "cloudhopper-" + connectionName);
 
             // Create cache entry
             MessagesObject messageObj = new MessagesObject();
@@ -199,8 +199,7 @@ public class CloudhopperCacheManager {
             }
 
             // Store in cache
-            messagesCache.getMap().put(messageId, messageObj);
-            messagesCache.setDirty(true);
+            messagesCache.putCacheRecord(messageId, messageObj);
 
             log.debug("Cached submitted message: id={}, encoding={}, size={} bytes",
                 messageId, decodingResult.encoding, messageBytes != null ? messageBytes.length : 0);
@@ -240,7 +239,7 @@ public class CloudhopperCacheManager {
 
             // Decode with detection
             DecodingResult decodingResult = CloudhopperEncodingHandler.decodeWithDetection(
-                messageBytes, declaredEncoding);
+                messageBytes, declaredEncoding, "cloudhopper-" + connectionName);
 
             // Create cache entry
             MessagesObject messageObj = new MessagesObject();
@@ -286,8 +285,7 @@ public class CloudhopperCacheManager {
             }
 
             // Store in cache
-            messagesCache.getMap().put(messageId, messageObj);
-            messagesCache.setDirty(true);
+            messagesCache.putCacheRecord(messageId, messageObj);
 
             log.debug("Cached received message: id={}, encoding={}, size={} bytes",
                 messageId, decodingResult.encoding, messageBytes != null ? messageBytes.length : 0);
@@ -341,8 +339,7 @@ public class CloudhopperCacheManager {
             }
 
             // Store assembled message
-            messagesCache.getMap().put(assembledId, assembledObj);
-            messagesCache.setDirty(true);
+            messagesCache.putCacheRecord(assembledId, assembledObj);
 
             log.info("Assembled concatenated message: {} parts, {} bytes, reference={}",
                 concatInfo.totalParts, state.assembledBytes != null ? state.assembledBytes.length : 0,
@@ -209,4 +209,26 @@ public enum CloudhopperConcatenationType {
     public byte getEsmClass() {
         return usesUdhi() ? (byte) 0x40 : (byte) 0x00;
     }
+
+    /**
+     * Maps the concatenation of an {@link com.telemessage.simulators.smpp.SMPPRequest} to the Cloudhopper type.
+     *
+     * @param type Request concatenation, may be null
+     * @param fallback Used when the request does not choose one (null or NA)
+     * @return Matching Cloudhopper concatenation type
+     */
+    public static CloudhopperConcatenationType fromRequest(
+            com.telemessage.simulators.smpp.SMPPRequest.ConcatenationType type,
+            CloudhopperConcatenationType fallback) {
+        if (type == null) {
+            return fallback;
+        }
+        return switch (type) {
+            case UDHI -> UDHI;
+            case SAR -> SAR;
+            case PAYLOAD, PAYLOAD_MESSAGE -> PAYLOAD;
+            case UDHI_PAYLOAD -> UDHI_PAYLOAD;
+            case NA -> fallback;
+        };
+    }
 }
@@ -2,6 +2,7 @@ package com.telemessage.simulators.smpp_cloudhopper.config;
 
 import com.telemessage.simulators.Simulator;
 import com.telemessage.simulators.common.conf.EnvConfiguration;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.smpp_cloudhopper.CloudhopperSimulator;
 import com.telemessage.simulators.smpp_cloudhopper.config.CloudhopperProperties;
@@ -83,6 +84,7 @@ public class CloudhopperAutoConfiguration {
         log.info("  - Bind Timeout: {}ms", properties.getBindTimeoutMs());
         log.info("  - Window Size: {}", properties.getWindowSize());
         log.info("  - Max Connections: {}", properties.getMaxConnectionSize());
+        log.info("  - SMSC Server Worker Threads: {}", properties.getServerWorkerThreads());
         log.info("  - Non-Blocking Sockets: {}", properties.getNonBlockingSocketsEnabled());
         log.info("  - JMX Enabled: {}", properties.getJmxEnabled());
 
@@ -153,6 +155,7 @@ public class CloudhopperAutoConfiguration {
 
         // Initialize the executor
         executor.initialize();
+        SimExecutors.monitor("cloudhopper", executor.getThreadPoolExecutor());
 
         log.info("Cloudhopper Thread Pool Executor initialized successfully");
 
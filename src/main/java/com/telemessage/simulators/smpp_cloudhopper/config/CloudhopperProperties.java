@@ -86,6 +86,16 @@ public class CloudhopperProperties {
     @Min(1)
     private Integer maxConnectionSize = 100;
 
+    /**
+     * NIO worker threads each SMSC server holds on the shared executor for its lifetime.
+     * ch-smpp sizes a server's worker pool by its max connection size, so an SMSC server accepts
+     * at most min(maxConnectionSize, serverWorkerThreads) connections.
+     * Default: 4
+     */
+    @NotNull
+    @Min(1)
+    private Integer serverWorkerThreads = 4;
+
     /**
      * Enable non-blocking sockets using Netty NIO.
      * Default: true (recommended for high throughput)
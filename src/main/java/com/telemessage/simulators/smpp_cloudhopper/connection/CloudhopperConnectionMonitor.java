@@ -8,6 +8,7 @@ import com.cloudhopper.smpp.type.RecoverablePduException;
 import com.cloudhopper.smpp.type.SmppChannelException;
 import com.cloudhopper.smpp.type.SmppTimeoutException;
 import com.cloudhopper.smpp.type.UnrecoverablePduException;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -48,8 +49,9 @@ public class CloudhopperConnectionMonitor {
 
     // Session tracking
     private final Map<String, MonitoredSession> monitoredSessions = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
-    private final ExecutorService reconnectExecutor = Executors.newCachedThreadPool();
+    // Shared timer; enquire links and reconnects block, so they run on virtual threads
+    private final ScheduledExecutorService scheduler = SimExecutors.scheduler();
+    private final ExecutorService reconnectExecutor = SimExecutors.io();
 
     // Global monitoring state
     private final AtomicBoolean monitoringEnabled = new AtomicBoolean(true);
@@ -110,7 +112,7 @@ public class CloudhopperConnectionMonitor {
         long interval = DEFAULT_ENQUIRE_LINK_INTERVAL;
 
         monitored.enquireLinkFuture = scheduler.scheduleWithFixedDelay(
-            () -> sendEnquireLink(monitored),
+            () -> reconnectExecutor.execute(() -> sendEnquireLink(monitored)),
             interval,
             interval,
             TimeUnit.MILLISECONDS
@@ -382,23 +384,7 @@ public class CloudhopperConnectionMonitor {
             monitored.stopMonitoring();
         }
 
-        // Shutdown executors
-        scheduler.shutdown();
-        reconnectExecutor.shutdown();
-
-        try {
-            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-            if (!reconnectExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
-                reconnectExecutor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            scheduler.shutdownNow();
-            reconnectExecutor.shutdownNow();
-        }
-
+        // The executors are shared; running reconnects stop on shutdownRequested
         monitoredSessions.clear();
     }
 
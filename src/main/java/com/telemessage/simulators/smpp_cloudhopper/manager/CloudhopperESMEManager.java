@@ -5,6 +5,7 @@ import com.cloudhopper.smpp.impl.DefaultSmppClient;
 import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
 import com.cloudhopper.smpp.pdu.*;
 import com.cloudhopper.smpp.type.*;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.controllers.message.MessagesObject;
 import com.telemessage.simulators.controllers.message.MessageUtils;
@@ -14,14 +15,15 @@ import com.telemessage.simulators.smpp_cloudhopper.concatenation.CloudhopperConc
 import com.telemessage.simulators.smpp_cloudhopper.config.CloudhopperProperties;
 import com.telemessage.simulators.smpp_cloudhopper.sender.CloudhopperMessageSender;
 import com.telemessage.simulators.smpp_cloudhopper.session.CloudhopperClientSessionHandler;
+import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperEncodingHandler;
 import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperUtils;
 import com.telemessage.simulators.smpp_cloudhopper.util.SessionStateManager;
+import com.telemessage.simulators.stats.SimMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -62,7 +64,7 @@ public class CloudhopperESMEManager implements CloudhopperConnectionManager {
     private SmppClient smppClient;
     private SmppSession session;
     private CloudhopperClientSessionHandler sessionHandler;
-    private ScheduledExecutorService reconnectExecutor;
+    private volatile ScheduledFuture<?> reconnectTask;
     private final CloudhopperMessageSender messageSender;
 
     private volatile boolean isRunning = false;
@@ -91,7 +93,9 @@ public class CloudhopperESMEManager implements CloudhopperConnectionManager {
         this.sessionStateManager = sessionStateManager;
         this.messagesCache = messagesCache;
         this.executorService = executorService;
-        this.messageSender = new CloudhopperMessageSender();
+        this.messageSender = new CloudhopperMessageSender(
+            Boolean.TRUE.equals(properties.getSession().getAsyncSubmitEnabled()),
+            SimMetrics.connection(SimMetrics.CLOUDHOPPER, config));
     }
 
     @Override
@@ -114,14 +118,6 @@ public class CloudhopperESMEManager implements CloudhopperConnectionManager {
             messagesCache
         );
 
-        // Create reconnect executor
-        reconnectExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r);
-            t.setName("esme-reconnect-" + connectionId);
-            t.setDaemon(true);
-            return t;
-        });
-
         // Set isRunning BEFORE attempting connection so reconnect logic works
         isRunning = true;
 
@@ -278,11 +274,12 @@ public class CloudhopperESMEManager implements CloudhopperConnectionManager {
         }
 
         try {
-            // Determine encoding (default to GSM7)
-            String encoding = "GSM7";
+            // Determine encoding (GSM7 unless the text needs UCS2)
+            String encoding = CloudhopperEncodingHandler.needsUnicodeEncoding(request.getText()) ? "UCS2" : "GSM7";
 
-            // Determine concatenation type (default to UDHI)
-            CloudhopperConcatenationType concatenationType = CloudhopperConcatenationType.UDHI;
+            // Determine concatenation type (request override, default to UDHI)
+            CloudhopperConcatenationType concatenationType =
+                CloudhopperConcatenationType.fromRequest(request.getConcatenation(), CloudhopperConcatenationType.UDHI);
 
             // Use CloudhopperMessageSender for automatic splitting and sending
             CloudhopperMessageSender.SendResult result = messageSender.sendLongMessage(
@@ -295,44 +292,44 @@ public class CloudhopperESMEManager implements CloudhopperConnectionManager {
                 properties.getSession().getResponseTimeoutMs()
             );
 
+            // Parts the SMSC accepted went out even if others failed: count and cache them either way
+            for (int i = 0; i < result.getPartsSent(); i++) {
+                sessionStateManager.incrementMessagesSent(connectionId, SessionStateManager.DEFAULT_SESSION_ID);
+            }
+
+            List<String> messageIds = result.getMessageIds();
+            List<Integer> partNumbers = result.getPartNumbers();
+            for (int i = 0; i < messageIds.size(); i++) {
+                String messageId = messageIds.get(i);
+                MessagesObject cacheMessage = MessagesObject.builder()
+                    .dir("OUT_FULL")
+                    .id(messageId)
+                    .text(request.getText())
+                    .from(request.getSrc())
+                    .to(request.getDst())
+                    .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
+                    .messageEncoding(encoding)
+                    .concatenationType(concatenationType.name())
+                    .implementationType("Cloudhopper")
+                    .totalParts(result.getTotalParts())
+                    .partNumber(partNumbers.get(i))
+                    .build();
+                messagesCache.addCacheRecord(messageId, cacheMessage);
+            }
+
             if (result.isSuccess()) {
-                // Update stats for all parts sent
-                for (int i = 0; i < result.getPartsSent(); i++) {
-                    sessionStateManager.incrementMessagesSent(connectionId);
-                }
-
-                // Cache message(s)
-                List<String> messageIds = result.getMessageIds();
-                for (int i = 0; i < messageIds.size(); i++) {
-                    String messageId = messageIds.get(i);
-                    MessagesObject cacheMessage = MessagesObject.builder()
-                        .dir("OUT_FULL")
-                        .id(messageId)
-                        .text(request.getText())
-                        .from(request.getSrc())
-                        .to(request.getDst())
-                        .messageTime(MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis()))
-                        .messageEncoding(encoding)
-                        .concatenationType(concatenationType.name())
-                        .implementationType("Cloudhopper")
-                        .totalParts(result.getTotalParts())
-                        .partNumber(i + 1)
-                        .build();
-                    messagesCache.addCacheRecord(messageId, cacheMessage);
-                }
-
-                log.info("Message sent successfully: parts={}/{}, dest={}",
-                    result.getPartsSent(), result.getTotalParts(), request.getDst());
+                log.info("Message sent successfully: parts={}/{}, dest={}, partLatenciesMs={}",
+                    result.getPartsSent(), result.getTotalParts(), request.getDst(), result.getPartLatenciesMs());
                 return true;
             } else {
-                sessionStateManager.incrementErrors(connectionId);
+                sessionStateManager.incrementErrors(connectionId, SessionStateManager.DEFAULT_SESSION_ID);
                 log.error("Message sending failed: parts={}/{}, error={}",
                     result.getPartsSent(), result.getTotalParts(), result.getErrorMessage());
                 return false;
             }
 
         } catch (Exception e) {
-            sessionStateManager.incrementErrors(connectionId);
+            sessionStateManager.incrementErrors(connectionId, SessionStateManager.DEFAULT_SESSION_ID);
             log.error("Exception while sending message on connection {}", connectionId, e);
             return false;
         }
@@ -344,15 +341,10 @@ public class CloudhopperESMEManager implements CloudhopperConnectionManager {
 
         isRunning = false;
 
-        // Stop reconnect scheduler
-        if (reconnectExecutor != null) {
-            reconnectExecutor.shutdown();
-            try {
-                reconnectExecutor.awaitTermination(5, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                reconnectExecutor.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
+        // Cancel a pending reconnect
+        ScheduledFuture<?> pending = reconnectTask;
+        if (pending != null) {
+            pending.cancel(false);
         }
 
         // Shutdown session handler (cleanup executor)
@@ -430,7 +422,11 @@ public class CloudhopperESMEManager implements CloudhopperConnectionManager {
                 reconnectAttempts, maxAttempts, connectionId, delayMs);
         }
 
-        reconnectExecutor.schedule(() -> {
+        // The bind blocks, so the attempt runs on a virtual thread rather than on the shared timer
+        reconnectTask = SimExecutors.scheduler().schedule(() -> SimExecutors.io().execute(() -> {
+            if (!isRunning) {
+                return;
+            }
             try {
                 log.info("Attempting reconnect #{} for connection {}", reconnectAttempts, connectionId);
                 connect();
@@ -440,6 +436,6 @@ public class CloudhopperESMEManager implements CloudhopperConnectionManager {
                 // connect() already called scheduleReconnect() before throwing,
                 // so next attempt is already scheduled
             }
-        }, delayMs, TimeUnit.MILLISECONDS);
+        }), delayMs, TimeUnit.MILLISECONDS);
     }
 }
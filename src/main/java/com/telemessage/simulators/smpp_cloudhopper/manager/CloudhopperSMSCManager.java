@@ -10,10 +10,13 @@ import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.smpp.SMPPRequest;
 import com.telemessage.simulators.smpp.conf.SMPPConnectionConf;
 import com.telemessage.simulators.smpp_cloudhopper.config.CloudhopperProperties;
+import com.telemessage.simulators.smpp_cloudhopper.sender.CloudhopperDeliverSender;
 import com.telemessage.simulators.smpp_cloudhopper.session.CloudhopperClientSessionHandler;
 import com.telemessage.simulators.smpp_cloudhopper.util.SessionStateManager;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -32,10 +35,11 @@ import java.util.concurrent.ExecutorService;
  *
  * <p><b>Features:</b></p>
  * <ul>
- *   <li>Multi-client support</li>
+ *   <li>Multi-client support: every bound session joins the connection's session group</li>
  *   <li>Authentication validation</li>
  *   <li>Session management per client</li>
  *   <li>Automatic DR generation</li>
+ *   <li>Asynchronous DELIVER_SM per session, bounded by the session window</li>
  * </ul>
  *
  * @author TM QA Team
@@ -51,6 +55,8 @@ public class CloudhopperSMSCManager implements CloudhopperConnectionManager, Smp
     private final SessionStateManager sessionStateManager;
     private final MessagesCache messagesCache;
     private final ExecutorService executorService;
+    private final CloudhopperDeliverSender deliverSender;
+    private final Map<Long, CloudhopperClientSessionHandler> sessionHandlers = new ConcurrentHashMap<>();
 
     private SmppServer smppServer;
     private volatile boolean isRunning = false;
@@ -78,6 +84,7 @@ public class CloudhopperSMSCManager implements CloudhopperConnectionManager, Smp
         this.sessionStateManager = sessionStateManager;
         this.messagesCache = messagesCache;
         this.executorService = executorService;
+        this.deliverSender = new CloudhopperDeliverSender(connectionId, config, sessionStateManager, messagesCache);
     }
 
     @Override
@@ -146,14 +153,14 @@ public class CloudhopperSMSCManager implements CloudhopperConnectionManager, Smp
         // Window settings
         serverConfig.setDefaultWindowSize(properties.getWindowSize());
 
-        // Session limits
-        serverConfig.setMaxConnectionSize(properties.getMaxConnectionSize());
+        // Session limits; this is also the number of NIO workers the server keeps on the shared executor
+        serverConfig.setMaxConnectionSize(Math.min(properties.getMaxConnectionSize(), properties.getServerWorkerThreads()));
 
         // Enable non-blocking sockets
         serverConfig.setNonBlockingSocketsEnabled(properties.getNonBlockingSocketsEnabled());
 
         log.debug("SMSC server configuration: host=0.0.0.0, port={}, expectedSystemId={}, maxConnections={}",
-            port, systemId, properties.getMaxConnectionSize());
+            port, systemId, serverConfig.getMaxConnectionSize());
 
         return serverConfig;
     }
@@ -224,16 +231,26 @@ public class CloudhopperSMSCManager implements CloudhopperConnectionManager, Smp
                 sessionStateManager,
                 messagesCache
             );
+            sessionHandler.setDeliverSender(deliverSender, sessionId);
+            sessionHandlers.put(sessionId, sessionHandler);
 
-            // Set session handler
-            session.serverReady(sessionHandler);
+            // Register session and its outbox before serverReady: a SUBMIT_SM may arrive right after the bind
+            // response and its receipt needs both (outboxes only take DELIVER_SM once the session is bound)
+            sessionStateManager.registerSession(connectionId, sessionId, session);
+            deliverSender.register(sessionId, session);
 
-            // Register session
-            sessionStateManager.registerSession(connectionId, session);
+            // Set session handler; sends the bind response
+            session.serverReady(sessionHandler);
 
             log.info("✓ Session registered and ready: sessionId={}, connection={}", sessionId, connectionId);
         } catch (Exception e) {
             log.error("Failed to create session handler for sessionId={}", sessionId, e);
+            deliverSender.unregister(sessionId);
+            sessionStateManager.unregisterSession(connectionId, sessionId);
+            CloudhopperClientSessionHandler sessionHandler = sessionHandlers.remove(sessionId);
+            if (sessionHandler != null) {
+                sessionHandler.shutdown();
+            }
             throw new SmppProcessingException(SmppConstants.STATUS_SYSERR);
         }
     }
@@ -243,15 +260,32 @@ public class CloudhopperSMSCManager implements CloudhopperConnectionManager, Smp
         log.info("Session destroyed: sessionId={}, systemId={}, connection={}",
             sessionId, session.getConfiguration().getSystemId(), connectionId);
 
-        sessionStateManager.unregisterSession(connectionId);
+        deliverSender.unregister(sessionId);
+        sessionStateManager.unregisterSession(connectionId, sessionId);
+        CloudhopperClientSessionHandler sessionHandler = sessionHandlers.remove(sessionId);
+        if (sessionHandler != null) {
+            sessionHandler.shutdown();
+        }
     }
 
+    /**
+     * Sends an MO message as DELIVER_SM to a bound receiver/transceiver session.
+     * The message is queued and sent asynchronously; long text goes in a single message_payload PDU,
+     * so {@code sendAllParts} has no effect.
+     *
+     * @return false if no session can receive the message
+     */
     @Override
     public boolean send(SMPPRequest request, boolean sendAllParts) {
-        // SMSC mode typically receives messages rather than sending
-        // This method could be used to send DELIVER_SM (delivery receipts)
-        log.warn("Send operation not typically used in SMSC mode for connection {}", connectionId);
-        return false;
+        if (!deliverSender.canDeliver()) {
+            log.warn("No receiver bound on SMSC connection {}, cannot send DELIVER_SM", connectionId);
+            return false;
+        }
+        return deliverSender.sendMessage(request);
+    }
+
+    public CloudhopperDeliverSender getDeliverSender() {
+        return deliverSender;
     }
 
     @Override
@@ -259,11 +293,15 @@ public class CloudhopperSMSCManager implements CloudhopperConnectionManager, Smp
         log.info("Stopping SMSC server: {}", connectionId);
 
         isRunning = false;
+        deliverSender.shutdown();
 
         if (smppServer != null) {
             smppServer.stop();
             smppServer.destroy();
         }
+        sessionStateManager.unregisterSession(connectionId);
+        sessionHandlers.values().forEach(CloudhopperClientSessionHandler::shutdown);
+        sessionHandlers.clear();
 
         log.info("SMSC server {} stopped", connectionId);
     }
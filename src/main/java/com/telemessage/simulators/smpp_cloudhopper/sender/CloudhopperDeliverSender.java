@@ -0,0 +1,448 @@
+package com.telemessage.simulators.smpp_cloudhopper.sender;
+
+import com.cloudhopper.smpp.PduAsyncResponse;
+import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppServerSession;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import com.cloudhopper.smpp.tlv.Tlv;
+import com.cloudhopper.smpp.type.SmppTimeoutException;
+import com.telemessage.simulators.common.conf.SimExecutors;
+import com.telemessage.simulators.controllers.message.MessageUtils;
+import com.telemessage.simulators.controllers.message.MessagesCache;
+import com.telemessage.simulators.controllers.message.MessagesObject;
+import com.telemessage.simulators.rules.Rule;
+import com.telemessage.simulators.smpp.DeliveryReceiptEngine;
+import com.telemessage.simulators.smpp.SMPPRequest;
+import com.telemessage.simulators.smpp.conf.SMPPConnectionConf;
+import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperDeliveryReceiptGenerator;
+import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperEncodingHandler;
+import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperUtils;
+import com.telemessage.simulators.smpp_cloudhopper.util.SessionStateManager;
+import com.telemessage.simulators.stats.SimMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outbound DELIVER_SM path for SMSC-mode connections: delivery receipts and MO messages.
+ *
+ * <p>Each bound {@link SmppServerSession} gets its own outbox queue. PDUs are sent asynchronously with
+ * {@code sendRequestPdu(pdu, 0, false)}: the session's send window is the only limit on outstanding
+ * requests, and a full window never blocks the caller - the PDU stays queued and the outbox is drained
+ * again when a response (or expiry) frees a slot.</p>
+ *
+ * <p><b>Delivery receipts:</b></p>
+ * <ul>
+ *   <li>Sent for every SUBMIT_SM that requests one (registered_delivery)</li>
+ *   <li>Status and delay come from {@code dr_status_mix}/{@code dr_delay} when configured,
+ *       otherwise from {@link CloudhopperDeliveryReceiptGenerator}</li>
+ *   <li>Routed back to the submitting session if it can receive, else to the receiver/transceiver session
+ *       with the fewest outstanding requests (see {@link SessionStateManager#selectSessionId})</li>
+ * </ul>
+ *
+ * <p>Acknowledged PDUs are cached: receipts are merged into the submitted message's record,
+ * MO messages are stored as OUT_FULL.</p>
+ *
+ * @author TM QA Team
+ * @version 21.0
+ * @since 2026-10-16
+ */
+@Slf4j
+public class CloudhopperDeliverSender {
+
+    private static final int MAX_QUEUED_PER_SESSION = Integer.parseInt(System.getProperty("sim.cloudhopper.outbox.maxQueued", "10000"));
+
+    /**
+     * Maximum short_message length; longer MO messages are sent in message_payload.
+     */
+    private static final int MAX_SHORT_MESSAGE_LENGTH = 254;
+
+    private final int connectionId;
+    private final SMPPConnectionConf config;
+    private final SessionStateManager sessionStateManager;
+    private final MessagesCache messagesCache;
+    private final SimMetrics.Connection metrics;
+    // Incremented by shutdown() to drop receipts scheduled before it
+    private final AtomicInteger generation = new AtomicInteger();
+    private final Map<Long, Outbox> outboxes = new ConcurrentHashMap<>();
+
+    private final LongAdder scheduledReceipts = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile String policyKey;
+    private volatile DeliveryReceiptEngine.Policy policy;
+
+    public CloudhopperDeliverSender(
+            int connectionId,
+            SMPPConnectionConf config,
+            SessionStateManager sessionStateManager,
+            MessagesCache messagesCache) {
+        this.connectionId = connectionId;
+        this.config = config;
+        this.sessionStateManager = sessionStateManager;
+        this.messagesCache = messagesCache;
+        this.metrics = SimMetrics.connection(SimMetrics.CLOUDHOPPER, config);
+    }
+
+    /**
+     * Queue of PDUs waiting for a free window slot on one server session.
+     */
+    private static final class Outbox {
+        private final Long sessionId;
+        private final SmppServerSession session;
+        private final Deque<DeliverSm> queue = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Outbox(Long sessionId, SmppServerSession session) {
+            this.sessionId = sessionId;
+            this.session = session;
+        }
+
+        boolean canReceive() {
+            return session.isBound() && CloudhopperDeliverSender.canReceive(session);
+        }
+    }
+
+    private static boolean canReceive(SmppSession session) {
+        SmppBindType type = session.getBindType();
+        return type == SmppBindType.RECEIVER || type == SmppBindType.TRANSCEIVER;
+    }
+
+    /**
+     * Bookkeeping attached to each outgoing PDU as its reference object.
+     */
+    private static final class Outgoing {
+        private final Outbox outbox;
+        private final String messageId;
+        private final String status; // null for MO messages
+        private final String text;
+        private final String encoding;
+        private final long acceptedNanos; // when the receipt's SUBMIT_SM was accepted, 0 for MO messages
+
+        Outgoing(Outbox outbox, String messageId, String status, String text, String encoding, long acceptedNanos) {
+            this.outbox = outbox;
+            this.messageId = messageId;
+            this.status = status;
+            this.text = text;
+            this.encoding = encoding;
+            this.acceptedNanos = acceptedNanos;
+        }
+    }
+
+    public void register(Long sessionId, SmppServerSession session) {
+        outboxes.put(sessionId, new Outbox(sessionId, session));
+        log.debug("Outbox registered: connection={}, sessionId={}, bindType={}", connectionId, sessionId, session.getBindType());
+    }
+
+    public void unregister(Long sessionId) {
+        Outbox outbox = outboxes.remove(sessionId);
+        if (outbox != null && !outbox.queue.isEmpty()) {
+            int dropped = outbox.queue.size();
+            outbox.queue.clear();
+            failed.add(dropped);
+            log.warn("Session {} on connection {} closed with {} undelivered DELIVER_SM", sessionId, connectionId, dropped);
+        }
+    }
+
+    /**
+     * @return true if at least one bound session can receive DELIVER_SM
+     */
+    public boolean canDeliver() {
+        return outboxes.values().stream().anyMatch(Outbox::canReceive);
+    }
+
+    /**
+     * Plans the delivery receipt for an accepted SUBMIT_SM; returns at once.
+     *
+     * @param sessionId The session the SUBMIT_SM arrived on
+     * @param submitSm The accepted SUBMIT_SM
+     * @param submitSmResp Its response, carrying the message ID
+     * @param rule The message's destination rule, null if none
+     */
+    public void scheduleDeliveryReceipt(Long sessionId, SubmitSm submitSm, SubmitSmResp submitSmResp, Rule rule) {
+        if (!CloudhopperDeliveryReceiptGenerator.isDeliveryReceiptRequested(submitSm)) {
+            log.debug("Delivery receipt not requested (registered_delivery={})", submitSm.getRegisteredDelivery());
+            return;
+        }
+        String status;
+        long delayMs;
+        DeliveryReceiptEngine.Policy configured = rule != null && rule.hasReceiptPolicy()
+            ? rule.receiptPolicy(config.getDrDelay(), config.getDrStatusMix(),
+                StringUtils.defaultIfEmpty(config.getAutomaticDR(), CloudhopperDeliveryReceiptGenerator.STATE_DELIVERED))
+            : configuredPolicy();
+        if (configured != null) {
+            status = configured.nextStatus();
+            delayMs = configured.nextDelayMs();
+        } else {
+            status = CloudhopperDeliveryReceiptGenerator.pickAutomaticStatus();
+            delayMs = CloudhopperDeliveryReceiptGenerator.getDeliveryDelay(status);
+        }
+        SubmitSmResp receiptOf = submitSmResp;
+        if (rule != null && rule.getDrMessageId() != null) {
+            // The receipt reports the rule's message ID instead of the one returned in SUBMIT_SM_RESP
+            receiptOf = submitSm.createResponse();
+            receiptOf.setMessageId(rule.getDrMessageId());
+        }
+        SubmitSmResp receiptResp = receiptOf;
+        long accepted = System.nanoTime();
+        scheduledReceipts.increment();
+        int scheduledGeneration = generation.get();
+        SimExecutors.scheduler().schedule(() -> {
+            if (scheduledGeneration != generation.get()) {
+                return;
+            }
+            try {
+                DeliverSm receipt = CloudhopperDeliveryReceiptGenerator.createDeliveryReceiptPDU(
+                    submitSm, receiptResp, status, CloudhopperDeliveryReceiptGenerator.getDefaultErrorCode(status));
+                Outbox outbox = pickOutbox(sessionId);
+                if (outbox == null) {
+                    failed.increment();
+                    log.warn("No receiver bound on connection {}, dropping DR for msgId={}", connectionId, submitSmResp.getMessageId());
+                    return;
+                }
+                String text = new String(receipt.getShortMessage(), StandardCharsets.ISO_8859_1);
+                enqueue(outbox, receipt, new Outgoing(outbox, submitSmResp.getMessageId(), status, text, "GSM7", accepted));
+            } catch (Exception e) {
+                failed.increment();
+                log.error("Failed to send DR for msgId={} on connection {}", submitSmResp.getMessageId(), connectionId, e);
+            } finally {
+                scheduledReceipts.decrement();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+        log.debug("DR for msgId={} scheduled in {} ms with status {}", submitSmResp.getMessageId(), delayMs, status);
+    }
+
+    /**
+     * Queues an MO message to a bound receiver/transceiver session (round robin).
+     *
+     * @return false if no session can receive it or its outbox is full
+     */
+    public boolean sendMessage(SMPPRequest request) {
+        Outbox outbox = pickOutbox(null);
+        if (outbox == null) {
+            log.error("Cannot send DELIVER_SM: no receiver bound on connection {}", connectionId);
+            return false;
+        }
+        try {
+            String text = StringUtils.defaultString(request.getText());
+            String encoding = CloudhopperEncodingHandler.needsUnicodeEncoding(text) ? "UCS2" : "GSM7";
+            CloudhopperEncodingHandler.EncodingResult encoded = CloudhopperEncodingHandler.encodeWithFallback(text, encoding);
+
+            DeliverSm deliverSm = new DeliverSm();
+            deliverSm.setSourceAddress(CloudhopperUtils.createAddress(
+                    request.getSrc() != null && request.getSrc().matches("^[0-9+]+$") ? SmppConstants.TON_INTERNATIONAL : SmppConstants.TON_ALPHANUMERIC,
+                    request.getSrc() != null && request.getSrc().matches("^[0-9+]+$") ? SmppConstants.NPI_E164 : SmppConstants.NPI_UNKNOWN,
+                    request.getSrc()));
+            deliverSm.setDestAddress(CloudhopperUtils.createAddress(SmppConstants.TON_INTERNATIONAL, SmppConstants.NPI_E164, request.getDst()));
+            deliverSm.setDataCoding(encoded.dataCoding);
+            if (StringUtils.isNotEmpty(request.getServiceType())) {
+                deliverSm.setServiceType(request.getServiceType());
+            }
+            if (encoded.bytes.length <= MAX_SHORT_MESSAGE_LENGTH) {
+                deliverSm.setShortMessage(encoded.bytes);
+            } else {
+                deliverSm.setShortMessage(new byte[0]);
+                deliverSm.addOptionalParameter(new Tlv(SmppConstants.TAG_MESSAGE_PAYLOAD, encoded.bytes));
+            }
+            return enqueue(outbox, deliverSm,
+                    new Outgoing(outbox, CloudhopperUtils.generateMessageId(), null, text, encoded.encoding, 0));
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Failed to build DELIVER_SM on connection {}", connectionId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Session handler callback for responses to PDUs sent asynchronously. Runs on a Netty I/O thread, so only
+     * the outbox drain stays here; caching the message runs on the CPU pool (a full pool makes this thread run it).
+     */
+    public void onResponse(PduAsyncResponse asyncResponse) {
+        PduRequest request = asyncResponse.getRequest();
+        if (!(request.getReferenceObject() instanceof Outgoing)) {
+            return;
+        }
+        Outgoing outgoing = (Outgoing) request.getReferenceObject();
+        PduResponse response = asyncResponse.getResponse();
+        if (response.getCommandStatus() == SmppConstants.STATUS_OK) {
+            acknowledged.increment();
+            sessionStateManager.incrementMessagesSent(connectionId, outgoing.outbox.sessionId);
+            if (outgoing.status != null) {
+                metrics.receipt(outgoing.status, outgoing.acceptedNanos);
+            }
+            SimExecutors.cpu().execute(() -> cache(outgoing));
+        } else {
+            failed.increment();
+            log.warn("DELIVER_SM for msgId={} rejected by session {} with status {}",
+                    outgoing.messageId, outgoing.outbox.sessionId, response.getCommandStatus());
+        }
+        drain(outgoing.outbox);
+    }
+
+    /**
+     * Session handler callback for PDUs whose response never arrived.
+     */
+    public void onExpired(PduRequest request) {
+        if (!(request.getReferenceObject() instanceof Outgoing)) {
+            return;
+        }
+        Outgoing outgoing = (Outgoing) request.getReferenceObject();
+        failed.increment();
+        log.warn("DELIVER_SM for msgId={} expired on session {}", outgoing.messageId, outgoing.outbox.sessionId);
+        drain(outgoing.outbox);
+    }
+
+    public int getQueued() {
+        return outboxes.values().stream().mapToInt(o -> o.queued.get()).sum();
+    }
+
+    public long getScheduledReceipts() {
+        return scheduledReceipts.sum();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getAcknowledged() {
+        return acknowledged.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Drops pending receipts and queued PDUs. The sender can be used again when a session binds.
+     */
+    public void shutdown() {
+        generation.incrementAndGet();
+        scheduledReceipts.reset();
+        for (Long sessionId : new ArrayList<>(outboxes.keySet())) {
+            unregister(sessionId);
+        }
+    }
+
+    private boolean enqueue(Outbox outbox, DeliverSm pdu, Outgoing outgoing) {
+        if (outbox.queued.incrementAndGet() > MAX_QUEUED_PER_SESSION) {
+            outbox.queued.decrementAndGet();
+            failed.increment();
+            log.warn("Outbox of session {} on connection {} is full, rejecting DELIVER_SM for msgId={}",
+                    outbox.sessionId, connectionId, outgoing.messageId);
+            return false;
+        }
+        pdu.setReferenceObject(outgoing);
+        outbox.queue.addLast(pdu);
+        drain(outbox);
+        return true;
+    }
+
+    /**
+     * Sends queued PDUs while the session's window has room. Never waits for a window slot.
+     */
+    private void drain(Outbox outbox) {
+        while (outbox.draining.compareAndSet(false, true)) {
+            try {
+                DeliverSm pdu;
+                while ((pdu = outbox.queue.pollFirst()) != null) {
+                    try {
+                        outbox.session.sendRequestPdu(pdu, 0, false);
+                        outbox.queued.decrementAndGet();
+                        sent.increment();
+                    } catch (SmppTimeoutException e) {
+                        // Window full - resumed by the response or expiry that frees a slot
+                        outbox.queue.addFirst(pdu);
+                        break;
+                    } catch (InterruptedException e) {
+                        outbox.queue.addFirst(pdu);
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        outbox.queued.decrementAndGet();
+                        failed.increment();
+                        sessionStateManager.incrementErrors(connectionId, outbox.sessionId);
+                        log.error("Failed to send DELIVER_SM on session {} of connection {}", outbox.sessionId, connectionId, e);
+                    }
+                }
+            } finally {
+                outbox.draining.set(false);
+            }
+            // A slot may have been freed while this thread held the drain
+            if (outbox.queue.isEmpty() || outbox.session.getSendWindow().getFreeSize() <= 0) {
+                return;
+            }
+        }
+    }
+
+    private Outbox pickOutbox(Long preferredSessionId) {
+        if (preferredSessionId != null) {
+            Outbox preferred = outboxes.get(preferredSessionId);
+            if (preferred != null && preferred.canReceive()) {
+                return preferred;
+            }
+        }
+        // Least outstanding receiver/transceiver session of the connection's session group
+        Long selected = sessionStateManager.selectSessionId(connectionId, CloudhopperDeliverSender::canReceive);
+        return selected != null ? outboxes.get(selected) : null;
+    }
+
+    /**
+     * @return The dr_delay/dr_status_mix policy, or null when neither is configured.
+     */
+    private DeliveryReceiptEngine.Policy configuredPolicy() {
+        if (StringUtils.isBlank(config.getDrDelay()) && StringUtils.isBlank(config.getDrStatusMix())) {
+            return null;
+        }
+        String key = config.getDrDelay() + "|" + config.getDrStatusMix();
+        if (!key.equals(policyKey)) {
+            // Without a status mix, the configured automatic_dr status is used as in the Logica implementation
+            policy = DeliveryReceiptEngine.Policy.parse(config.getDrDelay(), config.getDrStatusMix(),
+                    StringUtils.defaultIfEmpty(config.getAutomaticDR(), CloudhopperDeliveryReceiptGenerator.STATE_DELIVERED));
+            policyKey = key;
+        }
+        return policy;
+    }
+
+    private void cache(Outgoing outgoing) {
+        try {
+            String now = MessageUtils.getMessageDateFromTimestamp(System.currentTimeMillis());
+            MessagesObject.MessagesObjectBuilder record = MessagesObject.builder()
+                    .id(outgoing.messageId)
+                    .text(outgoing.text)
+                    .messageTime(now)
+                    .messageEncoding(outgoing.encoding)
+                    .implementationType("Cloudhopper");
+            if (outgoing.status != null) {
+                // Merged into the SUBMIT_SM record when it is cached
+                record.dir("OUT_dr")
+                        .directResponse("DR: " + outgoing.status)
+                        .deliveryReceiptShortMessage(outgoing.status)
+                        .deliveryReceiptTime(now);
+            } else {
+                record.dir("OUT_FULL");
+            }
+            messagesCache.addCacheRecord(outgoing.messageId, record.build());
+        } catch (Exception e) {
+            log.error("Error caching DELIVER_SM record for msgId={}", outgoing.messageId, e);
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package com.telemessage.simulators.smpp_cloudhopper.sender;
 
+import com.cloudhopper.commons.util.windowing.WindowFuture;
 import com.cloudhopper.smpp.SmppConstants;
 import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
 import com.cloudhopper.smpp.pdu.SubmitSm;
 import com.cloudhopper.smpp.pdu.SubmitSmResp;
 import com.cloudhopper.smpp.tlv.Tlv;
 import com.cloudhopper.smpp.type.Address;
+import com.cloudhopper.smpp.type.SmppTimeoutException;
 import com.telemessage.simulators.smpp_cloudhopper.concatenation.CloudhopperConcatenationType;
 import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperUtils;
+import com.telemessage.simulators.stats.SimMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.charset.StandardCharsets;
@@ -27,12 +32,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  *   <li>Smart message splitting based on encoding and concatenation type</li>
  *   <li>Support for all concatenation methods (UDHI, SAR, PAYLOAD, TEXT_BASE)</li>
  *   <li>Thread-safe reference number generation</li>
+ *   <li>Pipelined multipart submission within the session window</li>
  *   <li>Detailed error tracking and logging</li>
  * </ul>
  *
  * <p><b>Usage Example:</b></p>
  * <pre>
- * CloudhopperMessageSender sender = new CloudhopperMessageSender();
+ * CloudhopperMessageSender sender = new CloudhopperMessageSender(true);  // pipelined
  * SendResult result = sender.sendLongMessage(
  *     session,
  *     "1234567890",      // source
@@ -73,6 +79,39 @@ public class CloudhopperMessageSender {
      */
     private static final AtomicInteger referenceGenerator = new AtomicInteger(0);
 
+    /**
+     * Whether multipart messages are submitted without waiting for each part's response.
+     */
+    private final boolean pipelined;
+
+    private final SimMetrics.Connection metrics;
+
+    /**
+     * Creates a sender that submits parts one at a time, waiting for each response.
+     */
+    public CloudhopperMessageSender() {
+        this(false);
+    }
+
+    /**
+     * @param pipelined true to submit all parts of a multipart message before awaiting
+     *                  their responses (bounded by the session window)
+     */
+    public CloudhopperMessageSender(boolean pipelined) {
+        this(pipelined, null);
+    }
+
+    /**
+     * @param pipelined true to submit all parts of a multipart message before awaiting
+     *                  their responses (bounded by the session window)
+     * @param metrics Meters recording the response time of each SUBMIT_SM awaited here, null for none.
+     *                Pipelined parts are recorded by the session handler, which receives their responses.
+     */
+    public CloudhopperMessageSender(boolean pipelined, SimMetrics.Connection metrics) {
+        this.pipelined = pipelined;
+        this.metrics = metrics;
+    }
+
     /**
      * Result of a send operation.
      */
@@ -82,21 +121,42 @@ public class CloudhopperMessageSender {
         private final int totalParts;
         private final List<String> messageIds;
         private final String errorMessage;
+        private final List<Long> partLatenciesMs;
+        private final List<Integer> partNumbers;
 
         public SendResult(boolean success, int partsSent, int totalParts,
                          List<String> messageIds, String errorMessage) {
+            this(success, partsSent, totalParts, messageIds, errorMessage, null, null);
+        }
+
+        public SendResult(boolean success, int partsSent, int totalParts,
+                         List<String> messageIds, String errorMessage, List<Long> partLatenciesMs,
+                         List<Integer> partNumbers) {
             this.success = success;
             this.partsSent = partsSent;
             this.totalParts = totalParts;
             this.messageIds = messageIds != null ? messageIds : new ArrayList<>();
             this.errorMessage = errorMessage;
+            this.partLatenciesMs = partLatenciesMs != null ? partLatenciesMs : new ArrayList<>();
+            if (partNumbers == null) {
+                partNumbers = new ArrayList<>(this.messageIds.size());
+                for (int i = 1; i <= this.messageIds.size(); i++) {
+                    partNumbers.add(i);
+                }
+            }
+            this.partNumbers = partNumbers;
         }
 
         public boolean isSuccess() { return success; }
         public int getPartsSent() { return partsSent; }
         public int getTotalParts() { return totalParts; }
+        /** IDs of the parts the SMSC accepted, also when others failed. */
         public List<String> getMessageIds() { return messageIds; }
+        /** Part number (1-based) of each entry of {@link #getMessageIds()}. */
+        public List<Integer> getPartNumbers() { return partNumbers; }
         public String getErrorMessage() { return errorMessage; }
+        /** Submit-to-response time of each part in part order (pipelined mode only; -1 if no response). */
+        public List<Long> getPartLatenciesMs() { return partLatenciesMs; }
 
         public static SendResult success(int totalParts, List<String> messageIds) {
             return new SendResult(true, totalParts, totalParts, messageIds, null);
@@ -169,7 +229,7 @@ public class CloudhopperMessageSender {
         SubmitSm submitSm = createBasicSubmitSm(source, destination, encoding);
         submitSm.setShortMessage(messageBytes);
 
-        SubmitSmResp response = session.submit(submitSm, timeoutMs);
+        SubmitSmResp response = submit(session, submitSm, timeoutMs);
 
         if (response.getCommandStatus() == SmppConstants.STATUS_OK) {
             List<String> messageIds = new ArrayList<>();
@@ -182,6 +242,25 @@ public class CloudhopperMessageSender {
         }
     }
 
+    /**
+     * Submits and waits for the response, recording its response time.
+     */
+    private SubmitSmResp submit(SmppSession session, SubmitSm submitSm, long timeoutMs) throws Exception {
+        long start = System.nanoTime();
+        try {
+            SubmitSmResp response = session.submit(submitSm, timeoutMs);
+            if (metrics != null) {
+                metrics.response(response.getCommandId(), response.getCommandStatus(), System.nanoTime() - start);
+            }
+            return response;
+        } catch (SmppTimeoutException e) {
+            if (metrics != null) {
+                metrics.timeout();
+            }
+            throw e;
+        }
+    }
+
     /**
      * Sends a multi-part message with concatenation.
      */
@@ -202,12 +281,17 @@ public class CloudhopperMessageSender {
             return SendResult.failure(0, 0, "Message splitting resulted in 0 parts");
         }
 
-        log.info("Sending multi-part message: {} parts, concatenation type: {}",
-                totalParts, concatenationType);
+        log.info("Sending multi-part message: {} parts, concatenation type: {}, pipelined: {}",
+                totalParts, concatenationType, pipelined);
 
         // Generate reference number for this message
         int referenceNumber = generateReferenceNumber();
 
+        if (pipelined) {
+            return sendMultiPartPipelined(session, source, destination, parts, encoding,
+                                          concatenationType, referenceNumber, timeoutMs);
+        }
+
         List<String> messageIds = new ArrayList<>();
         int partsSent = 0;
 
@@ -222,7 +306,7 @@ public class CloudhopperMessageSender {
                     concatenationType, referenceNumber, partNumber, totalParts
                 );
 
-                SubmitSmResp response = session.submit(submitSm, timeoutMs);
+                SubmitSmResp response = submit(session, submitSm, timeoutMs);
 
                 if (response.getCommandStatus() == SmppConstants.STATUS_OK) {
                     messageIds.add(response.getMessageId());
@@ -232,13 +316,13 @@ public class CloudhopperMessageSender {
                 } else {
                     log.error("Part {}/{} failed with status: {}",
                              partNumber, totalParts, response.getCommandStatus());
-                    return SendResult.failure(partsSent, totalParts,
+                    return new SendResult(false, partsSent, totalParts, messageIds,
                         "Part " + partNumber + " failed with status: " + response.getCommandStatus());
                 }
 
             } catch (Exception e) {
                 log.error("Exception sending part {}/{}: {}", partNumber, totalParts, e.getMessage());
-                return SendResult.failure(partsSent, totalParts,
+                return new SendResult(false, partsSent, totalParts, messageIds,
                     "Part " + partNumber + " threw exception: " + e.getMessage());
             }
         }
@@ -246,6 +330,95 @@ public class CloudhopperMessageSender {
         return SendResult.success(totalParts, messageIds);
     }
 
+    /**
+     * Sends all parts without waiting for responses in between, then collects the responses.
+     *
+     * <p>Each part is offered to the session window asynchronously; the offer only waits (up to
+     * {@code timeoutMs}) while the window is full. Responses complete the parts' window futures,
+     * so latency is measured per part from window acceptance to response.</p>
+     *
+     * <p>If an offer fails, no further parts are offered but the parts already offered are still awaited, so the
+     * result reports every part the SMSC accepted. A part without response in time is cancelled to free its
+     * window slot.</p>
+     */
+    private SendResult sendMultiPartPipelined(
+            SmppSession session,
+            String source,
+            String destination,
+            List<String> parts,
+            String encoding,
+            CloudhopperConcatenationType concatenationType,
+            int referenceNumber,
+            long timeoutMs) throws Exception {
+
+        int totalParts = parts.size();
+        List<WindowFuture<Integer, PduRequest, PduResponse>> futures = new ArrayList<>(totalParts);
+        String error = null;
+
+        // Submit every part
+        for (int i = 0; i < totalParts; i++) {
+            int partNumber = i + 1;
+            try {
+                SubmitSm submitSm = createMultiPartSubmitSm(
+                    source, destination, parts.get(i), encoding,
+                    concatenationType, referenceNumber, partNumber, totalParts
+                );
+                futures.add(session.sendRequestPdu(submitSm, timeoutMs, false));
+            } catch (Exception e) {
+                log.error("Exception sending part {}/{}: {}", partNumber, totalParts, e.getMessage());
+                error = "Part " + partNumber + " threw exception: " + e.getMessage();
+                break;
+            }
+        }
+
+        // Collect responses of the submitted parts, in part order
+        List<String> messageIds = new ArrayList<>();
+        List<Integer> partNumbers = new ArrayList<>();
+        List<Long> latencies = new ArrayList<>(futures.size());
+        int partsSent = 0;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+
+        for (int i = 0; i < futures.size(); i++) {
+            int partNumber = i + 1;
+            WindowFuture<Integer, PduRequest, PduResponse> future = futures.get(i);
+            boolean done = future.await(Math.max(1, deadline - System.currentTimeMillis()));
+
+            if (!done) {
+                // Otherwise the request holds its window slot until the window's own expiry
+                future.cancel();
+            }
+            if (!done || !future.isSuccess()) {
+                latencies.add(-1L);
+                log.error("Part {}/{} got no response within {} ms", partNumber, totalParts, timeoutMs);
+                if (error == null) {
+                    error = "Part " + partNumber + " got no response";
+                }
+                continue;
+            }
+
+            latencies.add(future.getAcceptToDoneTime());
+            PduResponse response = future.getResponse();
+            if (response.getCommandStatus() == SmppConstants.STATUS_OK) {
+                messageIds.add(((SubmitSmResp) response).getMessageId());
+                partNumbers.add(partNumber);
+                partsSent++;
+                log.debug("Part {}/{} sent successfully: msgId={}, latency={}ms",
+                         partNumber, totalParts, ((SubmitSmResp) response).getMessageId(), future.getAcceptToDoneTime());
+            } else {
+                log.error("Part {}/{} failed with status: {}",
+                         partNumber, totalParts, response.getCommandStatus());
+                if (error == null) {
+                    error = "Part " + partNumber + " failed with status: " + response.getCommandStatus();
+                }
+            }
+        }
+
+        if (error != null) {
+            return new SendResult(false, partsSent, totalParts, messageIds, error, latencies, partNumbers);
+        }
+        return new SendResult(true, totalParts, totalParts, messageIds, null, latencies, partNumbers);
+    }
+
     /**
      * Creates a basic SubmitSm PDU with common fields.
      */
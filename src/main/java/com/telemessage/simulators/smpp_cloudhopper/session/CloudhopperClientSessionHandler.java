@@ -6,13 +6,18 @@ import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
 import com.cloudhopper.smpp.pdu.*;
 import com.cloudhopper.smpp.type.RecoverablePduException;
 import com.cloudhopper.smpp.type.UnrecoverablePduException;
+import com.telemessage.simulators.common.conf.SimExecutors;
 import com.telemessage.simulators.controllers.message.MessagesCache;
 import com.telemessage.simulators.controllers.message.MessagesObject;
 import com.telemessage.simulators.controllers.message.MessageUtils;
+import com.telemessage.simulators.rules.Rule;
+import com.telemessage.simulators.rules.RulesEngine;
 import com.telemessage.simulators.smpp.conf.SMPPConnectionConf;
+import com.telemessage.simulators.smpp_cloudhopper.sender.CloudhopperDeliverSender;
 import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperUtils;
 import com.telemessage.simulators.smpp_cloudhopper.util.CloudhopperUtils.ConcatPart;
 import com.telemessage.simulators.smpp_cloudhopper.util.SessionStateManager;
+import com.telemessage.simulators.stats.SimMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Instant;
@@ -20,8 +25,7 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -62,6 +66,7 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
     private final SMPPConnectionConf config;
     private final SessionStateManager sessionStateManager;
     private final MessagesCache messagesCache;
+    private final SimMetrics.Connection metrics;
 
     // Concatenation assembly maps
     private final Map<String, Map<Integer, ConcatPart>> concatenationMap = new ConcurrentHashMap<>();
@@ -72,8 +77,13 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
     private static final long MESSAGE_TIMEOUT_MS = 5 * 60 * 1000;
     private static final long CLEANUP_INTERVAL_MS = 60 * 1000;  // Run cleanup every minute
 
-    // Cleanup task executor
-    private final ScheduledExecutorService cleanupExecutor;
+    // Periodic cleanup task on the shared scheduler
+    private final ScheduledFuture<?> cleanupTask;
+
+    // SMSC mode only: outbound DELIVER_SM path
+    private volatile CloudhopperDeliverSender deliverSender;
+    // Session this handler counts on: the ESME connection's single session unless setDeliverSender names one
+    private volatile Long sessionId = SessionStateManager.DEFAULT_SESSION_ID;
 
     /**
      * Constructor.
@@ -92,18 +102,11 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
         this.config = config;
         this.sessionStateManager = sessionStateManager;
         this.messagesCache = messagesCache;
+        this.metrics = SimMetrics.connection(SimMetrics.CLOUDHOPPER, config);
 
-        // Initialize cleanup executor
-        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r);
-            t.setName("concat-cleanup-" + connectionId);
-            t.setDaemon(true);
-            return t;
-        });
-
-        // Schedule cleanup task
-        cleanupExecutor.scheduleAtFixedRate(
-            this::cleanupIncompleteMessages,
+        // Schedule cleanup task; assembly runs on the CPU pool to keep the shared timer free
+        this.cleanupTask = SimExecutors.scheduler().scheduleAtFixedRate(
+            () -> SimExecutors.cpu().execute(this::cleanupIncompleteMessages),
             CLEANUP_INTERVAL_MS,
             CLEANUP_INTERVAL_MS,
             TimeUnit.MILLISECONDS
@@ -112,8 +115,20 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
         log.info("Initialized CloudhopperClientSessionHandler for connection {} with timeout cleanup", connectionId);
     }
 
+    /**
+     * Enables delivery receipts for SUBMIT_SM received on a server session (SMSC mode).
+     *
+     * @param deliverSender Outbound DELIVER_SM path of the SMSC connection
+     * @param sessionId ID of the server session this handler serves
+     */
+    public void setDeliverSender(CloudhopperDeliverSender deliverSender, Long sessionId) {
+        this.sessionId = sessionId;
+        this.deliverSender = deliverSender;
+    }
+
     @Override
     public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+        long received = System.nanoTime();
         try {
             // Handle different PDU types
             return switch (pduRequest.getCommandId()) {
@@ -130,12 +145,14 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
             };
         } catch (Exception e) {
             log.error("Error processing PDU request", e);
-            sessionStateManager.incrementErrors(connectionId);
+            sessionStateManager.incrementErrors(connectionId, sessionId);
 
             // Return error response
             PduResponse response = pduRequest.createResponse();
             response.setCommandStatus(SmppConstants.STATUS_SYSERR);
             return response;
+        } finally {
+            metrics.handled(pduRequest.getCommandId(), received);
         }
     }
 
@@ -162,7 +179,7 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
 
         } catch (Exception e) {
             log.error("Error handling DELIVER_SM", e);
-            sessionStateManager.incrementErrors(connectionId);
+            sessionStateManager.incrementErrors(connectionId, sessionId);
 
             DeliverSmResp response = deliverSm.createResponse();
             response.setCommandStatus(SmppConstants.STATUS_SYSERR);
@@ -218,7 +235,7 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
         messagesCache.addCacheRecord(messageId, msgObj);
 
         // Increment counter
-        sessionStateManager.incrementMessagesReceived(connectionId);
+        sessionStateManager.incrementMessagesReceived(connectionId, sessionId);
 
         // Create response
         DeliverSmResp response = deliverSm.createResponse();
@@ -343,7 +360,7 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
         messagesCache.addCacheRecord(messageId, msgObj);
 
         // Increment counter
-        sessionStateManager.incrementMessagesReceived(connectionId);
+        sessionStateManager.incrementMessagesReceived(connectionId, sessionId);
 
         // Clean up concatenation data
         concatenationMap.remove(reference);
@@ -362,11 +379,17 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
 
     /**
      * Handles SUBMIT_SM PDU (SMSC mode).
+     *
+     * <p>The destination rule ({@link RulesEngine}) may reject or throttle the message, drop its response
+     * (the client sees a timeout) or its receipt, or change the receipt's status and delay.</p>
      */
     private PduResponse handleSubmitSm(SubmitSm submitSm) {
         log.debug("Received SUBMIT_SM to: {}", submitSm.getDestAddress().getAddress());
 
         try {
+            Rule rule = RulesEngine.match(RulesEngine.Protocol.smpp, connectionId,
+                submitSm.getSourceAddress().getAddress(), submitSm.getDestAddress().getAddress());
+
             // Process similar to DELIVER_SM
             String messageText = CloudhopperUtils.decodeMessage(
                 submitSm.getShortMessage(),
@@ -390,11 +413,25 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
             // Cache message
             messagesCache.addCacheRecord(messageId, msgObj);
 
-            sessionStateManager.incrementMessagesReceived(connectionId);
+            sessionStateManager.incrementMessagesReceived(connectionId, sessionId);
 
             // Create response
             SubmitSmResp response = submitSm.createResponse();
             response.setMessageId(messageId);
+            if (rule != null) {
+                response.setCommandStatus(rule.commandStatus(connectionId, SmppConstants.STATUS_OK));
+            }
+
+            if (rule != null && rule.dropsResponse()) {
+                log.debug("Rule {} drops the response to msgId={}", rule, messageId);
+                return null;
+            }
+
+            boolean receiptWanted = rule == null
+                || (!rule.dropsReceipt() && response.getCommandStatus() == SmppConstants.STATUS_OK);
+            if (deliverSender != null && shouldGenerateDR() && receiptWanted) {
+                deliverSender.scheduleDeliveryReceipt(sessionId, submitSm, response, rule);
+            }
 
             log.debug("SUBMIT_SM processed: msgId={}", messageId);
 
@@ -460,8 +497,8 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
 
             log.debug("DR generated: {}", drText);
 
-            // In real implementation, would send DELIVER_SM with DR back to originator
-            // For now, just log it
+            // An ESME does not send receipts for DELIVER_SM; SMSC-side receipts
+            // for SUBMIT_SM are sent by CloudhopperDeliverSender
 
         } catch (Exception e) {
             log.error("Failed to generate DR", e);
@@ -492,14 +529,31 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
     @Override
     public void fireChannelUnexpectedlyClosed() {
         log.warn("Channel unexpectedly closed for connection {}", connectionId);
-        sessionStateManager.updateState(connectionId, CloudhopperUtils.SessionState.CLOSED);
+        sessionStateManager.updateState(connectionId, sessionId, CloudhopperUtils.SessionState.CLOSED);
         super.fireChannelUnexpectedlyClosed();
     }
 
     @Override
     public void fireExpectedPduResponseReceived(PduAsyncResponse pduAsyncResponse) {
         log.trace("Expected PDU response received");
-        super.fireExpectedPduResponseReceived(pduAsyncResponse);
+        // Responses to async requests are consumed through their window futures
+        // (pipelined SUBMIT_SM) or the deliver sender, so the default "discard" warning is skipped
+        PduResponse response = pduAsyncResponse.getResponse();
+        metrics.response(response.getCommandId(), response.getCommandStatus(),
+            TimeUnit.MILLISECONDS.toNanos(pduAsyncResponse.getResponseTime()));
+        if (deliverSender != null) {
+            deliverSender.onResponse(pduAsyncResponse);
+        }
+    }
+
+    @Override
+    public void firePduRequestExpired(PduRequest pduRequest) {
+        log.warn("PDU request expired for connection {}: 0x{}", connectionId, Integer.toHexString(pduRequest.getCommandId()));
+        metrics.timeout();
+        if (deliverSender != null) {
+            deliverSender.onExpired(pduRequest);
+        }
+        super.firePduRequestExpired(pduRequest);
     }
 
     @Override
@@ -511,14 +565,14 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
     @Override
     public void fireUnrecoverablePduException(UnrecoverablePduException e) {
         log.error("Unrecoverable PDU exception for connection {}", connectionId, e);
-        sessionStateManager.incrementErrors(connectionId);
+        sessionStateManager.incrementErrors(connectionId, sessionId);
         super.fireUnrecoverablePduException(e);
     }
 
     @Override
     public void fireRecoverablePduException(RecoverablePduException e) {
         log.warn("Recoverable PDU exception for connection {}", connectionId, e);
-        sessionStateManager.incrementErrors(connectionId);
+        sessionStateManager.incrementErrors(connectionId, sessionId);
         super.fireRecoverablePduException(e);
     }
 
@@ -681,17 +735,7 @@ public class CloudhopperClientSessionHandler extends DefaultSmppSessionHandler {
     public void shutdown() {
         log.info("Shutting down CloudhopperClientSessionHandler for connection {}", connectionId);
 
-        if (cleanupExecutor != null) {
-            cleanupExecutor.shutdown();
-            try {
-                if (!cleanupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    cleanupExecutor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                cleanupExecutor.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
-        }
+        cleanupTask.cancel(false);
 
         log.info("CloudhopperClientSessionHandler shutdown complete for connection {}", connectionId);
     }
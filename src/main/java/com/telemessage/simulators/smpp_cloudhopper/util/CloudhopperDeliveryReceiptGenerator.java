@@ -210,32 +210,39 @@ public class CloudhopperDeliveryReceiptGenerator {
         }
 
         // Check if DR was requested
-        byte registeredDelivery = originalSubmit.getRegisteredDelivery();
-        if ((registeredDelivery & 0x01) == 0) {
-            log.debug("Delivery receipt not requested (registered_delivery={})", registeredDelivery);
+        if (!isDeliveryReceiptRequested(originalSubmit)) {
+            log.debug("Delivery receipt not requested (registered_delivery={})", originalSubmit.getRegisteredDelivery());
             return null;
         }
 
-        // Simulate delivery outcome (90% success rate)
-        String status;
-        String errorCode;
+        String status = pickAutomaticStatus();
+        return createDeliveryReceiptPDU(originalSubmit, submitResponse, status, getDefaultErrorCode(status));
+    }
+
+    /**
+     * Checks whether the submitter asked for a delivery receipt (registered_delivery bit 0).
+     *
+     * @param submitSm SubmitSm PDU
+     * @return true if a DR was requested
+     */
+    public static boolean isDeliveryReceiptRequested(SubmitSm submitSm) {
+        return (submitSm.getRegisteredDelivery() & 0x01) != 0;
+    }
 
+    /**
+     * Simulates a delivery outcome: 90% DELIVRD, 5% EXPIRED, 5% UNDELIV.
+     *
+     * @return Final message state
+     */
+    public static String pickAutomaticStatus() {
         int outcome = RANDOM.nextInt(100);
         if (outcome < 90) {
-            // Success
-            status = STATE_DELIVERED;
-            errorCode = ERR_NONE;
+            return STATE_DELIVERED;
         } else if (outcome < 95) {
-            // Expired
-            status = STATE_EXPIRED;
-            errorCode = ERR_EXPIRED;
+            return STATE_EXPIRED;
         } else {
-            // Undeliverable
-            status = STATE_UNDELIVERABLE;
-            errorCode = ERR_UNDELIVERABLE;
+            return STATE_UNDELIVERABLE;
         }
-
-        return createDeliveryReceiptPDU(originalSubmit, submitResponse, status, errorCode);
     }
 
     /**
@@ -354,7 +361,7 @@ public class CloudhopperDeliveryReceiptGenerator {
         return "";
     }
 
-    private static String getDefaultErrorCode(String status) {
+    public static String getDefaultErrorCode(String status) {
         return switch (status) {
             case STATE_DELIVERED -> ERR_NONE;
             case STATE_EXPIRED -> ERR_EXPIRED;
@@ -365,7 +372,7 @@ public class CloudhopperDeliveryReceiptGenerator {
         };
     }
 
-    private static long getDeliveryDelay(String status) {
+    public static long getDeliveryDelay(String status) {
         // Simulate realistic delivery times
         return switch (status) {
             case STATE_DELIVERED -> 2000L + RANDOM.nextInt(3000); // 2-5 seconds
@@ -1,6 +1,7 @@
 package com.telemessage.simulators.smpp_cloudhopper.util;
 
 import com.cloudhopper.smpp.SmppConstants;
+import com.telemessage.simulators.common.EncodingDetector;
 import com.telemessage.simulators.common.conf.CombinedCharsetProvider;
 import lombok.extern.slf4j.Slf4j;
 
@@ -13,6 +14,7 @@ import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Advanced encoding handler for Cloudhopper SMPP implementation.
@@ -42,7 +44,7 @@ public class CloudhopperEncodingHandler {
     private static final CombinedCharsetProvider CHARSET_PROVIDER = new CombinedCharsetProvider();
 
     // Cache for resolved charsets
-    private static final Map<String, Charset> CHARSET_CACHE = new HashMap<>();
+    private static final Map<String, Charset> CHARSET_CACHE = new ConcurrentHashMap<>();
 
     // Encoding name mappings for consistency
     private static final Map<String, String> ENCODING_ALIASES = new HashMap<>();
@@ -162,20 +164,46 @@ public class CloudhopperEncodingHandler {
      * @return DecodingResult with decoded text and detected encoding
      */
     public static DecodingResult decodeWithDetection(byte[] bytes, String declaredEncoding) {
+        return decodeWithDetection(bytes, declaredEncoding, null);
+    }
+
+    /**
+     * Decodes bytes with automatic encoding detection.
+     * Candidates are scored by the shared {@link EncodingDetector} without decoding them to Strings; only the
+     * winner is decoded. The winner is remembered per connection and tried first for the next message.
+     *
+     * @param bytes Raw bytes to decode
+     * @param declaredEncoding Declared encoding (from data_coding)
+     * @param connectionKey Connection whose winning encoding is remembered, or null
+     * @return DecodingResult with decoded text and detected encoding
+     */
+    public static DecodingResult decodeWithDetection(byte[] bytes, String declaredEncoding, String connectionKey) {
         if (bytes == null || bytes.length == 0) {
             return new DecodingResult("", declaredEncoding, declaredEncoding, 1.0);
         }
 
         String normalizedEncoding = normalizeEncodingName(declaredEncoding);
 
+        // Try the encoding that won last time on this connection
+        String remembered = EncodingDetector.getRememberedEncoding(connectionKey, normalizedEncoding);
+        if (remembered != null && !remembered.equals(normalizedEncoding)) {
+            Charset charset = resolveCharset(remembered);
+            if (charset != null) {
+                double score = EncodingDetector.score(bytes, charset);
+                if (score > EncodingDetector.EXCELLENT_SCORE) {
+                    return new DecodingResult(decode(bytes, charset), remembered, declaredEncoding, score);
+                }
+            }
+        }
+
         // Try declared encoding first
         try {
             Charset charset = resolveCharset(normalizedEncoding);
             if (charset != null) {
-                String text = decode(bytes, charset);
-                double score = scoreDecodedText(text, bytes.length);
+                double score = EncodingDetector.score(bytes, charset);
                 if (score >= 0.9) {
-                    return new DecodingResult(text, normalizedEncoding, declaredEncoding, score);
+                    EncodingDetector.rememberEncoding(connectionKey, normalizedEncoding, normalizedEncoding);
+                    return new DecodingResult(decode(bytes, charset), normalizedEncoding, declaredEncoding, score);
                 }
             }
         } catch (Exception e) {
@@ -184,7 +212,7 @@ public class CloudhopperEncodingHandler {
 
         // Try detection
         String[] candidateEncodings = getDetectionCandidates(normalizedEncoding);
-        String bestText = null;
+        Charset bestCharset = null;
         String bestEncoding = normalizedEncoding;
         double bestScore = -1;
 
@@ -192,17 +220,16 @@ public class CloudhopperEncodingHandler {
             try {
                 Charset charset = resolveCharset(candidate);
                 if (charset != null) {
-                    String text = decode(bytes, charset);
-                    double score = scoreDecodedText(text, bytes.length);
+                    double score = EncodingDetector.score(bytes, charset);
 
                     if (score > bestScore) {
                         bestScore = score;
-                        bestText = text;
+                        bestCharset = charset;
                         bestEncoding = candidate;
                     }
 
                     // Good enough
-                    if (score >= 0.95) {
+                    if (score >= EncodingDetector.EXCELLENT_SCORE) {
                         break;
                     }
                 }
@@ -215,9 +242,12 @@ public class CloudhopperEncodingHandler {
             log.warn("Encoding corrected: declared={}, detected={}, confidence={}",
                     declaredEncoding, bestEncoding, bestScore);
         }
+        if (bestCharset != null) {
+            EncodingDetector.rememberEncoding(connectionKey, normalizedEncoding, bestEncoding);
+        }
 
         return new DecodingResult(
-            bestText != null ? bestText : new String(bytes, StandardCharsets.UTF_8),
+            bestCharset != null ? decode(bytes, bestCharset) : new String(bytes, StandardCharsets.UTF_8),
             bestEncoding,
             declaredEncoding,
             bestScore
@@ -442,67 +472,6 @@ public class CloudhopperEncodingHandler {
         }
     }
 
-    private static double scoreDecodedText(String text, int originalByteLength) {
-        if (text == null || text.isEmpty()) {
-            return 0.0;
-        }
-
-        int length = text.length();
-        int replacementChars = 0;
-        int controlChars = 0;
-        int printableChars = 0;
-        int nullChars = 0;
-
-        for (int i = 0; i < length; i++) {
-            char c = text.charAt(i);
-
-            // Check for replacement character
-            if (c == '\uFFFD') {
-                replacementChars++;
-            }
-            // Check for null
-            else if (c == '\0') {
-                nullChars++;
-            }
-            // Check for control characters (except common ones)
-            else if (c < 32 && c != '\n' && c != '\r' && c != '\t') {
-                controlChars++;
-            }
-            // Count printable characters
-            else if (c >= 32) {
-                printableChars++;
-            }
-        }
-
-        // Calculate score
-        double score = 1.0;
-
-        // Heavy penalty for replacement characters (indicates wrong encoding)
-        score -= (double) replacementChars / length * 2.0;
-
-        // Penalty for control characters
-        score -= (double) controlChars / length * 1.5;
-
-        // Penalty for null characters
-        score -= (double) nullChars / length * 2.0;
-
-        // Reward for printable content
-        double printableRatio = (double) printableChars / length;
-        score *= printableRatio;
-
-        // Check byte-to-char ratio for encoding mismatch detection
-        if (originalByteLength > 0) {
-            double ratio = (double) length / originalByteLength;
-
-            // Suspicious ratios indicate encoding problems
-            if (ratio < 0.5 || ratio > 2.0) {
-                score *= 0.5;
-            }
-        }
-
-        return Math.max(0.0, Math.min(1.0, score));
-    }
-
     /**
      * Validates if an encoding name is supported.
      *
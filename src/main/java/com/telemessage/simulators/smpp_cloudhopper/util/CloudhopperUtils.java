@@ -6,6 +6,7 @@ import com.cloudhopper.smpp.tlv.Tlv;
 import com.cloudhopper.smpp.tlv.TlvConvertException;
 import com.cloudhopper.smpp.type.Address;
 import com.cloudhopper.smpp.type.SmppInvalidArgumentException;
+import com.telemessage.simulators.common.MessageIdGenerator;
 import com.telemessage.simulators.smpp.SimUtils;
 import com.telemessage.simulators.smpp.concatenation.ConcatenationData;
 import com.telemessage.simulators.smpp_cloudhopper.concatenation.CloudhopperConcatenationType;
@@ -16,7 +17,6 @@ import lombok.extern.slf4j.Slf4j;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
@@ -42,8 +42,6 @@ import java.util.regex.Matcher;
 @Slf4j
 public final class CloudhopperUtils {
 
-    private static final AtomicInteger MESSAGE_ID_COUNTER = new AtomicInteger(1);
-
     // SMPP Constants
     public static final byte ESM_CLASS_DEFAULT = 0x00;
     public static final byte ESM_CLASS_UDHI = 0x40;  // User Data Header Indicator
@@ -69,14 +67,10 @@ public final class CloudhopperUtils {
     /**
      * Generates a unique message ID.
      *
-     * @return Unique message ID as String
+     * @return Unique message ID as String (see {@link MessageIdGenerator})
      */
     public static String generateMessageId() {
-        int id = MESSAGE_ID_COUNTER.getAndIncrement();
-        if (id > 999999) {
-            MESSAGE_ID_COUNTER.set(1);
-        }
-        return String.format("%06d", id);
+        return MessageIdGenerator.nextId();
     }
 
     /**
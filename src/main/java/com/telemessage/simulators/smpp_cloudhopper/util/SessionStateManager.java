@@ -4,9 +4,14 @@ import com.cloudhopper.smpp.SmppSession;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
  * Manages session states and statistics for Cloudhopper SMPP connections.
@@ -19,6 +24,13 @@ import java.util.concurrent.atomic.AtomicLong;
  *   <li>Thread-safe concurrent access</li>
  * </ul>
  *
+ * <p><b>Session groups:</b> a connection may have several bound sessions, e.g. an SMSC port
+ * bound by parallel transceivers. Each session is registered under its own session ID
+ * (ESME connections use {@link #DEFAULT_SESSION_ID}). Counters are kept per session and
+ * aggregated per connection; {@link #selectSessionId} picks the session for outbound traffic
+ * by least outstanding requests, round robin among equals
+ * ({@code -Dsim.cloudhopper.sessionSelection=ROUND_ROBIN} for strict round robin).</p>
+ *
  * <p>Thread Safety: All operations are thread-safe using ConcurrentHashMap
  * and AtomicLong counters.</p>
  *
@@ -29,58 +41,197 @@ import java.util.concurrent.atomic.AtomicLong;
 @Slf4j
 public class SessionStateManager {
 
-    private final Map<Integer, SessionInfo> sessions = new ConcurrentHashMap<>();
-    private final Map<Integer, SmppSession> activeSessions = new ConcurrentHashMap<>();
+    /**
+     * Session ID used for connections with a single session (ESME mode).
+     */
+    public static final Long DEFAULT_SESSION_ID = 0L;
+
+    public enum Selection {
+        ROUND_ROBIN, LEAST_OUTSTANDING
+    }
+
+    private static final Selection SELECTION = Selection.valueOf(
+        System.getProperty("sim.cloudhopper.sessionSelection", Selection.LEAST_OUTSTANDING.name()));
+
+    private final Map<Integer, SessionGroup> groups = new ConcurrentHashMap<>();
 
     /**
-     * Registers a new session.
+     * Sessions bound on one connection, with per-session and aggregated statistics.
+     */
+    private static final class SessionGroup {
+        private final Map<Long, SmppSession> sessions = new ConcurrentHashMap<>();
+        private final Map<Long, SessionInfo> sessionInfos = new ConcurrentHashMap<>();
+        private final AtomicInteger nextSession = new AtomicInteger();
+        private volatile SessionInfo info;
+
+        SessionGroup(int connectionId) {
+            this.info = new SessionInfo(connectionId);
+        }
+    }
+
+    /**
+     * Registers the single session of a connection.
      *
      * @param connectionId Connection ID
      * @param session SmppSession instance
      */
     public void registerSession(int connectionId, SmppSession session) {
-        SessionInfo info = new SessionInfo(connectionId);
-        info.setState(CloudhopperUtils.SessionState.BOUND);
-        info.setBindTime(Instant.now());
-        sessions.put(connectionId, info);
-        activeSessions.put(connectionId, session);
-        log.info("Session registered: connectionId={}, sessionId={}", connectionId, session.getConfiguration().getName());
+        registerSession(connectionId, DEFAULT_SESSION_ID, session);
     }
 
     /**
-     * Unregisters a session.
+     * Registers a session in the connection's session group.
+     *
+     * @param connectionId Connection ID
+     * @param sessionId Session ID, unique within the connection
+     * @param session SmppSession instance
+     */
+    public void registerSession(int connectionId, Long sessionId, SmppSession session) {
+        SessionGroup group = groups.computeIfAbsent(connectionId, SessionGroup::new);
+        synchronized (group) {
+            if (group.sessions.isEmpty()) {
+                // First session of the connection starts a new bind period
+                group.info = new SessionInfo(connectionId);
+                group.info.setBindTime(Instant.now());
+            }
+            group.info.setState(CloudhopperUtils.SessionState.BOUND);
+
+            SessionInfo info = new SessionInfo(connectionId, sessionId);
+            info.setState(CloudhopperUtils.SessionState.BOUND);
+            info.setBindTime(Instant.now());
+            group.sessionInfos.put(sessionId, info);
+            group.sessions.put(sessionId, session);
+        }
+        log.info("Session registered: connectionId={}, sessionId={}, name={}, sessions={}",
+            connectionId, sessionId, session.getConfiguration().getName(), group.sessions.size());
+    }
+
+    /**
+     * Unregisters all sessions of a connection.
      *
      * @param connectionId Connection ID
      */
     public void unregisterSession(int connectionId) {
-        SessionInfo info = sessions.get(connectionId);
-        if (info != null) {
-            info.setState(CloudhopperUtils.SessionState.UNBOUND);
-            info.setUnbindTime(Instant.now());
-            log.info("Session unregistered: connectionId={}, totalSent={}, totalReceived={}",
-                connectionId, info.getMessagesSent(), info.getMessagesReceived());
+        SessionGroup group = groups.get(connectionId);
+        if (group == null) {
+            return;
+        }
+        synchronized (group) {
+            for (Long sessionId : new ArrayList<>(group.sessions.keySet())) {
+                removeSession(group, sessionId);
+            }
+            markUnbound(group.info);
+        }
+        log.info("Session unregistered: connectionId={}, totalSent={}, totalReceived={}",
+            connectionId, group.info.getMessagesSent(), group.info.getMessagesReceived());
+    }
+
+    /**
+     * Unregisters one session; the connection is unbound when its last session leaves.
+     *
+     * @param connectionId Connection ID
+     * @param sessionId Session ID
+     */
+    public void unregisterSession(int connectionId, Long sessionId) {
+        SessionGroup group = groups.get(connectionId);
+        if (group == null) {
+            return;
+        }
+        int remaining;
+        synchronized (group) {
+            SessionInfo info = removeSession(group, sessionId);
+            remaining = group.sessions.size();
+            if (remaining == 0) {
+                markUnbound(group.info);
+            }
+            if (info != null) {
+                log.info("Session unregistered: connectionId={}, sessionId={}, sent={}, received={}, remainingSessions={}",
+                    connectionId, sessionId, info.getMessagesSent(), info.getMessagesReceived(), remaining);
+            }
         }
-        activeSessions.remove(connectionId);
     }
 
     /**
-     * Gets the session for a connection ID.
+     * Gets a bound session of a connection, chosen as for outbound traffic.
      *
      * @param connectionId Connection ID
      * @return SmppSession or null if not found
      */
     public SmppSession getSession(int connectionId) {
-        return activeSessions.get(connectionId);
+        Long sessionId = selectSessionId(connectionId, session -> true);
+        SessionGroup group = groups.get(connectionId);
+        return sessionId != null && group != null ? group.sessions.get(sessionId) : null;
+    }
+
+    /**
+     * Gets all sessions of a connection.
+     *
+     * @param connectionId Connection ID
+     * @return Session ID to session, empty if none
+     */
+    public Map<Long, SmppSession> getSessions(int connectionId) {
+        SessionGroup group = groups.get(connectionId);
+        return group != null ? Collections.unmodifiableMap(group.sessions) : Collections.emptyMap();
     }
 
     /**
-     * Gets session info for a connection ID.
+     * Picks the session for the next outbound PDU among the bound sessions accepted by {@code eligible}.
+     *
+     * @param connectionId Connection ID
+     * @param eligible Filter, e.g. sessions bound as receiver or transceiver
+     * @return Session ID or null if no session qualifies
+     */
+    public Long selectSessionId(int connectionId, Predicate<SmppSession> eligible) {
+        SessionGroup group = groups.get(connectionId);
+        if (group == null) {
+            return null;
+        }
+        List<Long> candidates = new ArrayList<>();
+        for (Map.Entry<Long, SmppSession> entry : group.sessions.entrySet()) {
+            if (entry.getValue().isBound() && eligible.test(entry.getValue())) {
+                candidates.add(entry.getKey());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        // Rotating the start keeps ties (and ROUND_ROBIN) evenly spread
+        int start = Math.floorMod(group.nextSession.getAndIncrement(), candidates.size());
+        Long selected = candidates.get(start);
+        if (SELECTION == Selection.LEAST_OUTSTANDING) {
+            int fewest = outstanding(group.sessions.get(selected));
+            for (int i = 1; i < candidates.size() && fewest > 0; i++) {
+                Long candidate = candidates.get((start + i) % candidates.size());
+                int pending = outstanding(group.sessions.get(candidate));
+                if (pending < fewest) {
+                    fewest = pending;
+                    selected = candidate;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Gets the aggregated session info of a connection.
      *
      * @param connectionId Connection ID
      * @return SessionInfo or null if not found
      */
     public SessionInfo getSessionInfo(int connectionId) {
-        return sessions.get(connectionId);
+        SessionGroup group = groups.get(connectionId);
+        return group != null ? group.info : null;
+    }
+
+    /**
+     * Gets the info of each session currently registered on a connection.
+     *
+     * @param connectionId Connection ID
+     * @return Session ID to SessionInfo, empty if none
+     */
+    public Map<Long, SessionInfo> getSessionInfos(int connectionId) {
+        SessionGroup group = groups.get(connectionId);
+        return group != null ? Collections.unmodifiableMap(group.sessionInfos) : Collections.emptyMap();
     }
 
     /**
@@ -90,22 +241,58 @@ public class SessionStateManager {
      * @param state New state
      */
     public void updateState(int connectionId, CloudhopperUtils.SessionState state) {
-        SessionInfo info = sessions.get(connectionId);
-        if (info != null) {
-            info.setState(state);
-            info.setLastActivity(Instant.now());
+        SessionGroup group = groups.get(connectionId);
+        if (group != null) {
+            group.info.setState(state);
+            group.info.setLastActivity(Instant.now());
             log.debug("Session state updated: connectionId={}, state={}", connectionId, state);
         }
     }
 
+    /**
+     * Updates the state of one session. The connection state follows only when it has no other bound session.
+     *
+     * @param connectionId Connection ID
+     * @param sessionId Session ID, or null for the connection
+     * @param state New state
+     */
+    public void updateState(int connectionId, Long sessionId, CloudhopperUtils.SessionState state) {
+        SessionGroup group = groups.get(connectionId);
+        if (group == null) {
+            return;
+        }
+        SessionInfo info = sessionId != null ? group.sessionInfos.get(sessionId) : null;
+        if (info == null) {
+            updateState(connectionId, state);
+            return;
+        }
+        info.setState(state);
+        info.setLastActivity(Instant.now());
+        boolean othersBound = group.sessionInfos.values().stream()
+            .anyMatch(other -> other != info && other.getState() == CloudhopperUtils.SessionState.BOUND);
+        if (!othersBound) {
+            updateState(connectionId, state);
+        }
+        log.debug("Session state updated: connectionId={}, sessionId={}, state={}", connectionId, sessionId, state);
+    }
+
     /**
      * Increments message sent counter.
      *
      * @param connectionId Connection ID
      */
     public void incrementMessagesSent(int connectionId) {
-        SessionInfo info = sessions.get(connectionId);
-        if (info != null) {
+        incrementMessagesSent(connectionId, null);
+    }
+
+    /**
+     * Increments message sent counter of a session and its connection.
+     *
+     * @param connectionId Connection ID
+     * @param sessionId Session ID, or null to count on the connection only
+     */
+    public void incrementMessagesSent(int connectionId, Long sessionId) {
+        for (SessionInfo info : infos(connectionId, sessionId)) {
             info.incrementMessagesSent();
             info.setLastActivity(Instant.now());
         }
@@ -117,8 +304,17 @@ public class SessionStateManager {
      * @param connectionId Connection ID
      */
     public void incrementMessagesReceived(int connectionId) {
-        SessionInfo info = sessions.get(connectionId);
-        if (info != null) {
+        incrementMessagesReceived(connectionId, null);
+    }
+
+    /**
+     * Increments messages received counter of a session and its connection.
+     *
+     * @param connectionId Connection ID
+     * @param sessionId Session ID, or null to count on the connection only
+     */
+    public void incrementMessagesReceived(int connectionId, Long sessionId) {
+        for (SessionInfo info : infos(connectionId, sessionId)) {
             info.incrementMessagesReceived();
             info.setLastActivity(Instant.now());
         }
@@ -130,50 +326,57 @@ public class SessionStateManager {
      * @param connectionId Connection ID
      */
     public void incrementErrors(int connectionId) {
-        SessionInfo info = sessions.get(connectionId);
-        if (info != null) {
+        incrementErrors(connectionId, null);
+    }
+
+    /**
+     * Increments error counter of a session and its connection.
+     *
+     * @param connectionId Connection ID
+     * @param sessionId Session ID, or null to count on the connection only
+     */
+    public void incrementErrors(int connectionId, Long sessionId) {
+        for (SessionInfo info : infos(connectionId, sessionId)) {
             info.incrementErrors();
             info.setLastActivity(Instant.now());
         }
     }
 
     /**
-     * Checks if a session is active and bound.
+     * Checks if a connection has an active, bound session.
      *
      * @param connectionId Connection ID
      * @return true if session is active
      */
     public boolean isSessionActive(int connectionId) {
-        SessionInfo info = sessions.get(connectionId);
-        if (info == null) {
+        SessionGroup group = groups.get(connectionId);
+        if (group == null || !CloudhopperUtils.canSubmitMessages(group.info.getState())) {
             return false;
         }
-
-        SmppSession session = activeSessions.get(connectionId);
-        if (session == null) {
-            return false;
-        }
-
-        return session.isBound() &&
-               CloudhopperUtils.canSubmitMessages(info.getState());
+        return group.sessions.values().stream().anyMatch(SmppSession::isBound);
     }
 
     /**
-     * Gets all active connection IDs.
+     * Gets all connection IDs with at least one registered session.
      *
      * @return Array of active connection IDs
      */
     public Integer[] getActiveConnectionIds() {
-        return activeSessions.keySet().toArray(new Integer[0]);
+        return groups.entrySet().stream()
+            .filter(entry -> !entry.getValue().sessions.isEmpty())
+            .map(Map.Entry::getKey)
+            .toArray(Integer[]::new);
     }
 
     /**
-     * Gets total number of active sessions.
+     * Gets total number of active sessions across all connections.
      *
      * @return Active session count
      */
     public int getActiveSessionCount() {
-        return activeSessions.size();
+        return groups.values().stream()
+            .mapToInt(group -> group.sessions.size())
+            .sum();
     }
 
     /**
@@ -182,8 +385,8 @@ public class SessionStateManager {
      * @return Total messages sent
      */
     public long getTotalMessagesSent() {
-        return sessions.values().stream()
-            .mapToLong(SessionInfo::getMessagesSent)
+        return groups.values().stream()
+            .mapToLong(group -> group.info.getMessagesSent())
             .sum();
     }
 
@@ -193,8 +396,8 @@ public class SessionStateManager {
      * @return Total messages received
      */
     public long getTotalMessagesReceived() {
-        return sessions.values().stream()
-            .mapToLong(SessionInfo::getMessagesReceived)
+        return groups.values().stream()
+            .mapToLong(group -> group.info.getMessagesReceived())
             .sum();
     }
 
@@ -204,8 +407,8 @@ public class SessionStateManager {
      * @return Total errors
      */
     public long getTotalErrors() {
-        return sessions.values().stream()
-            .mapToLong(SessionInfo::getErrors)
+        return groups.values().stream()
+            .mapToLong(group -> group.info.getErrors())
             .sum();
     }
 
@@ -213,16 +416,43 @@ public class SessionStateManager {
      * Clears all session data.
      */
     public void clear() {
-        sessions.clear();
-        activeSessions.clear();
+        groups.clear();
         log.info("All session data cleared");
     }
 
+    private SessionInfo removeSession(SessionGroup group, Long sessionId) {
+        group.sessions.remove(sessionId);
+        SessionInfo info = group.sessionInfos.remove(sessionId);
+        if (info != null) {
+            markUnbound(info);
+        }
+        return info;
+    }
+
+    private void markUnbound(SessionInfo info) {
+        info.setState(CloudhopperUtils.SessionState.UNBOUND);
+        info.setUnbindTime(Instant.now());
+    }
+
+    private List<SessionInfo> infos(int connectionId, Long sessionId) {
+        SessionGroup group = groups.get(connectionId);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        SessionInfo sessionInfo = sessionId != null ? group.sessionInfos.get(sessionId) : null;
+        return sessionInfo != null ? List.of(group.info, sessionInfo) : List.of(group.info);
+    }
+
+    private static int outstanding(SmppSession session) {
+        return session.getSendWindow() != null ? session.getSendWindow().getSize() : 0;
+    }
+
     /**
      * Session information holder.
      */
     public static class SessionInfo {
         private final int connectionId;
+        private final Long sessionId;
         private volatile CloudhopperUtils.SessionState state;
         private volatile Instant bindTime;
         private volatile Instant unbindTime;
@@ -233,7 +463,12 @@ public class SessionStateManager {
         private final AtomicLong errors = new AtomicLong(0);
 
         public SessionInfo(int connectionId) {
+            this(connectionId, null);
+        }
+
+        public SessionInfo(int connectionId, Long sessionId) {
             this.connectionId = connectionId;
+            this.sessionId = sessionId;
             this.state = CloudhopperUtils.SessionState.UNBOUND;
             this.lastActivity = Instant.now();
         }
@@ -242,6 +477,13 @@ public class SessionStateManager {
             return connectionId;
         }
 
+        /**
+         * @return Session ID, or null for the aggregated info of a connection
+         */
+        public Long getSessionId() {
+            return sessionId;
+        }
+
         public CloudhopperUtils.SessionState getState() {
             return state;
         }
@@ -301,8 +543,8 @@ public class SessionStateManager {
         @Override
         public String toString() {
             return String.format(
-                "SessionInfo{connectionId=%d, state=%s, sent=%d, received=%d, errors=%d, lastActivity=%s}",
-                connectionId, state, messagesSent.get(), messagesReceived.get(), errors.get(), lastActivity
+                "SessionInfo{connectionId=%d, sessionId=%s, state=%s, sent=%d, received=%d, errors=%d, lastActivity=%s}",
+                connectionId, sessionId, state, messagesSent.get(), messagesReceived.get(), errors.get(), lastActivity
             );
         }
     }
@@ -0,0 +1,238 @@
+package com.telemessage.simulators.stats;
+
+import com.telemessage.simulators.common.conf.SimExecutors;
+import com.telemessage.simulators.smpp.SMPPConnection;
+import com.telemessage.simulators.smpp.conf.SMPPCodes;
+import com.telemessage.simulators.smpp.conf.SMPPConnectionConf;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer meters of the simulator, scraped from the actuator Prometheus endpoint ({@code /monitor/prometheus}
+ * on the management port).
+ *
+ * <p>Meters are registered on {@link Metrics#globalRegistry}, which Spring Boot adds its registries to, so the
+ * SMPP stacks - most of which are not Spring beans - record through this class without an injected registry.
+ * Outside Spring (tests, benchmarks) the global registry is empty and recording costs next to nothing.</p>
+ *
+ * <ul>
+ *   <li>{@code sim.smpp.pdu.handle} - received request PDU until handled, including the wait in the
+ *       connection's executor; tags stack, connection, mode (ESME/SMSC), bind, command</li>
+ *   <li>{@code sim.smpp.response.time} - sent request until its response (submit to submit_sm_resp,
+ *       deliver to deliver_sm_resp); tags as above plus status</li>
+ *   <li>{@code sim.smpp.response.timeouts} - requests whose response never came</li>
+ *   <li>{@code sim.smpp.dr.turnaround} - message accepted until its delivery receipt went out; tag status</li>
+ *   <li>{@code sim.executor.*} - active, queued and pool size gauges and completed count of every
+ *       {@link com.telemessage.simulators.common.conf.SimExecutors} pool, including each connection's executor</li>
+ *   <li>{@code sim.cache.write}, {@code sim.cache.flush} - message cache record writes and file flushes</li>
+ *   <li>{@code sim.http.message} - HTTP simulator messages by connection and outcome</li>
+ * </ul>
+ *
+ * <p>Timers publish percentile histograms unless {@code -Dsim.metrics.histograms=false}.</p>
+ */
+public final class SimMetrics {
+
+    public static final String LOGICA = "logica";
+    public static final String CLOUDHOPPER = "cloudhopper";
+
+    private static final boolean HISTOGRAMS = Boolean.parseBoolean(System.getProperty("sim.metrics.histograms", "true"));
+
+    private static final Map<Integer, String> COMMANDS = new HashMap<>();
+    private static final Map<Integer, String> STATUSES = new HashMap<>();
+
+    static {
+        for (SMPPCodes code : SMPPCodes.values()) {
+            boolean command = code.ordinal() >= SMPPCodes.GENERIC_NACK.ordinal()
+                    && code.ordinal() <= SMPPCodes.DATA_SM_RESP.ordinal();
+            if (command || code.name().startsWith("ESME_")) {
+                (command ? COMMANDS : STATUSES).putIfAbsent(Integer.parseInt(code.getCode()), code.name().toLowerCase());
+            }
+        }
+    }
+
+    private static final Map<String, Connection> CONNECTIONS = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<SimExecutors.PoolStats>> EXECUTORS = new ConcurrentHashMap<>();
+    private static final SimExecutors.PoolStats NO_POOL = new SimExecutors.PoolStats(0, 0, 0, 0);
+
+    private SimMetrics() {
+    }
+
+    /**
+     * Meters of one SMPP connection; instances are shared, so a reconnect keeps counting into the same series.
+     */
+    public static final class Connection {
+        private final Tags tags;
+        private final Map<Integer, Timer> handled = new ConcurrentHashMap<>();
+        private final Map<Long, Timer> responses = new ConcurrentHashMap<>();
+        private final Map<String, Timer> receipts = new ConcurrentHashMap<>();
+        private final Counter timeouts;
+
+        private Connection(Tags tags) {
+            this.tags = tags;
+            this.timeouts = Counter.builder("sim.smpp.response.timeouts")
+                    .description("Requests whose response never arrived")
+                    .tags(tags)
+                    .register(registry());
+        }
+
+        /**
+         * Records a received request PDU handled since {@code receivedNanos} ({@link System#nanoTime}).
+         */
+        public void handled(int commandId, long receivedNanos) {
+            handled.computeIfAbsent(commandId, id -> timer("sim.smpp.pdu.handle",
+                    "Received request PDU until handled", tags.and("command", commandName(id))))
+                    .record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Records the response to a request sent {@code nanos} before it.
+         */
+        public void response(int commandId, int status, long nanos) {
+            long key = ((long) commandId << 32) | (status & 0xFFFFFFFFL);
+            responses.computeIfAbsent(key, k -> timer("sim.smpp.response.time",
+                    "Sent request until its response", tags.and("command", commandName(commandId), "status", statusName(status))))
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void timeout() {
+            timeouts.increment();
+        }
+
+        /**
+         * Records a delivery receipt sent for a message accepted at {@code acceptedNanos} ({@link System#nanoTime}).
+         */
+        public void receipt(String status, long acceptedNanos) {
+            receipts.computeIfAbsent(String.valueOf(status), s -> timer("sim.smpp.dr.turnaround",
+                    "Message accepted until its delivery receipt was sent", tags.and("status", s)))
+                    .record(System.nanoTime() - acceptedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param mode ESME or SMSC
+     * @param bind transmitter, receiver or transceiver
+     */
+    public static Connection connection(String stack, int connectionId, Object mode, Object bind) {
+        String key = stack + '|' + connectionId + '|' + mode + '|' + bind;
+        return CONNECTIONS.computeIfAbsent(key, k -> new Connection(Tags.of(
+                "stack", stack,
+                "connection", String.valueOf(connectionId),
+                "mode", String.valueOf(mode),
+                "bind", String.valueOf(bind))));
+    }
+
+    public static Connection connection(String stack, SMPPConnection connection) {
+        return connection(stack, connection.getId(), connection.getBindType(), connection.getBindOption());
+    }
+
+    /**
+     * Meters of a configured connection, tagged with its first bind of transceiver, receiver and transmitter.
+     */
+    public static Connection connection(String stack, SMPPConnectionConf conf) {
+        SMPPConnection bind = conf.getTransceiver() != null ? conf.getTransceiver()
+                : conf.getReceiver() != null ? conf.getReceiver() : conf.getTransmitter();
+        return bind != null ? connection(stack, conf.getId(), bind.getBindType(), bind.getBindOption())
+                : connection(stack, conf.getId(), "none", "none");
+    }
+
+    /**
+     * Registers the gauges of an executor once; {@code stats} returns null while no pool has the name.
+     */
+    public static void executor(String name, Supplier<SimExecutors.PoolStats> stats) {
+        // Function counters hold their state weakly
+        EXECUTORS.put(name, stats);
+        gauge("sim.executor.active", "Tasks running", stats, s -> snapshot(s).getActive(), "pool", name);
+        gauge("sim.executor.queued", "Tasks waiting in the queue", stats, s -> snapshot(s).getQueued(), "pool", name);
+        gauge("sim.executor.pool.size", "Threads in the pool", stats, s -> snapshot(s).getPoolSize(), "pool", name);
+        FunctionCounter.builder("sim.executor.completed", stats, s -> snapshot(s).getCompleted())
+                .description("Tasks completed")
+                .tags("pool", name)
+                .register(registry());
+    }
+
+    private static SimExecutors.PoolStats snapshot(Supplier<SimExecutors.PoolStats> stats) {
+        SimExecutors.PoolStats snapshot = stats.get();
+        return snapshot != null ? snapshot : NO_POOL;
+    }
+
+    /**
+     * Records a message cache record write started at {@code startNanos} ({@link System#nanoTime}).
+     *
+     * @param operation add (merged into an existing record) or put (stored as-is)
+     */
+    public static void cacheWrite(String operation, long startNanos) {
+        record("sim.cache.write", "Message cache record writes", startNanos, "operation", operation);
+    }
+
+    /**
+     * Records a message cache flush to disk started at {@code startNanos}.
+     *
+     * @param kind snapshot (full rewrite) or journal (appended records)
+     */
+    public static void cacheFlush(String kind, long startNanos) {
+        record("sim.cache.flush", "Message cache flushes to disk", startNanos, "kind", kind);
+    }
+
+    /**
+     * Records an HTTP simulator message handled since {@code startNanos}.
+     */
+    public static void httpMessage(int connectionId, String outcome, long startNanos) {
+        record("sim.http.message", "HTTP simulator messages handled", startNanos,
+                "connection", String.valueOf(connectionId), "outcome", outcome);
+    }
+
+    /**
+     * Registers a gauge read from {@code state}, which the gauge keeps reachable.
+     */
+    public static <T> void gauge(String name, String description, T state, ToDoubleFunction<T> value, String... tags) {
+        Gauge.builder(name, state, value)
+                .description(description)
+                .tags(tags)
+                .strongReference(true)
+                .register(registry());
+    }
+
+    public static String commandName(int commandId) {
+        String name = COMMANDS.get(commandId);
+        return name != null ? name : String.format("0x%08x", commandId);
+    }
+
+    public static String statusName(int status) {
+        String name = STATUSES.get(status);
+        return name != null ? name : String.format("0x%08x", status);
+    }
+
+    private static void record(String name, String description, long startNanos, String... tags) {
+        String key = name + '|' + String.join("|", tags);
+        TIMERS.computeIfAbsent(key, k -> timer(name, description, Tags.of(tags)))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer timer(String name, String description, Tags tags) {
+        Timer.Builder builder = Timer.builder(name).description(description).tags(tags);
+        if (HISTOGRAMS) {
+            builder.publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100_000))
+                    .maximumExpectedValue(Duration.ofSeconds(60));
+        }
+        return builder.register(registry());
+    }
+
+    private static MeterRegistry registry() {
+        return Metrics.globalRegistry;
+    }
+}
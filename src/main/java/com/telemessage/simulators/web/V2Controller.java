@@ -1,7 +1,11 @@
 package com.telemessage.simulators.web;
 
+import com.telemessage.simulators.controllers.message.MessageSearchRequest;
 import com.telemessage.simulators.controllers.message.MessagesCache;
+import com.telemessage.simulators.controllers.message.MessagesChangeFeed;
+import com.telemessage.simulators.controllers.message.MessagesChangeStream;
 import com.telemessage.simulators.controllers.message.MessagesObject;
+import com.telemessage.simulators.controllers.message.MessagesPage;
 import com.telemessage.simulators.controllers.utils.Utils;
 import com.telemessage.simulators.stats.ConnectionMetrics;
 import com.telemessage.simulators.stats.MessagingMetrics;
@@ -12,9 +16,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.*;
-import java.util.stream.Collectors;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -27,9 +31,14 @@ import java.time.format.DateTimeFormatter;
 @RequestMapping("/")
 public class V2Controller {
 
+    private static final int MAX_API_PAGE_SIZE = 1000;
+
     @Autowired
     private MessagesCache messagesCache;
 
+    @Autowired
+    private MessagesChangeStream messagesChangeStream;
+
     /**
      * Renders the modern connections V2 page with enhanced features.
      */
@@ -126,33 +135,40 @@ public class V2Controller {
             Model model,
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "100") int size,
+            @RequestParam(required = false) String cursor,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String filter) {
 
-        // Get messages from cache (using the map values)
-        List<MessagesObject> allMessages = new ArrayList<>(messagesCache.getMap().values());
+        size = Math.max(1, size);
+        // Taken before the messages are read: the page's live updates start here and may repeat a change, never miss one
+        long changeSeq = messagesCache.getChangeFeed().getLastSeq();
 
-        // Apply search/filter if provided
+        // Messages come newest first from the cache's time index - no copy and sort of the whole cache
+        List<MessagesObject> filteredMessages = null;
+        int totalMessages;
         if (search != null && !search.isEmpty()) {
-            allMessages = filterMessages(allMessages, search);
+            filteredMessages = filterMessages(search);
+            totalMessages = filteredMessages.size();
+        } else {
+            totalMessages = messagesCache.getMessageCount();
         }
 
-        // Sort by time (newest first)
-        allMessages.sort((a, b) -> {
-            if (b.getMessageTime() == null) return -1;
-            if (a.getMessageTime() == null) return 1;
-            return b.getMessageTime().compareTo(a.getMessageTime());
-        });
-
         // Calculate pagination
-        int totalMessages = allMessages.size();
         int totalPages = (int) Math.ceil((double) totalMessages / size);
         page = Math.max(1, Math.min(page, totalPages)); // Ensure page is within bounds
         int start = (page - 1) * size;
         int end = Math.min(start + size, totalMessages);
 
-        List<MessagesObject> pageMessages = start < totalMessages ?
-            allMessages.subList(start, end) : new ArrayList<>();
+        List<MessagesObject> pageMessages;
+        if (start >= totalMessages) {
+            pageMessages = new ArrayList<>();
+        } else if (filteredMessages != null) {
+            pageMessages = filteredMessages.subList(start, end);
+        } else {
+            // Keyset page after the given cursor (as returned by /api/v2/messages), or after the page number's position
+            pageMessages = messagesCache.getMessagesPage(
+                    cursor != null ? cursor : messagesCache.cursorAtOffset(start), size).getMessages();
+        }
 
         model.addAttribute("messages", pageMessages);
         model.addAttribute("currentPage", page);
@@ -162,9 +178,12 @@ public class V2Controller {
         model.addAttribute("search", search);
         model.addAttribute("filter", filter);
         model.addAttribute("isCloudhopper", isCloudhopper());
+        model.addAttribute("changeSeq", changeSeq);
 
         // Add messaging metrics
-        MessagingMetrics metrics = getMessagingMetrics(allMessages);
+        MessagingMetrics metrics = filteredMessages != null
+            ? MessagesCache.computeMessagingMetrics(filteredMessages)
+            : messagesCache.getMessagingMetrics();
         model.addAttribute("metrics", metrics);
 
         return "messagesV2";
@@ -214,14 +233,64 @@ public class V2Controller {
         return getConnectionMetrics(smppConnections, httpConnections);
     }
 
+    /**
+     * API endpoint for cursor-paginated messages, newest first.
+     * Pass the returned nextCursor to fetch the following page.
+     */
+    @GetMapping("/api/v2/messages")
+    @ResponseBody
+    public MessagesPage getMessagesPageApi(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size) {
+        return messagesCache.getMessagesPage(cursor, Math.min(size, MAX_API_PAGE_SIZE));
+    }
+
+    /**
+     * API endpoint for cache changes after a sequence number, oldest first.
+     * "reset" is true when those changes are no longer kept; reload the messages and continue from "seq".
+     */
+    @GetMapping("/api/v2/messages/changes")
+    @ResponseBody
+    public Map<String, Object> getMessageChangesApi(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "1000") int limit) {
+        MessagesChangeFeed feed = messagesCache.getChangeFeed();
+        List<MessagesChangeFeed.ChangeEvent> events = feed.since(since, Math.min(limit, MAX_API_PAGE_SIZE));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("reset", events == null);
+        result.put("events", events == null ? List.of() : events);
+        result.put("seq", events == null || events.isEmpty() ? feed.getLastSeq() : events.get(events.size() - 1).getSeq());
+        return result;
+    }
+
+    /**
+     * Server-sent event stream of cache changes. Resumes after the Last-Event-ID header an EventSource sends
+     * on reconnect, else after "since"; without either it starts at the current position.
+     */
+    @GetMapping(value = "/api/v2/messages/stream", produces = "text/event-stream")
+    @ResponseBody
+    public SseEmitter streamMessageChanges(
+            @RequestParam(required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        long from = since != null ? since : -1;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                from = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring invalid Last-Event-ID: {}", lastEventId);
+            }
+        }
+        return messagesChangeStream.subscribe(from);
+    }
+
     /**
      * API endpoint for messaging metrics.
      */
     @GetMapping("/api/v2/metrics/messages")
     @ResponseBody
     public MessagingMetrics getMessagingMetricsApi() {
-        List<MessagesObject> allMessages = new ArrayList<>(messagesCache.getMap().values());
-        return getMessagingMetrics(allMessages);
+        return messagesCache.getMessagingMetrics();
     }
 
     /**
@@ -230,32 +299,13 @@ public class V2Controller {
     @PostMapping("/api/v2/messages/search")
     @ResponseBody
     public Map<String, Object> advancedSearch(@RequestBody SearchRequest request) {
-        List<MessagesObject> messages = new ArrayList<>(messagesCache.getMap().values());
-
-        // Apply all search criteria
-        if (request.text != null && !request.text.isEmpty()) {
-            messages = messages.stream()
-                .filter(m -> m.getText() != null && m.getText().contains(request.text))
-                .collect(Collectors.toList());
-        }
-
-        if (request.from != null && !request.from.isEmpty()) {
-            messages = messages.stream()
-                .filter(m -> m.getFrom() != null && m.getFrom().contains(request.from))
-                .collect(Collectors.toList());
-        }
-
-        if (request.to != null && !request.to.isEmpty()) {
-            messages = messages.stream()
-                .filter(m -> m.getTo() != null && m.getTo().contains(request.to))
-                .collect(Collectors.toList());
-        }
-
-        if (request.direction != null && !request.direction.equals("Any")) {
-            messages = messages.stream()
-                .filter(m -> m.getDir() != null && m.getDir().equalsIgnoreCase(request.direction))
-                .collect(Collectors.toList());
-        }
+        // Apply all search criteria (planned against the cache's secondary indexes)
+        List<MessagesObject> messages = messagesCache.searchMessages(MessageSearchRequest.builder()
+            .messageText(request.text)
+            .source(request.from)
+            .destination(request.to)
+            .direction("Any".equals(request.direction) ? null : request.direction)
+            .build());
 
         Map<String, Object> result = new HashMap<>();
         result.put("messages", messages);
@@ -311,37 +361,6 @@ public class V2Controller {
         return metrics;
     }
 
-    private MessagingMetrics getMessagingMetrics(List<MessagesObject> messages) {
-        MessagingMetrics metrics = new MessagingMetrics();
-
-        metrics.totalMessages = messages.size();
-        metrics.inboundMessages = (int) messages.stream()
-            .filter(m -> "In".equalsIgnoreCase(m.getDir()))
-            .count();
-        metrics.outboundMessages = (int) messages.stream()
-            .filter(m -> "Out".equalsIgnoreCase(m.getDir()))
-            .count();
-        metrics.deliveryReceipts = (int) messages.stream()
-            .filter(m -> m.getDeliveryReceiptShortMessage() != null)
-            .count();
-
-        // Encoding distribution
-        metrics.encodingDistribution = new HashMap<>();
-        for (MessagesObject msg : messages) {
-            String encoding = msg.getMessageEncoding() != null ? msg.getMessageEncoding() : "Unknown";
-            metrics.encodingDistribution.merge(encoding, 1, Integer::sum);
-        }
-
-        // Provider distribution
-        metrics.providerDistribution = new HashMap<>();
-        for (MessagesObject msg : messages) {
-            String provider = msg.getProviderId() != null ? msg.getProviderId() : "Unknown";
-            metrics.providerDistribution.merge(provider, 1, Integer::sum);
-        }
-
-        return metrics;
-    }
-
     private double calculateMessagesPerSecond() {
         // TODO: Implement actual calculation based on recent messages
         return 0.0;
@@ -352,17 +371,15 @@ public class V2Controller {
         return 0.0;
     }
 
-    private List<MessagesObject> filterMessages(List<MessagesObject> messages, String search) {
+    private List<MessagesObject> filterMessages(String search) {
         String searchLower = search.toLowerCase();
-        return messages.stream()
-            .filter(m ->
+        return messagesCache.getMessagesNewestFirst(m ->
                 (m.getText() != null && m.getText().toLowerCase().contains(searchLower)) ||
                 (m.getFrom() != null && m.getFrom().toLowerCase().contains(searchLower)) ||
                 (m.getTo() != null && m.getTo().toLowerCase().contains(searchLower)) ||
                 (m.getId() != null && m.getId().toLowerCase().contains(searchLower)) ||
                 (m.getProviderId() != null && m.getProviderId().toLowerCase().contains(searchLower))
-            )
-            .collect(Collectors.toList());
+            );
     }
 
     private String extractFamilyName(String connectionName) {
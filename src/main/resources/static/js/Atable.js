@@ -453,7 +453,16 @@ function ensureStickyControls() {
         }
     }
 
-    function addRefreshControls(container, table, fetchTableData) {
+    const LIVE_MIN_REFRESH_MS = 15000;
+
+    /**
+     * Adds a refresh button and interval select (1m by default). With changeStreamUrl (a server-sent event
+     * stream of cache changes) a "Live" option is offered: the table is only re-fetched after the server reports
+     * changes, at most once per LIVE_MIN_REFRESH_MS. Each re-fetch regroups every cached message on the server,
+     * so under steady traffic Live costs about as much as a 15s timer; it is opt-in for that reason.
+     */
+
+    function addRefreshControls(container, table, fetchTableData, changeStreamUrl) {
         // Only add once
         if (container.querySelector('.unified-refresh-controls')) return;
         const wrapper = document.createElement('div');
@@ -473,7 +482,9 @@ function ensureStickyControls() {
         const select = document.createElement('select');
         select.className = 'unified-select';
         select.title = 'Auto-refresh interval';
+        const live = changeStreamUrl && typeof EventSource !== 'undefined';
         select.innerHTML = `
+            ${live ? '<option value="live">Live</option>' : ''}
             <option value="20000">20s</option>
             <option value="60000" selected>1m</option>
             <option value="300000">5m</option>
@@ -492,6 +503,9 @@ function ensureStickyControls() {
         container.appendChild(wrapper);
 
         let intervalId = null;
+        let eventSource = null;
+        let liveTimer = null;
+        let lastRefreshAt = 0;
         let lastState = getTableState(table);
         let isRefreshing = false;
 
@@ -504,6 +518,7 @@ function ensureStickyControls() {
         function doRefresh() {
             if (isRefreshing) return;
             isRefreshing = true;
+            lastRefreshAt = Date.now();
             refreshBtn.disabled = true;
             errorMsg.style.display = 'none';
             lastState = getTableState(table);
@@ -523,8 +538,33 @@ function ensureStickyControls() {
 
         refreshBtn.addEventListener('click', doRefresh);
 
-        function setIntervalRefresh() {
+        // Coalesce change events: refresh now, or once when the minimum gap has passed
+        function scheduleLiveRefresh() {
+            if (liveTimer) return;
+            const wait = Math.max(0, lastRefreshAt + LIVE_MIN_REFRESH_MS - Date.now());
+            liveTimer = setTimeout(() => {
+                liveTimer = null;
+                doRefresh();
+            }, wait);
+        }
+
+        function stopRefresh() {
             if (intervalId) clearInterval(intervalId);
+            intervalId = null;
+            if (liveTimer) clearTimeout(liveTimer);
+            liveTimer = null;
+            if (eventSource) eventSource.close();
+            eventSource = null;
+        }
+
+        function setIntervalRefresh() {
+            stopRefresh();
+            if (select.value === 'live') {
+                eventSource = new EventSource(changeStreamUrl);
+                eventSource.addEventListener('changes', scheduleLiveRefresh);
+                eventSource.addEventListener('reset', scheduleLiveRefresh);
+                return;
+            }
             const ms = parseInt(select.value, 10);
             if (ms > 0) {
                 intervalId = setInterval(doRefresh, ms);
@@ -535,7 +575,7 @@ function ensureStickyControls() {
 
         // Expose for cleanup if needed
         window.APP = window.APP || {};
-        window.APP._refreshCleanup = () => { if (intervalId) clearInterval(intervalId); };
+        window.APP._refreshCleanup = stopRefresh;
     }
 
     // Expose for page scripts
@@ -42,7 +42,7 @@ document.addEventListener('DOMContentLoaded', function() {
     }
 
     if (controls && table && window.APP && window.APP.addRefreshControls) {
-        window.APP.addRefreshControls(controls, table, fetchConnectionsTableData);
+        window.APP.addRefreshControls(controls, table, fetchConnectionsTableData, '/api/v2/messages/stream');
     }
 
 });
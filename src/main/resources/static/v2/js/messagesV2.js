@@ -15,7 +15,12 @@
         sortColumn: null,
         sortDirection: 'asc',
         autoRefreshInterval: null,
-        searchTerm: ''
+        searchTerm: '',
+        // Live updates: cache change stream position and whether the table shows search/group results instead
+        eventSource: null,
+        changeSeq: window.changeSeq || 0,
+        customView: false,
+        renderScheduled: false
     };
 
     /**
@@ -228,20 +233,96 @@
             autoRefreshSelect.addEventListener('change', (e) => {
                 const interval = parseInt(e.target.value);
 
-                // Clear existing interval
+                // Clear existing interval and stream
                 if (state.autoRefreshInterval) {
                     clearInterval(state.autoRefreshInterval);
                     state.autoRefreshInterval = null;
                 }
+                stopLiveUpdates();
 
-                // Set new interval if not manual
-                if (interval > 0) {
+                if (e.target.value === 'live') {
+                    startLiveUpdates();
+                } else if (interval > 0) {
                     state.autoRefreshInterval = setInterval(() => {
                         refreshMessages();
                     }, interval);
                     console.log(`🔄 Auto-refresh enabled: ${interval / 1000}s`);
                 }
             });
+
+            if (autoRefreshSelect.value === 'live') {
+                startLiveUpdates();
+            }
+        }
+    }
+
+    /**
+     * Subscribe to the server's cache change stream; deltas are applied to the table instead of reloading it
+     */
+    function startLiveUpdates() {
+        if (state.eventSource || typeof EventSource === 'undefined') return;
+
+        // On reconnect the browser resumes from the last event id by itself
+        const source = new EventSource(`/api/v2/messages/stream?since=${state.changeSeq}`);
+        source.addEventListener('changes', (e) => {
+            state.changeSeq = Number(e.lastEventId) || state.changeSeq;
+            applyChanges(JSON.parse(e.data));
+        });
+        source.addEventListener('reset', () => {
+            // Too far behind (or the server restarted) - the deltas are gone, reload once
+            console.log('🔄 Change stream reset, reloading messages');
+            refreshMessages();
+        });
+        state.eventSource = source;
+        console.log(`🔄 Live updates enabled from change ${state.changeSeq}`);
+    }
+
+    function stopLiveUpdates() {
+        if (state.eventSource) {
+            state.eventSource.close();
+            state.eventSource = null;
+        }
+    }
+
+    /**
+     * Apply cache changes to the loaded page. New messages are only added on the first, unfiltered page,
+     * which is the only one they belong to (newest first).
+     */
+    function applyChanges(events) {
+        if (state.customView) return;
+
+        const acceptsInserts = (window.currentPage || 1) <= 1 && !new URLSearchParams(window.location.search).get('search');
+        const limit = window.pageSize || state.pageSize;
+
+        events.forEach(event => {
+            if (event.type === 'CLEAR') {
+                state.messages = [];
+                return;
+            }
+            const idx = state.messages.findIndex(msg => msg.id === event.id);
+            if (event.type === 'DELETE') {
+                if (idx >= 0) state.messages.splice(idx, 1);
+            } else if (idx >= 0) {
+                state.messages[idx] = event.message;
+            } else if (acceptsInserts && event.message) {
+                state.messages.unshift(event.message);
+            }
+        });
+
+        if (acceptsInserts && state.messages.length > limit) {
+            state.messages.length = limit;
+        }
+
+        // Many change batches per frame still cost one render
+        if (!state.renderScheduled) {
+            state.renderScheduled = true;
+            requestAnimationFrame(() => {
+                state.renderScheduled = false;
+                filterMessages();
+                sortMessages();
+                renderTable();
+                updateResultsInfo();
+            });
         }
     }
 
@@ -316,6 +397,7 @@
                 state.messages = data;
                 state.filteredMessages = [...data];
                 state.currentPage = 1;
+                state.customView = true;
                 renderTable();
                 updateResultsInfo();
                 showActionResponse(`Found ${data.length} messages`, 'success');
@@ -492,6 +574,7 @@
                 state.messages = data;
                 state.filteredMessages = [...data];
                 state.currentPage = 1;
+                state.customView = true;
                 renderTable();
                 updateResultsInfo();
                 showActionResponse(`Grouped into ${data.length} concat groups`, 'success');
@@ -0,0 +1,93 @@
+package com.telemessage.simulators.common;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MessageIdGenerator uniqueness and formats.
+ */
+public class MessageIdGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 20000;
+
+    @Test
+    @DisplayName("Test IDs from many threads in the same milliseconds are unique")
+    public void testConcurrentIdsAreUnique() throws Exception {
+        MessageIdGenerator generator = new MessageIdGenerator(MessageIdGenerator.Format.DECIMAL, 0, 7);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        assertTrue(ids.add(generator.next()), "Duplicate message ID");
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    @Test
+    @DisplayName("Test IDs are strictly increasing and carry the node")
+    public void testIncreasingWithNode() {
+        MessageIdGenerator generator = new MessageIdGenerator(MessageIdGenerator.Format.DECIMAL, 0, 513);
+        long previous = generator.nextLong();
+        for (int i = 0; i < 10000; i++) {
+            long id = generator.nextLong();
+            assertTrue(id > previous, "ID not increasing");
+            assertEquals(513, (id >>> 12) & 1023);
+            previous = id;
+        }
+    }
+
+    @Test
+    @DisplayName("Test fixed length and hex formats")
+    public void testFormats() {
+        MessageIdGenerator hex = new MessageIdGenerator(MessageIdGenerator.Format.HEX, 20, 1);
+        assertTrue(hex.next().matches("[0-9a-f]{20}"));
+
+        MessageIdGenerator shortDecimal = new MessageIdGenerator(MessageIdGenerator.Format.DECIMAL, 10, 1);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 10000; i++) {
+            String id = shortDecimal.next();
+            assertTrue(id.matches("\\d{10}"), id);
+            assertTrue(ids.add(id), "Duplicate message ID " + id);
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new MessageIdGenerator(MessageIdGenerator.Format.DECIMAL, 0, 1024));
+    }
+
+    @Test
+    @DisplayName("Test fixed length IDs of different nodes do not collide")
+    public void testFixedLengthNodes() {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        for (int node : new int[] {0, 1, 2, 1023}) {
+            MessageIdGenerator generator = new MessageIdGenerator(MessageIdGenerator.Format.DECIMAL, 10, node);
+            for (int i = 0; i < 10000; i++) {
+                String id = generator.next();
+                assertTrue(id.matches("\\d{10}"), id);
+                assertTrue(ids.add(id), "Duplicate message ID " + id + " on node " + node);
+            }
+        }
+        assertEquals(40000, ids.size());
+    }
+}
@@ -0,0 +1,218 @@
+package com.telemessage.simulators.controllers.message;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MessagesJournal replay, torn lines, segment rollover and compaction.
+ */
+public class MessagesJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Test replay applies PUT and DEL records on top of the snapshot")
+    public void testReplayPutAndDelete() throws Exception {
+        Map<String, MessagesObject> live = new ConcurrentHashMap<>();
+        MessagesJournal journal = new MessagesJournal(dir);
+        journal.open();
+
+        put(live, journal, "a", "first a");
+        put(live, journal, "b", "first b");
+        assertEquals(2, journal.flush(live));
+
+        live.remove("a");
+        journal.recordChange("a");
+        put(live, journal, "b", "second b");
+        put(live, journal, "c", "first c");
+        assertEquals(3, journal.flush(live));
+        journal.close();
+
+        // The snapshot is older than the journal: "a" and a stale "b" in it must be overridden
+        Map<String, MessagesObject> recovered = new HashMap<>();
+        recovered.put("a", message("a", "snapshot a"));
+        recovered.put("b", message("b", "snapshot b"));
+        recovered.put("z", message("z", "snapshot z"));
+        MessagesJournal reopened = new MessagesJournal(dir);
+        reopened.open();
+        assertEquals(5, reopened.replay(recovered));
+
+        assertFalse(recovered.containsKey("a"));
+        assertEquals("second b", recovered.get("b").getText());
+        assertEquals("first c", recovered.get("c").getText());
+        assertEquals("snapshot z", recovered.get("z").getText());
+        assertTrue(reopened.getJournalBytes() > 0);
+    }
+
+    @Test
+    @DisplayName("Test replay skips a torn last line")
+    public void testTornLastLine() throws Exception {
+        Map<String, MessagesObject> live = new ConcurrentHashMap<>();
+        MessagesJournal journal = new MessagesJournal(dir);
+        journal.open();
+        put(live, journal, "a", "text a");
+        put(live, journal, "b", "text b");
+        journal.flush(live);
+        journal.close();
+
+        // Crash in the middle of an append: no newline, incomplete JSON
+        Path segment = segments().get(0);
+        Files.write(segment, "{\"op\":\"PUT\",\"id\":\"c\",\"obj\":{\"id\":\"c\",\"te".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        Map<String, MessagesObject> recovered = new HashMap<>();
+        MessagesJournal reopened = new MessagesJournal(dir);
+        reopened.open();
+        assertEquals(2, reopened.replay(recovered));
+        assertEquals(Map.of("a", live.get("a"), "b", live.get("b")), recovered);
+    }
+
+    @Test
+    @DisplayName("Test the active segment rolls over at 16MB")
+    public void testSegmentRollover() throws Exception {
+        Map<String, MessagesObject> live = new ConcurrentHashMap<>();
+        MessagesJournal journal = new MessagesJournal(dir);
+        journal.open();
+        String text = "x".repeat(100 * 1024);
+
+        // 5 MB per flush: the fourth flush passes the limit and rolls, the fifth starts segment 2
+        int id = 0;
+        for (int flush = 0; flush < 5; flush++) {
+            for (int i = 0; i < 50; i++) {
+                put(live, journal, "m" + id++, text);
+            }
+            journal.flush(live);
+        }
+        journal.close();
+
+        List<Path> segments = segments();
+        assertEquals(2, segments.size());
+        assertTrue(Files.size(segments.get(0)) >= MessagesJournal.SEGMENT_MAX_BYTES);
+        assertTrue(Files.size(segments.get(1)) < MessagesJournal.SEGMENT_MAX_BYTES);
+
+        Map<String, MessagesObject> recovered = new HashMap<>();
+        MessagesJournal reopened = new MessagesJournal(dir);
+        reopened.open();
+        assertEquals(250, reopened.replay(recovered));
+        assertEquals(live, recovered);
+    }
+
+    @Test
+    @DisplayName("Test a failed flush keeps its changes pending for the next flush")
+    public void testFailedFlushKeepsPending() throws Exception {
+        Map<String, MessagesObject> live = new ConcurrentHashMap<>();
+        MessagesJournal journal = new MessagesJournal(dir);
+        journal.open();
+        put(live, journal, "a", "text a");
+        put(live, journal, "b", "text b");
+
+        // A directory where the active segment should be makes the append fail
+        Path blocker = Files.createDirectory(
+                dir.resolve(MessagesJournal.SEGMENT_PREFIX + "000001" + MessagesJournal.SEGMENT_SUFFIX));
+        assertThrows(IOException.class, () -> journal.flush(live));
+        assertTrue(journal.hasPending());
+
+        Files.delete(blocker);
+        assertEquals(2, journal.flush(live));
+        assertFalse(journal.hasPending());
+        journal.close();
+
+        Map<String, MessagesObject> recovered = new HashMap<>();
+        MessagesJournal reopened = new MessagesJournal(dir);
+        reopened.open();
+        assertEquals(2, reopened.replay(recovered));
+        assertEquals(live, recovered);
+    }
+
+    @Test
+    @DisplayName("Test compaction racing with appends loses no change")
+    public void testCompactionRacingAppends() throws Exception {
+        Map<String, MessagesObject> live = new ConcurrentHashMap<>();
+        AtomicReference<Map<String, MessagesObject>> snapshot = new AtomicReference<>(new HashMap<>());
+        MessagesJournal journal = new MessagesJournal(dir);
+        journal.open();
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger changes = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (!stop.get()) {
+                    String id = "m" + random.nextInt(200);
+                    if (random.nextInt(4) == 0) {
+                        live.remove(id);
+                        journal.recordChange(id);
+                    } else {
+                        put(live, journal, id, "v" + changes.get());
+                    }
+                    if (changes.incrementAndGet() % 20 == 0) {
+                        journal.flush(live);
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+
+        int compactions = 0;
+        long deadline = System.currentTimeMillis() + 2000;
+        while (System.currentTimeMillis() < deadline || compactions < 20) {
+            assertTrue(journal.compact(() -> {
+                snapshot.set(new HashMap<>(live));
+                return true;
+            }));
+            compactions++;
+            Thread.sleep(5);
+        }
+        stop.set(true);
+        writer.join();
+        assertNull(failure.get());
+        journal.flush(live);
+        journal.close();
+
+        Map<String, MessagesObject> recovered = new HashMap<>(snapshot.get());
+        MessagesJournal reopened = new MessagesJournal(dir);
+        reopened.open();
+        reopened.replay(recovered);
+        assertEquals(live, recovered, "Recovered state differs after " + changes.get() + " changes, "
+                + compactions + " compactions");
+    }
+
+    private static void put(Map<String, MessagesObject> live, MessagesJournal journal, String id, String text) {
+        live.put(id, message(id, text));
+        journal.recordChange(id);
+    }
+
+    private static MessagesObject message(String id, String text) {
+        return MessagesObject.builder().id(id).text(text).dir("IN_FULL").build();
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(MessagesJournal.SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.telemessage.simulators.controllers.message;
+
+import com.telemessage.qatools.error.ErrorTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the keyset pagination of MessagesCache: cursor encoding, simId ties and changes between pages.
+ */
+public class MessagesPageTest {
+
+    private static final long BASE_SIM_ID = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private MessagesCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new MessagesCache(Mockito.mock(ErrorTracker.class), dir);
+        cache.init();
+    }
+
+    @Test
+    @DisplayName("Test cursor encode and decode round trip")
+    public void testCursorRoundTrip() {
+        for (String key : new String[] {"m1", "a:b:c", "שלום-1", "id with spaces/and+slash", ""}) {
+            MessagesIndex.TimeKey timeKey = new MessagesIndex.TimeKey(BASE_SIM_ID, key);
+            String cursor = MessagesCache.encodeCursor(timeKey);
+            assertTrue(cursor.matches("[A-Za-z0-9_-]*"), "Cursor is not URL safe: " + cursor);
+            assertEquals(timeKey, MessagesCache.decodeCursor(cursor));
+        }
+        assertNull(MessagesCache.decodeCursor(null));
+        assertNull(MessagesCache.decodeCursor(""));
+        assertNull(MessagesCache.decodeCursor("not base64!"));
+        for (String raw : new String[] {"no separator", "not a number:m1"}) {
+            assertNull(MessagesCache.decodeCursor(Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8))));
+        }
+    }
+
+    @Test
+    @DisplayName("Test an invalid cursor returns the first page")
+    public void testInvalidCursor() {
+        put("a", BASE_SIM_ID);
+        put("b", BASE_SIM_ID + 1);
+        assertEquals(List.of("b", "a"), ids(cache.getMessagesPage("%%%", 10)));
+    }
+
+    @Test
+    @DisplayName("Test paging returns every message once, newest first, with ties broken by key")
+    public void testSimIdTies() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 53; i++) {
+            // Groups of up to 10 records share a simId
+            put(String.format("m%02d", i), BASE_SIM_ID + i / 10);
+        }
+        cache.getMap().values().stream()
+                .sorted(Comparator.comparingLong(MessagesObject::getSimId).thenComparing(MessagesObject::getId).reversed())
+                .forEach(message -> expected.add(message.getId()));
+
+        for (int size : new int[] {1, 7, 10, 53, 100}) {
+            assertEquals(expected, readAll(size), "page size " + size);
+        }
+    }
+
+    @Test
+    @DisplayName("Test same-millisecond addCacheRecord messages are neither skipped nor repeated")
+    public void testAddCacheRecordTies() {
+        for (int i = 0; i < 200; i++) {
+            assertTrue(cache.addCacheRecord("a" + i, MessagesObject.builder().id("a" + i).text("t").build()));
+        }
+        List<String> all = readAll(9);
+        assertEquals(200, all.size());
+        assertEquals(200, new HashSet<>(all).size());
+    }
+
+    @Test
+    @DisplayName("Test messages inserted between pages do not shift the following pages")
+    public void testInsertBetweenPages() {
+        for (int i = 0; i < 30; i++) {
+            put("m" + i, BASE_SIM_ID + i);
+        }
+        MessagesPage first = cache.getMessagesPage(null, 10);
+        assertEquals(30, first.getTotalMessages());
+        assertNotNull(first.getNextCursor());
+
+        // Newer messages belong before the first page; an older one after the last
+        put("new1", BASE_SIM_ID + 100);
+        put("new2", BASE_SIM_ID + 101);
+        put("old", BASE_SIM_ID - 1);
+
+        MessagesPage second = cache.getMessagesPage(first.getNextCursor(), 10);
+        List<String> expected = new ArrayList<>();
+        for (int i = 19; i >= 10; i--) {
+            expected.add("m" + i);
+        }
+        assertEquals(expected, ids(second));
+
+        MessagesPage third = cache.getMessagesPage(second.getNextCursor(), 10);
+        assertEquals("m9", ids(third).get(0));
+        assertEquals("old", ids(cache.getMessagesPage(third.getNextCursor(), 10)).get(0));
+    }
+
+    @Test
+    @DisplayName("Test messages removed between pages, including the cursor's own, do not break paging")
+    public void testRemoveBetweenPages() {
+        for (int i = 0; i < 30; i++) {
+            put("m" + i, BASE_SIM_ID + i);
+        }
+        MessagesPage first = cache.getMessagesPage(null, 10);
+        assertEquals("m20", ids(first).get(9));
+
+        assertTrue(cache.deleteMessageRecordById("m20"));
+        assertTrue(cache.deleteMessageRecordById("m19"));
+        assertTrue(cache.deleteMessageRecordById("m15"));
+
+        MessagesPage second = cache.getMessagesPage(first.getNextCursor(), 10);
+        assertEquals(List.of("m18", "m17", "m16", "m14", "m13", "m12", "m11", "m10", "m9", "m8"), ids(second));
+        assertEquals(27, second.getTotalMessages());
+
+        for (int i = 0; i <= 7; i++) {
+            assertTrue(cache.deleteMessageRecordById("m" + i));
+        }
+        MessagesPage last = cache.getMessagesPage(second.getNextCursor(), 10);
+        assertTrue(last.getMessages().isEmpty());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Test the page number cursor starts at the same message as the offset")
+    public void testCursorAtOffset() {
+        for (int i = 0; i < 25; i++) {
+            put("m" + i, BASE_SIM_ID + i / 3);
+        }
+        List<String> all = readAll(100);
+        assertNull(cache.cursorAtOffset(0));
+        for (int offset = 1; offset < 25; offset++) {
+            assertEquals(all.subList(offset, Math.min(25, offset + 5)),
+                    ids(cache.getMessagesPage(cache.cursorAtOffset(offset), 5)), "offset " + offset);
+        }
+        assertTrue(cache.getMessagesPage(cache.cursorAtOffset(25), 5).getMessages().isEmpty());
+        assertTrue(cache.getMessagesPage(cache.cursorAtOffset(1000), 5).getMessages().isEmpty());
+    }
+
+    private void put(String id, long simId) {
+        cache.putCacheRecord(id, MessagesObject.builder().id(id).simId(simId).text("text " + id).build());
+    }
+
+    private List<String> readAll(int size) {
+        List<String> all = new ArrayList<>();
+        Set<String> cursors = new HashSet<>();
+        String cursor = null;
+        do {
+            MessagesPage page = cache.getMessagesPage(cursor, size);
+            assertTrue(page.getMessages().size() <= size);
+            all.addAll(ids(page));
+            cursor = page.getNextCursor();
+            assertTrue(cursor == null || cursors.add(cursor), "Cursor repeated: " + cursor);
+        } while (cursor != null);
+        return all;
+    }
+
+    private static List<String> ids(MessagesPage page) {
+        return page.getMessages().stream().map(MessagesObject::getId).toList();
+    }
+}
@@ -0,0 +1,199 @@
+package com.telemessage.simulators.controllers.message;
+
+import com.telemessage.qatools.error.ErrorTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MessagesIndex and MessagesTextIndex search plans: every search must return what a linear
+ * filter over the whole cache returns, also after in-place updates and removals.
+ */
+public class MessagesSearchIndexTest {
+
+    private static final int MESSAGES = 600;
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "שלום", "code", "ab", "x"};
+    private static final String[] DIRS = {"IN", "in", "OUT", "Out_Full", "IN_PART"};
+
+    @TempDir
+    Path dir;
+
+    private MessagesCache cache;
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    public void setUp() {
+        cache = new MessagesCache(Mockito.mock(ErrorTracker.class), dir);
+        cache.init();
+        for (int i = 0; i < MESSAGES; i++) {
+            String id = "m" + i;
+            cache.putCacheRecord(id, randomMessage(id));
+        }
+    }
+
+    @Test
+    @DisplayName("Test indexed search matches the linear filter")
+    public void testSearchMatchesLinearFilter() {
+        assertAllQueriesMatch();
+    }
+
+    @Test
+    @DisplayName("Test search after in-place updates marked with markCacheRecordUpdated")
+    public void testInPlaceUpdates() {
+        for (int i = 0; i < MESSAGES; i += 3) {
+            MessagesObject message = cache.getMessageByID("m" + i);
+            MessagesObject changed = randomMessage(message.getId());
+            message.setText(changed.getText());
+            message.setFrom(changed.getFrom());
+            message.setTo(changed.getTo());
+            message.setDir(changed.getDir());
+            message.setProviderId(changed.getProviderId());
+            message.setReferenceNumber(changed.getReferenceNumber());
+            message.setDeliveryReceiptShortMessage("id:" + i + " stat:DELIVRD " + word());
+            cache.markCacheRecordUpdated(message.getId());
+        }
+        assertAllQueriesMatch();
+    }
+
+    @Test
+    @DisplayName("Test removed records are not found")
+    public void testRemoval() {
+        for (int i = 0; i < MESSAGES; i += 2) {
+            assertTrue(cache.deleteMessageRecordById("m" + i));
+        }
+        assertAllQueriesMatch();
+        assertTrue(cache.searchMessages(MessageSearchRequest.builder().messageId("m10").build()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test direction matches case-insensitively")
+    public void testDirectionCaseInsensitive() {
+        List<String> lower = ids(cache.searchMessages(MessageSearchRequest.builder().direction("in").build()));
+        List<String> upper = ids(cache.searchMessages(MessageSearchRequest.builder().direction("IN").build()));
+        assertFalse(lower.isEmpty());
+        assertEquals(lower, upper);
+        assertEquals(linear(MessageSearchRequest.builder().direction("In").build()), lower);
+    }
+
+    @Test
+    @DisplayName("Test needles shorter than a trigram fall back to the scan")
+    public void testShortNeedles() {
+        for (String needle : new String[] {"a", "ab", "x", "ש", "5"}) {
+            assertQueryMatches(MessageSearchRequest.builder().messageText(needle).build());
+            assertQueryMatches(MessageSearchRequest.builder().content(needle).build());
+            assertQueryMatches(MessageSearchRequest.builder().messageText(needle).direction("OUT").build());
+            assertEquals(linearText(needle), ids(cache.getMessagesByText(needle)), needle);
+        }
+    }
+
+    private void assertAllQueriesMatch() {
+        List<MessageSearchRequest> queries = new ArrayList<>();
+        for (String word : WORDS) {
+            assertEquals(linearText(word), ids(cache.getMessagesByText(word)), word);
+            queries.add(MessageSearchRequest.builder().messageText(word).build());
+            queries.add(MessageSearchRequest.builder().content(word).build());
+            queries.add(MessageSearchRequest.builder().smppText(word).build());
+            queries.add(MessageSearchRequest.builder().httpText(word).build());
+            queries.add(MessageSearchRequest.builder().messageText(word).direction("in").build());
+        }
+        for (String dir : DIRS) {
+            queries.add(MessageSearchRequest.builder().direction(dir).build());
+            queries.add(MessageSearchRequest.builder().direction(dir.toLowerCase()).referenceNumber(3).build());
+        }
+        for (int ref = 0; ref < 6; ref++) {
+            queries.add(MessageSearchRequest.builder().referenceNumber(ref).build());
+        }
+        for (int i = 0; i < 10; i++) {
+            queries.add(MessageSearchRequest.builder().source("97250000" + i).build());
+            queries.add(MessageSearchRequest.builder().destination("0000" + i).build());
+            queries.add(MessageSearchRequest.builder().providerId("prov" + (i % 4)).build());
+            queries.add(MessageSearchRequest.builder().recipientType("BOTH").recipient("00000" + i).build());
+            queries.add(MessageSearchRequest.builder().recipientType("DST").recipient("00000" + i).messageText("echo").build());
+        }
+        queries.add(MessageSearchRequest.builder().messageText("no such text").build());
+        queries.add(MessageSearchRequest.builder().smppText("stat:DELIVRD").build());
+        queries.forEach(this::assertQueryMatches);
+    }
+
+    private void assertQueryMatches(MessageSearchRequest request) {
+        assertEquals(linear(request), ids(cache.searchMessages(request)), request.toString());
+    }
+
+    /**
+     * The filter the search endpoints applied to every cached message before the indexes existed.
+     */
+    private List<String> linear(MessageSearchRequest request) {
+        List<MessagesObject> result = new ArrayList<>();
+        for (MessagesObject msg : cache.getMap().values()) {
+            if (request.getMessageId() != null && !contains(msg.getId(), request.getMessageId())
+                    || request.getMessageText() != null && !contains(msg.getText(), request.getMessageText())
+                    || request.getHttpText() != null && !contains(msg.getHttpMessage(), request.getHttpText())
+                        && !contains(msg.getDeliveryReceiptHttpMessage(), request.getHttpText())
+                    || request.getSmppText() != null && !contains(msg.getSendMessageSM(), request.getSmppText())
+                        && !contains(msg.getDeliveryReceiptShortMessage(), request.getSmppText())
+                    || request.getContent() != null && !contains(msg.getText(), request.getContent())
+                        && !contains(msg.getSendMessageSM(), request.getContent())
+                        && !contains(msg.getHttpMessage(), request.getContent())
+                        && !contains(msg.getDeliveryReceiptShortMessage(), request.getContent())
+                        && !contains(msg.getDeliveryReceiptHttpMessage(), request.getContent())
+                    || request.getSource() != null && !contains(msg.getFrom(), request.getSource())
+                    || request.getDestination() != null && !contains(msg.getTo(), request.getDestination())
+                    || request.getProviderId() != null && !contains(msg.getProviderId(), request.getProviderId())
+                    || request.getDirection() != null && !request.getDirection().equalsIgnoreCase(msg.getDir())
+                    || request.getReferenceNumber() != null && !request.getReferenceNumber().equals(msg.getReferenceNumber())) {
+                continue;
+            }
+            if (request.getRecipient() != null) {
+                boolean from = contains(msg.getFrom(), request.getRecipient());
+                boolean to = contains(msg.getTo(), request.getRecipient());
+                if ("DST".equals(request.getRecipientType()) ? !to : !from && !to) {
+                    continue;
+                }
+            }
+            result.add(msg);
+        }
+        return ids(result);
+    }
+
+    private List<String> linearText(String needle) {
+        return ids(cache.getMap().values().stream()
+                .filter(msg -> contains(msg.getText(), needle) || contains(msg.getSendMessageSM(), needle)
+                        || contains(msg.getHttpMessage(), needle))
+                .toList());
+    }
+
+    private static boolean contains(String field, String needle) {
+        return field != null && field.contains(needle);
+    }
+
+    private static List<String> ids(List<MessagesObject> messages) {
+        return messages.stream().map(MessagesObject::getId).sorted().toList();
+    }
+
+    private MessagesObject randomMessage(String id) {
+        return MessagesObject.builder()
+                .id(id)
+                .text(word() + " " + word() + " " + random.nextInt(100))
+                .sendMessageSM(random.nextBoolean() ? "submit_sm " + word() : null)
+                .httpMessage(random.nextInt(3) == 0 ? "POST /send?text=" + word() : null)
+                .from("97250000" + random.nextInt(10))
+                .to("05400000" + random.nextInt(10))
+                .providerId("prov" + random.nextInt(4))
+                .dir(DIRS[random.nextInt(DIRS.length)])
+                .referenceNumber(random.nextInt(4) == 0 ? null : random.nextInt(6))
+                .build();
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
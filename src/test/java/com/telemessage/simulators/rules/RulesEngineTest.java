@@ -0,0 +1,103 @@
+package com.telemessage.simulators.rules;
+
+import com.telemessage.simulators.rules.conf.RulesConf;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.simpleframework.xml.core.Persister;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for compiling rules.xml and matching addresses against the compiled rules.
+ */
+public class RulesEngineTest {
+
+    private static final String RULES = """
+            <rules>
+                <ruleset protocol="smpp">
+                    <rule name="short" prefix="0511" direct_status="ESME_RSYSERR"/>
+                    <rule name="long" prefix="0511000" drop="dr"/>
+                    <rule name="ton" suffix="9991" direct_status="0x58"/>
+                    <rule name="sender" suffix="0101010" on="source" dr_message_id="FIXED"/>
+                </ruleset>
+                <ruleset protocol="smpp" connections="7,8">
+                    <rule name="connection" prefix="0511" drop="response"/>
+                    <rule name="throttled" prefix="0522" throttle_tps="2"/>
+                </ruleset>
+                <ruleset protocol="http">
+                    <rule prefix="0511000" failure_reason="1"/>
+                </ruleset>
+            </rules>
+            """;
+
+    private static RulesEngine.Compiled compile(String xml) throws Exception {
+        return RulesEngine.Compiled.compile(new Persister().read(RulesConf.class, xml), "test");
+    }
+
+    private static Rule find(RulesEngine.Compiled compiled, RulesEngine.Protocol protocol, int connectionId,
+                             String src, String dst) {
+        RulesEngine.Tries tries = compiled.tries(protocol, connectionId);
+        return tries != null ? tries.find(src, dst) : null;
+    }
+
+    @Test
+    @DisplayName("Test the longest matching prefix or suffix wins")
+    public void testLongestMatch() throws Exception {
+        RulesEngine.Compiled compiled = compile(RULES);
+        assertEquals(7, compiled.ruleCount);
+        assertEquals("long", find(compiled, RulesEngine.Protocol.smpp, 1, "123", "0511000123").getName());
+        assertEquals("short", find(compiled, RulesEngine.Protocol.smpp, 1, "123", "0511999123").getName());
+        assertEquals("ton", find(compiled, RulesEngine.Protocol.smpp, 1, "123", "0599999991").getName());
+        assertEquals(0x58, (int) find(compiled, RulesEngine.Protocol.smpp, 1, "123", "0599999991").getDirectStatus());
+        assertEquals("FIXED", find(compiled, RulesEngine.Protocol.smpp, 1, "9725000101010", "0599").getDrMessageId());
+        assertNull(find(compiled, RulesEngine.Protocol.smpp, 1, "123", "0599999992"));
+        assertNull(find(compiled, RulesEngine.Protocol.smpp, 1, null, null));
+    }
+
+    @Test
+    @DisplayName("Test connection rules replace the rules of all connections with the same key")
+    public void testConnectionRules() throws Exception {
+        RulesEngine.Compiled compiled = compile(RULES);
+        Rule rule = find(compiled, RulesEngine.Protocol.smpp, 7, "123", "0511999");
+        assertEquals("connection", rule.getName());
+        assertTrue(rule.dropsResponse());
+        // Rules of all connections still apply to the connection's other addresses
+        assertEquals("long", find(compiled, RulesEngine.Protocol.smpp, 8, "123", "0511000123").getName());
+        assertNull(find(compiled, RulesEngine.Protocol.smpp, 1, "123", "0522"));
+    }
+
+    @Test
+    @DisplayName("Test rules apply only to their protocol")
+    public void testProtocols() throws Exception {
+        RulesEngine.Compiled compiled = compile(RULES);
+        assertEquals("1", find(compiled, RulesEngine.Protocol.http, 1, "", "0511000555").getFailureReason());
+        assertNull(find(compiled, RulesEngine.Protocol.http, 1, "", "0511999555"));
+    }
+
+    @Test
+    @DisplayName("Test throttled rules answer ESME_RTHROTTLED over their rate, per connection")
+    public void testThrottle() throws Exception {
+        RulesEngine.Compiled compiled = compile(RULES);
+        Rule rule = find(compiled, RulesEngine.Protocol.smpp, 7, "123", "0522000");
+        int throttled = 0;
+        for (int i = 0; i < 5; i++) {
+            if (rule.commandStatus(7, 0) == Rule.ESME_RTHROTTLED) {
+                throttled++;
+            }
+        }
+        // A second boundary in the middle of the loop can let two more through
+        assertTrue(throttled >= 1 && throttled <= 3, "throttled " + throttled);
+        assertEquals(0, rule.commandStatus(8, 0));
+    }
+
+    @Test
+    @DisplayName("Test an invalid rule fails the whole file")
+    public void testInvalidRule() {
+        assertThrows(IllegalArgumentException.class,
+                () -> compile("<rules><ruleset><rule prefix=\"1\" suffix=\"2\"/></ruleset></rules>"));
+        assertThrows(IllegalArgumentException.class,
+                () -> compile("<rules><ruleset><rule prefix=\"1\" direct_status=\"NO_SUCH_STATUS\"/></ruleset></rules>"));
+        assertThrows(IllegalArgumentException.class,
+                () -> compile("<rules><ruleset connections=\"x\"><rule prefix=\"1\"/></ruleset></rules>"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.telemessage.simulators.smpp;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for PartsDelayScheduler part order, skipped parts and failures.
+ */
+public class PartsDelaySchedulerTest {
+
+    private static final long WAIT_MS = 5000;
+
+    @Test
+    @DisplayName("Test a part without delay overtakes a delayed part before it")
+    public void testOutOfOrderTimeline() throws Exception {
+        PartsDelayScheduler scheduler = new PartsDelayScheduler();
+        List<String> sent = new CopyOnWriteArrayList<>();
+        Map<String, Long> sentAtMs = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+
+        PartsDelayScheduler.Plan<String> plan = scheduler.submit("out-of-order", List.of("p1", "p2", "p3", "p4"),
+                List.of(300L, 0L, 200L),
+                part -> {
+                    sentAtMs.put(part, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    sent.add(part);
+                    return CompletableFuture.completedFuture(null);
+                });
+
+        // p3 has no delay and goes out with p1; p2 at 300 ms, p4 at 300 + 200 ms
+        waitFor(plan::isFinished);
+        assertEquals(List.of("p1", "p3", "p2", "p4"), sent);
+        assertTrue(sentAtMs.get("p3") < 300, "p3 waited for p2: " + sentAtMs);
+        assertTrue(sentAtMs.get("p2") >= 300, "p2 sent before its delay: " + sentAtMs);
+        assertTrue(sentAtMs.get("p4") >= 500, "p4 sent before its delay: " + sentAtMs);
+        assertEquals(500, plan.getLastPartOffsetMs());
+        assertEquals(4, plan.getSent());
+    }
+
+    @Test
+    @DisplayName("Test a part is not held back by the missing response to an earlier part")
+    public void testPartsDoNotWaitForResponses() throws Exception {
+        PartsDelayScheduler scheduler = new PartsDelayScheduler();
+        List<String> sent = new CopyOnWriteArrayList<>();
+        Map<String, CompletableFuture<Void>> responses = new ConcurrentHashMap<>();
+
+        PartsDelayScheduler.Plan<String> plan = scheduler.submit("no-wait", List.of("p1", "p2", "p3"), List.of(50L, 50L),
+                part -> {
+                    sent.add(part);
+                    return responses.computeIfAbsent(part, p -> new CompletableFuture<>());
+                });
+
+        waitFor(() -> sent.size() == 3);
+        assertEquals(List.of("p1", "p2", "p3"), sent);
+        assertFalse(plan.isFinished(), "Plan finished before the responses arrived");
+
+        responses.values().forEach(response -> response.complete(null));
+        waitFor(plan::isFinished);
+        assertEquals(PartsDelayScheduler.Status.done, plan.getStatus());
+        assertEquals(3, plan.getSent());
+    }
+
+    @Test
+    @DisplayName("Test a skipped part is not sent and adds no delay to the next part")
+    public void testSkippedPart() throws Exception {
+        PartsDelayScheduler scheduler = new PartsDelayScheduler();
+        List<String> sent = new CopyOnWriteArrayList<>();
+        long start = System.nanoTime();
+
+        PartsDelayScheduler.Plan<String> plan = scheduler.submit("skip", List.of("p1", "p2", "p3"),
+                List.of(PartsDelayScheduler.SKIP_PART_DELAY, 200L),
+                part -> {
+                    sent.add(part);
+                    return CompletableFuture.completedFuture(null);
+                });
+
+        waitFor(plan::isFinished);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(List.of("p1", "p3"), sent);
+        assertEquals(2, plan.getSent());
+        assertEquals(1, plan.getSkipped());
+        assertEquals(200, plan.getLastPartOffsetMs());
+        assertTrue(elapsedMs >= 200, "p3 sent before its delay: " + elapsedMs + " ms");
+    }
+
+    @Test
+    @DisplayName("Test a failed part is counted and the plan goes on")
+    public void testFailedPart() throws Exception {
+        PartsDelayScheduler scheduler = new PartsDelayScheduler();
+        List<String> sent = new CopyOnWriteArrayList<>();
+
+        PartsDelayScheduler.Plan<String> plan = scheduler.submit("fail", List.of("p1", "p2", "p3"), List.of(10L, 10L),
+                part -> {
+                    sent.add(part);
+                    if (part.equals("p1")) {
+                        throw new IllegalStateException("not bound");
+                    }
+                    return part.equals("p2")
+                            ? CompletableFuture.failedFuture(new IllegalStateException("no response"))
+                            : CompletableFuture.completedFuture(null);
+                });
+
+        waitFor(plan::isFinished);
+        assertEquals(List.of("p1", "p2", "p3"), sent);
+        assertEquals(1, plan.getSent());
+        assertEquals(2, plan.getFailed());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.telemessage.simulators.smpp;
+
+import com.logica.smpp.Data;
+import com.logica.smpp.pdu.Response;
+import com.logica.smpp.pdu.SubmitSMResp;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SMPPRequestManager correlation of responses, timeouts, cancellation and reused sequence numbers.
+ */
+public class SMPPRequestManagerTest {
+
+    private static final long WAIT_MS = 5000;
+
+    @Test
+    @DisplayName("Test a response that arrives before await is returned")
+    public void testResponseBeforeAwait() {
+        SMPPRequestManager requests = new SMPPRequestManager();
+        CompletableFuture<Response> future = requests.expect(1);
+        assertTrue(requests.isAwaiting(1));
+
+        Response response = response(1);
+        assertTrue(requests.complete(1, response));
+        assertSame(response, requests.await(future));
+        assertFalse(requests.isAwaiting(1));
+        assertEquals(0, requests.getInFlight());
+        assertEquals(1, requests.getStats().getCompleted());
+        assertEquals(1, requests.getStats().getResponseTimeHistogram().values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    @DisplayName("Test a response that arrives while a thread awaits it is returned")
+    public void testResponseAfterAwait() throws Exception {
+        SMPPRequestManager requests = new SMPPRequestManager();
+        CompletableFuture<Response> future = requests.expect(2);
+        CompletableFuture<Response> awaited = CompletableFuture.supplyAsync(() -> requests.await(future));
+
+        Thread.sleep(100);
+        assertFalse(awaited.isDone());
+        Response response = response(2);
+        assertTrue(requests.complete(2, response));
+        assertSame(response, awaited.get(WAIT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(0, requests.getInFlight());
+    }
+
+    @Test
+    @DisplayName("Test an unanswered request times out and a late response is ignored")
+    public void testTimeout() throws Exception {
+        SMPPRequestManager requests = new SMPPRequestManager();
+        requests.timeout = 50;
+        CompletableFuture<Response> future = requests.expect(3);
+
+        assertNull(requests.await(future));
+        ExecutionException error = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        waitFor(() -> requests.getInFlight() == 0);
+        assertEquals(1, requests.getStats().getTimedOut());
+
+        assertFalse(requests.complete(3, response(3)));
+        assertEquals(0, requests.getStats().getCompleted());
+    }
+
+    @Test
+    @DisplayName("Test a cancelled request releases its waiter and is not counted as timed out")
+    public void testCancel() {
+        SMPPRequestManager requests = new SMPPRequestManager();
+        requests.timeout = 100;
+        CompletableFuture<Response> future = requests.expect(4);
+
+        requests.cancel(4);
+        assertTrue(future.isCancelled());
+        assertNull(requests.await(future));
+        assertFalse(requests.isAwaiting(4));
+        assertFalse(requests.complete(4, response(4)));
+        assertEquals(0, requests.getStats().getTimedOut());
+    }
+
+    @Test
+    @DisplayName("Test closing the connection releases every waiter at once")
+    public void testCancelAllOnDisconnect() throws Exception {
+        SMPPRequestManager requests = new SMPPRequestManager();
+        requests.timeout = 10_000;
+        List<CompletableFuture<Response>> futures = List.of(requests.expect(5), requests.expect(6), requests.expect(7));
+        List<CompletableFuture<Response>> awaited = futures.stream()
+                .map(future -> CompletableFuture.supplyAsync(() -> requests.await(future)))
+                .toList();
+        Thread.sleep(100);
+
+        long start = System.nanoTime();
+        assertEquals(3, requests.cancelAll());
+        for (CompletableFuture<Response> waiter : awaited) {
+            assertNull(waiter.get(WAIT_MS, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < requests.timeout,
+                "Waiters were not released before the response timeout");
+        assertTrue(futures.stream().allMatch(CompletableFuture::isCancelled));
+        assertEquals(0, requests.getInFlight());
+        assertEquals(0, requests.cancelAll());
+    }
+
+    @Test
+    @DisplayName("Test a reused sequence number fails the older request and keeps the newer one")
+    public void testDuplicateSequenceNumber() {
+        SMPPRequestManager requests = new SMPPRequestManager();
+        CompletableFuture<Response> older = requests.expect(8);
+        CompletableFuture<Response> newer = requests.expect(8);
+
+        ExecutionException error = assertThrows(ExecutionException.class, older::get);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        // The older request's completion must not drop the newer request's entry
+        assertTrue(requests.isAwaiting(8));
+        assertEquals(1, requests.getInFlight());
+
+        Response response = response(8);
+        assertTrue(requests.complete(8, response));
+        assertSame(response, requests.await(newer));
+        assertEquals(0, requests.getInFlight());
+    }
+
+    private static Response response(int sequenceNumber) {
+        SubmitSMResp response = new SubmitSMResp();
+        response.setSequenceNumber(sequenceNumber);
+        response.setCommandStatus(Data.ESME_ROK);
+        return response;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.telemessage.simulators.smpp;
+
+import com.logica.smpp.pdu.DeliverSM;
+import com.logica.smpp.util.ByteBuffer;
+import com.telemessage.simulators.smpp.concatenation.ConcatMessageContent;
+import com.telemessage.simulators.smpp.concatenation.ConcatenationData;
+import com.telemessage.simulators.smpp.concatenation.ConcatenationType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency tests for SimUtils.extractConcatMessageContent.
+ * Drives many simulated connections with interleaved concatenated traffic through the extractor at once.
+ */
+public class SimUtilsConcurrencyTest {
+
+    private static final int CONNECTIONS = 24;
+    private static final int WORKERS_PER_CONNECTION = 10;
+    private static final int MESSAGES_PER_CONNECTION = 20;
+    private static final int PARTS_PER_MESSAGE = 4;
+
+    @Test
+    @DisplayName("Test interleaved UDHI parts from many connections extract concurrently and correctly")
+    public void testConcurrentUdhiExtraction() throws Exception {
+        Map<Integer, String[]> extracted = new ConcurrentHashMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int conn = 0; conn < CONNECTIONS; conn++) {
+            for (int m = 0; m < MESSAGES_PER_CONNECTION; m++) {
+                int ref = conn * MESSAGES_PER_CONNECTION + m;
+                extracted.put(ref, new String[PARTS_PER_MESSAGE]);
+                for (int part = 1; part <= PARTS_PER_MESSAGE; part++) {
+                    int seq = part;
+                    tasks.add(() -> {
+                        DeliverSM sm = udhiPart(ref, seq, partText(ref, seq));
+                        ConcatMessageContent content = SimUtils.extractConcatMessageContent(sm,
+                                ConcatenationType.UDHI, "ISO-8859-1",
+                                new ConcatenationData(ConcatenationType.UDHI, ref, PARTS_PER_MESSAGE, seq), null);
+                        assertTrue(content.isSuccess(), content.getError());
+                        extracted.get(ref)[seq - 1] = content.getMessageText();
+                        return null;
+                    });
+                }
+            }
+        }
+        // Interleave parts of all references and connections
+        Collections.shuffle(tasks, new Random(42));
+
+        runConcurrently(tasks);
+
+        for (Map.Entry<Integer, String[]> entry : extracted.entrySet()) {
+            for (int part = 1; part <= PARTS_PER_MESSAGE; part++) {
+                assertEquals(partText(entry.getKey(), part), entry.getValue()[part - 1],
+                        "Wrong text for ref " + entry.getKey() + " part " + part);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test short_message and message_payload PDUs mixed across threads")
+    public void testConcurrentMixedPduSources() throws Exception {
+        int messages = CONNECTIONS * MESSAGES_PER_CONNECTION;
+        Map<Integer, String> extracted = new ConcurrentHashMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < messages; i++) {
+            int id = i;
+            tasks.add(() -> {
+                String text = "Single message " + id;
+                DeliverSM sm = new DeliverSM();
+                if (id % 2 == 0) {
+                    sm.setShortMessage(text);
+                } else {
+                    sm.setMessagePayload(new ByteBuffer(text.getBytes(StandardCharsets.ISO_8859_1)));
+                }
+                ConcatMessageContent content = SimUtils.extractConcatMessageContent(sm,
+                        ConcatenationType.DEFAULT, "ISO-8859-1",
+                        new ConcatenationData(ConcatenationType.DEFAULT, 0, 1, 1), null);
+                assertTrue(content.isSuccess(), content.getError());
+                extracted.put(id, content.getMessageText());
+                return null;
+            });
+        }
+
+        runConcurrently(tasks);
+
+        assertEquals(messages, extracted.size());
+        for (int i = 0; i < messages; i++) {
+            assertEquals("Single message " + i, extracted.get(i));
+        }
+    }
+
+    private static void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS_PER_CONNECTION * 4);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                // Rethrows assertion failures raised on worker threads
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String partText(int ref, int part) {
+        return "Connection traffic ref " + ref + " part " + part + " of " + PARTS_PER_MESSAGE;
+    }
+
+    private static DeliverSM udhiPart(int ref, int seq, String text) {
+        byte[] body = text.getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer udh = new ByteBuffer();
+        udh.appendByte((byte) 0x05); // UDH length
+        udh.appendByte((byte) 0x00); // IEI: concatenated SM, 8-bit reference
+        udh.appendByte((byte) 0x03); // IE length
+        udh.appendByte((byte) ref);
+        udh.appendByte((byte) PARTS_PER_MESSAGE);
+        udh.appendByte((byte) seq);
+        udh.appendBytes(body, body.length);
+
+        DeliverSM sm = new DeliverSM();
+        sm.setEsmClass((byte) 0x40);
+        sm.setMessagePayload(udh);
+        return sm;
+    }
+}